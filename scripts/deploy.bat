@@ -208,7 +208,7 @@ if not defined JAR_FILE (
 )
 
 echo %INFO% Starting %JAR_FILE%...
-start "GPT Assistant" java -jar "%JAR_FILE%"
+start "GPT Assistant" java --add-modules jdk.incubator.vector -jar "%JAR_FILE%"
 
 echo %INFO% Waiting for application to start...
 timeout /t 10 /nobreak >nul
@@ -113,7 +113,7 @@ start_app() {
     fi
 
     log_info "Starting $JAR_FILE..."
-    java -jar "$JAR_FILE" &
+    java --add-modules jdk.incubator.vector -jar "$JAR_FILE" &
     APP_PID=$!
 
     log_info "Waiting for application to start..."
@@ -0,0 +1,111 @@
+package io.mkalugin.gpt.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.mkalugin.gpt.dto.RagSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Источники, на которых построены закэшированные ответы RAG.
+ *
+ * <p>Для каждого нормализованного вопроса хранит чанки, вошедшие в контекст ответа. По ним
+ * закэшированный потоковый ответ повторяет событие {@code sources}, а при изменении файлов
+ * из кэша {@code ragQueries} и семантического кэша удаляются только ответы, построенные
+ * на этих файлах, а не весь кэш.</p>
+ *
+ * <p>Индекс живёт дольше кэшей ответов (до 5000 вопросов, 60 минут после записи),
+ * поэтому для любого закэшированного ответа источники известны.</p>
+ */
+@Slf4j
+@Component
+public class AnswerSourceIndex {
+
+    private static final String RAG_QUERIES_CACHE = "ragQueries";
+
+    private final CacheManager cacheManager;
+    private final SemanticAnswerCache semanticAnswerCache;
+
+    private final Cache<String, List<RagSource>> sourcesByQuestion = Caffeine.newBuilder()
+            .maximumSize(5000)
+            .expireAfterWrite(60, TimeUnit.MINUTES)
+            .build();
+
+    public AnswerSourceIndex(CacheManager cacheManager, SemanticAnswerCache semanticAnswerCache) {
+        this.cacheManager = cacheManager;
+        this.semanticAnswerCache = semanticAnswerCache;
+    }
+
+    /**
+     * Запоминает источники ответа на вопрос.
+     *
+     * @param question нормализованный вопрос
+     * @param sources  чанки контекста
+     */
+    public void record(String question, List<RagSource> sources) {
+        sourcesByQuestion.put(question, List.copyOf(sources));
+    }
+
+    /**
+     * Источники ответа на вопрос.
+     *
+     * @param question нормализованный вопрос
+     * @return чанки контекста или пустой список, если вопрос неизвестен
+     */
+    public List<RagSource> sources(String question) {
+        List<RagSource> sources = sourcesByQuestion.getIfPresent(question);
+        return sources != null ? sources : List.of();
+    }
+
+    /**
+     * Связывает вопрос с источниками другого вопроса, ответ на который он получил
+     * из семантического кэша.
+     *
+     * @param question   нормализованный вопрос
+     * @param answeredBy нормализованный вопрос записи семантического кэша
+     */
+    public void link(String question, String answeredBy) {
+        List<RagSource> sources = sourcesByQuestion.getIfPresent(answeredBy);
+        if (sources != null) {
+            sourcesByQuestion.put(question, sources);
+        }
+    }
+
+    /**
+     * Удаляет из кэшей ответы, построенные на указанных источниках.
+     *
+     * @param sources имена изменённых или удалённых файлов
+     * @return количество удалённых вопросов
+     */
+    public int invalidate(Collection<String> sources) {
+        if (sources.isEmpty()) {
+            return 0;
+        }
+        Set<String> changed = new HashSet<>(sources);
+        Set<String> questions = sourcesByQuestion.asMap().entrySet().stream()
+                .filter(entry -> entry.getValue().stream().map(RagSource::source).anyMatch(changed::contains))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        if (questions.isEmpty()) {
+            return 0;
+        }
+
+        org.springframework.cache.Cache ragQueries = cacheManager.getCache(RAG_QUERIES_CACHE);
+        if (ragQueries != null) {
+            questions.forEach(ragQueries::evict);
+        }
+        semanticAnswerCache.invalidate(questions);
+        sourcesByQuestion.invalidateAll(questions);
+        log.info("Invalidated {} cached answers built on {}", questions.size(), sources);
+        return questions.size();
+    }
+}
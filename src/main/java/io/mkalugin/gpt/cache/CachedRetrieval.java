@@ -0,0 +1,86 @@
+package io.mkalugin.gpt.cache;
+
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Компактный результат similarity search для хранения в кэше.
+ *
+ * <p>Вместо списка {@link Document} хранит параллельные массивы идентификаторов,
+ * текстов и оценок сходства.</p>
+ *
+ * @param ids       идентификаторы чанков
+ * @param texts     тексты чанков
+ * @param scores    оценки сходства ({@link Float#NaN}, если хранилище их не вернуло)
+ * @param metadata  метаданные чанков
+ * @param partial   результат получен не всеми путями поиска (например, ChromaDB не ответила вовремя)
+ *                  и не должен попадать в кэш
+ */
+public record CachedRetrieval(
+        String[] ids,
+        String[] texts,
+        float[] scores,
+        List<Map<String, Object>> metadata,
+        boolean partial
+) {
+
+    /**
+     * Упаковка результатов поиска.
+     *
+     * @param documents документы из VectorStore
+     * @return компактное представление
+     */
+    public static CachedRetrieval of(List<Document> documents) {
+        return of(documents, false);
+    }
+
+    /**
+     * Упаковка результатов поиска с признаком неполноты.
+     *
+     * @param documents документы в порядке ранжирования
+     * @param partial   результат получен не всеми путями поиска
+     * @return компактное представление
+     */
+    public static CachedRetrieval of(List<Document> documents, boolean partial) {
+        int size = documents.size();
+        String[] ids = new String[size];
+        String[] texts = new String[size];
+        float[] scores = new float[size];
+        List<Map<String, Object>> metadata = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            Document document = documents.get(i);
+            ids[i] = document.getId();
+            texts[i] = document.getText();
+            scores[i] = document.getScore() != null ? document.getScore().floatValue() : Float.NaN;
+            metadata.add(Map.copyOf(document.getMetadata()));
+        }
+
+        return new CachedRetrieval(ids, texts, scores, List.copyOf(metadata), partial);
+    }
+
+    /**
+     * Восстановление документов для построения контекста.
+     *
+     * @return список документов в порядке ранжирования
+     */
+    public List<Document> toDocuments() {
+        List<Document> documents = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            documents.add(Document.builder()
+                    .id(ids[i])
+                    .text(texts[i])
+                    .metadata(metadata.get(i))
+                    .score(Float.isNaN(scores[i]) ? null : (double) scores[i])
+                    .build());
+        }
+        return documents;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+}
@@ -0,0 +1,277 @@
+package io.mkalugin.gpt.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Семантический кэш ответов RAG.
+ *
+ * <p>Хранит ответы вместе с embedding нормализованного вопроса и находит ранее
+ * заданные вопросы, близкие к новому по косинусному сходству. Перефразированный
+ * вопрос получает ответ из кэша без поиска в ChromaDB и вызова GPT.</p>
+ *
+ * <p>Индекс — список единичных векторов с полным перебором: для нескольких тысяч
+ * записей это быстрее и проще приближённых структур. Вытеснение — LRU по времени
+ * последнего обращения при превышении {@code max-size} и TTL от момента записи.</p>
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    private static final String METRIC_PREFIX = "rag.semantic.cache";
+
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final DistributionSummary similarity;
+
+    public SemanticAnswerCache(@Value("${app.rag.semantic-cache.enabled:true}") boolean enabled,
+                               @Value("${app.rag.semantic-cache.similarity-threshold:0.95}") double similarityThreshold,
+                               @Value("${app.rag.semantic-cache.max-size:1000}") int maxSize,
+                               @Value("${app.rag.semantic-cache.ttl:10m}") Duration ttl,
+                               MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+
+        this.hits = Counter.builder(METRIC_PREFIX + ".gets")
+                .tag("result", "hit")
+                .description("Попадания в семантический кэш ответов")
+                .register(meterRegistry);
+        this.misses = Counter.builder(METRIC_PREFIX + ".gets")
+                .tag("result", "miss")
+                .description("Промахи семантического кэша ответов")
+                .register(meterRegistry);
+        this.evictions = Counter.builder(METRIC_PREFIX + ".evictions")
+                .description("Вытесненные записи семантического кэша")
+                .register(meterRegistry);
+        this.similarity = DistributionSummary.builder(METRIC_PREFIX + ".similarity")
+                .description("Лучшее косинусное сходство при поиске в семантическом кэше")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".size", this, SemanticAnswerCache::size)
+                .description("Количество записей в семантическом кэше")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Поиск ответа на вопрос, близкий к переданному embedding.
+     *
+     * @param embedding embedding нормализованного вопроса
+     * @return ответ наиболее похожего вопроса, если сходство не ниже порога
+     */
+    public Optional<String> lookup(float[] embedding) {
+        return match(embedding).map(Match::answer);
+    }
+
+    /**
+     * Поиск записи с вопросом, близким к переданному embedding.
+     *
+     * @param embedding embedding нормализованного вопроса
+     * @return вопрос и ответ наиболее похожей записи, если сходство не ниже порога
+     */
+    public Optional<Match> match(float[] embedding) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        float[] query = unit(embedding);
+        long now = System.nanoTime();
+
+        Entry best = null;
+        double bestScore = -1;
+
+        lock.readLock().lock();
+        try {
+            for (Entry entry : entries) {
+                if (entry.isExpired(now, ttlNanos)) {
+                    continue;
+                }
+                double score = dot(query, entry.vector);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = entry;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (best != null) {
+            similarity.record(bestScore);
+        }
+        if (best == null || bestScore < similarityThreshold) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        best.lastAccess = now;
+        hits.increment();
+        log.debug("Semantic cache hit: '{}' (similarity {})", best.question, bestScore);
+        return Optional.of(new Match(best.question, best.answer));
+    }
+
+    /**
+     * Сохранение ответа в кэш.
+     * Запись с почти тем же вопросом (сходство не ниже порога) заменяется.
+     *
+     * @param question  нормализованный вопрос
+     * @param embedding embedding нормализованного вопроса
+     * @param answer    ответ модели
+     */
+    public void put(String question, float[] embedding, String answer) {
+        if (!enabled || answer == null) {
+            return;
+        }
+        Entry fresh = new Entry(question, unit(embedding), answer, System.nanoTime());
+
+        lock.writeLock().lock();
+        try {
+            removeExpired(fresh.createdAt);
+            entries.removeIf(entry -> entry.question.equals(question)
+                    || dot(entry.vector, fresh.vector) >= similarityThreshold);
+            while (entries.size() >= maxSize) {
+                evictLeastRecentlyUsed();
+            }
+            entries.add(fresh);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаление записей с указанными вопросами.
+     *
+     * @param questions нормализованные вопросы
+     */
+    public void invalidate(Collection<String> questions) {
+        if (questions.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            entries.removeIf(entry -> questions.contains(entry.question));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Полная очистка кэша.
+     */
+    public void invalidateAll() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeExpired(long now) {
+        int before = entries.size();
+        entries.removeIf(entry -> entry.isExpired(now, ttlNanos));
+        evictions.increment(before - entries.size());
+    }
+
+    private void evictLeastRecentlyUsed() {
+        int lru = 0;
+        for (int i = 1; i < entries.size(); i++) {
+            if (entries.get(i).lastAccess < entries.get(lru).lastAccess) {
+                lru = i;
+            }
+        }
+        entries.remove(lru);
+        evictions.increment();
+    }
+
+    private static float[] unit(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] result = new float[vector.length];
+        if (norm == 0) {
+            return result;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = (float) (vector[i] / norm);
+        }
+        return result;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Найденная запись кэша.
+     *
+     * @param question нормализованный вопрос записи
+     * @param answer   ответ
+     */
+    public record Match(String question, String answer) {
+    }
+
+    private static final class Entry {
+        private final String question;
+        private final float[] vector;
+        private final String answer;
+        private final long createdAt;
+        private volatile long lastAccess;
+
+        private Entry(String question, float[] vector, String answer, long createdAt) {
+            this.question = question;
+            this.vector = vector;
+            this.answer = answer;
+            this.createdAt = createdAt;
+            this.lastAccess = createdAt;
+        }
+
+        private boolean isExpired(long now, long ttlNanos) {
+            return now - createdAt > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package io.mkalugin.gpt.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.mkalugin.gpt.exception.RequestTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одновременных одинаковых вычислений (single-flight).
+ *
+ * <p>Первый вызов с ключом выполняет вычисление в своём потоке, остальные вызовы
+ * с тем же ключом ждут его результат. Ошибка вычисления передаётся всем ожидающим.
+ * Ожидание ограничено таймаутом, после которого выбрасывается
+ * {@link RequestTimeoutException}. Результат не сохраняется — за это отвечают кэши.</p>
+ *
+ * @param <K> тип ключа
+ * @param <V> тип результата
+ */
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final Duration timeout;
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter executions;
+    private final Counter coalesced;
+
+    public SingleFlight(String name, Duration timeout, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.timeout = timeout;
+        this.executions = Counter.builder("singleflight.calls")
+                .tag("name", name)
+                .tag("result", "executed")
+                .description("Вычисления, выполненные первым вызовом")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("singleflight.calls")
+                .tag("name", name)
+                .tag("result", "coalesced")
+                .description("Вызовы, присоединённые к уже выполняющемуся вычислению")
+                .register(meterRegistry);
+        Gauge.builder("singleflight.inflight", inFlight, ConcurrentMap::size)
+                .tag("name", name)
+                .description("Количество выполняющихся вычислений")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполнение вычисления или присоединение к уже выполняющемуся с тем же ключом.
+     *
+     * @param key    ключ вычисления
+     * @param loader вычисление
+     * @return результат вычисления
+     * @throws RequestTimeoutException если результат не получен за отведённое время
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        executions.increment();
+        try {
+            V value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RequestTimeoutException(
+                    "Timed out after " + timeout.toMillis() + " ms waiting for in-flight '" + name + "' computation");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for in-flight '" + name + "' computation", e);
+        }
+    }
+}
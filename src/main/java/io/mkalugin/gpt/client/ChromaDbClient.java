@@ -1,13 +1,28 @@
 package io.mkalugin.gpt.client;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import io.mkalugin.gpt.dto.chroma.ChromaCollection;
+import io.mkalugin.gpt.dto.chroma.ChromaEmbeddingsResponse;
 import io.mkalugin.gpt.dto.chroma.ChromaGetResponse;
+import io.mkalugin.gpt.dto.chroma.ChromaQueryResponse;
+import io.mkalugin.gpt.dto.chroma.ChromaRecordsResponse;
+import io.mkalugin.gpt.utils.TextPreview;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -21,8 +36,16 @@ public class ChromaDbClient {
 
     private static final String COLLECTION_URL = "/api/v2/tenants/{tenant}/databases/{database}/collections/{collection}";
     private static final String GET_DOCUMENTS_URL = "/api/v2/tenants/{tenant}/databases/{database}/collections/{collectionId}/get";
+    private static final String COUNT_URL = "/api/v2/tenants/{tenant}/databases/{database}/collections/{collectionId}/count";
+    private static final String QUERY_URL = "/api/v2/tenants/{tenant}/databases/{database}/collections/{collectionId}/query";
+    private static final String UPDATE_URL = "/api/v2/tenants/{tenant}/databases/{database}/collections/{collectionId}/update";
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
 
     private final RestClient restClient;
+    private final ObjectMapper objectMapper;
+    private final LoadingCache<String, ChromaCollection> collectionCache;
 
     @Value("${spring.ai.vectorstore.chroma.tenant-name}")
     private String tenantName;
@@ -33,22 +56,36 @@ public class ChromaDbClient {
     @Value("${spring.ai.vectorstore.chroma.collection-name}")
     private String collectionName;
 
-    public ChromaDbClient(@Value("${spring.ai.vectorstore.chroma.client.base-url}") String chromaBaseUrl) {
-        this.restClient = RestClient.builder().baseUrl(chromaBaseUrl).build();
+    /**
+     * @param chromaRestClient общий клиент ChromaDB ({@link io.mkalugin.gpt.config.ChromaConfig})
+     * @param objectMapper     разбор ответов, читаемых потоково
+     * @param refreshAfterWrite возраст информации о коллекции, после которого она обновляется в фоне
+     * @param expireAfterWrite  максимальный возраст информации о коллекции
+     */
+    public ChromaDbClient(RestClient chromaRestClient, ObjectMapper objectMapper,
+                          @Value("${app.chroma.collection-cache.refresh-after-write:30s}") Duration refreshAfterWrite,
+                          @Value("${app.chroma.collection-cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.restClient = chromaRestClient;
+        this.objectMapper = objectMapper;
+        this.collectionCache = Caffeine.newBuilder()
+                .refreshAfterWrite(refreshAfterWrite)
+                .expireAfterWrite(expireAfterWrite)
+                .build(this::loadCollection);
     }
 
     /**
      * Получение информации о коллекции.
      *
+     * <p>Информация берётся из кэша: после {@code app.chroma.collection-cache.refresh-after-write}
+     * первое обращение запускает фоновое обновление и получает текущее значение, после
+     * {@code expire-after-write} — ждёт загрузки. Если обновление не удалось, остаётся прежнее
+     * значение. Отсутствие коллекции не кэшируется.</p>
+     *
      * @return информация о коллекции или empty если не найдена
      */
     public Optional<ChromaCollection> getCollection() {
         try {
-            ChromaCollection collection = restClient.get()
-                    .uri(COLLECTION_URL, tenantName, databaseName, collectionName)
-                    .retrieve()
-                    .body(ChromaCollection.class);
-            return Optional.ofNullable(collection);
+            return Optional.ofNullable(collectionCache.get(collectionName));
         } catch (Exception e) {
             log.error("Error fetching collection '{}': {}", collectionName, e.getMessage());
             return Optional.empty();
@@ -56,19 +93,127 @@ public class ChromaDbClient {
     }
 
     /**
-     * Получение документов из коллекции.
+     * Загрузка информации о коллекции из ChromaDB в обход кэша.
+     *
+     * @return информация о коллекции или empty если не найдена
+     */
+    public Optional<ChromaCollection> refreshCollection() {
+        collectionCache.invalidate(collectionName);
+        return getCollection();
+    }
+
+    /**
+     * Учёт записи в коллекцию: количество документов в кэше сразу меняется на {@code countDelta},
+     * а информация о коллекции обновляется в фоне.
+     *
+     * @param countDelta добавленные минус удалённые документы
+     */
+    public void collectionChanged(int countDelta) {
+        if (countDelta != 0) {
+            collectionCache.asMap().computeIfPresent(collectionName,
+                    (name, collection) -> collection.withCount(Math.max(0, collection.getCountOrZero() + countDelta)));
+        }
+        collectionCache.refresh(collectionName);
+    }
+
+    /**
+     * Загрузка коллекции и количества документов в ней. Количество ChromaDB отдаёт отдельным запросом.
+     *
+     * @return коллекция или null, если её нет
+     */
+    private ChromaCollection loadCollection(String name) {
+        ChromaCollection collection = restClient.get()
+                .uri(COLLECTION_URL, tenantName, databaseName, name)
+                .exchange((clientRequest, clientResponse) -> {
+                    if (clientResponse.getStatusCode().value() == 404) {
+                        return null;
+                    }
+                    if (clientResponse.getStatusCode().isError()) {
+                        throw new IllegalStateException("Chroma returned " + clientResponse.getStatusCode());
+                    }
+                    return objectMapper.readValue(clientResponse.getBody(), ChromaCollection.class);
+                });
+        if (collection == null) {
+            return null;
+        }
+        Integer count = restClient.get()
+                .uri(COUNT_URL, tenantName, databaseName, collection.id())
+                .retrieve()
+                .body(Integer.class);
+        return count != null ? collection.withCount(count) : collection;
+    }
+
+    /**
+     * Получение страницы документов коллекции.
+     *
+     * <p>Ответ разбирается потоково: тексты документов сразу сокращаются до превью
+     * ({@link TextPreview}), поэтому в памяти находится одна страница превью, а не полные тексты.</p>
      *
      * @param collectionId ID коллекции
-     * @param limit        максимальное количество документов
-     * @return ответ с документами или empty при ошибке
+     * @param include      поля ChromaDB ({@code documents}, {@code metadatas}); id возвращаются всегда
+     * @param limit        размер страницы
+     * @param offset       смещение от начала коллекции
+     * @return страница с id, превью текстов и метаданными или empty при ошибке
      */
-    public Optional<ChromaGetResponse> getDocuments(String collectionId, int limit) {
+    public Optional<ChromaGetResponse> getDocumentsPage(String collectionId, List<String> include,
+                                                        int limit, int offset) {
         try {
             Map<String, Object> request = Map.of(
                     "limit", limit,
-                    "include", List.of("documents", "metadatas")
+                    "offset", offset,
+                    "include", include
             );
 
+            ChromaGetResponse response = restClient.post()
+                    .uri(GET_DOCUMENTS_URL, tenantName, databaseName, collectionId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(request)
+                    .exchange((clientRequest, clientResponse) -> {
+                        if (clientResponse.getStatusCode().isError()) {
+                            throw new IllegalStateException("Chroma returned " + clientResponse.getStatusCode());
+                        }
+                        return readPreviewPage(clientResponse.getBody());
+                    });
+
+            return Optional.ofNullable(response);
+        } catch (Exception e) {
+            log.error("Error fetching documents from collection '{}': {}", collectionId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Получение страницы метаданных чанков коллекции (без текстов).
+     *
+     * @param collectionId ID коллекции
+     * @param limit        размер страницы
+     * @param offset       смещение от начала коллекции
+     * @return ответ с id и метаданными или empty при ошибке
+     */
+    public Optional<ChromaGetResponse> getMetadatas(String collectionId, int limit, int offset) {
+        return getMetadatas(collectionId, null, limit, offset);
+    }
+
+    /**
+     * Получение страницы метаданных чанков, подходящих под фильтр (без текстов).
+     *
+     * @param collectionId ID коллекции
+     * @param where        фильтр по метаданным в формате ChromaDB {@code where} или null
+     * @param limit        размер страницы
+     * @param offset       смещение от начала выборки
+     * @return ответ с id и метаданными или empty при ошибке
+     */
+    public Optional<ChromaGetResponse> getMetadatas(String collectionId, Map<String, Object> where,
+                                                    int limit, int offset) {
+        try {
+            Map<String, Object> request = new HashMap<>();
+            request.put("limit", limit);
+            request.put("offset", offset);
+            request.put("include", List.of("metadatas"));
+            if (where != null) {
+                request.put("where", where);
+            }
+
             ChromaGetResponse response = restClient.post()
                     .uri(GET_DOCUMENTS_URL, tenantName, databaseName, collectionId)
                     .contentType(MediaType.APPLICATION_JSON)
@@ -78,11 +223,167 @@ public class ChromaDbClient {
 
             return Optional.ofNullable(response);
         } catch (Exception e) {
-            log.error("Error fetching documents from collection '{}': {}", collectionId, e.getMessage());
+            log.error("Error fetching metadata from collection '{}': {}", collectionId, e.getMessage());
             return Optional.empty();
         }
     }
 
+    /**
+     * Получение страницы embeddings коллекции.
+     *
+     * @param collectionId ID коллекции
+     * @param limit        размер страницы
+     * @param offset       смещение от начала коллекции
+     * @return ответ с id и векторами или empty при ошибке
+     */
+    public Optional<ChromaEmbeddingsResponse> getEmbeddings(String collectionId, int limit, int offset) {
+        try {
+            Map<String, Object> request = Map.of(
+                    "limit", limit,
+                    "offset", offset,
+                    "include", List.of("embeddings")
+            );
+
+            ChromaEmbeddingsResponse response = restClient.post()
+                    .uri(GET_DOCUMENTS_URL, tenantName, databaseName, collectionId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(request)
+                    .retrieve()
+                    .body(ChromaEmbeddingsResponse.class);
+
+            return Optional.ofNullable(response);
+        } catch (Exception e) {
+            log.error("Error fetching embeddings from collection '{}': {}", collectionId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Получение документов коллекции вместе с текстами, метаданными и embeddings.
+     *
+     * @param collectionId ID коллекции
+     * @param ids          id документов или null для всех документов коллекции
+     * @param limit        размер страницы
+     * @param offset       смещение от начала выборки
+     * @return ответ с документами или empty при ошибке
+     */
+    public Optional<ChromaRecordsResponse> getRecords(String collectionId, List<String> ids, int limit, int offset) {
+        try {
+            Map<String, Object> request = new HashMap<>();
+            request.put("limit", limit);
+            request.put("offset", offset);
+            request.put("include", List.of("embeddings", "documents", "metadatas"));
+            if (ids != null) {
+                request.put("ids", ids);
+            }
+
+            ChromaRecordsResponse response = restClient.post()
+                    .uri(GET_DOCUMENTS_URL, tenantName, databaseName, collectionId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(request)
+                    .retrieve()
+                    .body(ChromaRecordsResponse.class);
+
+            return Optional.ofNullable(response);
+        } catch (Exception e) {
+            log.error("Error fetching records from collection '{}': {}", collectionId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Поиск ближайших документов по готовому вектору запроса.
+     *
+     * @param collectionId ID коллекции
+     * @param embedding    вектор запроса
+     * @param nResults     сколько документов вернуть
+     * @return id найденных документов по убыванию сходства или empty при ошибке
+     */
+    public Optional<List<String>> queryIds(String collectionId, float[] embedding, int nResults) {
+        try {
+            Map<String, Object> request = Map.of(
+                    "query_embeddings", List.of(embedding),
+                    "n_results", nResults,
+                    "include", List.of()
+            );
+
+            ChromaQueryResponse response = restClient.post()
+                    .uri(QUERY_URL, tenantName, databaseName, collectionId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(request)
+                    .retrieve()
+                    .body(ChromaQueryResponse.class);
+
+            return Optional.ofNullable(response)
+                    .map(ChromaQueryResponse::ids)
+                    .filter(ids -> !ids.isEmpty())
+                    .map(List::getFirst);
+        } catch (Exception e) {
+            log.error("Error querying collection '{}': {}", collectionId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Обновление метаданных чанков. ChromaDB объединяет переданные поля с существующими.
+     *
+     * @param collectionId ID коллекции
+     * @param ids          id чанков
+     * @param metadatas    новые поля метаданных в порядке {@code ids}
+     * @return true, если метаданные обновлены
+     */
+    public boolean updateMetadatas(String collectionId, List<String> ids, List<Map<String, Object>> metadatas) {
+        try {
+            Map<String, Object> request = Map.of(
+                    "ids", ids,
+                    "metadatas", metadatas
+            );
+
+            restClient.post()
+                    .uri(UPDATE_URL, tenantName, databaseName, collectionId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(request)
+                    .retrieve()
+                    .toBodilessEntity();
+            return true;
+        } catch (Exception e) {
+            log.error("Error updating metadata in collection '{}': {}", collectionId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Разбор ответа {@code get} по токенам с сокращением текстов до превью.
+     */
+    private ChromaGetResponse readPreviewPage(InputStream body) throws IOException {
+        List<String> ids = new ArrayList<>();
+        List<String> documents = new ArrayList<>();
+        List<Map<String, Object>> metadatas = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected Chroma response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    switch (field) {
+                        case "ids" -> ids.add(parser.getText());
+                        case "documents" -> documents.add(
+                                parser.currentToken() == JsonToken.VALUE_NULL ? null : TextPreview.of(parser.getText()));
+                        case "metadatas" -> metadatas.add(
+                                parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.readValueAs(METADATA_TYPE));
+                        default -> parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return new ChromaGetResponse(ids, documents, metadatas);
+    }
+
     public String getCollectionName() {
         return collectionName;
     }
@@ -0,0 +1,136 @@
+package io.mkalugin.gpt.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограничение одновременных запросов к ChromaDB.
+ *
+ * <p>{@link java.net.http.HttpClient} не ограничивает число соединений, поэтому при зависшей
+ * ChromaDB новые запросы открывали бы всё новые соединения. Интерцептор выдаёт не больше
+ * {@code max-connections} разрешений: разрешение занимается до отправки запроса и возвращается
+ * при закрытии ответа, то есть пока соединение занято. Запрос, не получивший разрешения
+ * за {@code acquire-timeout}, завершается ошибкой, а не ждёт бесконечно.</p>
+ *
+ * <p>Метрики: {@code rag.chroma.http.connections.active}, {@code rag.chroma.http.connections.pending},
+ * {@code rag.chroma.http.connections.max}, {@code rag.chroma.http.connections.acquire}
+ * (ожидание разрешения).</p>
+ */
+public class ConnectionLimitInterceptor implements ClientHttpRequestInterceptor {
+
+    private final int maxConnections;
+    private final long acquireTimeoutNanos;
+    private final Semaphore permits;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Timer acquireTimer;
+
+    public ConnectionLimitInterceptor(int maxConnections, Duration acquireTimeout, MeterRegistry meterRegistry) {
+        this.maxConnections = maxConnections;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        this.permits = new Semaphore(maxConnections, true);
+        Gauge.builder("rag.chroma.http.connections.active", this, ConnectionLimitInterceptor::active)
+                .description("Занятые соединения с ChromaDB")
+                .register(meterRegistry);
+        Gauge.builder("rag.chroma.http.connections.pending", pending, AtomicInteger::get)
+                .description("Запросы к ChromaDB, ожидающие свободного соединения")
+                .register(meterRegistry);
+        Gauge.builder("rag.chroma.http.connections.max", this, interceptor -> interceptor.maxConnections)
+                .description("Максимум одновременных соединений с ChromaDB")
+                .register(meterRegistry);
+        this.acquireTimer = Timer.builder("rag.chroma.http.connections.acquire")
+                .description("Ожидание свободного соединения с ChromaDB")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        acquire(request);
+        try {
+            return new ReleasingResponse(execution.execute(request, body));
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int active() {
+        return maxConnections - permits.availablePermits();
+    }
+
+    private void acquire(HttpRequest request) throws IOException {
+        long start = System.nanoTime();
+        pending.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new IOException("No free Chroma connection within %d ms for %s %s".formatted(
+                        TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos), request.getMethod(), request.getURI().getPath()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a Chroma connection", e);
+        } finally {
+            pending.decrementAndGet();
+            acquireTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Ответ, возвращающий разрешение при закрытии (один раз).
+     */
+    private final class ReleasingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleasingResponse(ClientHttpResponse delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
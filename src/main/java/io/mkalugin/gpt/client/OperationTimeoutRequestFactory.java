@@ -0,0 +1,72 @@
+package io.mkalugin.gpt.client;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Фабрика запросов к ChromaDB с таймаутом чтения по операции.
+ *
+ * <p>Операция определяется по последнему сегменту пути REST API ChromaDB: {@code query} — поиск,
+ * {@code get} — чтение документов и метаданных, {@code add}, {@code upsert}, {@code update},
+ * {@code delete} — запись; остальные запросы получают таймаут по умолчанию. Все фабрики используют
+ * один {@link HttpClient}, поэтому соединения с ChromaDB общие.</p>
+ */
+public class OperationTimeoutRequestFactory implements ClientHttpRequestFactory {
+
+    /**
+     * Операция ChromaDB, для которой задаётся таймаут.
+     */
+    public enum Operation {
+        QUERY, GET, WRITE, DEFAULT
+    }
+
+    private static final Map<String, Operation> OPERATIONS = Map.of(
+            "query", Operation.QUERY,
+            "get", Operation.GET,
+            "add", Operation.WRITE,
+            "upsert", Operation.WRITE,
+            "update", Operation.WRITE,
+            "delete", Operation.WRITE);
+
+    private final Map<Operation, ClientHttpRequestFactory> factories;
+
+    /**
+     * @param httpClient общий HTTP-клиент
+     * @param timeouts   таймауты чтения по операциям; для {@link Operation#DEFAULT} обязателен
+     */
+    public OperationTimeoutRequestFactory(HttpClient httpClient, Map<Operation, Duration> timeouts) {
+        Duration fallback = timeouts.get(Operation.DEFAULT);
+        if (fallback == null) {
+            throw new IllegalArgumentException("Default Chroma timeout is required");
+        }
+        this.factories = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+            factory.setReadTimeout(timeouts.getOrDefault(operation, fallback));
+            factories.put(operation, factory);
+        }
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        return factories.get(operationOf(uri)).createRequest(uri, httpMethod);
+    }
+
+    static Operation operationOf(URI uri) {
+        String path = uri.getPath();
+        if (path == null) {
+            return Operation.DEFAULT;
+        }
+        String last = path.substring(path.lastIndexOf('/') + 1);
+        return OPERATIONS.getOrDefault(last, Operation.DEFAULT);
+    }
+}
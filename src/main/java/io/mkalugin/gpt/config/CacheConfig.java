@@ -1,11 +1,15 @@
 package io.mkalugin.gpt.config;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.mkalugin.gpt.cache.SingleFlight;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -19,6 +23,10 @@ public class CacheConfig {
      * - Максимум 500 записей в кэше
      * - Записи истекают через 10 минут после записи
      * - Статистика кэша включена для мониторинга
+     *
+     * <p>Кэш {@code ragRetrievals} хранит результаты similarity search и сбрасывается
+     * при загрузке документов, поэтому живёт дольше кэша ответов:
+     * до 2000 записей и 60 минут после записи.</p>
      */
     @Bean
     public CacheManager cacheManager() {
@@ -27,6 +35,26 @@ public class CacheConfig {
                 .maximumSize(500)
                 .expireAfterWrite(10, TimeUnit.MINUTES)
                 .recordStats());
+        cacheManager.registerCustomCache("ragRetrievals", Caffeine.newBuilder()
+                .maximumSize(2000)
+                .expireAfterWrite(60, TimeUnit.MINUTES)
+                .recordStats()
+                .build());
         return cacheManager;
     }
+
+    /**
+     * Объединение одновременных одинаковых RAG-запросов.
+     * Пока вопрос обрабатывается, такие же вопросы ждут его результат
+     * вместо собственных вызовов embeddings, ChromaDB и GPT.
+     *
+     * @param timeout       максимальное время ожидания результата
+     * @param meterRegistry реестр метрик
+     */
+    @Bean
+    public SingleFlight<String, String> ragQuerySingleFlight(
+            @Value("${app.rag.coalescing.timeout:60s}") Duration timeout,
+            MeterRegistry meterRegistry) {
+        return new SingleFlight<>("ragQueries", timeout, meterRegistry);
+    }
 }
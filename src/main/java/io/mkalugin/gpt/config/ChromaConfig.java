@@ -1,19 +1,35 @@
 package io.mkalugin.gpt.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.mkalugin.gpt.client.ConnectionLimitInterceptor;
+import io.mkalugin.gpt.client.GzipResponseInterceptor;
+import io.mkalugin.gpt.client.OperationTimeoutRequestFactory;
+import io.mkalugin.gpt.client.OperationTimeoutRequestFactory.Operation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chroma.vectorstore.ChromaApi;
 import org.springframework.ai.chroma.vectorstore.ChromaVectorStore;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestClient;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
 /**
  * Конфигурация для интеграции с ChromaDB — векторной базой данных.
  *
  * <p>ChromaDB используется для хранения документов с их векторными представлениями
  * (embeddings) и выполнения семантического поиска по ним.</p>
+ *
+ * <p>Весь трафик к ChromaDB — и {@link ChromaApi} (VectorStore), и {@link io.mkalugin.gpt.client.ChromaDbClient} —
+ * идёт через один {@link RestClient} поверх общего {@link HttpClient}: постоянные соединения,
+ * таймауты подключения и чтения по операциям, ограничение числа соединений и, опционально,
+ * HTTP/2 и gzip. Зависшая ChromaDB не блокирует потоки запросов дольше таймаутов.</p>
  */
 @Slf4j
 @Configuration
@@ -31,27 +47,101 @@ public class ChromaConfig {
     @Value("${spring.ai.vectorstore.chroma.collection-name}")
     private String collectionName;
 
+    @Value("${app.chroma.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${app.chroma.http.max-connections:32}")
+    private int maxConnections;
+
+    @Value("${app.chroma.http.acquire-timeout:5s}")
+    private Duration acquireTimeout;
+
+    @Value("${app.chroma.http.http2:false}")
+    private boolean http2;
+
+    @Value("${app.chroma.http.gzip:true}")
+    private boolean gzip;
+
+    @Value("${app.chroma.http.timeouts.default:10s}")
+    private Duration defaultTimeout;
+
+    @Value("${app.chroma.http.timeouts.query:5s}")
+    private Duration queryTimeout;
+
+    @Value("${app.chroma.http.timeouts.get:30s}")
+    private Duration getTimeout;
+
+    @Value("${app.chroma.http.timeouts.write:60s}")
+    private Duration writeTimeout;
+
+    /**
+     * HTTP-клиент ChromaDB. Соединения переиспользуются между запросами (keep-alive),
+     * время простоя соединения задаёт системное свойство {@code jdk.httpclient.keepalive.timeout}.
+     *
+     * @return клиент, закрывается при остановке приложения
+     */
+    @Bean(destroyMethod = "close")
+    public HttpClient chromaHttpClient() {
+        return HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * Общий {@link RestClient} ChromaDB. Построен из {@link RestClient.Builder} автоконфигурации,
+     * поэтому запросы попадают в метрику {@code http.client.requests} с шаблоном URI (задержка по endpoint).
+     *
+     * @param restClientBuilder билдер из автоконфигурации Spring Boot
+     * @param chromaHttpClient  HTTP-клиент ChromaDB
+     * @param meterRegistry     реестр метрик
+     * @return клиент с базовым URL ChromaDB
+     */
+    @Bean
+    public RestClient chromaRestClient(RestClient.Builder restClientBuilder, HttpClient chromaHttpClient,
+                                       MeterRegistry meterRegistry) {
+        Map<Operation, Duration> timeouts = Map.of(
+                Operation.DEFAULT, defaultTimeout,
+                Operation.QUERY, queryTimeout,
+                Operation.GET, getTimeout,
+                Operation.WRITE, writeTimeout);
+        RestClient.Builder builder = restClientBuilder
+                .baseUrl(chromaBaseUrl)
+                .requestFactory(new OperationTimeoutRequestFactory(chromaHttpClient, timeouts))
+                .requestInterceptor(new ConnectionLimitInterceptor(maxConnections, acquireTimeout, meterRegistry));
+        if (gzip) {
+            builder.requestInterceptor(new GzipResponseInterceptor());
+        }
+        log.info("Chroma HTTP client: {}, max {} connections, timeouts {}", http2 ? "HTTP/2" : "HTTP/1.1",
+                maxConnections, timeouts);
+        return builder.build();
+    }
+
     /**
      * Клиент для взаимодействия с ChromaDB API.
      *
+     * @param chromaRestClient общий клиент ChromaDB
      * @return экземпляр {@link ChromaApi}
      */
     @Bean
-    public ChromaApi chromaApi() {
+    public ChromaApi chromaApi(RestClient chromaRestClient) {
         return ChromaApi.builder()
                 .baseUrl(chromaBaseUrl)
-                .restClientBuilder(RestClient.builder())
+                .restClientBuilder(chromaRestClient.mutate())
                 .build();
     }
 
     /**
-     * Векторное хранилище на базе ChromaDB.
+     * Векторное хранилище на базе ChromaDB. Используется, пока {@code spring.ai.vectorstore.type}
+     * не переключён на {@code hnsw} ({@link HnswConfig}).
      *
      * @param chromaApi      клиент ChromaDB API
      * @param embeddingModel модель для генерации embeddings
      * @return экземпляр {@link ChromaVectorStore}
      */
     @Bean
+    @ConditionalOnProperty(value = "spring.ai.vectorstore.type", havingValue = "chroma", matchIfMissing = true)
     public ChromaVectorStore vectorStore(ChromaApi chromaApi, EmbeddingModel embeddingModel) {
         try {
             var request = new ChromaApi.CreateCollectionRequest(collectionName);
@@ -0,0 +1,51 @@
+package io.mkalugin.gpt.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.mkalugin.gpt.client.ChromaDbClient;
+import io.mkalugin.gpt.vectorstore.ChromaReplicaVectorStore;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.chroma.vectorstore.ChromaVectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+
+/**
+ * Локальная копия коллекции ChromaDB для поиска.
+ *
+ * <p>Включается {@code app.vectorstore.replica.enabled=true} при хранилище ChromaDB. Хранилище
+ * с копией помечено {@link Primary} и оборачивает {@link ChromaVectorStore}: запись идёт
+ * в ChromaDB, поиск — точным перебором по копии в JVM, а до её загрузки — в ChromaDB.</p>
+ */
+@Configuration
+@ConditionalOnExpression("${app.vectorstore.replica.enabled:false} and '${spring.ai.vectorstore.type:chroma}' == 'chroma'")
+public class ChromaReplicaConfig {
+
+    @Value("${app.vectorstore.replica.parallel-threshold:20000}")
+    private int parallelThreshold;
+
+    @Value("${app.vectorstore.replica.sync-interval:5m}")
+    private Duration syncInterval;
+
+    /**
+     * Хранилище ChromaDB с локальной копией коллекции.
+     *
+     * @param vectorStore    хранилище ChromaDB ({@link ChromaConfig})
+     * @param chromaDbClient клиент для чтения коллекции
+     * @param embeddingModel модель для embeddings запросов
+     * @param meterRegistry  реестр метрик
+     * @return хранилище; копия загружается в фоне
+     */
+    @Bean(destroyMethod = "close")
+    @Primary
+    public ChromaReplicaVectorStore chromaReplicaVectorStore(ChromaVectorStore vectorStore,
+                                                             ChromaDbClient chromaDbClient,
+                                                             EmbeddingModel embeddingModel,
+                                                             MeterRegistry meterRegistry) {
+        return new ChromaReplicaVectorStore(vectorStore, chromaDbClient, embeddingModel, parallelThreshold,
+                syncInterval, meterRegistry);
+    }
+}
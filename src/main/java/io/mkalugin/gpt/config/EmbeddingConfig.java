@@ -0,0 +1,100 @@
+package io.mkalugin.gpt.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.mkalugin.gpt.embedding.BatchingEmbeddingModel;
+import io.mkalugin.gpt.embedding.CachingEmbeddingModel;
+import io.mkalugin.gpt.embedding.EmbeddingStore;
+import io.mkalugin.gpt.embedding.PersistentEmbeddingModel;
+import io.mkalugin.gpt.embedding.PrecomputedEmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.openai.OpenAiEmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Конфигурация модели embeddings.
+ *
+ * <p>Оборачивает {@link OpenAiEmbeddingModel} декораторами. Итоговая модель помечена
+ * {@link Primary} и используется и VectorStore, и RAG-сервисами.</p>
+ */
+@Configuration
+public class EmbeddingConfig {
+
+    @Value("${app.embedding.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${app.embedding.cache.max-size:64MB}")
+    private DataSize cacheMaxSize;
+
+    @Value("${app.embedding.cache.ttl:24h}")
+    private Duration cacheTtl;
+
+    @Value("${app.embedding.batching.enabled:true}")
+    private boolean batchingEnabled;
+
+    @Value("${app.embedding.batching.window:5ms}")
+    private Duration batchingWindow;
+
+    @Value("${app.embedding.batching.max-batch-size:64}")
+    private int batchingMaxBatchSize;
+
+    @Value("${app.embedding.store.path:data/embeddings.bin}")
+    private Path storePath;
+
+    @Value("${app.embedding.store.max-size:2GB}")
+    private DataSize storeMaxSize;
+
+    @Value("${spring.ai.openai.embedding.options.model:text-embedding-ada-002}")
+    private String embeddingModelName;
+
+    /**
+     * Хранилище embeddings чанков на диске, переживающее пересоздание коллекции ChromaDB.
+     *
+     * @return открытое хранилище, закрывается при остановке приложения
+     * @throws IOException если файл хранилища не удалось открыть
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(value = "app.embedding.store.enabled", havingValue = "true", matchIfMissing = true)
+    public EmbeddingStore embeddingStore() throws IOException {
+        return new EmbeddingStore(storePath, storeMaxSize.toBytes());
+    }
+
+    /**
+     * Модель embeddings с кэшем вопросов по хэшу нормализованного текста. Промахи кэша
+     * одновременных запросов объединяются в пакетные вызовы OpenAI. Embeddings чанков
+     * при загрузке сначала ищутся в хранилище на диске, а при записи в VectorStore берутся
+     * из уже вычисленных конвейером загрузки.
+     *
+     * @param openAiEmbeddingModel модель OpenAI из автоконфигурации Spring AI
+     * @param embeddingStore       хранилище embeddings чанков (если включено)
+     * @param meterRegistry        реестр метрик
+     * @return декорированная модель embeddings
+     */
+    @Bean
+    @Primary
+    public PrecomputedEmbeddingModel embeddingModel(OpenAiEmbeddingModel openAiEmbeddingModel,
+                                                    ObjectProvider<EmbeddingStore> embeddingStore,
+                                                    MeterRegistry meterRegistry) {
+        EmbeddingModel model = openAiEmbeddingModel;
+        if (batchingEnabled) {
+            model = new BatchingEmbeddingModel(model, batchingWindow, batchingMaxBatchSize, meterRegistry);
+        }
+        if (cacheEnabled) {
+            model = new CachingEmbeddingModel(model, cacheMaxSize.toBytes(), cacheTtl, meterRegistry);
+        }
+        EmbeddingStore store = embeddingStore.getIfAvailable();
+        if (store != null) {
+            model = new PersistentEmbeddingModel(model, store, embeddingModelName, meterRegistry);
+        }
+        return new PrecomputedEmbeddingModel(model);
+    }
+}
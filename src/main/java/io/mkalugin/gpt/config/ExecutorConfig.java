@@ -0,0 +1,43 @@
+package io.mkalugin.gpt.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Конфигурация пулов потоков.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Пул для обращений к векторному хранилищу в рамках одного запроса.
+     * Вызовы ChromaDB блокирующие и в основном ждут сеть, поэтому используются виртуальные потоки.
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService retrievalExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Пул фоновых задач загрузки документов.
+     * Число одновременных задач ограничено {@code app.ingestion.jobs.concurrency}, остальные ждут
+     * в очереди ёмкостью {@code app.ingestion.jobs.queue-capacity}; при переполнении задача отклоняется
+     * с {@link java.util.concurrent.RejectedExecutionException}. Потоки виртуальные: задача в основном
+     * ждёт свои стадии конвейера.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService ingestionExecutor(
+            @Value("${app.ingestion.jobs.concurrency:1}") int concurrency,
+            @Value("${app.ingestion.jobs.queue-capacity:16}") int queueCapacity) {
+        return new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofVirtual().name("ingestion-job-", 0).factory());
+    }
+}
@@ -0,0 +1,66 @@
+package io.mkalugin.gpt.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import io.mkalugin.gpt.vectorstore.HnswVectorStore;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Векторное хранилище в памяти приложения вместо ChromaDB.
+ *
+ * <p>Включается {@code spring.ai.vectorstore.type=hnsw}: поиск идёт по графу HNSW в JVM без сетевых
+ * запросов, граф сохраняется в файл {@code app.vectorstore.hnsw.path}. ChromaDB при этом для поиска
+ * и загрузки не используется.</p>
+ */
+@Configuration
+@ConditionalOnProperty(value = "spring.ai.vectorstore.type", havingValue = "hnsw")
+public class HnswConfig {
+
+    @Value("${app.vectorstore.hnsw.path:data/hnsw/index.bin}")
+    private Path path;
+
+    @Value("${app.vectorstore.hnsw.m:16}")
+    private int m;
+
+    @Value("${app.vectorstore.hnsw.ef-construction:200}")
+    private int efConstruction;
+
+    @Value("${app.vectorstore.hnsw.ef-search:64}")
+    private int efSearch;
+
+    @Value("${app.vectorstore.hnsw.flush-interval:10s}")
+    private Duration flushInterval;
+
+    /**
+     * Векторное хранилище на графе HNSW.
+     *
+     * @param embeddingModel      модель для генерации embeddings
+     * @param observationRegistry реестр наблюдений (метрика {@code db.vector.client.operation})
+     * @param meterRegistry       реестр метрик
+     * @return хранилище, снимок записывается при остановке приложения
+     */
+    @Bean(destroyMethod = "close")
+    public HnswVectorStore vectorStore(EmbeddingModel embeddingModel, ObservationRegistry observationRegistry,
+                                       MeterRegistry meterRegistry) {
+        HnswVectorStore vectorStore = HnswVectorStore.builder(embeddingModel)
+                .observationRegistry(observationRegistry)
+                .path(path)
+                .m(m)
+                .efConstruction(efConstruction)
+                .efSearch(efSearch)
+                .flushInterval(flushInterval)
+                .build();
+        Gauge.builder("rag.vectorstore.hnsw.size", vectorStore, HnswVectorStore::size)
+                .description("Документы в хранилище HNSW")
+                .register(meterRegistry);
+        return vectorStore;
+    }
+}
@@ -9,10 +9,13 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 
 /**
  * REST контроллер для прямого общения с GPT моделью.
@@ -44,4 +47,24 @@ public class ChatController {
     public ChatResponse chat(@Valid @RequestBody ChatRequest request) {
         return chatService.chat(request.message(), request.conversationId());
     }
+
+    /**
+     * Потоковое отправление сообщения в GPT через Server-Sent Events.
+     * Ответ сохраняется в память разговора после завершения потока.
+     *
+     * @param request запрос с сообщением пользователя и опциональным conversationId
+     * @return поток событий {@code conversation}, {@code token}, {@code done} (или {@code error})
+     */
+    @Operation(
+            summary = "Отправить сообщение в чат в потоковом режиме",
+            description = "Отправляет сообщение в GPT и получает ответ по мере генерации (text/event-stream)."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Поток событий с ответом модели"),
+            @ApiResponse(responseCode = "400", description = "Некорректный запрос (пустое сообщение или превышен лимит символов)")
+    })
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> chatStream(@Valid @RequestBody ChatRequest request) {
+        return chatService.chatStream(request.message(), request.conversationId());
+    }
 }
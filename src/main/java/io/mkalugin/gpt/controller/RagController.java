@@ -1,26 +1,53 @@
 package io.mkalugin.gpt.controller;
 
 import io.mkalugin.gpt.dto.ChatResponse;
+import io.mkalugin.gpt.dto.CollectionInfoResponse;
 import io.mkalugin.gpt.dto.DocumentListResponse;
-import io.mkalugin.gpt.dto.LoadDocumentsResponse;
+import io.mkalugin.gpt.dto.IngestionJobResponse;
+import io.mkalugin.gpt.dto.RagBatchRequest;
+import io.mkalugin.gpt.dto.RagBatchResponse;
 import io.mkalugin.gpt.dto.RagRequest;
+import io.mkalugin.gpt.dto.RagSearchRequest;
+import io.mkalugin.gpt.dto.RagSearchResponse;
+import io.mkalugin.gpt.dto.UploadDocumentsResponse;
+import io.mkalugin.gpt.dto.VectorStoreBenchmarkRequest;
+import io.mkalugin.gpt.dto.VectorStoreBenchmarkResponse;
+import io.mkalugin.gpt.enums.DocumentProjection;
 import io.mkalugin.gpt.service.DocumentService;
+import io.mkalugin.gpt.service.DocumentUploadService;
+import io.mkalugin.gpt.service.IngestionJobService;
 import io.mkalugin.gpt.service.RagService;
+import io.mkalugin.gpt.service.SearchService;
+import io.mkalugin.gpt.service.VectorStoreBenchmarkService;
+import io.mkalugin.gpt.utils.DocumentCursor;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
 import java.io.IOException;
+import java.util.Objects;
 
 /**
  * REST контроллер для работы с RAG системой.
@@ -32,50 +59,195 @@ import java.io.IOException;
 public class RagController {
 
     private final DocumentService documentService;
+    private final DocumentUploadService documentUploadService;
+    private final IngestionJobService ingestionJobService;
     private final RagService ragService;
+    private final SearchService searchService;
+    private final VectorStoreBenchmarkService vectorStoreBenchmarkService;
 
     /**
-     * Загрузка документов из ресурсов в векторное хранилище.
+     * Постановка загрузки документов из ресурсов в векторное хранилище в фоновую очередь.
      *
      * @param pattern glob-паттерн для поиска файлов
-     * @return информация о количестве загруженных чанков
-     * @throws IOException если произошла ошибка при чтении файлов
+     * @return состояние созданной задачи
      */
     @Operation(
             summary = "Загрузить документы",
-            description = "Загружает документы из ресурсов приложения в векторное хранилище"
+            description = "Ставит загрузку документов из ресурсов приложения в векторное хранилище в фоновую очередь "
+                    + "и сразу возвращает id задачи. Неизменные чанки пропускаются, изменённые перезаписываются, "
+                    + "чанки удалённых файлов удаляются"
     )
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Документы успешно загружены"),
-            @ApiResponse(responseCode = "500", description = "Ошибка при чтении или обработке файлов")
+            @ApiResponse(responseCode = "202", description = "Задача загрузки поставлена в очередь"),
+            @ApiResponse(responseCode = "429", description = "Очередь задач загрузки заполнена")
     })
     @PostMapping("/load")
-    public LoadDocumentsResponse loadDocuments(
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public IngestionJobResponse loadDocuments(
             @Parameter(description = "Glob-паттерн для поиска файлов в ресурсах", example = "documents/*.txt")
-            @RequestParam(defaultValue = "documents/*.txt") String pattern) throws IOException {
-        int chunks = documentService.loadDocumentsFromResources(pattern);
-        return new LoadDocumentsResponse(chunks, "Documents loaded successfully");
+            @RequestParam(defaultValue = "documents/*.txt") String pattern) {
+        return IngestionJobResponse.from(ingestionJobService.submit(pattern));
     }
 
     /**
-     * Получение списка документов из векторного хранилища.
+     * Загрузка файлов из тела запроса в векторное хранилище.
      *
-     * @param limit максимальное количество документов
-     * @return список документов с метаданными
+     * @param filename имя файла для сырого тела
+     * @param request  HTTP-запрос, тело читается потоково
+     * @return загруженные файлы и количество чанков
+     * @throws IOException если тело multipart не удалось прочитать
+     */
+    @Operation(
+            summary = "Загрузить файлы",
+            description = "Принимает файлы в multipart/form-data или сырое тело (с параметром filename) и сразу "
+                    + "разбивает их на чанки по мере поступления, без временных файлов. Файл заменяет ранее "
+                    + "загруженный источник с тем же именем: неизменные чанки пропускаются"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Файлы загружены"),
+            @ApiResponse(responseCode = "400", description = "Нет имени файла или multipart без файлов"),
+            @ApiResponse(responseCode = "413", description = "Тело запроса превышает лимит"),
+            @ApiResponse(responseCode = "429", description = "Слишком много одновременных загрузок")
+    })
+    @PostMapping(value = "/upload", consumes = {
+            MediaType.MULTIPART_FORM_DATA_VALUE,
+            MediaType.APPLICATION_OCTET_STREAM_VALUE,
+            MediaType.TEXT_PLAIN_VALUE,
+            MediaType.TEXT_MARKDOWN_VALUE
+    })
+    public UploadDocumentsResponse upload(
+            @Parameter(description = "Имя файла для сырого тела запроса", example = "handbook.txt")
+            @RequestParam(required = false) String filename,
+            HttpServletRequest request) throws IOException {
+        return documentUploadService.upload(request.getContentType(), request.getContentLengthLong(),
+                filename, request.getInputStream());
+    }
+
+    /**
+     * Получение состояния задачи загрузки документов.
+     *
+     * @param id идентификатор задачи
+     * @return статус, прогресс и итог загрузки
+     */
+    @Operation(
+            summary = "Получить состояние загрузки",
+            description = "Возвращает статус задачи загрузки, прогресс (файлы, чанки, embeddings), скорость и оценку "
+                    + "оставшегося времени, а после завершения — итог загрузки"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Состояние задачи"),
+            @ApiResponse(responseCode = "404", description = "Задача не найдена")
+    })
+    @GetMapping("/jobs/{id}")
+    public IngestionJobResponse getJob(
+            @Parameter(description = "Идентификатор задачи загрузки") @PathVariable String id) {
+        return IngestionJobResponse.from(ingestionJobService.get(id));
+    }
+
+    /**
+     * Отмена задачи загрузки документов.
+     *
+     * @param id идентификатор задачи
+     * @return состояние задачи после запроса отмены
+     */
+    @Operation(
+            summary = "Отменить загрузку",
+            description = "Снимает задачу из очереди или останавливает выполняющуюся загрузку: уже набранные пачки "
+                    + "дописываются, новые файлы не читаются, устаревшие чанки не удаляются"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Отмена запрошена (или задача уже завершена)"),
+            @ApiResponse(responseCode = "404", description = "Задача не найдена")
+    })
+    @DeleteMapping("/jobs/{id}")
+    public IngestionJobResponse cancelJob(
+            @Parameter(description = "Идентификатор задачи загрузки") @PathVariable String id) {
+        return IngestionJobResponse.from(ingestionJobService.cancel(id));
+    }
+
+    /**
+     * Получение страницы списка документов из векторного хранилища.
+     *
+     * <p>Ответ пишется потоково по мере чтения из ChromaDB. Параметры проверяются, а первая порция
+     * документов читается до начала записи, поэтому некорректный курсор или набор полей возвращают 400,
+     * а недоступность ChromaDB — 500. Ошибка чтения следующих порций обрывает список с полем
+     * {@code error} и курсором первого непрочитанного документа.</p>
+     *
+     * @param limit  максимальное количество документов на странице
+     * @param cursor курсор страницы ({@code nextCursor} предыдущего ответа)
+     * @param fields набор полей документа: {@code ids}, {@code metadata} или {@code preview}
+     * @return страница документов в формате {@link DocumentListResponse}
+     * @throws IOException если не удалось прочитать документы из ChromaDB
      */
     @Operation(
             summary = "Получить список документов",
-            description = "Возвращает список документов, загруженных в векторное хранилище ChromaDB"
+            description = "Возвращает страницу документов, загруженных в векторное хранилище ChromaDB. "
+                    + "Следующая страница запрашивается с курсором nextCursor из ответа"
     )
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Список документов успешно получен"),
+            @ApiResponse(responseCode = "200", description = "Список документов успешно получен",
+                    content = @Content(schema = @Schema(implementation = DocumentListResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Некорректный limit, курсор или набор полей"),
             @ApiResponse(responseCode = "500", description = "Ошибка при получении данных из ChromaDB")
     })
-    @GetMapping("/documents")
-    public DocumentListResponse getDocuments(
-            @Parameter(description = "Максимальное количество документов для возврата", example = "100")
-            @RequestParam(defaultValue = "100") int limit) {
-        return documentService.getDocuments(limit);
+    @GetMapping(value = "/documents", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getDocuments(
+            @Parameter(description = "Максимальное количество документов на странице", example = "100")
+            @RequestParam(defaultValue = "100") int limit,
+            @Parameter(description = "Курсор страницы (nextCursor предыдущего ответа)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Поля документа: ids, metadata или preview", example = "preview")
+            @RequestParam(defaultValue = "preview") String fields) throws IOException {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        int offset = DocumentCursor.decode(cursor);
+        DocumentProjection projection = DocumentProjection.parse(fields);
+        StreamingResponseBody body = documentService.streamDocuments(limit, offset, projection)::writeTo;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    /**
+     * Обновление кэшированной информации о коллекции.
+     *
+     * @return актуальная информация о коллекции
+     */
+    @Operation(
+            summary = "Обновить информацию о коллекции",
+            description = "Перечитывает из ChromaDB кэшированную информацию о коллекции (id, количество документов, "
+                    + "конфигурация) и возвращает её"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Информация о коллекции обновлена"),
+            @ApiResponse(responseCode = "404", description = "Коллекция не найдена")
+    })
+    @PostMapping("/collection/refresh")
+    public CollectionInfoResponse refreshCollection() {
+        return documentService.refreshCollection();
+    }
+
+    /**
+     * Сравнение полноты и задержки поиска в ChromaDB и во встроенном графе HNSW.
+     *
+     * @param request запросы для сравнения и число результатов
+     * @return полнота относительно точного поиска и перцентили задержки
+     */
+    @Operation(
+            summary = "Сравнить ChromaDB и HNSW",
+            description = "Строит граф HNSW по векторам коллекции ChromaDB и сравнивает полноту и задержку поиска "
+                    + "обоих хранилищ относительно точного перебора"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Результаты сравнения"),
+            @ApiResponse(responseCode = "400", description = "Некорректный запрос или пустая коллекция"),
+            @ApiResponse(responseCode = "404", description = "Коллекция не найдена")
+    })
+    @PostMapping("/vectorstore/benchmark")
+    public VectorStoreBenchmarkResponse benchmarkVectorStore(@Valid @RequestBody VectorStoreBenchmarkRequest request) {
+        return vectorStoreBenchmarkService.compare(request.queries(),
+                Objects.requireNonNullElse(request.topK(), VectorStoreBenchmarkService.DEFAULT_TOP_K));
     }
 
     /**
@@ -97,4 +269,64 @@ public class RagController {
         String response = ragService.query(request.question());
         return new ChatResponse(response, null);
     }
+
+    /**
+     * Пакетное выполнение RAG-запросов.
+     *
+     * @param request пакет вопросов
+     * @return ответы или ошибки в порядке вопросов
+     */
+    @Operation(
+            summary = "Выполнить пакет RAG-запросов",
+            description = "Ищет контекст для всех вопросов параллельно и генерирует ответы с ограничением "
+                    + "числа одновременных вызовов GPT. Ошибка одного вопроса возвращается в его элементе"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Результаты в порядке вопросов"),
+            @ApiResponse(responseCode = "400", description = "Некорректный запрос (пустой список или больше 200 вопросов)")
+    })
+    @PostMapping("/query/batch")
+    public RagBatchResponse queryBatch(@Valid @RequestBody RagBatchRequest request) {
+        return new RagBatchResponse(ragService.queryBatch(request.questions()));
+    }
+
+    /**
+     * Потоковое выполнение RAG-запроса через Server-Sent Events.
+     * Сначала отправляются найденные источники, затем фрагменты ответа по мере генерации.
+     *
+     * @param request запрос с вопросом пользователя
+     * @return поток событий {@code sources}, {@code token}, {@code done} (или {@code error})
+     */
+    @Operation(
+            summary = "Выполнить RAG-запрос в потоковом режиме",
+            description = "Отправляет найденные источники, затем ответ модели по мере генерации (text/event-stream)"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Поток событий с источниками и ответом"),
+            @ApiResponse(responseCode = "400", description = "Некорректный запрос (пустой вопрос или превышен лимит символов)")
+    })
+    @PostMapping(value = "/query/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> queryStream(@Valid @RequestBody RagRequest request) {
+        return ragService.queryStream(request.question());
+    }
+
+    /**
+     * Поиск по векторному хранилищу без генерации ответа.
+     *
+     * @param request пакет поисковых запросов
+     * @return найденные чанки с оценками для каждого запроса
+     */
+    @Operation(
+            summary = "Найти чанки",
+            description = "Выполняет один или несколько поисковых запросов (topK, порог сходства, фильтр по метаданным) "
+                    + "и возвращает найденные чанки с оценками без обращения к GPT"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Результаты поиска в порядке запросов"),
+            @ApiResponse(responseCode = "400", description = "Некорректный запрос (пустой список, неверный topK, порог или фильтр)")
+    })
+    @PostMapping("/search")
+    public RagSearchResponse search(@Valid @RequestBody RagSearchRequest request) {
+        return searchService.search(request.queries());
+    }
 }
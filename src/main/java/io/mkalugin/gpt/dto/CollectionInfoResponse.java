@@ -0,0 +1,39 @@
+package io.mkalugin.gpt.dto;
+
+import io.mkalugin.gpt.dto.chroma.ChromaCollection;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.Map;
+
+/**
+ * DTO с информацией о коллекции ChromaDB.
+ *
+ * @param id            ID коллекции
+ * @param name          название коллекции
+ * @param count         количество документов
+ * @param dimension     размерность векторов
+ * @param configuration конфигурация коллекции
+ */
+@Schema(description = "Информация о коллекции ChromaDB")
+public record CollectionInfoResponse(
+        @Schema(description = "ID коллекции", example = "5f0c7a2e-8d3b-4f0a-9a51-3c2d1e0b7f64")
+        String id,
+
+        @Schema(description = "Название коллекции", example = "documents")
+        String name,
+
+        @Schema(description = "Количество документов", example = "42")
+        int count,
+
+        @Schema(description = "Размерность векторов", example = "1536")
+        Integer dimension,
+
+        @Schema(description = "Конфигурация коллекции (индекс HNSW, функция embeddings)")
+        Map<String, Object> configuration
+) {
+
+    public static CollectionInfoResponse from(ChromaCollection collection) {
+        return new CollectionInfoResponse(collection.id(), collection.name(), collection.getCountOrZero(),
+                collection.dimension(), collection.configuration());
+    }
+}
@@ -1,5 +1,6 @@
 package io.mkalugin.gpt.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.util.Map;
@@ -8,9 +9,10 @@ import java.util.Map;
  * DTO с информацией о документе в векторном хранилище.
  *
  * @param id       уникальный идентификатор документа
- * @param content  текстовое содержимое (или его часть)
- * @param metadata метаданные документа
+ * @param content  текстовое содержимое (или его часть); null, если не запрошено
+ * @param metadata метаданные документа; null, если не запрошены
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Schema(description = "Информация о документе в векторном хранилище")
 public record DocumentInfo(
         @Schema(description = "Уникальный идентификатор документа", example = "doc-123-abc")
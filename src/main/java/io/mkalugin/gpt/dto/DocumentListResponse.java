@@ -10,6 +10,9 @@ import java.util.List;
  * @param documents    список документов
  * @param totalCount   общее количество документов
  * @param collectionName название коллекции в ChromaDB
+ * @param nextCursor     курсор следующей страницы; null на последней странице
+ * @param error          ошибка чтения из ChromaDB, оборвавшая список; {@code nextCursor} указывает
+ *                       на первый непрочитанный документ
  */
 @Schema(description = "Список документов в векторном хранилище")
 public record DocumentListResponse(
@@ -20,6 +23,12 @@ public record DocumentListResponse(
         int totalCount,
 
         @Schema(description = "Название коллекции в ChromaDB", example = "spring-ai-docs")
-        String collectionName
+        String collectionName,
+
+        @Schema(description = "Курсор следующей страницы (null на последней странице)", example = "bzoxMDA")
+        String nextCursor,
+
+        @Schema(description = "Ошибка чтения, оборвавшая список (nextCursor указывает на первый непрочитанный документ)")
+        String error
 ) {
 }
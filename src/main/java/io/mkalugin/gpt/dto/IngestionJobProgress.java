@@ -0,0 +1,55 @@
+package io.mkalugin.gpt.dto;
+
+import io.mkalugin.gpt.ingestion.IngestionProgress;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO прогресса фоновой загрузки документов.
+ *
+ * @param filesTotal       файлов в загрузке
+ * @param filesRead        файлов прочитано
+ * @param chunksRead       чанков получено из прочитанных файлов
+ * @param chunksSkipped    неизменных чанков пропущено
+ * @param chunksEmbedded   чанков с вычисленными embeddings
+ * @param chunksStored     чанков записано в векторное хранилище
+ * @param chunksFailed     чанков с ошибками
+ * @param chunksPerSecond  скорость записи чанков
+ * @param etaSeconds       оценка оставшегося времени в секундах (null, если неизвестна)
+ */
+@Schema(description = "Прогресс загрузки документов")
+public record IngestionJobProgress(
+        @Schema(description = "Файлов в загрузке", example = "12")
+        int filesTotal,
+
+        @Schema(description = "Файлов прочитано", example = "5")
+        int filesRead,
+
+        @Schema(description = "Чанков получено из прочитанных файлов", example = "640")
+        int chunksRead,
+
+        @Schema(description = "Неизменных чанков пропущено", example = "500")
+        int chunksSkipped,
+
+        @Schema(description = "Чанков с вычисленными embeddings", example = "128")
+        int chunksEmbedded,
+
+        @Schema(description = "Чанков записано в векторное хранилище", example = "96")
+        int chunksStored,
+
+        @Schema(description = "Чанков с ошибками", example = "0")
+        int chunksFailed,
+
+        @Schema(description = "Скорость записи, чанков в секунду", example = "24.5")
+        double chunksPerSecond,
+
+        @Schema(description = "Оценка оставшегося времени в секундах", example = "13", nullable = true)
+        Long etaSeconds
+) {
+
+    public static IngestionJobProgress from(IngestionProgress.Snapshot snapshot) {
+        return new IngestionJobProgress(snapshot.filesTotal(), snapshot.filesRead(), snapshot.chunksRead(),
+                snapshot.chunksSkipped(), snapshot.chunksEmbedded(), snapshot.chunksStored(), snapshot.chunksFailed(),
+                snapshot.chunksPerSecond(),
+                snapshot.estimatedRemaining() != null ? snapshot.estimatedRemaining().toSeconds() : null);
+    }
+}
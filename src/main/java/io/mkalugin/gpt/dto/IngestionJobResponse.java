@@ -0,0 +1,60 @@
+package io.mkalugin.gpt.dto;
+
+import io.mkalugin.gpt.enums.IngestionJobStatus;
+import io.mkalugin.gpt.ingestion.IngestionJob;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+/**
+ * DTO состояния фоновой задачи загрузки документов.
+ *
+ * <p>Возвращается {@code POST /api/rag/load} сразу после постановки задачи
+ * и {@code GET /api/rag/jobs/{id}} при опросе её статуса.</p>
+ *
+ * @param jobId      идентификатор задачи
+ * @param status     статус задачи
+ * @param pattern    glob-паттерн загружаемых файлов
+ * @param createdAt  время постановки в очередь
+ * @param startedAt  время начала выполнения
+ * @param finishedAt время завершения
+ * @param progress   прогресс загрузки
+ * @param result     итог загрузки (для завершённой или отменённой задачи)
+ * @param error      описание ошибки (для упавшей задачи)
+ */
+@Schema(description = "Состояние задачи загрузки документов")
+public record IngestionJobResponse(
+        @Schema(description = "Идентификатор задачи", example = "1b4e28ba-2fa1-41d2-883f-0016d3cca427")
+        String jobId,
+
+        @Schema(description = "Статус задачи", example = "RUNNING")
+        IngestionJobStatus status,
+
+        @Schema(description = "Glob-паттерн загружаемых файлов", example = "documents/*.txt")
+        String pattern,
+
+        @Schema(description = "Время постановки в очередь")
+        Instant createdAt,
+
+        @Schema(description = "Время начала выполнения", nullable = true)
+        Instant startedAt,
+
+        @Schema(description = "Время завершения", nullable = true)
+        Instant finishedAt,
+
+        @Schema(description = "Прогресс загрузки")
+        IngestionJobProgress progress,
+
+        @Schema(description = "Итог загрузки", nullable = true)
+        LoadDocumentsResponse result,
+
+        @Schema(description = "Описание ошибки", nullable = true)
+        String error
+) {
+
+    public static IngestionJobResponse from(IngestionJob job) {
+        return new IngestionJobResponse(job.getId(), job.getStatus(), job.getPattern(), job.getCreatedAt(),
+                job.getStartedAt(), job.getFinishedAt(), IngestionJobProgress.from(job.getProgress().snapshot()),
+                job.getResult() != null ? LoadDocumentsResponse.from(job.getResult()) : null, job.getError());
+    }
+}
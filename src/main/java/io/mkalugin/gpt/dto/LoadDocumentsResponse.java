@@ -1,14 +1,21 @@
 package io.mkalugin.gpt.dto;
 
+import io.mkalugin.gpt.ingestion.IngestionResult;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 /**
  * DTO для ответа о результате загрузки документов в векторное хранилище.
  *
- * <p>Возвращается после вызова {@code POST /api/rag/load} и содержит
- * информацию о количестве загруженных чанков и статусе операции.</p>
+ * <p>Входит в состояние задачи загрузки ({@code GET /api/rag/jobs/{id}}) после её завершения
+ * и содержит информацию о количестве загруженных чанков и статусе операции.</p>
  *
- * @param chunksLoaded количество загруженных чанков
+ * @param chunksLoaded количество загруженных чанков (добавленных и обновлённых)
+ * @param added        количество новых чанков
+ * @param updated      количество изменившихся чанков
+ * @param skipped      количество неизменных чанков, пропущенных без embeddings
+ * @param deleted      количество удалённых устаревших чанков
+ * @param duplicates   количество отброшенных почти-дубликатов
+ * @param dedupRatio   доля почти-дубликатов среди прочитанных чанков
  * @param message      статусное сообщение о результате операции
  */
 @Schema(description = "Результат загрузки документов в векторное хранилище")
@@ -16,7 +23,34 @@ public record LoadDocumentsResponse(
         @Schema(description = "Количество загруженных чанков (фрагментов документов)", example = "2")
         int chunksLoaded,
 
+        @Schema(description = "Количество новых чанков", example = "2")
+        int added,
+
+        @Schema(description = "Количество изменившихся и перезаписанных чанков", example = "0")
+        int updated,
+
+        @Schema(description = "Количество неизменных чанков, пропущенных без embeddings", example = "40")
+        int skipped,
+
+        @Schema(description = "Количество удалённых устаревших чанков", example = "1")
+        int deleted,
+
+        @Schema(description = "Количество почти-дубликатов загруженных чанков, отброшенных без записи", example = "3")
+        int duplicates,
+
+        @Schema(description = "Доля почти-дубликатов среди прочитанных чанков", example = "0.07")
+        double dedupRatio,
+
         @Schema(description = "Статусное сообщение о результате операции", example = "Documents loaded successfully")
         String message
 ) {
+
+    public static LoadDocumentsResponse from(IngestionResult result) {
+        String message = result.hasFailures()
+                ? "Documents loaded with errors: %d files and %d chunks failed"
+                        .formatted(result.failedFiles(), result.failedChunks())
+                : "Documents loaded successfully";
+        return new LoadDocumentsResponse(result.chunks(), result.added(), result.updated(),
+                result.skipped(), result.deleted(), result.duplicates(), result.dedupRatio(), message);
+    }
 }
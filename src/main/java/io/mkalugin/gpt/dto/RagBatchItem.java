@@ -0,0 +1,35 @@
+package io.mkalugin.gpt.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO результата одного вопроса из пакетного RAG-запроса.
+ *
+ * @param question вопрос пользователя
+ * @param answer   ответ (null при ошибке)
+ * @param cached   ответ взят из кэша
+ * @param error    описание ошибки (null при успехе)
+ */
+@Schema(description = "Результат одного вопроса из пакета")
+public record RagBatchItem(
+        @Schema(description = "Вопрос пользователя", example = "Что такое опционалы в Swift?")
+        String question,
+
+        @Schema(description = "Ответ на основе найденного контекста", nullable = true)
+        String answer,
+
+        @Schema(description = "Ответ взят из кэша", example = "false")
+        boolean cached,
+
+        @Schema(description = "Описание ошибки", nullable = true)
+        String error
+) {
+
+    public static RagBatchItem success(String question, String answer, boolean cached) {
+        return new RagBatchItem(question, answer, cached, null);
+    }
+
+    public static RagBatchItem failure(String question, String error) {
+        return new RagBatchItem(question, null, false, error);
+    }
+}
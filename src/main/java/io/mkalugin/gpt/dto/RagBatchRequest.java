@@ -0,0 +1,26 @@
+package io.mkalugin.gpt.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * DTO пакетного запроса к RAG системе.
+ *
+ * <p>Каждый вопрос проверяется отдельно: некорректный вопрос не отклоняет весь пакет,
+ * а возвращается как элемент с ошибкой.</p>
+ *
+ * @param questions вопросы пользователя (от 1 до 200)
+ */
+@Schema(description = "Пакетный запрос к RAG системе")
+public record RagBatchRequest(
+        @Schema(description = "Вопросы для поиска ответов в документах",
+                example = "[\"Что такое опционалы в Swift?\", \"Как объявить протокол?\"]",
+                requiredMode = Schema.RequiredMode.REQUIRED)
+        @NotEmpty(message = "Список вопросов не может быть пустым")
+        @Size(max = 200, message = "Не более 200 вопросов за раз")
+        List<String> questions
+) {
+}
@@ -0,0 +1,17 @@
+package io.mkalugin.gpt.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * DTO ответа на пакетный RAG-запрос.
+ *
+ * @param results результаты в порядке вопросов
+ */
+@Schema(description = "Результаты пакетного RAG-запроса")
+public record RagBatchResponse(
+        @Schema(description = "Результаты в порядке вопросов")
+        List<RagBatchItem> results
+) {
+}
@@ -0,0 +1,28 @@
+package io.mkalugin.gpt.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO найденного чанка.
+ *
+ * @param id      идентификатор чанка в векторном хранилище
+ * @param source  источник (имя файла)
+ * @param preview начало текста чанка
+ * @param score   оценка релевантности
+ */
+@Schema(description = "Найденный чанк")
+public record RagSearchHit(
+        @Schema(description = "Идентификатор чанка", example = "doc-123-abc")
+        String id,
+
+        @Schema(description = "Источник чанка", example = "swift.txt", nullable = true)
+        String source,
+
+        @Schema(description = "Текст чанка (может быть обрезан)", example = "URLSession.shared.dataTask(with:)...")
+        String preview,
+
+        @Schema(description = "Оценка релевантности: косинусное сходство или RRF при гибридном поиске",
+                example = "0.83", nullable = true)
+        Double score
+) {
+}
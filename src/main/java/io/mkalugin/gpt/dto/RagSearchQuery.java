@@ -0,0 +1,40 @@
+package io.mkalugin.gpt.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+/**
+ * DTO одного поискового запроса к векторному хранилищу.
+ *
+ * @param query               текст запроса
+ * @param topK                максимальное количество чанков (по умолчанию 5)
+ * @param similarityThreshold минимальное косинусное сходство (по умолчанию без порога)
+ * @param filter              фильтр по метаданным в синтаксисе Spring AI
+ */
+@Schema(description = "Поисковый запрос к векторному хранилищу")
+public record RagSearchQuery(
+        @Schema(description = "Текст запроса", example = "URLSession dataTask",
+                requiredMode = Schema.RequiredMode.REQUIRED, maxLength = 5000)
+        @NotBlank(message = "Запрос не может быть пустым")
+        @Size(max = 5000, message = "Запрос не может превышать 5000 символов")
+        String query,
+
+        @Schema(description = "Максимальное количество чанков", example = "5", nullable = true)
+        @Min(value = 1, message = "topK должен быть не меньше 1")
+        @Max(value = 50, message = "topK не может превышать 50")
+        Integer topK,
+
+        @Schema(description = "Минимальное косинусное сходство от 0 до 1", example = "0.5", nullable = true)
+        @DecimalMin(value = "0.0", message = "Порог сходства не может быть меньше 0")
+        @DecimalMax(value = "1.0", message = "Порог сходства не может быть больше 1")
+        Double similarityThreshold,
+
+        @Schema(description = "Фильтр по метаданным", example = "source == 'swift.txt'", nullable = true)
+        String filter
+) {
+}
@@ -0,0 +1,22 @@
+package io.mkalugin.gpt.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * DTO для поиска по векторному хранилищу без генерации ответа.
+ *
+ * @param queries поисковые запросы (от 1 до 100)
+ */
+@Schema(description = "Пакет поисковых запросов")
+public record RagSearchRequest(
+        @Schema(description = "Поисковые запросы", requiredMode = Schema.RequiredMode.REQUIRED)
+        @NotEmpty(message = "Список запросов не может быть пустым")
+        @Size(max = 100, message = "Не более 100 запросов за раз")
+        List<@Valid RagSearchQuery> queries
+) {
+}
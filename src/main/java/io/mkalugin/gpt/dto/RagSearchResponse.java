@@ -0,0 +1,17 @@
+package io.mkalugin.gpt.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * DTO ответа на пакет поисковых запросов.
+ *
+ * @param results результаты в порядке запросов
+ */
+@Schema(description = "Результаты поиска")
+public record RagSearchResponse(
+        @Schema(description = "Результаты в порядке запросов")
+        List<RagSearchResult> results
+) {
+}
@@ -0,0 +1,21 @@
+package io.mkalugin.gpt.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * DTO результата одного поискового запроса.
+ *
+ * @param query текст запроса
+ * @param hits  найденные чанки по убыванию релевантности
+ */
+@Schema(description = "Результат поискового запроса")
+public record RagSearchResult(
+        @Schema(description = "Текст запроса", example = "URLSession dataTask")
+        String query,
+
+        @Schema(description = "Найденные чанки по убыванию релевантности")
+        List<RagSearchHit> hits
+) {
+}
@@ -0,0 +1,25 @@
+package io.mkalugin.gpt.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO с информацией о найденном чанке, использованном в контексте RAG.
+ *
+ * <p>Отправляется первым событием {@code sources} в потоковом RAG-ответе.</p>
+ *
+ * @param id     идентификатор чанка в векторном хранилище
+ * @param source источник (имя файла)
+ * @param score  оценка сходства с вопросом
+ */
+@Schema(description = "Найденный чанк, использованный в контексте RAG")
+public record RagSource(
+        @Schema(description = "Идентификатор чанка", example = "doc-123-abc")
+        String id,
+
+        @Schema(description = "Источник чанка", example = "swift.txt", nullable = true)
+        String source,
+
+        @Schema(description = "Оценка сходства с вопросом", example = "0.83", nullable = true)
+        Double score
+) {
+}
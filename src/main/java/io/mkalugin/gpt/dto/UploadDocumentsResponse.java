@@ -0,0 +1,25 @@
+package io.mkalugin.gpt.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * DTO для ответа о результате загрузки файлов через {@code POST /api/rag/upload}.
+ *
+ * @param files  источники чанков загруженных файлов ({@code upload:} и имя файла)
+ * @param bytes  количество принятых байт
+ * @param result итог загрузки по всем файлам
+ */
+@Schema(description = "Результат загрузки файлов в векторное хранилище")
+public record UploadDocumentsResponse(
+        @Schema(description = "Источники загруженных файлов", example = "[\"upload:handbook.txt\"]")
+        List<String> files,
+
+        @Schema(description = "Количество принятых байт", example = "1048576")
+        long bytes,
+
+        @Schema(description = "Итог загрузки: записанные, пропущенные и удалённые чанки")
+        LoadDocumentsResponse result
+) {
+}
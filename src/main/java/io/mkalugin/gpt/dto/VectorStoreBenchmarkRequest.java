@@ -0,0 +1,30 @@
+package io.mkalugin.gpt.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * DTO запроса на сравнение HNSW и ChromaDB.
+ *
+ * @param queries поисковые запросы (от 1 до 100)
+ * @param topK    сколько документов искать на запрос (по умолчанию 10)
+ */
+@Schema(description = "Запросы для сравнения полноты и задержки поиска HNSW и ChromaDB")
+public record VectorStoreBenchmarkRequest(
+        @Schema(description = "Поисковые запросы", requiredMode = Schema.RequiredMode.REQUIRED)
+        @NotEmpty(message = "Список запросов не может быть пустым")
+        @Size(max = 100, message = "Не более 100 запросов за раз")
+        List<@NotBlank(message = "Запрос не может быть пустым") String> queries,
+
+        @Schema(description = "Сколько документов искать на запрос", example = "10", nullable = true)
+        @Min(value = 1, message = "topK должен быть не меньше 1")
+        @Max(value = 100, message = "topK не может превышать 100")
+        Integer topK
+) {
+}
@@ -0,0 +1,55 @@
+package io.mkalugin.gpt.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO результата сравнения HNSW и ChromaDB на одних данных.
+ *
+ * @param documents   векторов в коллекции
+ * @param queries     выполнено запросов
+ * @param topK        документов на запрос
+ * @param hnswBuildMs время построения графа HNSW из векторов коллекции
+ * @param chroma      полнота и задержка ChromaDB
+ * @param hnsw        полнота и задержка графа HNSW в JVM
+ */
+@Schema(description = "Сравнение полноты и задержки поиска HNSW и ChromaDB")
+public record VectorStoreBenchmarkResponse(
+        @Schema(description = "Векторов в коллекции", example = "12000")
+        int documents,
+
+        @Schema(description = "Выполнено запросов", example = "20")
+        int queries,
+
+        @Schema(description = "Документов на запрос", example = "10")
+        int topK,
+
+        @Schema(description = "Время построения графа HNSW, мс", example = "3400")
+        long hnswBuildMs,
+
+        @Schema(description = "ChromaDB (HTTP)")
+        StoreMetrics chroma,
+
+        @Schema(description = "Граф HNSW в JVM")
+        StoreMetrics hnsw
+) {
+
+    /**
+     * Полнота и задержка одного хранилища.
+     *
+     * @param recall полнота относительно точного поиска перебором (от 0 до 1)
+     * @param p50Ms  медианная задержка запроса, мс
+     * @param p95Ms  95-й перцентиль задержки запроса, мс
+     */
+    @Schema(description = "Полнота и задержка хранилища")
+    public record StoreMetrics(
+            @Schema(description = "Полнота относительно точного поиска перебором", example = "0.98")
+            double recall,
+
+            @Schema(description = "Медианная задержка запроса, мс", example = "0.4")
+            double p50Ms,
+
+            @Schema(description = "95-й перцентиль задержки запроса, мс", example = "0.9")
+            double p95Ms
+    ) {
+    }
+}
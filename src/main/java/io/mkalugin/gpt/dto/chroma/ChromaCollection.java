@@ -1,17 +1,36 @@
 package io.mkalugin.gpt.dto.chroma;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
 
 /**
  * DTO для коллекции ChromaDB.
+ *
+ * @param id            ID коллекции
+ * @param name          имя коллекции
+ * @param count         количество документов
+ * @param dimension     размерность векторов (null, пока в коллекцию ничего не добавлено)
+ * @param configuration конфигурация коллекции (индекс HNSW, функция embeddings)
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public record ChromaCollection(
         String id,
         String name,
-        Integer count
+        Integer count,
+        Integer dimension,
+        @JsonProperty("configuration_json")
+        Map<String, Object> configuration
 ) {
     public int getCountOrZero() {
         return count != null ? count : 0;
     }
+
+    /**
+     * Копия коллекции с другим количеством документов.
+     */
+    public ChromaCollection withCount(int count) {
+        return new ChromaCollection(id, name, count, dimension, configuration);
+    }
 }
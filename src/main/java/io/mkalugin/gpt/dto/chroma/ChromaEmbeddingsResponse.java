@@ -0,0 +1,23 @@
+package io.mkalugin.gpt.dto.chroma;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DTO для ответа на GET запрос embeddings из ChromaDB.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ChromaEmbeddingsResponse(
+        List<String> ids,
+        List<float[]> embeddings
+) {
+    public List<String> ids() {
+        return ids != null ? ids : Collections.emptyList();
+    }
+
+    public List<float[]> embeddings() {
+        return embeddings != null ? embeddings : Collections.emptyList();
+    }
+}
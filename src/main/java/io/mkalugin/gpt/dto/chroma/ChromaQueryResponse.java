@@ -0,0 +1,18 @@
+package io.mkalugin.gpt.dto.chroma;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DTO для ответа на запрос поиска в ChromaDB: id найденных документов для каждого вектора запроса.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ChromaQueryResponse(
+        List<List<String>> ids
+) {
+    public List<List<String>> ids() {
+        return ids != null ? ids : Collections.emptyList();
+    }
+}
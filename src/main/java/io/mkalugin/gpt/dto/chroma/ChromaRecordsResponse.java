@@ -0,0 +1,35 @@
+package io.mkalugin.gpt.dto.chroma;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO для ответа на GET запрос документов ChromaDB вместе с embeddings.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ChromaRecordsResponse(
+        List<String> ids,
+        List<float[]> embeddings,
+        List<String> documents,
+        List<Map<String, Object>> metadatas
+) {
+    public List<String> ids() {
+        return ids != null ? ids : Collections.emptyList();
+    }
+
+    public List<float[]> embeddings() {
+        return embeddings != null ? embeddings : Collections.emptyList();
+    }
+
+    public String getDocument(int index) {
+        return documents != null && index < documents.size() ? documents.get(index) : null;
+    }
+
+    public Map<String, Object> getMetadata(int index) {
+        Map<String, Object> metadata = metadatas != null && index < metadatas.size() ? metadatas.get(index) : null;
+        return metadata != null ? metadata : Collections.emptyMap();
+    }
+}
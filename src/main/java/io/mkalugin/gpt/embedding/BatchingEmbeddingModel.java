@@ -0,0 +1,188 @@
+package io.mkalugin.gpt.embedding;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.mkalugin.gpt.utils.Futures;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Декоратор {@link EmbeddingModel}, объединяющий одновременные запросы embeddings в пакеты (micro-batching).
+ *
+ * <p>Запросы разных потоков с одинаковыми моделью и размерностью копятся в общем пакете не дольше
+ * {@code window} или до {@code max-batch-size} текстов и уходят в делегат одним вызовом; каждый
+ * вызывающий получает свою часть ответа. Отдельного потока-диспетчера нет: пакет отправляет
+ * вызов, который его открыл, остальные ждут результат. Пакет отправляется в {@code finally},
+ * а любая ошибка делегата (в том числе {@link Error}) передаётся всем запросам пакета, поэтому
+ * ожидающие не зависают, если открывший пакет вызов прерван или упал. Запросы не меньше {@code max-batch-size} текстов (пачки загрузки)
+ * отправляются сразу.</p>
+ *
+ * <p>Метрики: {@code rag.embedding.batch.size} (текстов в пакете), {@code rag.embedding.batch.requests}
+ * (запросов в пакете), {@code rag.embedding.batch.wait} (ожидание запроса до отправки пакета).</p>
+ */
+@Slf4j
+public class BatchingEmbeddingModel extends DelegatingEmbeddingModel {
+
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final Map<BatchKey, Batch> open = new HashMap<>();
+
+    private final DistributionSummary batchSize;
+    private final DistributionSummary batchRequests;
+    private final Timer waitTimer;
+
+    public BatchingEmbeddingModel(EmbeddingModel delegate, Duration window, int maxBatchSize,
+                                  MeterRegistry meterRegistry) {
+        super(delegate);
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.batchSize = DistributionSummary.builder("rag.embedding.batch.size")
+                .description("Текстов в пакетном запросе embeddings")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchRequests = DistributionSummary.builder("rag.embedding.batch.requests")
+                .description("Запросов, объединённых в один пакет embeddings")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("rag.embedding.batch.wait")
+                .description("Ожидание запроса embeddings до отправки пакета")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        if (texts.isEmpty() || texts.size() >= maxBatchSize || windowNanos <= 0) {
+            return delegate.call(request);
+        }
+
+        Pending pending = new Pending(texts, System.nanoTime());
+        BatchKey key = BatchKey.of(request.getOptions());
+        Batch batch;
+        Batch full = null;
+        boolean leader = false;
+        synchronized (open) {
+            batch = open.get(key);
+            if (batch != null && batch.size + texts.size() > maxBatchSize) {
+                // Запрос не помещается: текущий пакет отправляется, запрос открывает новый
+                full = open.remove(key);
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new Batch(request.getOptions());
+                open.put(key, batch);
+                leader = true;
+            }
+            batch.pending.add(pending);
+            batch.size += texts.size();
+            if (batch.size >= maxBatchSize) {
+                open.remove(key);
+                batch.full.countDown();
+            }
+        }
+        if (full != null) {
+            full.full.countDown();
+        }
+
+        if (leader) {
+            try {
+                awaitWindow(batch);
+            } finally {
+                synchronized (open) {
+                    open.remove(key, batch);
+                }
+                dispatch(batch);
+            }
+        }
+        return Futures.join(pending.result);
+    }
+
+    private void awaitWindow(Batch batch) {
+        try {
+            batch.full.await(windowNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Отправка пакета одним вызовом делегата и раздача ответа по запросам.
+     * После снятия пакета из {@code open} новые запросы в него не попадают.
+     */
+    private void dispatch(Batch batch) {
+        long now = System.nanoTime();
+        List<String> texts = new ArrayList<>(batch.size);
+        for (Pending pending : batch.pending) {
+            texts.addAll(pending.texts);
+            waitTimer.record(now - pending.enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+        batchSize.record(texts.size());
+        batchRequests.record(batch.pending.size());
+
+        try {
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(texts, batch.options));
+            int offset = 0;
+            for (Pending pending : batch.pending) {
+                List<Embedding> embeddings = new ArrayList<>(pending.texts.size());
+                for (int i = 0; i < pending.texts.size(); i++) {
+                    embeddings.add(new Embedding(response.getResults().get(offset + i).getOutput(), i));
+                }
+                offset += pending.texts.size();
+                pending.result.complete(new EmbeddingResponse(embeddings, response.getMetadata()));
+            }
+            log.debug("Embedding batch: {} texts from {} requests", texts.size(), batch.pending.size());
+        } catch (RuntimeException | Error e) {
+            // Ожидающие не должны зависнуть, даже если ответ делегата неполный
+            batch.pending.forEach(pending -> pending.result.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Запросы объединяются, только если совпадают модель и размерность.
+     */
+    private record BatchKey(String model, Integer dimensions) {
+
+        static BatchKey of(EmbeddingOptions options) {
+            return options == null
+                    ? new BatchKey(null, null)
+                    : new BatchKey(options.getModel(), options.getDimensions());
+        }
+    }
+
+    /**
+     * Собираемый пакет. Поля меняются под монитором {@code open}.
+     */
+    private static final class Batch {
+
+        private final EmbeddingOptions options;
+        private final List<Pending> pending = new ArrayList<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+        private int size;
+
+        private Batch(EmbeddingOptions options) {
+            this.options = options;
+        }
+    }
+
+    private record Pending(List<String> texts, long enqueuedAt, CompletableFuture<EmbeddingResponse> result) {
+
+        Pending(List<String> texts, long enqueuedAt) {
+            this(texts, enqueuedAt, new CompletableFuture<>());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package io.mkalugin.gpt.embedding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Декоратор {@link EmbeddingModel}, запоминающий embeddings по хэшу нормализованного текста.
+ *
+ * <p>Повторные запросы с тем же текстом не ходят в OpenAI. В пакетном запросе
+ * в делегат отправляются только отсутствующие в кэше тексты (без повторов).
+ * Векторы хранятся как {@code float[]}; размер кэша ограничен суммарным объёмом
+ * векторов в байтах. Кэшируются только тексты вопросов: документы
+ * ({@code embed(List<Document>, ...)}) проходят мимо кэша и не вытесняют из него
+ * частые вопросы — их векторы хранит {@link EmbeddingStore}. Статистика публикуется как метрики {@code cache.*}
+ * с тегом {@code cache=embeddings}.</p>
+ */
+@Slf4j
+public class CachingEmbeddingModel extends DelegatingEmbeddingModel {
+
+    public static final String CACHE_NAME = "embeddings";
+
+    private final Cache<EmbeddingKey, float[]> cache;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, long maxBytes, Duration ttl, MeterRegistry meterRegistry) {
+        super(delegate);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((EmbeddingKey key, float[] vector) -> EmbeddingKey.BYTES + vector.length * Float.BYTES)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        String model = request.getOptions() != null ? request.getOptions().getModel() : null;
+
+        float[][] vectors = new float[texts.size()][];
+        Map<EmbeddingKey, List<Integer>> missing = new LinkedHashMap<>();
+        List<String> missingTexts = new ArrayList<>();
+
+        for (int i = 0; i < texts.size(); i++) {
+            EmbeddingKey key = EmbeddingKey.of(model, texts.get(i));
+            float[] cached = cache.getIfPresent(key);
+            if (cached != null) {
+                vectors[i] = cached.clone();
+                continue;
+            }
+            List<Integer> positions = missing.get(key);
+            if (positions == null) {
+                positions = new ArrayList<>();
+                missing.put(key, positions);
+                missingTexts.add(texts.get(i));
+            }
+            positions.add(i);
+        }
+
+        EmbeddingResponseMetadata metadata = new EmbeddingResponseMetadata();
+        if (!missing.isEmpty()) {
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(missingTexts, request.getOptions()));
+            metadata = response.getMetadata();
+
+            int resultIndex = 0;
+            for (Map.Entry<EmbeddingKey, List<Integer>> entry : missing.entrySet()) {
+                float[] vector = response.getResults().get(resultIndex++).getOutput();
+                cache.put(entry.getKey(), vector.clone());
+                // Каждая позиция получает свою копию: вызывающий код может менять массив
+                for (int position : entry.getValue()) {
+                    vectors[position] = vector.clone();
+                }
+            }
+            log.debug("Embedding cache: {} of {} texts sent to model", missingTexts.size(), texts.size());
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings, metadata);
+    }
+
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        return delegateEmbed(documents, options, batchingStrategy);
+    }
+
+    /**
+     * Сброс всех запомненных embeddings.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
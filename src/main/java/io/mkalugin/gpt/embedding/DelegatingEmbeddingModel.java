@@ -0,0 +1,86 @@
+package io.mkalugin.gpt.embedding;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Базовый декоратор {@link EmbeddingModel}.
+ *
+ * <p>Передаёт вызовы делегату. Методы {@code embed(String)}, {@code embed(List)} и
+ * пакетный {@code embed(List<Document>, ...)} сводятся к {@link #call(EmbeddingRequest)},
+ * поэтому наследнику обычно достаточно переопределить только его. Документы переводятся
+ * в embeddings по содержимому для {@link MetadataMode#EMBED} ({@link #embeddedContent}),
+ * как это делает {@code embed(Document)} модели OpenAI, а не только по тексту.</p>
+ */
+public abstract class DelegatingEmbeddingModel implements EmbeddingModel {
+
+    protected final EmbeddingModel delegate;
+
+    protected DelegatingEmbeddingModel(EmbeddingModel delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        return embedContent(this, documents, options, batchingStrategy);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /**
+     * Вычисление embeddings документов делегатом. Декоратор обрабатывает документы сам,
+     * а исходной модели передаётся их содержимое для {@link MetadataMode#EMBED}.
+     */
+    protected List<float[]> delegateEmbed(List<Document> documents, EmbeddingOptions options,
+                                          BatchingStrategy batchingStrategy) {
+        return delegate instanceof DelegatingEmbeddingModel
+                ? delegate.embed(documents, options, batchingStrategy)
+                : embedContent(delegate, documents, options, batchingStrategy);
+    }
+
+    /**
+     * Содержимое документа, по которому вычисляется embedding: текст и метаданные,
+     * не исключённые из embeddings форматированием документа.
+     *
+     * @param document документ
+     * @return содержимое для embeddings
+     */
+    public static String embeddedContent(Document document) {
+        return document.getFormattedContent(MetadataMode.EMBED);
+    }
+
+    private static List<float[]> embedContent(EmbeddingModel model, List<Document> documents, EmbeddingOptions options,
+                                              BatchingStrategy batchingStrategy) {
+        List<float[]> embeddings = new ArrayList<>(documents.size());
+        for (List<Document> batch : batchingStrategy.batch(documents)) {
+            List<String> contents = batch.stream().map(DelegatingEmbeddingModel::embeddedContent).toList();
+            model.call(new EmbeddingRequest(contents, options)).getResults()
+                    .forEach(embedding -> embeddings.add(embedding.getOutput()));
+        }
+        if (embeddings.size() != documents.size()) {
+            throw new IllegalStateException("Expected " + documents.size() + " embeddings, got " + embeddings.size());
+        }
+        return embeddings;
+    }
+}
@@ -0,0 +1,68 @@
+package io.mkalugin.gpt.embedding;
+
+import io.mkalugin.gpt.utils.QueryNormalizer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Ключ кэша embeddings — первые 128 бит SHA-256 от имени модели и нормализованного текста
+ * (или хэша содержимого чанка для embeddings в {@link EmbeddingStore}).
+ *
+ * <p>Два {@code long} вместо исходной строки: ключ занимает фиксированные 16 байт
+ * независимо от длины текста.</p>
+ *
+ * @param high старшие 64 бита хэша
+ * @param low  младшие 64 бита хэша
+ */
+public record EmbeddingKey(long high, long low) {
+
+    /**
+     * Размер ключа в байтах.
+     */
+    public static final int BYTES = 2 * Long.BYTES;
+
+    /**
+     * Вычисление ключа для текста.
+     *
+     * @param model имя модели embeddings (может быть null — модель по умолчанию)
+     * @param text  исходный текст
+     * @return ключ кэша
+     */
+    public static EmbeddingKey of(String model, String text) {
+        MessageDigest digest = sha256();
+        if (model != null) {
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+        digest.update(QueryNormalizer.normalize(text).getBytes(StandardCharsets.UTF_8));
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+        return new EmbeddingKey(hash.getLong(), hash.getLong());
+    }
+
+    /**
+     * Вычисление ключа по уже посчитанному хэшу содержимого чанка.
+     *
+     * @param model       имя модели embeddings
+     * @param contentHash SHA-256 содержимого чанка, по которому вычисляется embedding
+     * @return ключ хранилища embeddings
+     */
+    public static EmbeddingKey ofContent(String model, String contentHash) {
+        MessageDigest digest = sha256();
+        digest.update(model.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(contentHash.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+        return new EmbeddingKey(hash.getLong(), hash.getLong());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
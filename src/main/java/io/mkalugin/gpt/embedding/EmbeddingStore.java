@@ -0,0 +1,204 @@
+package io.mkalugin.gpt.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Content-addressed хранилище embeddings на диске.
+ *
+ * <p>Векторы лежат в одном файле, отображённом в память ({@link MappedByteBuffer}) сегментами
+ * по {@code segment-size} байт. Файл только дописывается: запись — 16 байт ключа
+ * ({@link EmbeddingKey}), размерность и {@code float}-компоненты вектора; запись не пересекает
+ * границу сегмента. Индекс ключ → смещение строится в памяти при открытии одним проходом
+ * по заголовкам записей.</p>
+ *
+ * <p>Заголовок файла: magic, версия и смещение конца данных. Конец обновляется после записи
+ * вектора, поэтому запись, оборванная остановкой процесса, при следующем открытии не видна.
+ * Размер файла ограничен {@code max-size}: после заполнения новые векторы не сохраняются.</p>
+ */
+@Slf4j
+public class EmbeddingStore implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final int MAGIC = 0x454D4253;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int END_OFFSET = 8;
+    private static final int RECORD_HEADER_SIZE = EmbeddingKey.BYTES + Integer.BYTES;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long maxBytes;
+    private final int segmentSize;
+
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final Map<EmbeddingKey, Long> index = new ConcurrentHashMap<>();
+    private volatile long end;
+    private boolean full;
+
+    public EmbeddingStore(Path path, long maxBytes) throws IOException {
+        this(path, maxBytes, DEFAULT_SEGMENT_SIZE);
+    }
+
+    EmbeddingStore(Path path, long maxBytes, int segmentSize) throws IOException {
+        this.path = path;
+        this.maxBytes = maxBytes;
+        this.segmentSize = segmentSize;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        boolean created = channel.size() == 0;
+        MappedByteBuffer header = segment(0);
+        if (created) {
+            header.putInt(0, MAGIC);
+            header.putInt(Integer.BYTES, VERSION);
+            header.putLong(END_OFFSET, HEADER_SIZE);
+        } else if (header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION) {
+            channel.close();
+            throw new IOException("Not an embedding store or unsupported version: " + path);
+        }
+        this.end = header.getLong(END_OFFSET);
+        load();
+        log.info("Opened embedding store {}: {} vectors, {} bytes", path, index.size(), end);
+    }
+
+    /**
+     * Вектор по ключу.
+     *
+     * @return копия вектора или null, если ключа нет
+     */
+    public float[] get(EmbeddingKey key) {
+        Long offset = index.get(key);
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer segment = segments.get((int) (offset / segmentSize));
+        int position = (int) (offset % segmentSize);
+        float[] vector = new float[segment.getInt(position + EmbeddingKey.BYTES)];
+        segment.slice(position + RECORD_HEADER_SIZE, vector.length * Float.BYTES).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    /**
+     * Сохранение вектора. Уже сохранённый ключ не перезаписывается.
+     *
+     * @return false, если хранилище заполнено
+     * @throws IOException если файл не удалось расширить
+     */
+    public synchronized boolean put(EmbeddingKey key, float[] vector) throws IOException {
+        if (index.containsKey(key)) {
+            return true;
+        }
+        int size = RECORD_HEADER_SIZE + vector.length * Float.BYTES;
+        if (vector.length == 0 || size > segmentSize) {
+            throw new IllegalArgumentException("Unsupported vector size: " + vector.length);
+        }
+        long offset = end;
+        if (offset % segmentSize + size > segmentSize) {
+            markSegmentEnd(offset);
+            offset = nextSegment(offset);
+        }
+        if (offset + size > maxBytes) {
+            if (!full) {
+                log.warn("Embedding store {} reached its limit of {} bytes, new vectors are not persisted", path, maxBytes);
+                full = true;
+            }
+            return false;
+        }
+
+        MappedByteBuffer segment = segment((int) (offset / segmentSize));
+        int position = (int) (offset % segmentSize);
+        segment.putLong(position, key.high());
+        segment.putLong(position + Long.BYTES, key.low());
+        segment.putInt(position + EmbeddingKey.BYTES, vector.length);
+        segment.slice(position + RECORD_HEADER_SIZE, vector.length * Float.BYTES).asFloatBuffer().put(vector);
+
+        end = offset + size;
+        segments.getFirst().putLong(END_OFFSET, end);
+        index.put(key, offset);
+        return true;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long bytes() {
+        return end;
+    }
+
+    /**
+     * Сброс изменений на диск и закрытие файла.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        segments.forEach(MappedByteBuffer::force);
+        channel.close();
+    }
+
+    /**
+     * Построение индекса по заголовкам записей.
+     */
+    private void load() throws IOException {
+        long offset = HEADER_SIZE;
+        while (offset < end) {
+            int position = (int) (offset % segmentSize);
+            if (position + RECORD_HEADER_SIZE > segmentSize) {
+                offset = nextSegment(offset);
+                continue;
+            }
+            MappedByteBuffer segment = segment((int) (offset / segmentSize));
+            int dimensions = segment.getInt(position + EmbeddingKey.BYTES);
+            if (dimensions <= 0) {
+                // Хвост сегмента, в который не поместилась следующая запись
+                offset = nextSegment(offset);
+                continue;
+            }
+            index.put(new EmbeddingKey(segment.getLong(position), segment.getLong(position + Long.BYTES)), offset);
+            offset += RECORD_HEADER_SIZE + (long) dimensions * Float.BYTES;
+        }
+    }
+
+    /**
+     * Нулевая размерность после последней записи сегмента: при чтении индекса хвост
+     * пропускается, даже если в нём остались байты записи, оборванной остановкой процесса.
+     */
+    private void markSegmentEnd(long offset) throws IOException {
+        int position = (int) (offset % segmentSize);
+        if (position + RECORD_HEADER_SIZE <= segmentSize) {
+            segment((int) (offset / segmentSize)).putInt(position + EmbeddingKey.BYTES, 0);
+        }
+    }
+
+    private long nextSegment(long offset) {
+        return (offset / segmentSize + 1) * segmentSize;
+    }
+
+    /**
+     * Сегмент с номером {@code number}; недостающие сегменты отображаются, файл при этом растёт.
+     */
+    private MappedByteBuffer segment(int number) throws IOException {
+        while (segments.size() <= number) {
+            long position = (long) segments.size() * segmentSize;
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position, segmentSize));
+        }
+        return segments.get(number);
+    }
+}
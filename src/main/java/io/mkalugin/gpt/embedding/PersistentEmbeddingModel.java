@@ -0,0 +1,119 @@
+package io.mkalugin.gpt.embedding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.mkalugin.gpt.ingestion.ChunkIds;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Декоратор {@link EmbeddingModel}, берущий embeddings чанков из {@link EmbeddingStore}.
+ *
+ * <p>Работает только для пакетного {@code embed(List<Document>, ...)}, через который векторы
+ * вычисляют конвейер загрузки и VectorStore: ключ — модель и SHA-256 содержимого чанка для
+ * embeddings (текст и смысловые метаданные вроде {@code heading_path}, без источника и номера
+ * чанка), поэтому одинаковые чанки разных источников делят вектор. Отсутствующие в хранилище чанки уходят в делегат, результат сохраняется. Поэтому
+ * пересоздание коллекции ChromaDB не требует повторных запросов к OpenAI. Вопросы пользователей
+ * ({@code call}, {@code embed(String)}) проходят мимо хранилища.</p>
+ *
+ * <p>Метрики: {@code rag.embedding.store.lookups{result=hit|miss}}, {@code rag.embedding.store.size},
+ * {@code rag.embedding.store.bytes}.</p>
+ */
+@Slf4j
+public class PersistentEmbeddingModel extends DelegatingEmbeddingModel {
+
+    private final EmbeddingStore store;
+    private final String defaultModel;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * @param delegate     модель, вычисляющая отсутствующие векторы
+     * @param store        хранилище векторов
+     * @param defaultModel модель, которую использует делегат, если в запросе она не указана
+     */
+    public PersistentEmbeddingModel(EmbeddingModel delegate, EmbeddingStore store, String defaultModel,
+                                    MeterRegistry meterRegistry) {
+        super(delegate);
+        this.store = store;
+        this.defaultModel = defaultModel;
+        this.hits = Counter.builder("rag.embedding.store.lookups")
+                .tag("result", "hit")
+                .description("Embeddings чанков, найденные в хранилище на диске")
+                .register(meterRegistry);
+        this.misses = Counter.builder("rag.embedding.store.lookups")
+                .tag("result", "miss")
+                .description("Embeddings чанков, вычисленные моделью")
+                .register(meterRegistry);
+        Gauge.builder("rag.embedding.store.size", store, EmbeddingStore::size)
+                .description("Векторов в хранилище embeddings")
+                .register(meterRegistry);
+        Gauge.builder("rag.embedding.store.bytes", store, EmbeddingStore::bytes)
+                .description("Объём данных хранилища embeddings")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        String model = modelId(options);
+        float[][] vectors = new float[documents.size()][];
+        List<Document> missing = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        List<EmbeddingKey> keys = new ArrayList<>();
+
+        for (int i = 0; i < documents.size(); i++) {
+            EmbeddingKey key = EmbeddingKey.ofContent(model, ChunkIds.contentHash(embeddedContent(documents.get(i))));
+            float[] stored = store.get(key);
+            if (stored != null) {
+                vectors[i] = stored;
+                continue;
+            }
+            missing.add(documents.get(i));
+            positions.add(i);
+            keys.add(key);
+        }
+        hits.increment(documents.size() - missing.size());
+        misses.increment(missing.size());
+        if (missing.isEmpty()) {
+            return Arrays.asList(vectors);
+        }
+
+        List<float[]> computed = delegateEmbed(missing, options, batchingStrategy);
+        for (int i = 0; i < missing.size(); i++) {
+            float[] vector = computed.get(i);
+            vectors[positions.get(i)] = vector;
+            persist(keys.get(i), vector);
+        }
+        log.debug("Embedding store: {} of {} chunks sent to model", missing.size(), documents.size());
+        return Arrays.asList(vectors);
+    }
+
+    private void persist(EmbeddingKey key, float[] vector) {
+        try {
+            store.put(key, vector);
+        } catch (IOException | RuntimeException e) {
+            // Вектор уже вычислен: ошибка хранилища не должна ронять загрузку
+            log.warn("Failed to persist embedding: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Модель и размерность входят в ключ: векторы разных моделей несовместимы.
+     */
+    private String modelId(EmbeddingOptions options) {
+        String model = options != null && options.getModel() != null ? options.getModel() : defaultModel;
+        Integer dimensions = options != null ? options.getDimensions() : null;
+        return dimensions != null ? model + ":" + dimensions : model;
+    }
+}
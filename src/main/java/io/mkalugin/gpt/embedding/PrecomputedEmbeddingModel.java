@@ -0,0 +1,83 @@
+package io.mkalugin.gpt.embedding;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Декоратор {@link EmbeddingModel}, отдающий VectorStore уже вычисленные векторы чанков.
+ *
+ * <p>Конвейер загрузки вычисляет embeddings на своей стадии и передаёт их на время записи
+ * пачки через {@link #withVectors}. VectorStore вычисляет векторы пакетным
+ * {@code embed(List<Document>, ...)} для тех же объектов документов и получает готовые векторы
+ * без повторного обращения к модели, даже если кэш embeddings выключен. Документы сравниваются
+ * по ссылке, поэтому вектор одного чанка не достаётся другому с тем же текстом. Документы без
+ * переданных векторов уходят в делегат.</p>
+ */
+public class PrecomputedEmbeddingModel extends DelegatingEmbeddingModel {
+
+    private final Map<Document, float[]> vectors = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    public PrecomputedEmbeddingModel(EmbeddingModel delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Выполнение действия, во время которого для документов используются переданные векторы.
+     *
+     * @param documents  документы пачки
+     * @param embeddings векторы документов в том же порядке
+     * @param action     действие, вычисляющее embeddings документов (обычно запись в VectorStore)
+     * @throws IllegalArgumentException если количество векторов не совпадает с количеством документов
+     */
+    public void withVectors(List<Document> documents, List<float[]> embeddings, Runnable action) {
+        if (documents.size() != embeddings.size()) {
+            throw new IllegalArgumentException("Expected " + documents.size() + " embeddings, got " + embeddings.size());
+        }
+        for (int i = 0; i < documents.size(); i++) {
+            vectors.put(documents.get(i), embeddings.get(i));
+        }
+        try {
+            action.run();
+        } finally {
+            documents.forEach(vectors::remove);
+        }
+    }
+
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        float[][] result = new float[documents.size()][];
+        List<Document> missing = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            float[] vector = vectors.get(documents.get(i));
+            if (vector != null) {
+                result[i] = vector;
+            } else {
+                missing.add(documents.get(i));
+                positions.add(i);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<float[]> computed = delegateEmbed(missing, options, batchingStrategy);
+            for (int i = 0; i < missing.size(); i++) {
+                result[positions.get(i)] = computed.get(i);
+            }
+        }
+        return Arrays.asList(result);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        float[] vector = vectors.get(document);
+        return vector != null ? vector : delegate.embed(document);
+    }
+}
@@ -0,0 +1,56 @@
+package io.mkalugin.gpt.enums;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Набор полей документа в списке {@code GET /api/rag/documents}.
+ */
+public enum DocumentProjection {
+    /**
+     * Только id.
+     */
+    IDS(List.of()),
+    /**
+     * Id и метаданные.
+     */
+    METADATA(List.of("metadatas")),
+    /**
+     * Id, метаданные и начало текста.
+     */
+    PREVIEW(List.of("documents", "metadatas"));
+
+    private final List<String> include;
+
+    DocumentProjection(List<String> include) {
+        this.include = include;
+    }
+
+    /**
+     * Поля, запрашиваемые у ChromaDB ({@code include}).
+     */
+    public List<String> include() {
+        return include;
+    }
+
+    public boolean withMetadata() {
+        return include.contains("metadatas");
+    }
+
+    public boolean withContent() {
+        return include.contains("documents");
+    }
+
+    /**
+     * Разбор параметра запроса без учёта регистра.
+     *
+     * @throws IllegalArgumentException если значение неизвестно
+     */
+    public static DocumentProjection parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown fields value: " + value + ", expected ids, metadata or preview");
+        }
+    }
+}
@@ -5,7 +5,11 @@ package io.mkalugin.gpt.enums;
  */
 public enum ErrorCode {
     BAD_REQUEST("Bad Request"),
+    NOT_FOUND("Not Found"),
+    PAYLOAD_TOO_LARGE("Payload Too Large"),
+    TOO_MANY_REQUESTS("Too Many Requests"),
     INTERNAL_SERVER_ERROR("Internal Server Error"),
+    GATEWAY_TIMEOUT("Gateway Timeout"),
     VALIDATION_ERROR("Validation Error");
 
     private final String message;
@@ -0,0 +1,16 @@
+package io.mkalugin.gpt.enums;
+
+/**
+ * Статус фоновой задачи загрузки документов.
+ */
+public enum IngestionJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED,
+    CANCELLED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+    }
+}
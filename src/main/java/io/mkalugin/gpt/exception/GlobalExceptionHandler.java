@@ -8,6 +8,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Глобальный обработчик исключений.
@@ -69,6 +70,74 @@ public class GlobalExceptionHandler {
                 .build();
     }
 
+    /**
+     * Обработка исключения {@link NotFoundException}.
+     * Запрошенный ресурс не найден.
+     *
+     * @param ex исключение
+     * @return ErrorResponse с данными об ошибке
+     */
+    @ExceptionHandler(NotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public ErrorResponse handleNotFoundException(NotFoundException ex) {
+        return ErrorResponse.builder()
+                .message(ex.getMessage())
+                .error(ErrorCode.NOT_FOUND.getMessage())
+                .status(HttpStatus.NOT_FOUND.value())
+                .build();
+    }
+
+    /**
+     * Обработка исключения {@link PayloadTooLargeException}.
+     * Загружаемый файл превышает допустимый размер.
+     *
+     * @param ex исключение
+     * @return ErrorResponse с данными об ошибке
+     */
+    @ExceptionHandler(PayloadTooLargeException.class)
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public ErrorResponse handlePayloadTooLargeException(PayloadTooLargeException ex) {
+        return ErrorResponse.builder()
+                .message(ex.getMessage())
+                .error(ErrorCode.PAYLOAD_TOO_LARGE.getMessage())
+                .status(HttpStatus.PAYLOAD_TOO_LARGE.value())
+                .build();
+    }
+
+    /**
+     * Обработка исключения {@link RejectedExecutionException}.
+     * Очередь фоновых задач заполнена.
+     *
+     * @param ex исключение
+     * @return ErrorResponse с данными об ошибке
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ErrorResponse handleRejectedExecutionException(RejectedExecutionException ex) {
+        return ErrorResponse.builder()
+                .message("Слишком много задач в очереди, повторите позже")
+                .error(ErrorCode.TOO_MANY_REQUESTS.getMessage())
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .build();
+    }
+
+    /**
+     * Обработка исключения {@link RequestTimeoutException}.
+     * Результат не получен за отведённое время.
+     *
+     * @param ex исключение
+     * @return ErrorResponse с данными об ошибке
+     */
+    @ExceptionHandler(RequestTimeoutException.class)
+    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+    public ErrorResponse handleRequestTimeoutException(RequestTimeoutException ex) {
+        return ErrorResponse.builder()
+                .message(ex.getMessage())
+                .error(ErrorCode.GATEWAY_TIMEOUT.getMessage())
+                .status(HttpStatus.GATEWAY_TIMEOUT.value())
+                .build();
+    }
+
     /**
      * Обработка исключения {@link IOException}.
      * Ошибка при работе с файлами.
@@ -0,0 +1,11 @@
+package io.mkalugin.gpt.exception;
+
+/**
+ * Исключение, выбрасываемое когда запрошенный ресурс не найден.
+ */
+public class NotFoundException extends RuntimeException {
+
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package io.mkalugin.gpt.exception;
+
+/**
+ * Исключение, выбрасываемое когда тело запроса превышает допустимый размер.
+ */
+public class PayloadTooLargeException extends RuntimeException {
+
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package io.mkalugin.gpt.exception;
+
+/**
+ * Исключение, выбрасываемое когда результат не получен за отведённое время.
+ */
+public class RequestTimeoutException extends RuntimeException {
+
+    public RequestTimeoutException(String message) {
+        super(message);
+    }
+}
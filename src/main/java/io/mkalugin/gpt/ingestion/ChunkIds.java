@@ -0,0 +1,123 @@
+package io.mkalugin.gpt.ingestion;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.ai.document.ContentFormatter;
+import org.springframework.ai.document.DefaultContentFormatter;
+import org.springframework.ai.document.Document;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Детерминированные идентификаторы чанков.
+ *
+ * <p>Id — UUID (v3) от источника, номера чанка в источнике и SHA-256 текста.
+ * Повторная загрузка того же файла даёт те же id, поэтому запись в ChromaDB
+ * идемпотентна, а изменённый чанк получает новый id.</p>
+ *
+ * <p>Служебные метаданные ({@link #SOURCE}, {@link #CHUNK_INDEX}, {@link #CONTENT_HASH}) не входят
+ * в содержимое чанка для embeddings ({@link #CONTENT_FORMATTER}): вектор зависит только от текста
+ * и смысловых метаданных, таких как {@link #HEADING_PATH}.</p>
+ */
+@UtilityClass
+public class ChunkIds {
+
+    /**
+     * Ключ метаданных с источником чанка: происхождение и путь файла ({@link SourceFile}).
+     */
+    public static final String SOURCE = "source";
+
+    /**
+     * Ключ метаданных с номером чанка в источнике.
+     */
+    public static final String CHUNK_INDEX = "chunk_index";
+
+    /**
+     * Ключ метаданных с SHA-256 текста чанка.
+     */
+    public static final String CONTENT_HASH = "content_hash";
+
+    /**
+     * Ключ метаданных с путём заголовков раздела, к которому относится чанк.
+     */
+    public static final String HEADING_PATH = "heading_path";
+
+    /**
+     * Форматирование содержимого чанков: служебные метаданные исключены из embeddings.
+     */
+    public static final ContentFormatter CONTENT_FORMATTER = DefaultContentFormatter.builder()
+            .withExcludedEmbedMetadataKeys(SOURCE, CHUNK_INDEX, CONTENT_HASH)
+            .build();
+
+    /**
+     * Чанк источника с детерминированным id и метаданными.
+     *
+     * @param source     источник
+     * @param chunkIndex номер чанка в источнике
+     * @param text       текст чанка
+     * @return чанк с id, источником, номером и хэшем содержимого
+     */
+    public static Document chunk(String source, int chunkIndex, String text) {
+        return chunk(source, chunkIndex, text, null);
+    }
+
+    /**
+     * Чанк источника с детерминированным id, метаданными и путём заголовков.
+     *
+     * @param source      источник
+     * @param chunkIndex  номер чанка в источнике
+     * @param text        текст чанка
+     * @param headingPath путь заголовков раздела или null
+     * @return чанк с id, источником, номером, хэшем содержимого и путём заголовков
+     */
+    public static Document chunk(String source, int chunkIndex, String text, String headingPath) {
+        String hash = contentHash(text);
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(SOURCE, source);
+        metadata.put(CHUNK_INDEX, chunkIndex);
+        metadata.put(CONTENT_HASH, hash);
+        if (headingPath != null) {
+            metadata.put(HEADING_PATH, headingPath);
+        }
+        Document chunk = Document.builder()
+                .id(id(source, chunkIndex, hash))
+                .text(text)
+                .metadata(metadata)
+                .build();
+        chunk.setContentFormatter(CONTENT_FORMATTER);
+        return chunk;
+    }
+
+    /**
+     * Идентификатор чанка.
+     *
+     * @param source      источник
+     * @param chunkIndex  номер чанка в источнике
+     * @param contentHash SHA-256 текста чанка
+     * @return строковое представление UUID
+     */
+    public static String id(String source, int chunkIndex, String contentHash) {
+        String key = source + '\0' + chunkIndex + '\0' + contentHash;
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * SHA-256 текста в шестнадцатеричном виде.
+     *
+     * @param text текст чанка
+     * @return хэш содержимого
+     */
+    public static String contentHash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
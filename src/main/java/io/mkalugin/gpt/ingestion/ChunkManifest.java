@@ -0,0 +1,150 @@
+package io.mkalugin.gpt.ingestion;
+
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Манифест уже загруженных чанков: по каждому источнику — id чанков по их номеру.
+ *
+ * <p>Строится из метаданных коллекции ChromaDB. Сравнение с новым разбиением файла
+ * показывает, какие чанки не изменились и не требуют embeddings, какие нужно
+ * записать и какие удалить. Чанки без номера (загруженные до появления
+ * детерминированных id) считаются устаревшими при повторной загрузке источника.
+ * Под одним номером может оказаться несколько чанков, если старые версии не были удалены
+ * (например, после ошибки записи): лишние тоже считаются устаревшими.</p>
+ */
+public class ChunkManifest {
+
+    private final Map<String, SourceEntries> sources = new HashMap<>();
+
+    /**
+     * Пустой манифест: все чанки будут добавлены.
+     */
+    public static ChunkManifest empty() {
+        return new ChunkManifest();
+    }
+
+    /**
+     * Учёт чанка из векторного хранилища.
+     *
+     * @param id       идентификатор чанка
+     * @param metadata метаданные чанка
+     */
+    public void add(String id, Map<String, Object> metadata) {
+        Object source = metadata.get(ChunkIds.SOURCE);
+        if (source == null) {
+            return;
+        }
+        SourceEntries entries = sources.computeIfAbsent(source.toString(), key -> new SourceEntries());
+        Object index = metadata.get(ChunkIds.CHUNK_INDEX);
+        Object hash = metadata.get(ChunkIds.CONTENT_HASH);
+        if (index instanceof Number number && hash != null) {
+            entries.chunkIds.computeIfAbsent(number.intValue(), key -> new ArrayList<>(1)).add(id);
+        } else {
+            entries.legacyIds.add(id);
+        }
+    }
+
+    /**
+     * Источники, известные манифесту.
+     */
+    public Set<String> sources() {
+        return sources.keySet();
+    }
+
+    /**
+     * Все id чанков источника.
+     *
+     * @param source источник
+     * @return идентификаторы чанков
+     */
+    public List<String> ids(String source) {
+        SourceEntries entries = sources.get(source);
+        if (entries == null) {
+            return List.of();
+        }
+        List<String> ids = new ArrayList<>(entries.legacyIds);
+        entries.chunkIds.values().forEach(ids::addAll);
+        return ids;
+    }
+
+    /**
+     * Начало сравнения нового разбиения источника с манифестом. Чанки передаются
+     * по одному в порядке следования, поэтому разбиение не нужно держать в памяти целиком.
+     *
+     * @param source источник
+     * @return сравнение по источнику
+     */
+    public SourceDiff diff(String source) {
+        return new SourceDiff(sources.getOrDefault(source, new SourceEntries()));
+    }
+
+    /**
+     * Изменение чанка относительно манифеста.
+     */
+    public enum Change {
+        ADDED,
+        UPDATED,
+        UNCHANGED
+    }
+
+    /**
+     * Сравнение одного источника с манифестом.
+     */
+    public static final class SourceDiff {
+        private final SourceEntries entries;
+        private final List<String> staleIds;
+        private int chunks;
+
+        private SourceDiff(SourceEntries entries) {
+            this.entries = entries;
+            this.staleIds = new ArrayList<>(entries.legacyIds);
+        }
+
+        /**
+         * Учёт очередного чанка источника.
+         *
+         * @param chunk чанк с детерминированным id (см. {@link ChunkIds#chunk})
+         * @return изменение чанка; id заменённых чанков с тем же номером попадают в устаревшие
+         */
+        public Change accept(Document chunk) {
+            List<String> existingIds = entries.chunkIds.getOrDefault(chunks++, List.of());
+            if (existingIds.isEmpty()) {
+                return Change.ADDED;
+            }
+            boolean unchanged = false;
+            for (String existingId : existingIds) {
+                if (existingId.equals(chunk.getId())) {
+                    unchanged = true;
+                } else {
+                    staleIds.add(existingId);
+                }
+            }
+            return unchanged ? Change.UNCHANGED : Change.UPDATED;
+        }
+
+        /**
+         * Id чанков, которые нужно удалить после записи новых: заменённые, чанки за концом
+         * нового разбиения и чанки без номера. Вызывается после учёта всех чанков источника.
+         */
+        public List<String> staleIds() {
+            List<String> ids = new ArrayList<>(staleIds);
+            entries.chunkIds.forEach((index, chunkIds) -> {
+                if (index >= chunks) {
+                    ids.addAll(chunkIds);
+                }
+            });
+            return ids;
+        }
+    }
+
+    private static final class SourceEntries {
+        private final Map<Integer, List<String>> chunkIds = new HashMap<>();
+        private final List<String> legacyIds = new ArrayList<>();
+    }
+}
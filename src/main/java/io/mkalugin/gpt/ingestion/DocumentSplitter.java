@@ -0,0 +1,42 @@
+package io.mkalugin.gpt.ingestion;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Потоковое разбиение файла на чанки. Реализация выбирается по типу файла ({@link DocumentSplitters}).
+ */
+public interface DocumentSplitter {
+
+    /**
+     * Открытие потока чанков. Канал закрывается вместе с потоком.
+     *
+     * @param channel канал с текстом в UTF-8
+     * @return поток чанков в порядке следования в тексте
+     */
+    ChunkStream open(ReadableByteChannel channel);
+
+    /**
+     * Поток чанков одного файла.
+     */
+    interface ChunkStream extends Closeable {
+
+        /**
+         * Следующий чанк.
+         *
+         * @return чанк или null, если текст закончился
+         * @throws IOException если чтение канала завершилось ошибкой
+         */
+        Chunk next() throws IOException;
+    }
+
+    /**
+     * Чанк с положением в структуре документа.
+     *
+     * @param text        текст чанка
+     * @param headingPath путь заголовков (или объявлений кода) через {@code " > "}, null вне разделов
+     */
+    record Chunk(String text, String headingPath) {
+    }
+}
@@ -0,0 +1,66 @@
+package io.mkalugin.gpt.ingestion;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Выбор разбиения на чанки по типу файла.
+ *
+ * <p>Markdown ({@code .md}, {@code .markdown}) разбивается по заголовкам с сохранением блоков кода,
+ * исходный код Swift ({@code .swift}) — по объявлениям ({@link StructuredTextSplitter}); остальные
+ * файлы — по токенам ({@link StreamingTextSplitter}). При
+ * {@code app.ingestion.splitter.structure-aware=false} все файлы разбиваются по токенам.</p>
+ */
+@Component
+public class DocumentSplitters {
+
+    private final DocumentSplitter textSplitter;
+    private final Map<String, DocumentSplitter> byExtension;
+
+    public DocumentSplitters(StreamingTextSplitter textSplitter,
+                             @Value("${app.ingestion.splitter.structure-aware:true}") boolean structureAware) {
+        this.textSplitter = plain(textSplitter);
+        if (structureAware) {
+            DocumentSplitter markdown = new StructuredTextSplitter(textSplitter, MarkdownSectionParser::new);
+            DocumentSplitter swift = new StructuredTextSplitter(textSplitter, SwiftSectionParser::new);
+            this.byExtension = Map.of("md", markdown, "markdown", markdown, "swift", swift);
+        } else {
+            this.byExtension = Map.of();
+        }
+    }
+
+    /**
+     * Разбиение для файла.
+     *
+     * @param filename имя файла
+     * @return разбиение по расширению файла или разбиение по токенам
+     */
+    public DocumentSplitter forFile(String filename) {
+        String extension = StringUtils.getFilenameExtension(filename);
+        return extension != null
+                ? byExtension.getOrDefault(extension.toLowerCase(Locale.ROOT), textSplitter)
+                : textSplitter;
+    }
+
+    private static DocumentSplitter plain(StreamingTextSplitter splitter) {
+        return channel -> new DocumentSplitter.ChunkStream() {
+            private final StreamingTextSplitter.Chunks chunks = splitter.open(channel);
+
+            @Override
+            public DocumentSplitter.Chunk next() throws IOException {
+                String text = chunks.next();
+                return text != null ? new DocumentSplitter.Chunk(text, null) : null;
+            }
+
+            @Override
+            public void close() throws IOException {
+                chunks.close();
+            }
+        };
+    }
+}
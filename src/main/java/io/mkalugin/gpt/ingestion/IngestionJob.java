@@ -0,0 +1,101 @@
+package io.mkalugin.gpt.ingestion;
+
+import io.mkalugin.gpt.enums.IngestionJobStatus;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Фоновая задача загрузки документов по glob-паттерну.
+ *
+ * <p>Состояние читается из любого потока, переходы между статусами синхронизированы.</p>
+ */
+@Getter
+public class IngestionJob {
+
+    private final String id = UUID.randomUUID().toString();
+    private final String pattern;
+    private final Instant createdAt = Instant.now();
+    private final IngestionProgress progress = new IngestionProgress();
+
+    private volatile IngestionJobStatus status = IngestionJobStatus.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile IngestionResult result;
+    private volatile String error;
+    @Getter(AccessLevel.NONE)
+    private volatile Future<?> future;
+
+    public IngestionJob(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * Перевод в {@link IngestionJobStatus#RUNNING}.
+     *
+     * @return false, если задача уже отменена
+     */
+    public synchronized boolean start() {
+        if (status != IngestionJobStatus.QUEUED) {
+            return false;
+        }
+        status = IngestionJobStatus.RUNNING;
+        startedAt = Instant.now();
+        return true;
+    }
+
+    public synchronized void complete(IngestionResult result) {
+        this.result = result;
+        finish(progress.isCancelled() ? IngestionJobStatus.CANCELLED : IngestionJobStatus.SUCCEEDED);
+    }
+
+    public synchronized void fail(String error) {
+        this.error = error;
+        finish(IngestionJobStatus.FAILED);
+    }
+
+    /**
+     * Отмена задачи: ожидающая в очереди снимается сразу, выполняющаяся
+     * завершает уже набранные пачки и останавливается.
+     *
+     * @return false, если задача уже завершена
+     */
+    public synchronized boolean cancel() {
+        if (status.isFinished()) {
+            return false;
+        }
+        progress.cancel();
+        if (status == IngestionJobStatus.QUEUED) {
+            if (future != null) {
+                future.cancel(false);
+            }
+            finish(IngestionJobStatus.CANCELLED);
+        }
+        return true;
+    }
+
+    /**
+     * Ожидание завершения задачи: успешного, с ошибкой или отмены.
+     */
+    public void await() throws InterruptedException {
+        try {
+            future.get();
+        } catch (CancellationException | ExecutionException e) {
+            // Исход задачи отражён в её статусе
+        }
+    }
+
+    private void finish(IngestionJobStatus status) {
+        this.finishedAt = Instant.now();
+        this.status = status;
+    }
+}
@@ -0,0 +1,580 @@
+package io.mkalugin.gpt.ingestion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.mkalugin.gpt.embedding.PrecomputedEmbeddingModel;
+import io.mkalugin.gpt.retrieval.Bm25Index;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Конвейер загрузки документов в векторное хранилище.
+ *
+ * <p>Стадии выполняются параллельно и связаны ограниченными очередями чанков,
+ * поэтому в памяти находится не больше {@code queue-capacity} чанков на очередь,
+ * а медленная стадия притормаживает предыдущие (backpressure):
+ * <ol>
+ *     <li>{@code read} — потоковое чтение и разбиение файлов на чанки ({@link DocumentSplitters}:
+ *     по заголовкам, объявлениям кода или токенам) в {@code read-parallelism} потоков</li>
+ *     <li>{@code embed} — вычисление embeddings пачками по {@code embedding.batch-size}
+ *     в {@code embedding.concurrency} потоков; уже известные по {@code content_hash} векторы
+ *     берутся из хранилища embeddings на диске</li>
+ *     <li>{@code upsert} — запись в векторное хранилище и индекс BM25 пачками
+ *     по {@code upsert.batch-size} в {@code upsert.concurrency} потоков</li>
+ * </ol>
+ * Векторы передаются со стадии {@code embed} вместе с чанками, и VectorStore получает их
+ * через {@link PrecomputedEmbeddingModel} без повторного вычисления.
+ * Ошибка файла или пачки не прерывает загрузку, а учитывается в итоге.</p>
+ *
+ * <p>Чанки получают детерминированные id ({@link ChunkIds}) от источника файла ({@link SourceFile})
+ * и сравниваются с {@link ChunkManifest}:
+ * неизменные чанки не проходят embeddings и запись (только попадают в индекс BM25),
+ * новые и изменённые записываются, а после записи удаляются устаревшие чанки изменённых
+ * источников и все чанки источников, которых больше нет среди загружаемых файлов.
+ * Для источника, часть чанков которого не удалось перевести в embeddings или записать,
+ * старые чанки не удаляются, а новые чанки файла, который не удалось дочитать, удаляются.</p>
+ *
+ * <p>Новые и изменённые чанки проверяются в {@link NearDuplicateIndex}: почти-дубликат уже
+ * загруженного чанка не проходит embeddings и запись, а учитывается в {@code duplicates}
+ * итога. Неизменные чанки не отбрасываются, а только попадают в индекс дубликатов.
+ * Если оставшийся чанк удалён или не записан, источники его отброшенных дубликатов читаются
+ * вторым проходом без манифеста, чтобы их текст вернулся в хранилище.</p>
+ *
+ * <p>Ход загрузки отражается в {@link IngestionProgress}. Отменённый запуск дописывает
+ * уже набранные пачки, не берёт новые файлы и не удаляет устаревшие чанки.</p>
+ *
+ * <p>Метрики по стадиям ({@code read}, {@code embed}, {@code upsert}, {@code delete}):
+ * {@code rag.ingestion.chunks{stage}} (пропускная способность),
+ * {@code rag.ingestion.batch.duration{stage}} и {@code rag.ingestion.failures{stage}};
+ * отброшенные почти-дубликаты — {@code rag.ingestion.duplicates}.</p>
+ */
+@Slf4j
+@Component
+public class IngestionPipeline {
+
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final VectorStore vectorStore;
+    private final PrecomputedEmbeddingModel embeddingModel;
+    private final Bm25Index bm25Index;
+    private final DocumentSplitters splitters;
+    private final NearDuplicateIndex duplicateIndex;
+    private final BatchingStrategy batchingStrategy = new TokenCountBatchingStrategy();
+
+    private final int readParallelism;
+    private final int embeddingBatchSize;
+    private final int embeddingConcurrency;
+    private final int upsertBatchSize;
+    private final int upsertConcurrency;
+    private final int queueCapacity;
+    private final Path watchDirectory;
+
+    private final StageMetrics readMetrics;
+    private final StageMetrics embedMetrics;
+    private final StageMetrics upsertMetrics;
+    private final StageMetrics deleteMetrics;
+    private final Counter duplicates;
+
+    public IngestionPipeline(
+            VectorStore vectorStore,
+            PrecomputedEmbeddingModel embeddingModel,
+            Bm25Index bm25Index,
+            DocumentSplitters splitters,
+            NearDuplicateIndex duplicateIndex,
+            @Value("${app.ingestion.read-parallelism:4}") int readParallelism,
+            @Value("${app.ingestion.embedding.batch-size:64}") int embeddingBatchSize,
+            @Value("${app.ingestion.embedding.concurrency:2}") int embeddingConcurrency,
+            @Value("${app.ingestion.upsert.batch-size:128}") int upsertBatchSize,
+            @Value("${app.ingestion.upsert.concurrency:2}") int upsertConcurrency,
+            @Value("${app.ingestion.queue-capacity:512}") int queueCapacity,
+            @Value("${app.ingestion.watch.directory:./documents}") Path watchDirectory,
+            MeterRegistry meterRegistry) {
+        this.vectorStore = vectorStore;
+        this.embeddingModel = embeddingModel;
+        this.bm25Index = bm25Index;
+        this.splitters = splitters;
+        this.duplicateIndex = duplicateIndex;
+        this.readParallelism = readParallelism;
+        this.embeddingBatchSize = embeddingBatchSize;
+        this.embeddingConcurrency = embeddingConcurrency;
+        this.upsertBatchSize = upsertBatchSize;
+        this.upsertConcurrency = upsertConcurrency;
+        this.queueCapacity = queueCapacity;
+        this.watchDirectory = watchDirectory;
+        this.readMetrics = new StageMetrics(meterRegistry, "read");
+        this.embedMetrics = new StageMetrics(meterRegistry, "embed");
+        this.upsertMetrics = new StageMetrics(meterRegistry, "upsert");
+        this.deleteMetrics = new StageMetrics(meterRegistry, "delete");
+        this.duplicates = Counter.builder("rag.ingestion.duplicates")
+                .description("Почти-дубликаты чанков, отброшенные при загрузке")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Загрузка файлов через конвейер.
+     *
+     * @param files    файлы для загрузки
+     * @param manifest уже загруженные чанки источников, входящих в область загрузки
+     * @return итог загрузки
+     */
+    public IngestionResult ingest(List<SourceFile> files, ChunkManifest manifest) {
+        return ingest(files, manifest, new IngestionProgress());
+    }
+
+    /**
+     * Загрузка файлов через конвейер с отслеживанием прогресса и возможностью отмены.
+     *
+     * @param files    файлы для загрузки
+     * @param manifest уже загруженные чанки источников, входящих в область загрузки
+     * @param progress прогресс запуска, обновляется по ходу загрузки
+     * @return итог загрузки (частичный, если запуск отменён)
+     */
+    public IngestionResult ingest(List<SourceFile> files, ChunkManifest manifest, IngestionProgress progress) {
+        progress.start(files.size());
+        long start = System.nanoTime();
+
+        Run run = run(files, manifest, progress);
+        IngestionResult result = run.result();
+        List<SourceFile> orphaned = orphanedFiles(run);
+        if (!orphaned.isEmpty()) {
+            log.info("Re-reading {} sources whose near-duplicate chunks lost their surviving chunk", orphaned.size());
+            progress.addFiles(orphaned.size());
+            result = result.plus(run(orphaned, ChunkManifest.empty(), progress).result());
+        }
+        log.info("Ingestion finished in {} ms: {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), result);
+        return result;
+    }
+
+    /**
+     * Один проход конвейера: чтение, embeddings, запись и удаление устаревших чанков.
+     */
+    private Run run(List<SourceFile> files, ChunkManifest manifest, IngestionProgress progress) {
+        Run run = new Run(files, manifest, progress);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> readers = submit(executor, readParallelism, progress, () -> read(run));
+            List<Future<?>> embedders = submit(executor, embeddingConcurrency, progress, () -> embed(run));
+            List<Future<?>> upserters = submit(executor, upsertConcurrency, progress, () -> upsert(run));
+
+            try {
+                await(readers);
+                run.readDone.set(true);
+                await(embedders);
+                run.embedDone.set(true);
+                await(upserters);
+            } finally {
+                // После ошибки стадии следующие не должны ждать, пока предыдущая завершится
+                run.readDone.set(true);
+                run.embedDone.set(true);
+            }
+        }
+        if (progress.isCancelled()) {
+            log.info("Ingestion cancelled, stale chunks are kept");
+        } else {
+            deleteStale(run);
+        }
+        return run;
+    }
+
+    /**
+     * Файлы источников, отброшенные дубликаты которых потеряли оставшийся чанк. Источники,
+     * удалённые в этом запуске, пропускаются; загрузки через HTTP прочитать заново нельзя.
+     */
+    private List<SourceFile> orphanedFiles(Run run) {
+        if (run.progress.isCancelled() || run.orphanedSources.isEmpty()) {
+            return List.of();
+        }
+        List<SourceFile> files = new ArrayList<>();
+        for (String source : run.orphanedSources) {
+            SourceFile file = run.presentFiles.get(source);
+            if (file == null && run.manifest.sources().contains(source)) {
+                continue;
+            }
+            Optional<SourceFile> resolved = file != null && !source.startsWith(SourceFile.UPLOAD)
+                    ? Optional.of(file)
+                    : SourceFile.resolve(source, watchDirectory);
+            if (resolved.isPresent()) {
+                files.add(resolved.get());
+            } else {
+                log.warn("Cannot re-read {}: its near-duplicate chunks are no longer stored", source);
+            }
+        }
+        return files;
+    }
+
+    private void read(Run run) throws InterruptedException {
+        SourceFile file;
+        while (!run.progress.isCancelled() && (file = run.files.poll()) != null) {
+            long start = System.nanoTime();
+            String source = file.source();
+            log.info("Loading document: {}", source);
+            try {
+                int chunks = readFile(run, file.resource(), source);
+                readMetrics.record(start, chunks);
+                run.readFiles.incrementAndGet();
+                run.progress.fileRead();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to read {}: {}", source, e.getMessage());
+                run.failedFiles.incrementAndGet();
+                run.failedSources.add(source);
+                run.progress.fileFailed();
+                readMetrics.failures.increment();
+            }
+        }
+    }
+
+    /**
+     * Потоковое чтение файла: чанки по одному сравниваются с манифестом и сразу
+     * передаются на вычисление embeddings, неизменные — пачками в индекс BM25.
+     * Почти-дубликаты уже загруженных чанков отбрасываются; прежние чанки этого же файла
+     * перед чтением убираются из индекса почти-дубликатов, чтобы изменённый файл не сравнивался
+     * со своей старой версией, а неизменные чанки возвращаются в индекс по мере чтения.
+     * Если файл не дочитан из-за ошибки, отправленные на запись чанки удаляются после записи,
+     * и в хранилище остаётся прежняя версия файла.
+     *
+     * @return количество чанков файла
+     */
+    private int readFile(Run run, Resource resource, String source) throws IOException, InterruptedException {
+        ChunkManifest.SourceDiff diff = run.manifest.diff(source);
+        duplicateIndex.remove(run.manifest.ids(source)).stream()
+                .map(NearDuplicateIndex::sourceOf)
+                .filter(orphaned -> !orphaned.equals(source))
+                .forEach(run.orphanedSources::add);
+        List<Document> unchanged = new ArrayList<>();
+        List<String> enqueuedIds = new ArrayList<>();
+        int index = 0;
+
+        try (DocumentSplitter.ChunkStream chunks = splitters.forFile(source).open(resource.readableChannel())) {
+            DocumentSplitter.Chunk next;
+            while (!run.progress.isCancelled() && (next = chunks.next()) != null) {
+                Document chunk = ChunkIds.chunk(source, index++, next.text(), next.headingPath());
+                ChunkManifest.Change change = diff.accept(chunk);
+                if (change == ChunkManifest.Change.UNCHANGED) {
+                    unchanged.add(chunk);
+                    if (unchanged.size() >= upsertBatchSize) {
+                        indexUnchanged(run, unchanged);
+                    }
+                    continue;
+                }
+                if (duplicateIndex.findOrAdd(chunk) != null) {
+                    run.duplicates.incrementAndGet();
+                    duplicates.increment();
+                    run.progress.chunksRead(1, 1);
+                    continue;
+                }
+                if (change == ChunkManifest.Change.UPDATED) {
+                    run.updatedIds.add(chunk.getId());
+                }
+                run.progress.chunksRead(1, 0);
+                enqueuedIds.add(chunk.getId());
+                if (!enqueue(run.chunksToEmbed, List.of(chunk), run.progress)) {
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            run.partialIds.put(source, enqueuedIds);
+            throw e;
+        }
+        indexUnchanged(run, unchanged);
+        run.staleIds.put(source, diff.staleIds());
+        return index;
+    }
+
+    private void indexUnchanged(Run run, List<Document> unchanged) {
+        bm25Index.add(unchanged);
+        duplicateIndex.add(unchanged);
+        run.skipped.addAndGet(unchanged.size());
+        run.progress.chunksRead(unchanged.size(), unchanged.size());
+        unchanged.clear();
+    }
+
+    private void embed(Run run) throws InterruptedException {
+        List<Document> batch;
+        while (!(batch = nextBatch(run.chunksToEmbed, embeddingBatchSize, run.readDone, run.progress)).isEmpty()) {
+            long start = System.nanoTime();
+            List<EmbeddedChunk> embedded = new ArrayList<>(batch.size());
+            try {
+                // Чанки с метаданными: по content_hash векторы берутся из хранилища embeddings
+                List<float[]> vectors = embeddingModel.embed(batch, EmbeddingOptions.builder().build(), batchingStrategy);
+                if (vectors.size() != batch.size()) {
+                    throw new IllegalStateException("Expected " + batch.size() + " embeddings, got " + vectors.size());
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    embedded.add(new EmbeddedChunk(batch.get(i), vectors.get(i)));
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to embed batch of {} chunks: {}", batch.size(), e.getMessage());
+                run.chunksFailed(batch.size());
+                batch.forEach(chunk -> run.failedSources.add(String.valueOf(chunk.getMetadata().get(ChunkIds.SOURCE))));
+                run.orphaned(duplicateIndex.remove(batch.stream().map(Document::getId).toList()));
+                embedMetrics.failures.increment();
+                continue;
+            }
+            embedMetrics.record(start, batch.size());
+            run.progress.chunksEmbedded(batch.size());
+            if (!enqueue(run.chunksToUpsert, embedded, run.progress)) {
+                return;
+            }
+        }
+    }
+
+    private void upsert(Run run) throws InterruptedException {
+        List<EmbeddedChunk> embedded;
+        while (!(embedded = nextBatch(run.chunksToUpsert, upsertBatchSize, run.embedDone, run.progress)).isEmpty()) {
+            long start = System.nanoTime();
+            List<Document> batch = embedded.stream().map(EmbeddedChunk::chunk).toList();
+            try {
+                embeddingModel.withVectors(batch, embedded.stream().map(EmbeddedChunk::vector).toList(),
+                        () -> vectorStore.add(batch));
+                bm25Index.add(batch);
+            } catch (RuntimeException e) {
+                log.warn("Failed to store batch of {} chunks: {}", batch.size(), e.getMessage());
+                run.chunksFailed(batch.size());
+                batch.forEach(chunk -> run.failedSources.add(String.valueOf(chunk.getMetadata().get(ChunkIds.SOURCE))));
+                run.orphaned(duplicateIndex.remove(batch.stream().map(Document::getId).toList()));
+                upsertMetrics.failures.increment();
+                continue;
+            }
+            upsertMetrics.record(start, batch.size());
+            run.progress.chunksStored(batch.size());
+            for (Document chunk : batch) {
+                (run.updatedIds.contains(chunk.getId()) ? run.updated : run.added).incrementAndGet();
+            }
+        }
+    }
+
+    private void deleteStale(Run run) {
+        List<String> staleIds = new ArrayList<>();
+        run.partialIds.forEach((source, ids) -> {
+            if (!ids.isEmpty()) {
+                log.info("Source {} was not read completely, removing {} of its new chunks", source, ids.size());
+                staleIds.addAll(ids);
+            }
+        });
+        run.staleIds.forEach((source, ids) -> {
+            if (!run.failedSources.contains(source)) {
+                staleIds.addAll(ids);
+            }
+        });
+        for (String source : run.manifest.sources()) {
+            if (!run.presentFiles.containsKey(source)) {
+                log.info("Source {} is no longer present, removing its chunks", source);
+                staleIds.addAll(run.manifest.ids(source));
+            }
+        }
+
+        for (int from = 0; from < staleIds.size(); from += upsertBatchSize) {
+            List<String> batch = staleIds.subList(from, Math.min(from + upsertBatchSize, staleIds.size()));
+            long start = System.nanoTime();
+            try {
+                vectorStore.delete(batch);
+                bm25Index.remove(batch);
+                run.orphaned(duplicateIndex.remove(batch));
+            } catch (RuntimeException e) {
+                log.warn("Failed to delete {} stale chunks: {}", batch.size(), e.getMessage());
+                run.chunksFailed(batch.size());
+                deleteMetrics.failures.increment();
+                continue;
+            }
+            deleteMetrics.record(start, batch.size());
+            run.deleted.addAndGet(batch.size());
+        }
+    }
+
+    /**
+     * Набор пачки до {@code size} элементов. Ждёт первый элемент, пока предыдущая стадия
+     * не завершилась, затем забирает всё, что уже есть в очереди.
+     *
+     * @return пачка или пустой список, если предыдущая стадия завершилась и очередь пуста
+     * или запуск отменён
+     */
+    private static <T> List<T> nextBatch(BlockingQueue<T> queue, int size, AtomicBoolean upstreamDone,
+                                         IngestionProgress progress) throws InterruptedException {
+        List<T> batch = new ArrayList<>(size);
+        while (batch.isEmpty() && !progress.isCancelled()) {
+            T first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                if (upstreamDone.get() && queue.isEmpty()) {
+                    return batch;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, size - 1);
+        }
+        return batch;
+    }
+
+    /**
+     * Передача чанков следующей стадии. Ждёт места в очереди, пока запуск не отменён.
+     *
+     * @return false, если запуск отменён
+     */
+    private static <T> boolean enqueue(BlockingQueue<T> queue, List<T> chunks, IngestionProgress progress)
+            throws InterruptedException {
+        for (T chunk : chunks) {
+            while (!queue.offer(chunk, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                if (progress.isCancelled()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Запуск потоков стадии. Если поток стадии упал (в том числе с {@link Error}), запуск отменяется:
+     * стадия больше не разбирает свою очередь, и без отмены соседние стадии ждали бы её вечно.
+     */
+    private static List<Future<?>> submit(ExecutorService executor, int workers, IngestionProgress progress,
+                                          Worker worker) {
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(() -> {
+                try {
+                    worker.run();
+                } catch (InterruptedException | RuntimeException | Error e) {
+                    progress.cancel();
+                    throw e;
+                }
+                return null;
+            }));
+        }
+        return futures;
+    }
+
+    private static void await(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for ingestion", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Ingestion stage failed", e.getCause());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Worker {
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * Состояние одного запуска конвейера.
+     */
+    private final class Run {
+        private final Queue<SourceFile> files;
+        private final Map<String, SourceFile> presentFiles;
+        private final ChunkManifest manifest;
+        private final IngestionProgress progress;
+        private final BlockingQueue<Document> chunksToEmbed = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<EmbeddedChunk> chunksToUpsert = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean readDone = new AtomicBoolean();
+        private final AtomicBoolean embedDone = new AtomicBoolean();
+
+        private final Set<String> updatedIds = ConcurrentHashMap.newKeySet();
+        private final Set<String> failedSources = ConcurrentHashMap.newKeySet();
+        private final Map<String, List<String>> staleIds = new ConcurrentHashMap<>();
+        private final Map<String, List<String>> partialIds = new ConcurrentHashMap<>();
+        private final Set<String> orphanedSources = ConcurrentHashMap.newKeySet();
+
+        private final AtomicInteger readFiles = new AtomicInteger();
+        private final AtomicInteger failedFiles = new AtomicInteger();
+        private final AtomicInteger added = new AtomicInteger();
+        private final AtomicInteger updated = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger deleted = new AtomicInteger();
+        private final AtomicInteger failedChunks = new AtomicInteger();
+        private final AtomicInteger duplicates = new AtomicInteger();
+
+        private Run(List<SourceFile> files, ChunkManifest manifest, IngestionProgress progress) {
+            this.files = new ConcurrentLinkedQueue<>(files);
+            this.presentFiles = files.stream()
+                    .collect(Collectors.toMap(SourceFile::source, file -> file, (first, second) -> first));
+            this.manifest = manifest;
+            this.progress = progress;
+        }
+
+        private void chunksFailed(int count) {
+            failedChunks.addAndGet(count);
+            progress.chunksFailed(count);
+        }
+
+        /**
+         * Учёт отброшенных дубликатов удалённых из индекса чанков.
+         */
+        private void orphaned(List<String> refs) {
+            refs.forEach(ref -> orphanedSources.add(NearDuplicateIndex.sourceOf(ref)));
+        }
+
+        private IngestionResult result() {
+            return new IngestionResult(readFiles.get(), failedFiles.get(), added.get(), updated.get(), skipped.get(),
+                    deleted.get(), failedChunks.get(), duplicates.get());
+        }
+    }
+
+    /**
+     * Чанк с вычисленным на стадии {@code embed} вектором.
+     */
+    private record EmbeddedChunk(Document chunk, float[] vector) {
+    }
+
+    /**
+     * Метрики стадии конвейера.
+     */
+    private static final class StageMetrics {
+        private final Counter chunks;
+        private final Counter failures;
+        private final Timer batchDuration;
+
+        private StageMetrics(MeterRegistry meterRegistry, String stage) {
+            this.chunks = Counter.builder("rag.ingestion.chunks")
+                    .tag("stage", stage)
+                    .description("Чанки, прошедшие стадию загрузки")
+                    .register(meterRegistry);
+            this.failures = Counter.builder("rag.ingestion.failures")
+                    .tag("stage", stage)
+                    .description("Ошибки стадии загрузки (файлы или пачки)")
+                    .register(meterRegistry);
+            this.batchDuration = Timer.builder("rag.ingestion.batch.duration")
+                    .tag("stage", stage)
+                    .description("Время обработки файла или пачки на стадии загрузки")
+                    .register(meterRegistry);
+        }
+
+        private void record(long startNanos, int size) {
+            batchDuration.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            chunks.increment(size);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.mkalugin.gpt.ingestion;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Прогресс одного запуска {@link IngestionPipeline}.
+ *
+ * <p>Счётчики обновляются стадиями конвейера по мере обработки и могут читаться
+ * из других потоков в любой момент. Через этот же объект запуск отменяется:
+ * стадии перестают брать новые файлы и пачки, а удаление устаревших чанков пропускается.</p>
+ */
+public class IngestionProgress {
+
+    private volatile long startNanos = System.nanoTime();
+
+    private final AtomicInteger filesTotal = new AtomicInteger();
+    private final AtomicInteger filesRead = new AtomicInteger();
+    private final AtomicInteger chunksRead = new AtomicInteger();
+    private final AtomicInteger chunksSkipped = new AtomicInteger();
+    private final AtomicInteger chunksEmbedded = new AtomicInteger();
+    private final AtomicInteger chunksStored = new AtomicInteger();
+    private final AtomicInteger chunksFailed = new AtomicInteger();
+
+    private volatile boolean cancelled;
+
+    /**
+     * Запросить отмену запуска.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void start(int files) {
+        startNanos = System.nanoTime();
+        filesTotal.set(files);
+    }
+
+    void addFiles(int files) {
+        filesTotal.addAndGet(files);
+    }
+
+    void chunksRead(int chunks, int skipped) {
+        chunksRead.addAndGet(chunks);
+        chunksSkipped.addAndGet(skipped);
+    }
+
+    void fileRead() {
+        filesRead.incrementAndGet();
+    }
+
+    void fileFailed() {
+        filesRead.incrementAndGet();
+    }
+
+    void chunksEmbedded(int count) {
+        chunksEmbedded.addAndGet(count);
+    }
+
+    void chunksStored(int count) {
+        chunksStored.addAndGet(count);
+    }
+
+    void chunksFailed(int count) {
+        chunksFailed.addAndGet(count);
+    }
+
+    /**
+     * Снимок счётчиков с оценкой скорости и оставшегося времени.
+     */
+    public Snapshot snapshot() {
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+        int total = filesTotal.get();
+        int read = filesRead.get();
+        int chunks = chunksRead.get();
+        int skipped = chunksSkipped.get();
+        int stored = chunksStored.get();
+        int failed = chunksFailed.get();
+
+        double seconds = elapsed.toNanos() / 1e9;
+        double throughput = seconds > 0 ? stored / seconds : 0;
+        return new Snapshot(total, read, chunks, skipped, chunksEmbedded.get(), stored, failed,
+                throughput, estimateRemaining(total, read, chunks - skipped, stored + failed, throughput));
+    }
+
+    /**
+     * Оставшееся время по текущей скорости записи. Число чанков в ещё не прочитанных
+     * файлах оценивается по среднему на прочитанный файл.
+     *
+     * @return оценка или null, если скорость ещё неизвестна
+     */
+    private static Duration estimateRemaining(int filesTotal, int filesRead, int chunksToStore, int chunksDone,
+                                              double throughput) {
+        if (filesRead == 0 || throughput <= 0) {
+            return null;
+        }
+        double expected = (double) chunksToStore * filesTotal / filesRead;
+        double remaining = Math.max(0, expected - chunksDone);
+        return Duration.ofMillis(Math.round(remaining / throughput * 1000));
+    }
+
+    /**
+     * Снимок прогресса.
+     *
+     * @param filesTotal         файлов в запуске
+     * @param filesRead          файлов прочитано (включая ошибки чтения)
+     * @param chunksRead         чанков получено из прочитанных файлов
+     * @param chunksSkipped      неизменных чанков пропущено
+     * @param chunksEmbedded     чанков с вычисленными embeddings
+     * @param chunksStored       чанков записано в векторное хранилище
+     * @param chunksFailed       чанков, не записанных или не удалённых из-за ошибок
+     * @param chunksPerSecond    скорость записи чанков с начала запуска
+     * @param estimatedRemaining оценка оставшегося времени (null, если неизвестна)
+     */
+    public record Snapshot(int filesTotal, int filesRead, int chunksRead, int chunksSkipped, int chunksEmbedded,
+                           int chunksStored, int chunksFailed, double chunksPerSecond, Duration estimatedRemaining) {
+    }
+}
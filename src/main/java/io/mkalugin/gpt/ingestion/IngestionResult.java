@@ -0,0 +1,45 @@
+package io.mkalugin.gpt.ingestion;
+
+/**
+ * Итог загрузки документов.
+ *
+ * @param files        прочитано файлов
+ * @param failedFiles  файлов, которые не удалось прочитать
+ * @param added        новых чанков записано в векторное хранилище
+ * @param updated      изменившихся чанков записано в векторное хранилище
+ * @param skipped      неизменных чанков пропущено без embeddings и записи
+ * @param deleted      устаревших чанков удалено
+ * @param failedChunks чанков, не записанных или не удалённых из-за ошибок embeddings или ChromaDB
+ * @param duplicates   почти-дубликатов уже загруженных чанков, отброшенных без записи
+ */
+public record IngestionResult(int files, int failedFiles, int added, int updated, int skipped, int deleted,
+                              int failedChunks, int duplicates) {
+
+    /**
+     * Количество записанных чанков.
+     */
+    public int chunks() {
+        return added + updated;
+    }
+
+    /**
+     * Сумма итогов нескольких загрузок.
+     */
+    public IngestionResult plus(IngestionResult other) {
+        return new IngestionResult(files + other.files, failedFiles + other.failedFiles, added + other.added,
+                updated + other.updated, skipped + other.skipped, deleted + other.deleted,
+                failedChunks + other.failedChunks, duplicates + other.duplicates);
+    }
+
+    /**
+     * Доля отброшенных почти-дубликатов среди прочитанных чанков.
+     */
+    public double dedupRatio() {
+        int read = added + updated + skipped + duplicates + failedChunks;
+        return read == 0 ? 0 : (double) duplicates / read;
+    }
+
+    public boolean hasFailures() {
+        return failedFiles > 0 || failedChunks > 0;
+    }
+}
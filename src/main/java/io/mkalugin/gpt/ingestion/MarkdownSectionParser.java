@@ -0,0 +1,49 @@
+package io.mkalugin.gpt.ingestion;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Разбор Markdown: заголовки ATX ({@code #}–{@code ######}) начинают разделы, абзацы разделяются
+ * пустыми строками, блок кода в ограждении ({@code ```} или {@code ~~~}) — один блок.
+ * Строки внутри блока кода заголовками не считаются.
+ */
+class MarkdownSectionParser implements StructuredTextSplitter.SectionParser {
+
+    private static final Pattern HEADING = Pattern.compile("^ {0,3}(#{1,6})\\s+(.*?)(?:\\s+#+)?\\s*$");
+    private static final Pattern FENCE = Pattern.compile("^ {0,3}(`{3,}|~{3,})");
+
+    private String fence;
+
+    @Override
+    public void accept(String line, StructuredTextSplitter.Blocks out) {
+        Matcher fenceMatcher = FENCE.matcher(line);
+        if (fence != null) {
+            out.line(line);
+            if (fenceMatcher.find() && fenceMatcher.group(1).startsWith(fence)
+                    && line.strip().length() == fenceMatcher.group(1).length()) {
+                fence = null;
+                out.boundary();
+            }
+            return;
+        }
+        if (fenceMatcher.find()) {
+            out.boundary();
+            fence = fenceMatcher.group(1);
+            out.line(line);
+            return;
+        }
+        Matcher heading = HEADING.matcher(line);
+        if (heading.matches() && !heading.group(2).isEmpty()) {
+            out.section(heading.group(1).length(), heading.group(2));
+            out.line(line);
+            out.boundary();
+            return;
+        }
+        if (line.isBlank()) {
+            out.boundary();
+            return;
+        }
+        out.line(line);
+    }
+}
@@ -0,0 +1,190 @@
+package io.mkalugin.gpt.ingestion;
+
+import io.mkalugin.gpt.utils.TextShingles;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Индекс SimHash-отпечатков загруженных чанков для отсева почти-дубликатов.
+ *
+ * <p>Сходство двух чанков — доля совпадающих бит 64-битных SimHash-отпечатков
+ * ({@link TextShingles#simHash}); чанк считается дубликатом, если сходство не ниже
+ * {@code app.ingestion.dedup.similarity}, то есть отпечатки отличаются не больше чем
+ * в {@code d} битах. Отпечаток делится на {@code d + 1} полос: у таких отпечатков хотя бы
+ * одна полоса совпадает целиком, поэтому кандидаты ищутся по хэш-таблицам полос (LSH),
+ * а не перебором.</p>
+ *
+ * <p>Индекс заполняется при загрузке документов и живёт в памяти процесса, как индекс BM25.
+ * Для каждого оставшегося чанка запоминаются отброшенные дубликаты ({@code source#chunk_index}),
+ * чтобы записать их в метаданные чанка.</p>
+ */
+@Component
+public class NearDuplicateIndex {
+
+    private final boolean enabled;
+    private final double similarity;
+    private final int[] bandShifts;
+    private final long[] bandMasks;
+
+    private final Map<String, Long> fingerprints = new HashMap<>();
+    private final List<Map<Long, Set<String>>> bands = new ArrayList<>();
+    private final Map<String, Set<String>> duplicatesBySurvivor = new HashMap<>();
+    private final Set<String> unrecorded = new HashSet<>();
+
+    public NearDuplicateIndex(@Value("${app.ingestion.dedup.enabled:true}") boolean enabled,
+                              @Value("${app.ingestion.dedup.similarity:0.95}") double similarity) {
+        if (similarity <= 0.5 || similarity > 1) {
+            throw new IllegalArgumentException("Dedup similarity must be in (0.5, 1]: " + similarity);
+        }
+        this.enabled = enabled;
+        this.similarity = similarity;
+
+        int maxDistance = (int) Math.floor((1 - similarity) * Long.SIZE + 1e-9);
+        int bandCount = maxDistance + 1;
+        this.bandShifts = new int[bandCount];
+        this.bandMasks = new long[bandCount];
+        int shift = 0;
+        for (int band = 0; band < bandCount; band++) {
+            int width = Long.SIZE / bandCount + (band < Long.SIZE % bandCount ? 1 : 0);
+            bandShifts[band] = shift;
+            bandMasks[band] = width == Long.SIZE ? -1L : (1L << width) - 1;
+            shift += width;
+            bands.add(new HashMap<>());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Проверка нового или изменённого чанка. Если похожего чанка нет, чанк добавляется в индекс.
+     *
+     * @param chunk чанк с метаданными {@link ChunkIds}
+     * @return id оставшегося чанка, дубликатом которого является {@code chunk}, или null
+     */
+    public synchronized String findOrAdd(Document chunk) {
+        if (!enabled || fingerprints.containsKey(chunk.getId())) {
+            return null;
+        }
+        long fingerprint = TextShingles.simHash(chunk.getText());
+        String survivor = find(fingerprint);
+        if (survivor == null) {
+            addInternal(chunk.getId(), fingerprint);
+            return null;
+        }
+        Map<String, Object> metadata = chunk.getMetadata();
+        duplicatesBySurvivor.computeIfAbsent(survivor, id -> new LinkedHashSet<>())
+                .add(metadata.get(ChunkIds.SOURCE) + "#" + metadata.get(ChunkIds.CHUNK_INDEX));
+        unrecorded.add(survivor);
+        return survivor;
+    }
+
+    /**
+     * Добавление уже загруженных чанков без проверки: они остаются в хранилище в любом случае.
+     */
+    public synchronized void add(Collection<Document> chunks) {
+        if (!enabled) {
+            return;
+        }
+        for (Document chunk : chunks) {
+            if (!fingerprints.containsKey(chunk.getId())) {
+                addInternal(chunk.getId(), TextShingles.simHash(chunk.getText()));
+            }
+        }
+    }
+
+    /**
+     * Удаление чанков из индекса (удалены из хранилища или не записаны).
+     *
+     * <p>Отброшенные дубликаты удалённого чанка не записаны в хранилище, поэтому вместе с ним
+     * их текст пропадает из коллекции: источники этих дубликатов нужно прочитать заново.</p>
+     *
+     * @return отброшенные дубликаты удалённых чанков ({@code source#chunk_index})
+     */
+    public synchronized List<String> remove(Collection<String> ids) {
+        List<String> dropped = new ArrayList<>();
+        for (String id : ids) {
+            Long fingerprint = fingerprints.remove(id);
+            if (fingerprint == null) {
+                continue;
+            }
+            for (int band = 0; band < bands.size(); band++) {
+                long key = bandKey(fingerprint, band);
+                Set<String> bucket = bands.get(band).get(key);
+                if (bucket != null && bucket.remove(id) && bucket.isEmpty()) {
+                    bands.get(band).remove(key);
+                }
+            }
+            Set<String> duplicates = duplicatesBySurvivor.remove(id);
+            if (duplicates != null) {
+                dropped.addAll(duplicates);
+            }
+            unrecorded.remove(id);
+        }
+        return dropped;
+    }
+
+    /**
+     * Источник из ссылки на отброшенный дубликат.
+     *
+     * @param ref {@code source#chunk_index}
+     */
+    public static String sourceOf(String ref) {
+        return ref.substring(0, ref.lastIndexOf('#'));
+    }
+
+    /**
+     * Отброшенные дубликаты чанков, у которых они появились с прошлого вызова.
+     *
+     * @return id оставшегося чанка → все его отброшенные дубликаты ({@code source#chunk_index})
+     */
+    public synchronized Map<String, List<String>> drainUnrecorded() {
+        Map<String, List<String>> result = new HashMap<>();
+        for (String survivor : unrecorded) {
+            result.put(survivor, List.copyOf(duplicatesBySurvivor.get(survivor)));
+        }
+        unrecorded.clear();
+        return result;
+    }
+
+    public synchronized int size() {
+        return fingerprints.size();
+    }
+
+    private String find(long fingerprint) {
+        for (int band = 0; band < bands.size(); band++) {
+            Set<String> candidates = bands.get(band).get(bandKey(fingerprint, band));
+            if (candidates == null) {
+                continue;
+            }
+            for (String candidate : candidates) {
+                if (TextShingles.simHashSimilarity(fingerprint, fingerprints.get(candidate)) >= similarity) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void addInternal(String id, long fingerprint) {
+        fingerprints.put(id, fingerprint);
+        for (int band = 0; band < bands.size(); band++) {
+            bands.get(band).computeIfAbsent(bandKey(fingerprint, band), key -> new HashSet<>()).add(id);
+        }
+    }
+
+    private long bandKey(long fingerprint, int band) {
+        return fingerprint >>> bandShifts[band] & bandMasks[band];
+    }
+}
@@ -0,0 +1,98 @@
+package io.mkalugin.gpt.ingestion;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Файл для загрузки и его источник — ключ {@link ChunkIds#SOURCE} в метаданных чанков.
+ *
+ * <p>Источник состоит из происхождения файла и пути к нему ({@code classpath:documents/swift.txt},
+ * {@code file:guides/guide.md}, {@code upload:notes.txt}), поэтому одноимённые файлы из ресурсов,
+ * отслеживаемого каталога и загрузок через HTTP не заменяют и не удаляют чанки друг друга.</p>
+ *
+ * @param source   источник чанков файла
+ * @param resource содержимое файла
+ */
+public record SourceFile(String source, Resource resource) {
+
+    /**
+     * Происхождение файлов из ресурсов приложения.
+     */
+    public static final String CLASSPATH = "classpath:";
+
+    /**
+     * Происхождение файлов из файловой системы.
+     */
+    public static final String FILE = "file:";
+
+    /**
+     * Происхождение файлов, загруженных через HTTP.
+     */
+    public static final String UPLOAD = "upload:";
+
+    /**
+     * Источник файла из ресурсов приложения.
+     *
+     * @param path путь от корня classpath
+     */
+    public static String classpathSource(String path) {
+        return CLASSPATH + path;
+    }
+
+    /**
+     * Источник файла из отслеживаемого каталога.
+     *
+     * @param root каталог
+     * @param file файл внутри каталога
+     * @return {@code file:} и путь от каталога с разделителем {@code /}
+     */
+    public static String fileSource(Path root, Path file) {
+        Path relative = root.toAbsolutePath().normalize().relativize(file.toAbsolutePath().normalize());
+        return FILE + StreamSupport.stream(relative.spliterator(), false)
+                .map(Path::toString)
+                .collect(Collectors.joining("/"));
+    }
+
+    /**
+     * Источник файла, загруженного через HTTP.
+     *
+     * @param name имя файла без пути
+     */
+    public static String uploadSource(String name) {
+        return UPLOAD + name;
+    }
+
+    /**
+     * Файл по источнику для повторного чтения: из ресурсов приложения или из отслеживаемого каталога.
+     * Файлы, загруженные через HTTP, не сохраняются, поэтому их источники не разрешаются.
+     *
+     * @param source         источник
+     * @param watchDirectory отслеживаемый каталог, от которого считаются пути {@code file:}
+     * @return файл или пустой результат, если источник нельзя прочитать заново
+     */
+    public static Optional<SourceFile> resolve(String source, Path watchDirectory) {
+        Resource resource = null;
+        if (source.startsWith(CLASSPATH)) {
+            resource = new ClassPathResource(source.substring(CLASSPATH.length()));
+        } else if (source.startsWith(FILE)) {
+            Path root = watchDirectory.toAbsolutePath().normalize();
+            Path file = root.resolve(source.substring(FILE.length())).normalize();
+            resource = file.startsWith(root) ? new FileSystemResource(file) : null;
+        }
+        return resource != null && resource.exists() ? Optional.of(new SourceFile(source, resource)) : Optional.empty();
+    }
+
+    /**
+     * Задано ли у источника происхождение. Источники без него — имена файлов, записанные
+     * до появления происхождения.
+     */
+    public static boolean hasOrigin(String source) {
+        return source.startsWith(CLASSPATH) || source.startsWith(FILE) || source.startsWith(UPLOAD);
+    }
+}
@@ -0,0 +1,217 @@
+package io.mkalugin.gpt.ingestion;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.knuddels.jtokkit.api.IntArrayList;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Потоковое разбиение текста на чанки с ограничением по токенам.
+ *
+ * <p>В отличие от {@code TextReader} + {@code TokenTextSplitter}, файл не читается в память
+ * целиком: текст декодируется из NIO-канала буфером фиксированного размера, а токенизируется
+ * только окно из {@code chunk-size * 8} символов. Память на файл постоянна и не зависит
+ * от его размера.</p>
+ *
+ * <p>Правила разбиения повторяют {@code TokenTextSplitter}: чанк — до {@code chunk-size} токенов
+ * (cl100k_base), обрезается по последнему концу предложения или строки, если он дальше
+ * {@code min-chunk-size-chars} символов; чанки короче {@code min-chunk-length-to-embed} пропускаются.
+ * Соседние чанки перекрываются на {@code overlap} токенов, начало перекрытия выравнивается
+ * по границе слова.</p>
+ */
+@Component
+public class StreamingTextSplitter {
+
+    private static final int WINDOW_CHARS_PER_TOKEN = 8;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    private final int chunkSize;
+    private final int overlap;
+    private final int minChunkSizeChars;
+    private final int minChunkLengthToEmbed;
+
+    public StreamingTextSplitter(@Value("${app.ingestion.splitter.chunk-size:800}") int chunkSize,
+                                 @Value("${app.ingestion.splitter.overlap:80}") int overlap,
+                                 @Value("${app.ingestion.splitter.min-chunk-size-chars:350}") int minChunkSizeChars,
+                                 @Value("${app.ingestion.splitter.min-chunk-length-to-embed:5}") int minChunkLengthToEmbed) {
+        if (overlap < 0 || overlap >= chunkSize) {
+            throw new IllegalArgumentException("Overlap must be in [0, chunk-size): " + overlap);
+        }
+        this.chunkSize = chunkSize;
+        this.overlap = overlap;
+        this.minChunkSizeChars = minChunkSizeChars;
+        this.minChunkLengthToEmbed = minChunkLengthToEmbed;
+    }
+
+    /**
+     * Открытие потока чанков. Канал закрывается вместе с потоком.
+     *
+     * @param channel канал с текстом в UTF-8
+     * @return поток чанков в порядке следования в тексте
+     */
+    public Chunks open(ReadableByteChannel channel) {
+        return new Chunks(channel);
+    }
+
+    int chunkSize() {
+        return chunkSize;
+    }
+
+    int minChunkSizeChars() {
+        return minChunkSizeChars;
+    }
+
+    int minChunkLengthToEmbed() {
+        return minChunkLengthToEmbed;
+    }
+
+    /**
+     * Размер окна токенизации в символах.
+     */
+    int windowChars() {
+        return chunkSize * WINDOW_CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Поток чанков одного текста.
+     */
+    public final class Chunks implements Closeable {
+
+        private final ReadableByteChannel channel;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer bytes = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final CharBuffer chars = CharBuffer.allocate(READ_BUFFER_SIZE);
+        private final StringBuilder buffer = new StringBuilder();
+        private final int windowChars = windowChars();
+        private boolean eof;
+
+        private Chunks(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Следующий чанк.
+         *
+         * @return текст чанка или null, если текст закончился
+         * @throws IOException если чтение канала завершилось ошибкой
+         */
+        public String next() throws IOException {
+            while (true) {
+                fill();
+                if (buffer.isEmpty()) {
+                    return null;
+                }
+                String window = buffer.substring(0, Math.min(buffer.length(), windowChars));
+                IntArrayList tokens = encoding.encode(window);
+
+                String chunk;
+                if (eof && window.length() == buffer.length() && tokens.size() <= chunkSize) {
+                    chunk = window;
+                    buffer.setLength(0);
+                } else {
+                    int end = chunkEnd(window, tokens);
+                    chunk = window.substring(0, end);
+                    buffer.delete(0, overlapStart(chunk));
+                }
+
+                chunk = chunk.strip();
+                if (chunk.length() > minChunkLengthToEmbed) {
+                    return chunk;
+                }
+            }
+        }
+
+        /**
+         * Конец чанка в символах: первые {@code chunk-size} токенов окна, обрезанные
+         * по последнему концу предложения, если он не слишком близко к началу.
+         */
+        private int chunkEnd(String window, IntArrayList tokens) {
+            int end = Math.max(1, decodedPrefixLength(tokens, Math.min(chunkSize, tokens.size()), window));
+            for (int i = end - 1; i >= minChunkSizeChars; i--) {
+                char c = window.charAt(i);
+                if (c == '.' || c == '?' || c == '!' || c == '\n') {
+                    return i + 1;
+                }
+            }
+            return end;
+        }
+
+        /**
+         * Начало следующего чанка: последние {@code overlap} токенов чанка, выровненные
+         * вперёд до границы слова. Всегда больше нуля, чтобы разбиение продвигалось.
+         */
+        private int overlapStart(String chunk) {
+            if (overlap == 0) {
+                return chunk.length();
+            }
+            IntArrayList tokens = encoding.encode(chunk);
+            if (tokens.size() <= overlap) {
+                return chunk.length();
+            }
+            int start = decodedPrefixLength(tokens, tokens.size() - overlap, chunk);
+            while (start < chunk.length() && !Character.isWhitespace(chunk.charAt(start))) {
+                start++;
+            }
+            return Math.max(1, start);
+        }
+
+        /**
+         * Длина префикса текста, соответствующего первым {@code count} токенам. Токен может
+         * заканчиваться посреди многобайтового символа, поэтому берётся общий префикс
+         * декодированных токенов и исходного текста.
+         */
+        private int decodedPrefixLength(IntArrayList tokens, int count, String text) {
+            IntArrayList prefix = new IntArrayList(count);
+            for (int i = 0; i < count; i++) {
+                prefix.add(tokens.get(i));
+            }
+            String decoded = encoding.decode(prefix);
+            int length = Math.min(decoded.length(), text.length());
+            int i = 0;
+            while (i < length && decoded.charAt(i) == text.charAt(i)) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Дочитывание канала, пока в буфере меньше окна символов.
+         */
+        private void fill() throws IOException {
+            while (!eof && buffer.length() < windowChars) {
+                if (channel.read(bytes) < 0) {
+                    eof = true;
+                }
+                bytes.flip();
+                decoder.decode(bytes, chars, eof);
+                if (eof) {
+                    decoder.flush(chars);
+                }
+                bytes.compact();
+                chars.flip();
+                buffer.append(chars);
+                chars.clear();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package io.mkalugin.gpt.ingestion;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Потоковое разбиение структурированного текста (Markdown, исходный код) на чанки по его разделам.
+ *
+ * <p>Формат разбирает {@link SectionParser}: он видит файл построчно и отмечает начала разделов
+ * (заголовки, объявления) и границы блоков (абзацы, блоки кода). Блоки упаковываются в чанк,
+ * пока он укладывается в {@code chunk-size} токенов; блок не разрезается, если помещается в чанк
+ * целиком, поэтому блок кода не делится посередине. Новый раздел начинает новый чанк, если текущий
+ * не короче {@code min-chunk-size-chars}; короткие разделы объединяются. Блок длиннее чанка
+ * разбивается {@link StreamingTextSplitter}.</p>
+ *
+ * <p>Чанк получает путь заголовков раздела ({@code "Concurrency > Actors"}); для чанка из нескольких
+ * разделов — их общий путь; текст до первого раздела пути не имеет и не влияет на путь чанка. Чанки выровнены по структуре, поэтому перекрытие не добавляется.
+ * В памяти находится не больше одного чанка и одного блока: блок и строка ограничены
+ * {@code chunk-size * 8} символами.</p>
+ */
+public class StructuredTextSplitter implements DocumentSplitter {
+
+    private static final String PATH_SEPARATOR = " > ";
+    private static final String BLOCK_SEPARATOR = "\n\n";
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    private final StreamingTextSplitter textSplitter;
+    private final Supplier<SectionParser> parsers;
+    private final int maxBlockChars;
+
+    /**
+     * @param textSplitter разбиение блоков длиннее чанка; задаёт и размеры чанков
+     * @param parsers      разбор формата, новый экземпляр на каждый файл
+     */
+    public StructuredTextSplitter(StreamingTextSplitter textSplitter, Supplier<SectionParser> parsers) {
+        this.textSplitter = textSplitter;
+        this.parsers = parsers;
+        this.maxBlockChars = textSplitter.windowChars();
+    }
+
+    @Override
+    public ChunkStream open(ReadableByteChannel channel) {
+        return new Sections(channel, parsers.get());
+    }
+
+    /**
+     * Разбор формата по строкам. Экземпляр хранит состояние разбора одного файла.
+     */
+    public interface SectionParser {
+
+        /**
+         * Разбор очередной строки (без перевода строки).
+         */
+        void accept(String line, Blocks out);
+
+        /**
+         * Конец файла: отложенные строки передаются в {@code out}.
+         */
+        default void finish(Blocks out) {
+        }
+    }
+
+    /**
+     * Приёмник разобранных строк.
+     */
+    public interface Blocks {
+
+        /**
+         * Строка текущего блока.
+         */
+        void line(String line);
+
+        /**
+         * Конец текущего блока.
+         */
+        void boundary();
+
+        /**
+         * Начало раздела уровня {@code level} (с 1) с заголовком {@code title}; завершает текущий блок.
+         */
+        void section(int level, String title);
+    }
+
+    private final class Sections implements ChunkStream, Blocks {
+
+        private final Reader reader;
+        private final SectionParser parser;
+        private final char[] readBuffer = new char[READ_BUFFER_SIZE];
+        private int readPosition;
+        private int readLimit;
+        private boolean finished;
+
+        private final List<String> path = new ArrayList<>();
+        private final StringBuilder block = new StringBuilder();
+        private final StringBuilder chunk = new StringBuilder();
+        private List<String> chunkPath;
+        private int chunkTokens;
+        private final Deque<Chunk> ready = new ArrayDeque<>();
+
+        private Sections(ReadableByteChannel channel, SectionParser parser) {
+            this.reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE), READ_BUFFER_SIZE);
+            this.parser = parser;
+        }
+
+        @Override
+        public Chunk next() throws IOException {
+            while (ready.isEmpty() && !finished) {
+                String line = readLine();
+                if (line != null) {
+                    parser.accept(line, this);
+                } else {
+                    parser.finish(this);
+                    boundary();
+                    flushChunk();
+                    finished = true;
+                }
+            }
+            return ready.poll();
+        }
+
+        @Override
+        public void line(String line) {
+            if (!block.isEmpty()) {
+                block.append('\n');
+            }
+            block.append(line);
+            if (block.length() >= maxBlockChars) {
+                boundary();
+            }
+        }
+
+        @Override
+        public void boundary() {
+            if (block.toString().isBlank()) {
+                block.setLength(0);
+                return;
+            }
+            String text = block.toString();
+            block.setLength(0);
+            add(text);
+        }
+
+        @Override
+        public void section(int level, String title) {
+            boundary();
+            while (path.size() >= level) {
+                path.removeLast();
+            }
+            path.add(title);
+            if (chunk.length() >= textSplitter.minChunkSizeChars()) {
+                flushChunk();
+            }
+        }
+
+        private void add(String text) {
+            int tokens = encoding.countTokens(text);
+            if (!chunk.isEmpty() && chunkTokens + tokens + 1 > textSplitter.chunkSize()) {
+                flushChunk();
+            }
+            if (tokens > textSplitter.chunkSize()) {
+                splitOversized(text);
+                return;
+            }
+            if (!chunk.isEmpty()) {
+                chunk.append(BLOCK_SEPARATOR);
+                chunkTokens++;
+            }
+            if (chunkPath == null) {
+                chunkPath = path.isEmpty() ? null : List.copyOf(path);
+            } else {
+                chunkPath = commonPrefix(chunkPath, path);
+            }
+            chunk.append(text);
+            chunkTokens += tokens;
+        }
+
+        private void flushChunk() {
+            String text = chunk.toString().strip();
+            if (text.length() > textSplitter.minChunkLengthToEmbed()) {
+                ready.add(new Chunk(text, headingPath(chunkPath)));
+            }
+            chunk.setLength(0);
+            chunkTokens = 0;
+            chunkPath = null;
+        }
+
+        private void splitOversized(String text) {
+            ByteArrayInputStream bytes = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+            try (StreamingTextSplitter.Chunks pieces = textSplitter.open(Channels.newChannel(bytes))) {
+                String piece;
+                while ((piece = pieces.next()) != null) {
+                    ready.add(new Chunk(piece, headingPath(path)));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to split in-memory block", e);
+            }
+        }
+
+        /**
+         * Следующая строка без {@code \r\n}. Строка длиннее блока возвращается частями.
+         *
+         * @return строка или null в конце текста
+         */
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            while (true) {
+                if (readPosition == readLimit) {
+                    int read = reader.read(readBuffer);
+                    if (read < 0) {
+                        return line.isEmpty() ? null : stripCarriageReturn(line);
+                    }
+                    readPosition = 0;
+                    readLimit = read;
+                }
+                while (readPosition < readLimit) {
+                    char c = readBuffer[readPosition++];
+                    if (c == '\n') {
+                        return stripCarriageReturn(line);
+                    }
+                    line.append(c);
+                    if (line.length() >= maxBlockChars) {
+                        return line.toString();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static String stripCarriageReturn(StringBuilder line) {
+        int length = line.length();
+        return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+    }
+
+    private static List<String> commonPrefix(List<String> a, List<String> b) {
+        int i = 0;
+        while (i < a.size() && i < b.size() && a.get(i).equals(b.get(i))) {
+            i++;
+        }
+        return i == a.size() ? a : List.copyOf(a.subList(0, i));
+    }
+
+    private static String headingPath(List<String> path) {
+        return path == null || path.isEmpty() ? null : String.join(PATH_SEPARATOR, path);
+    }
+}
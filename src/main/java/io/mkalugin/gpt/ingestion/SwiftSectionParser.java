@@ -0,0 +1,123 @@
+package io.mkalugin.gpt.ingestion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Разбор исходного кода Swift по объявлениям.
+ *
+ * <p>Объявление верхнего уровня (тип, расширение, протокол, функция) начинает раздел первого
+ * уровня, метод, инициализатор или вложенный тип внутри него — раздел второго уровня; заголовок —
+ * сигнатура без модификаторов ({@code "struct ContentView: View"}). Комментарии и атрибуты перед
+ * объявлением остаются с ним в одном блоке. Вложенность считается по фигурным скобкам вне строк
+ * и комментариев; пустые строки и {@code // MARK:} на первых двух уровнях разделяют блоки.</p>
+ */
+class SwiftSectionParser implements StructuredTextSplitter.SectionParser {
+
+    private static final Pattern DECLARATION = Pattern.compile(
+            "^(?:@[\\w.]+(?:\\([^)]*\\))?\\s+)*"
+                    + "(?:(?:public|private|fileprivate|internal|package|open|final|static|class|override|mutating"
+                    + "|nonmutating|nonisolated|convenience|required|indirect|dynamic|distributed)(?:\\(set\\))?\\s+)*"
+                    + "((class|struct|enum|protocol|extension|actor|func|init|deinit|subscript)\\b.*)$");
+    private static final Pattern LEADING = Pattern.compile("^(?://|/\\*|@[\\w.]+(?:\\([^)]*\\))?$)");
+    private static final int MAX_TITLE_LENGTH = 120;
+    private static final int MAX_LEADING_LINES = 200;
+
+    private final List<String> leading = new ArrayList<>();
+    private int depth;
+    private boolean inBlockComment;
+    private boolean inMultilineString;
+
+    @Override
+    public void accept(String line, StructuredTextSplitter.Blocks out) {
+        String trimmed = line.strip();
+        if (inBlockComment && !leading.isEmpty() && leading.size() < MAX_LEADING_LINES) {
+            // Продолжение документирующего комментария /** ... */
+            leading.add(line);
+            scan(line);
+            return;
+        }
+        boolean structural = depth <= 1 && !inBlockComment && !inMultilineString;
+
+        if (structural && trimmed.startsWith("// MARK:")) {
+            release(out);
+            out.boundary();
+        } else if (structural && LEADING.matcher(trimmed).find() && leading.size() < MAX_LEADING_LINES) {
+            // Документирующий комментарий или атрибут: относится к следующему объявлению
+            leading.add(line);
+            scan(line);
+            return;
+        } else if (structural && trimmed.isEmpty()) {
+            release(out);
+            out.boundary();
+            return;
+        } else if (structural) {
+            Matcher declaration = DECLARATION.matcher(trimmed);
+            if (declaration.matches() && (depth == 0 || !"extension".equals(declaration.group(2)))) {
+                out.section(depth + 1, title(declaration.group(1)));
+            }
+        }
+        release(out);
+        out.line(line);
+        scan(line);
+    }
+
+    @Override
+    public void finish(StructuredTextSplitter.Blocks out) {
+        release(out);
+    }
+
+    private void release(StructuredTextSplitter.Blocks out) {
+        leading.forEach(out::line);
+        leading.clear();
+    }
+
+    /**
+     * Подсчёт вложенности скобок с пропуском строковых литералов и комментариев.
+     */
+    private void scan(String line) {
+        boolean inString = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inBlockComment) {
+                if (line.startsWith("*/", i)) {
+                    inBlockComment = false;
+                    i++;
+                }
+            } else if (inMultilineString) {
+                if (line.startsWith("\"\"\"", i)) {
+                    inMultilineString = false;
+                    i += 2;
+                }
+            } else if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (line.startsWith("//", i)) {
+                return;
+            } else if (line.startsWith("/*", i)) {
+                inBlockComment = true;
+                i++;
+            } else if (line.startsWith("\"\"\"", i)) {
+                inMultilineString = true;
+                i += 2;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth = Math.max(0, depth - 1);
+            }
+        }
+    }
+
+    private static String title(String signature) {
+        int body = signature.indexOf('{');
+        String title = (body >= 0 ? signature.substring(0, body) : signature).strip().replaceAll("\\s+", " ");
+        return title.length() > MAX_TITLE_LENGTH ? title.substring(0, MAX_TITLE_LENGTH) : title;
+    }
+}
@@ -0,0 +1,246 @@
+package io.mkalugin.gpt.retrieval;
+
+import io.mkalugin.gpt.utils.TextShingles;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process инвертированный индекс чанков с ранжированием BM25.
+ *
+ * <p>Лексический поиск не требует embedding и обращения к ChromaDB и хорошо находит
+ * точные идентификаторы (имена API, ключевые слова). Списки вхождений хранятся
+ * в растущих массивах {@code int} (номер документа и частота термина),
+ * удалённые документы помечаются в {@link BitSet} и пропускаются при поиске.
+ * Каждый список хранит число живых вхождений, поэтому частота термина для IDF не пересчитывается
+ * при запросе. Текст удалённого документа освобождается сразу, а когда удалённых становится больше
+ * четверти индекса, индекс перестраивается из живых документов, и списки вхождений сжимаются.</p>
+ *
+ * <p>Индекс заполняется при загрузке документов и живёт в памяти процесса.
+ * Чтение конкурентное, запись — под эксклюзивной блокировкой.</p>
+ */
+@Component
+public class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<Postings> postings = new ArrayList<>();
+
+    private final Map<String, Integer> docNumbers = new HashMap<>();
+    private final List<Document> documents = new ArrayList<>();
+    private int[] docLengths = new int[16];
+    private final BitSet deleted = new BitSet();
+
+    private long totalLength;
+    private int liveDocuments;
+    private int deletedDocuments;
+
+    /**
+     * Добавление документов в индекс. Документ с уже известным id заменяется.
+     *
+     * @param newDocuments чанки для индексации
+     */
+    public void add(Collection<Document> newDocuments) {
+        lock.writeLock().lock();
+        try {
+            for (Document document : newDocuments) {
+                removeInternal(document.getId());
+                addInternal(document);
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаление документов из индекса.
+     *
+     * @param ids идентификаторы чанков
+     */
+    public void remove(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::removeInternal);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Поиск чанков по запросу.
+     *
+     * @param query текст запроса
+     * @param topK  максимальное количество результатов
+     * @return документы с BM25-оценкой в {@link Document#getScore()}, по убыванию оценки
+     */
+    public List<Document> search(String query, int topK) {
+        String[] terms = TextShingles.words(query);
+
+        lock.readLock().lock();
+        try {
+            if (liveDocuments == 0 || terms.length == 0) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / liveDocuments;
+            double[] scores = new double[documents.size()];
+            boolean[] matched = new boolean[documents.size()];
+
+            for (String term : Arrays.stream(terms).distinct().toList()) {
+                Integer termId = termIds.get(term);
+                if (termId == null) {
+                    continue;
+                }
+                Postings list = postings.get(termId);
+                int documentFrequency = list.live;
+                if (documentFrequency == 0) {
+                    continue;
+                }
+                double idf = Math.log(1 + (liveDocuments - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.docs[i];
+                    if (deleted.get(doc)) {
+                        continue;
+                    }
+                    int tf = list.freqs[i];
+                    double norm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+                    scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+                    matched[doc] = true;
+                }
+            }
+
+            PriorityQueue<Integer> top = new PriorityQueue<>(Math.max(1, topK),
+                    (a, b) -> Double.compare(scores[a], scores[b]));
+            for (int doc = 0; doc < scores.length; doc++) {
+                if (!matched[doc]) {
+                    continue;
+                }
+                top.offer(doc);
+                if (top.size() > topK) {
+                    top.poll();
+                }
+            }
+
+            List<Document> result = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                int doc = top.poll();
+                result.add(documents.get(doc).mutate().score(scores[doc]).build());
+            }
+            return result.reversed();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocuments;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addInternal(Document document) {
+        int doc = documents.size();
+        documents.add(document);
+        docNumbers.put(document.getId(), doc);
+
+        String[] words = TextShingles.words(document.getText());
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String word : words) {
+            frequencies.merge(word, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            int termId = termIds.computeIfAbsent(entry.getKey(), term -> {
+                postings.add(new Postings());
+                return postings.size() - 1;
+            });
+            postings.get(termId).add(doc, entry.getValue());
+        }
+
+        if (doc >= docLengths.length) {
+            docLengths = Arrays.copyOf(docLengths, docLengths.length * 2);
+        }
+        docLengths[doc] = words.length;
+        totalLength += words.length;
+        liveDocuments++;
+    }
+
+    private void removeInternal(String id) {
+        Integer doc = docNumbers.remove(id);
+        if (doc == null || deleted.get(doc)) {
+            return;
+        }
+        Document document = documents.set(doc, null);
+        for (String word : Arrays.stream(TextShingles.words(document.getText())).distinct().toList()) {
+            postings.get(termIds.get(word)).live--;
+        }
+        deleted.set(doc);
+        totalLength -= docLengths[doc];
+        liveDocuments--;
+        deletedDocuments++;
+    }
+
+    /**
+     * Перестройка индекса из живых документов, когда удалённые занимают больше четверти номеров.
+     */
+    private void compactIfNeeded() {
+        if (deletedDocuments * 4L <= documents.size()) {
+            return;
+        }
+        List<Document> live = new ArrayList<>(liveDocuments);
+        for (int doc = 0; doc < documents.size(); doc++) {
+            if (!deleted.get(doc)) {
+                live.add(documents.get(doc));
+            }
+        }
+        termIds.clear();
+        postings.clear();
+        docNumbers.clear();
+        documents.clear();
+        deleted.clear();
+        docLengths = new int[Math.max(16, live.size())];
+        totalLength = 0;
+        liveDocuments = 0;
+        deletedDocuments = 0;
+        live.forEach(this::addInternal);
+    }
+
+    /**
+     * Список вхождений термина: параллельные массивы номеров документов и частот
+     * и число вхождений в неудалённые документы.
+     */
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int[] freqs = new int[4];
+        private int size;
+        private int live;
+
+        private void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+            live++;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package io.mkalugin.gpt.retrieval;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.mkalugin.gpt.utils.Constants;
+import io.mkalugin.gpt.utils.TextShingles;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Сборка контекста RAG из найденных чанков с ограничением по токенам.
+ *
+ * <p>Алгоритм:
+ * <ol>
+ *     <li>Отбрасывает чанки, почти целиком содержащиеся в более релевантных
+ *     (перекрытие шинглов не ниже {@code duplicate-threshold})</li>
+ *     <li>Выбирает чанки методом maximal marginal relevance: релевантность
+ *     (оценка сходства из VectorStore) минус сходство с уже выбранными</li>
+ *     <li>Останавливается на {@link Constants#RAG_TOP_K} чанках или при исчерпании бюджета токенов</li>
+ * </ol>
+ * Экономия считается относительно простого объединения первых top-K кандидатов
+ * и публикуется как метрика {@code rag.context.tokens.saved}.</p>
+ */
+@Slf4j
+@Component
+public class ContextBuilder {
+
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+    private final int separatorTokens = tokenCountEstimator.estimate(Constants.DOCUMENT_SEPARATOR);
+
+    private final int maxTokens;
+    private final double mmrLambda;
+    private final double duplicateThreshold;
+
+    private final DistributionSummary contextTokens;
+    private final DistributionSummary tokensSaved;
+    private final Counter duplicatesRemoved;
+
+    public ContextBuilder(@Value("${app.rag.context.max-tokens:3000}") int maxTokens,
+                          @Value("${app.rag.context.mmr-lambda:0.7}") double mmrLambda,
+                          @Value("${app.rag.context.duplicate-threshold:0.8}") double duplicateThreshold,
+                          MeterRegistry meterRegistry) {
+        this.maxTokens = maxTokens;
+        this.mmrLambda = mmrLambda;
+        this.duplicateThreshold = duplicateThreshold;
+
+        this.contextTokens = DistributionSummary.builder("rag.context.tokens")
+                .description("Количество токенов в контексте RAG")
+                .register(meterRegistry);
+        this.tokensSaved = DistributionSummary.builder("rag.context.tokens.saved")
+                .description("Токены, сэкономленные дедупликацией и бюджетом контекста")
+                .register(meterRegistry);
+        this.duplicatesRemoved = Counter.builder("rag.context.duplicates.removed")
+                .description("Чанки, отброшенные как дубликаты или перекрытия")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Сборка контекста из кандидатов, упорядоченных по релевантности.
+     *
+     * @param candidates результаты similarity search
+     * @return контекст с выбранными чанками и статистикой по токенам
+     */
+    public RagContext build(List<Document> candidates) {
+        int size = candidates.size();
+        int[][] shingles = new int[size][];
+        int[] tokens = new int[size];
+        double[] relevance = relevance(candidates);
+        boolean[] excluded = new boolean[size];
+
+        int baseline = 0;
+        for (int i = 0; i < size; i++) {
+            String text = candidates.get(i).getText();
+            shingles[i] = TextShingles.of(text);
+            tokens[i] = tokenCountEstimator.estimate(text);
+            if (i < Constants.RAG_TOP_K) {
+                baseline += tokens[i] + (i > 0 ? separatorTokens : 0);
+            }
+        }
+
+        excludeOverlapping(shingles, excluded);
+
+        List<Integer> selected = new ArrayList<>();
+        int used = 0;
+        while (selected.size() < Constants.RAG_TOP_K) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < size; i++) {
+                int cost = tokens[i] + (selected.isEmpty() ? 0 : separatorTokens);
+                if (excluded[i] || used + cost > maxTokens) {
+                    continue;
+                }
+                double redundancy = 0;
+                for (int j : selected) {
+                    redundancy = Math.max(redundancy, TextShingles.jaccard(shingles[i], shingles[j]));
+                }
+                double score = mmrLambda * relevance[i] - (1 - mmrLambda) * redundancy;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            used += tokens[best] + (selected.isEmpty() ? 0 : separatorTokens);
+            excluded[best] = true;
+            selected.add(best);
+        }
+
+        List<Document> documents = selected.stream().map(candidates::get).toList();
+        String text = documents.stream()
+                .map(Document::getText)
+                .collect(Collectors.joining(Constants.DOCUMENT_SEPARATOR));
+        int saved = Math.max(0, baseline - used);
+
+        contextTokens.record(used);
+        tokensSaved.record(saved);
+        log.debug("RAG context: {} of {} candidates, {} tokens, {} tokens saved",
+                documents.size(), size, used, saved);
+
+        return new RagContext(text, documents, used, saved);
+    }
+
+    private void excludeOverlapping(int[][] shingles, boolean[] excluded) {
+        for (int i = 0; i < shingles.length; i++) {
+            for (int j = 0; j < i && !excluded[i]; j++) {
+                if (!excluded[j] && TextShingles.containment(shingles[i], shingles[j]) >= duplicateThreshold) {
+                    excluded[i] = true;
+                    duplicatesRemoved.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Релевантность кандидатов в диапазоне [0, 1].
+     * Если хранилище не вернуло оценку, используется позиция в выдаче.
+     */
+    private static double[] relevance(List<Document> candidates) {
+        int size = candidates.size();
+        double[] relevance = new double[size];
+        double max = 0;
+        for (int i = 0; i < size; i++) {
+            Double score = candidates.get(i).getScore();
+            relevance[i] = score != null ? score : 1.0 - (double) i / size;
+            max = Math.max(max, relevance[i]);
+        }
+        if (max > 0) {
+            for (int i = 0; i < size; i++) {
+                relevance[i] /= max;
+            }
+        }
+        return relevance;
+    }
+}
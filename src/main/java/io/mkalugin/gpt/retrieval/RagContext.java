@@ -0,0 +1,21 @@
+package io.mkalugin.gpt.retrieval;
+
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+/**
+ * Собранный контекст для RAG-промпта.
+ *
+ * @param text        текст контекста для подстановки в системный промпт
+ * @param documents   чанки, вошедшие в контекст, в порядке выбора
+ * @param tokens      количество токенов контекста
+ * @param tokensSaved сколько токенов сэкономлено по сравнению с простым объединением top-K
+ */
+public record RagContext(
+        String text,
+        List<Document> documents,
+        int tokens,
+        int tokensSaved
+) {
+}
@@ -0,0 +1,53 @@
+package io.mkalugin.gpt.retrieval;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Объединение нескольких ранжированных списков методом Reciprocal Rank Fusion.
+ *
+ * <p>Оценка документа — сумма {@code 1 / (k + rank)} по всем спискам, в которых он встретился
+ * (rank начинается с 1). RRF не зависит от шкал оценок, поэтому подходит для объединения
+ * косинусного сходства и BM25.</p>
+ */
+@UtilityClass
+public class ReciprocalRankFusion {
+
+    /**
+     * Значение константы {@code k} из оригинальной статьи.
+     */
+    public static final int DEFAULT_K = 60;
+
+    /**
+     * Объединение ранжированных списков.
+     *
+     * @param k        сглаживающая константа
+     * @param topK     максимальное количество результатов
+     * @param rankings списки документов, каждый по убыванию релевантности
+     * @return документы с RRF-оценкой в {@link Document#getScore()}, по убыванию оценки
+     */
+    @SafeVarargs
+    public static List<Document> fuse(int k, int topK, List<Document>... rankings) {
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, Double> scores = new LinkedHashMap<>();
+
+        for (List<Document> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                documents.putIfAbsent(document.getId(), document);
+                scores.merge(document.getId(), 1.0 / (k + rank + 1), Double::sum);
+            }
+        }
+
+        List<Document> fused = new ArrayList<>(documents.size());
+        documents.forEach((id, document) -> fused.add(document.mutate().score(scores.get(id)).build()));
+        fused.sort(Comparator.comparingDouble(Document::getScore).reversed());
+        return fused.size() > topK ? fused.subList(0, topK) : fused;
+    }
+}
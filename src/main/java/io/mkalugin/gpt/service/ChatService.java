@@ -1,18 +1,24 @@
 package io.mkalugin.gpt.service;
 
 import io.mkalugin.gpt.dto.ChatResponse;
+import io.mkalugin.gpt.utils.Constants;
 import io.mkalugin.gpt.utils.SystemPrompts;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * Сервис для прямого взаимодействия с GPT моделью.
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ChatService {
@@ -35,16 +41,59 @@ public class ChatService {
 
         String convId = conversationId != null ? conversationId : UUID.randomUUID().toString();
 
-        String response = chatClientBuilder
+        String response = prompt(userMessage, convId)
+                .call()
+                .content();
+
+        return new ChatResponse(response, convId);
+    }
+
+    /**
+     * Потоковая отправка сообщения в GPT модель в виде Server-Sent Events.
+     *
+     * <p>Первым событием {@code conversation} отправляется идентификатор разговора,
+     * затем фрагменты ответа ({@code token}) и событие {@code done}.
+     * {@link MessageChatMemoryAdvisor} сохраняет ответ ассистента в память только
+     * после завершения потока. Отключение клиента отменяет подписку и вызов OpenAI,
+     * при этом неполный ответ в память не попадает.</p>
+     *
+     * @param userMessage текст сообщения от пользователя
+     * @param conversationId идентификатор разговора (если null - создаётся новый)
+     * @return поток SSE событий
+     */
+    public Flux<ServerSentEvent<Object>> chatStream(String userMessage, String conversationId) {
+        // Валидация до начала потока, чтобы вернуть 400 обычным ответом
+        validationService.validate(userMessage);
+
+        String convId = conversationId != null ? conversationId : UUID.randomUUID().toString();
+
+        Flux<ServerSentEvent<Object>> tokens = prompt(userMessage, convId)
+                .stream()
+                .content()
+                .map(token -> event(Constants.SSE_EVENT_TOKEN, token))
+                .doOnCancel(() -> log.debug("Chat stream cancelled by client, conversation {}", convId));
+
+        return Flux.concat(
+                        Flux.just(event(Constants.SSE_EVENT_CONVERSATION, Map.of("conversationId", convId))),
+                        tokens,
+                        Flux.just(event(Constants.SSE_EVENT_DONE, Map.of("conversationId", convId))))
+                .onErrorResume(e -> {
+                    log.error("Chat stream failed for conversation {}: {}", convId, e.getMessage());
+                    return Flux.just(event(Constants.SSE_EVENT_ERROR, Map.of("message", String.valueOf(e.getMessage()))));
+                });
+    }
+
+    private ChatClient.ChatClientRequestSpec prompt(String userMessage, String convId) {
+        return chatClientBuilder
                 .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build())
                 .defaultSystem(SystemPrompts.CHAT_SYSTEM_PROMPT)
                 .build()
                 .prompt()
                 .user(userMessage)
-                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, convId))
-                .call()
-                .content();
+                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, convId));
+    }
 
-        return new ChatResponse(response, convId);
+    private static ServerSentEvent<Object> event(String name, Object data) {
+        return ServerSentEvent.builder(data).event(name).build();
     }
 }
@@ -0,0 +1,253 @@
+package io.mkalugin.gpt.service;
+
+import io.mkalugin.gpt.ingestion.SourceFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Непрерывная переиндексация документов из каталога файловой системы.
+ *
+ * <p>Следит за каталогом {@code app.ingestion.watch.directory} (рекурсивно) через {@link WatchService}
+ * и собирает изменения файлов, подходящих под {@code app.ingestion.watch.glob}. Изменения
+ * применяются пачкой после паузы {@code debounce} без новых событий (но не позже {@code max-delay}
+ * от первого события), поэтому серия сохранений одного файла даёт одну переиндексацию.</p>
+ *
+ * <p>Пачка ставится в общую очередь задач загрузки ({@link IngestionJobService}) и переиндексирует
+ * только созданные, изменённые и удалённые файлы ({@link DocumentService#reindexFiles}).
+ * Если очередь заполнена, изменения остаются в ожидании до следующей попытки.
+ * При переполнении очереди событий ({@code OVERFLOW}) каталог пересканируется целиком:
+ * неизменные чанки при этом пропускаются без embeddings. Источник чанков файла — {@code file:}
+ * и путь от каталога ({@link SourceFile#fileSource}), поэтому одноимённые файлы в разных
+ * подкаталогах не заменяют чанки друг друга.</p>
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(value = "app.ingestion.watch.enabled", havingValue = "true")
+public class DirectoryWatchService {
+
+    private final IngestionJobService ingestionJobService;
+    private final DocumentService documentService;
+    private final Path directory;
+    private final PathMatcher matcher;
+    private final long debounceNanos;
+    private final long maxDelayNanos;
+    private final boolean initialLoad;
+
+    private final Set<Path> knownFiles = new HashSet<>();
+    private final Set<Path> pending = new HashSet<>();
+    private long firstPendingAt;
+    private long lastEventAt;
+    private boolean rescan;
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    public DirectoryWatchService(
+            IngestionJobService ingestionJobService,
+            DocumentService documentService,
+            @Value("${app.ingestion.watch.directory}") Path directory,
+            @Value("${app.ingestion.watch.glob:*.txt}") String glob,
+            @Value("${app.ingestion.watch.debounce:2s}") Duration debounce,
+            @Value("${app.ingestion.watch.max-delay:30s}") Duration maxDelay,
+            @Value("${app.ingestion.watch.initial-load:true}") boolean initialLoad) {
+        this.ingestionJobService = ingestionJobService;
+        this.documentService = documentService;
+        this.directory = directory.toAbsolutePath().normalize();
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.debounceNanos = debounce.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.initialLoad = initialLoad;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        watchService = directory.getFileSystem().newWatchService();
+        registerTree(directory);
+        if (initialLoad) {
+            rescan = true;
+        } else {
+            knownFiles.addAll(scan());
+        }
+        watcher = Thread.ofVirtual().name("directory-watcher").start(this::watch);
+        log.info("Watching {} for {} changes", directory, matcher);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        watchService.close();
+        watcher.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Цикл наблюдения. Ошибка обработки событий или переиндексации не останавливает наблюдение:
+     * изменения остаются в ожидании и применяются повторно после паузы {@code debounce}.
+     */
+    private void watch() {
+        long pollMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(debounceNanos));
+        try {
+            while (true) {
+                WatchKey key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                try {
+                    if (key != null) {
+                        collect(key);
+                    }
+                    if (isDue(System.nanoTime())) {
+                        flush();
+                    }
+                } catch (ClosedWatchServiceException e) {
+                    throw e;
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to process changes in {}, retrying later: {}", directory, e.getMessage(), e);
+                    firstPendingAt = lastEventAt = System.nanoTime();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            log.info("Stopped watching {}", directory);
+        }
+    }
+
+    private void collect(WatchKey key) {
+        try {
+            collectEvents(key);
+        } finally {
+            key.reset();
+        }
+    }
+
+    private void collectEvents(WatchKey key) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                rescan = true;
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // Файлы, скопированные вместе с каталогом, не дают собственных событий
+                try {
+                    registerTree(path);
+                } catch (IOException e) {
+                    log.warn("Failed to watch {}: {}", path, e.getMessage());
+                }
+                rescan = true;
+            } else if (matcher.matches(path.getFileName())) {
+                pending.add(path);
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && containsKnownFiles(path)) {
+                // Каталог, перемещённый за пределы наблюдения, даёт одно событие без событий своих файлов
+                rescan = true;
+            } else {
+                continue;
+            }
+            long now = System.nanoTime();
+            if (firstPendingAt == 0) {
+                firstPendingAt = now;
+            }
+            lastEventAt = now;
+        }
+    }
+
+    /**
+     * Изменения применяются после паузы без событий или по истечении максимальной задержки.
+     */
+    private boolean isDue(long now) {
+        if (pending.isEmpty() && !rescan) {
+            return false;
+        }
+        return now - lastEventAt >= debounceNanos || now - firstPendingAt >= maxDelayNanos;
+    }
+
+    private void flush() throws IOException {
+        Set<Path> changedPaths = new HashSet<>(pending);
+        Set<Path> removedPaths = new HashSet<>();
+        if (rescan) {
+            Set<Path> current = scan();
+            removedPaths.addAll(knownFiles);
+            removedPaths.removeAll(current);
+            changedPaths.addAll(current);
+        }
+
+        List<Path> existing = new ArrayList<>();
+        for (Path path : changedPaths) {
+            if (Files.isRegularFile(path)) {
+                existing.add(path);
+            } else {
+                removedPaths.add(path);
+            }
+        }
+        List<SourceFile> files = existing.stream()
+                .map(path -> new SourceFile(SourceFile.fileSource(directory, path), new FileSystemResource(path)))
+                .toList();
+        Set<String> removedSources = new HashSet<>();
+        removedPaths.forEach(path -> removedSources.add(SourceFile.fileSource(directory, path)));
+
+        try {
+            ingestionJobService.submit("watch:" + directory,
+                    progress -> documentService.reindexFiles(files, removedSources, progress));
+        } catch (RejectedExecutionException e) {
+            log.warn("Ingestion queue is full, postponing {} file changes", changedPaths.size());
+            firstPendingAt = lastEventAt = System.nanoTime();
+            return;
+        }
+        log.info("Reindexing {} changed and {} removed files from {}", files.size(), removedSources.size(), directory);
+
+        knownFiles.addAll(existing);
+        knownFiles.removeAll(removedPaths);
+        pending.clear();
+        rescan = false;
+        firstPendingAt = 0;
+    }
+
+    private boolean containsKnownFiles(Path dir) {
+        return knownFiles.stream().anyMatch(file -> file.startsWith(dir));
+    }
+
+    /**
+     * Файлы каталога, подходящие под glob. Неполный обход считается ошибкой, чтобы
+     * непрочитанные файлы не сочли удалёнными.
+     */
+    private Set<Path> scan() throws IOException {
+        Set<Path> files = new HashSet<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(path.getFileName()))
+                    .forEach(files::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return files;
+    }
+
+    private void registerTree(Path root) throws IOException {
+        try (Stream<Path> dirs = Files.walk(root)) {
+            for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+}
@@ -1,24 +1,49 @@
 package io.mkalugin.gpt.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.mkalugin.gpt.cache.AnswerSourceIndex;
 import io.mkalugin.gpt.client.ChromaDbClient;
+import io.mkalugin.gpt.dto.CollectionInfoResponse;
 import io.mkalugin.gpt.dto.DocumentInfo;
 import io.mkalugin.gpt.dto.DocumentListResponse;
 import io.mkalugin.gpt.dto.chroma.ChromaCollection;
 import io.mkalugin.gpt.dto.chroma.ChromaGetResponse;
+import io.mkalugin.gpt.enums.DocumentProjection;
+import io.mkalugin.gpt.exception.NotFoundException;
+import io.mkalugin.gpt.ingestion.ChunkIds;
+import io.mkalugin.gpt.ingestion.ChunkManifest;
+import io.mkalugin.gpt.ingestion.IngestionPipeline;
+import io.mkalugin.gpt.ingestion.IngestionProgress;
+import io.mkalugin.gpt.ingestion.IngestionResult;
+import io.mkalugin.gpt.ingestion.NearDuplicateIndex;
+import io.mkalugin.gpt.ingestion.SourceFile;
+import io.mkalugin.gpt.utils.DocumentCursor;
+import io.mkalugin.gpt.vectorstore.ChromaReplicaVectorStore;
+import io.mkalugin.gpt.vectorstore.HnswVectorStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.reader.TextReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * Сервис для загрузки документов в векторное хранилище.
@@ -28,93 +53,347 @@ import java.util.List;
 @RequiredArgsConstructor
 public class DocumentService {
 
-    private static final int CONTENT_PREVIEW_LENGTH = 500;
+    private static final int MANIFEST_PAGE_SIZE = 1000;
+
+    /**
+     * Метаданные оставшегося чанка: отброшенные почти-дубликаты ({@code source#chunk_index}) и их количество.
+     */
+    public static final String DUPLICATES = "duplicates";
+    public static final String DUPLICATE_COUNT = "duplicate_count";
 
-    private final VectorStore vectorStore;
     private final ChromaDbClient chromaDbClient;
+    private final IngestionPipeline ingestionPipeline;
+    private final AnswerSourceIndex answerSourceIndex;
+    private final NearDuplicateIndex duplicateIndex;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<HnswVectorStore> hnswVectorStore;
+    private final ObjectProvider<ChromaReplicaVectorStore> chromaReplica;
+
+    @Value("${app.rag.documents.page-size:200}")
+    private int documentsPageSize;
 
     /**
      * Загрузка документов из ресурсов по указанному паттерну.
+     * Файлы проходят конвейер {@link IngestionPipeline}: чанки добавляются в векторное
+     * хранилище и в лексический индекс BM25 пачками.
+     *
+     * <p>Источник чанков файла — {@code classpath:} и путь от корня classpath
+     * ({@link SourceFile#classpathSource}). Загрузка инкрементальная: чанки уже загруженных
+     * источников сравниваются с манифестом из метаданных ChromaDB, неизменные пропускаются,
+     * изменённые перезаписываются, а чанки удалённых файлов из ресурсов, подходящих под паттерн,
+     * удаляются. Файлы из отслеживаемого каталога и загрузок через HTTP с теми же именами
+     * в область загрузки не входят.
+     * Почти-дубликаты уже загруженных чанков не записываются: они перечисляются
+     * в метаданных {@value #DUPLICATES} оставшегося чанка.</p>
+     *
+     * <p>После загрузки количество документов в кэше коллекции {@link ChromaDbClient}
+     * меняется на число записанных минус удалённые чанки, а сама информация о коллекции обновляется.
+     * Локальная копия коллекции ({@link ChromaReplicaVectorStore}), если включена, перечитывает
+     * записанные и изменённые чанки.</p>
+     *
+     * После загрузки сбрасывает кэш результатов поиска {@code ragRetrievals}.
      *
      * @param pattern glob-паттерн для поиска файлов
-     * @return количество загруженных чанков
-     * @throws IOException если произошла ошибка при чтении файлов
+     * @return итог загрузки: добавленные, обновлённые, пропущенные и удалённые чанки
+     * @throws IOException если произошла ошибка при поиске файлов
      */
-    public int loadDocumentsFromResources(String pattern) throws IOException {
-        Resource[] resources = new PathMatchingResourcePatternResolver()
-                .getResources("classpath:" + pattern);
+    @CacheEvict(value = "ragRetrievals", allEntries = true)
+    public IngestionResult loadDocumentsFromResources(String pattern) throws IOException {
+        return loadDocumentsFromResources(pattern, new IngestionProgress());
+    }
 
-        List<Document> allDocuments = readAndSplitDocuments(resources);
+    /**
+     * Загрузка документов из ресурсов по указанному паттерну с отслеживанием прогресса.
+     *
+     * @param pattern  glob-паттерн для поиска файлов
+     * @param progress прогресс загрузки, через него же загрузка отменяется
+     * @return итог загрузки (частичный, если загрузка отменена)
+     * @throws IOException если произошла ошибка при поиске файлов
+     * @see #loadDocumentsFromResources(String)
+     */
+    @CacheEvict(value = "ragRetrievals", allEntries = true)
+    public IngestionResult loadDocumentsFromResources(String pattern, IngestionProgress progress) throws IOException {
+        IngestionResult result = ingestionPipeline.ingest(classpathFiles(pattern), loadManifest(pattern), progress);
+        recordDuplicates();
+        recordCollectionChange(result);
+        log.info("Loaded {} document chunks into vector store, dropped {} near-duplicates",
+                result.chunks(), result.duplicates());
+        return result;
+    }
 
-        if (!allDocuments.isEmpty()) {
-            vectorStore.add(allDocuments);
-            log.info("Loaded {} document chunks into vector store", allDocuments.size());
-        }
+    /**
+     * Переиндексация изменённых и удалённых файлов.
+     *
+     * <p>Манифест читается только для затронутых источников, поэтому работа пропорциональна
+     * изменению, а не размеру корпуса: неизменные чанки изменённых файлов пропускаются,
+     * чанки удалённых файлов удаляются. Из кэшей ответов удаляются ответы,
+     * построенные на затронутых файлах.</p>
+     *
+     * @param files          созданные или изменённые файлы
+     * @param removedSources источники удалённых файлов
+     * @param progress       прогресс загрузки
+     * @return итог загрузки
+     */
+    @CacheEvict(value = "ragRetrievals", allEntries = true)
+    public IngestionResult reindexFiles(List<SourceFile> files, Collection<String> removedSources,
+                                        IngestionProgress progress) {
+        Set<String> sources = new HashSet<>(removedSources);
+        files.forEach(file -> sources.add(file.source()));
 
-        return allDocuments.size();
+        IngestionResult result = ingestionPipeline.ingest(files, loadManifest(sources), progress);
+        recordDuplicates();
+        recordCollectionChange(result);
+        answerSourceIndex.invalidate(sources);
+        log.info("Reindexed {} changed and {} removed files: {}", files.size(), removedSources.size(), result);
+        return result;
     }
 
     /**
-     * Получение списка документов из векторного хранилища.
+     * Подготовка потоковой записи страницы списка документов в формате {@link DocumentListResponse}.
+     *
+     * <p>Документы читаются из ChromaDB порциями по {@code app.rag.documents.page-size} и пишутся
+     * в ответ по мере чтения, поэтому в памяти находится одна порция превью, а не вся страница.
+     * Первая порция читается здесь, до начала записи ответа, поэтому ошибка ChromaDB возвращается
+     * клиенту как ошибка запроса. Если после страницы есть документы, в конце пишется {@code nextCursor};
+     * если не удалось прочитать одну из следующих порций, список обрывается, а в ответ пишутся
+     * {@code error} и {@code nextCursor} первого непрочитанного документа.</p>
      *
-     * @param limit максимальное количество документов для возврата
-     * @return список документов с метаданными
+     * @param limit      максимальное количество документов на странице
+     * @param offset     смещение страницы ({@link DocumentCursor})
+     * @param projection возвращаемые поля документа
+     * @return запись страницы в поток ответа
+     * @throws IOException если не удалось прочитать первую порцию из ChromaDB
      */
-    public DocumentListResponse getDocuments(int limit) {
-        return chromaDbClient.getCollection()
-                .map(collection -> fetchDocuments(collection, limit))
-                .orElse(emptyResponse());
+    public DocumentStream streamDocuments(int limit, int offset, DocumentProjection projection) throws IOException {
+        Optional<ChromaCollection> collection = chromaDbClient.getCollection();
+        int totalCount = collection.map(ChromaCollection::getCountOrZero).orElse(0);
+        String collectionId = collection.map(ChromaCollection::id).orElse(null);
+        ChromaGetResponse first = collectionId == null ? null : chromaDbClient
+                .getDocumentsPage(collectionId, projection.include(), Math.min(documentsPageSize, limit), offset)
+                .orElseThrow(() -> new IOException("Could not read documents from ChromaDB at offset " + offset));
+
+        return out -> {
+            try (JsonGenerator json = objectMapper.createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                json.writeStartObject();
+                json.writeStringField("collectionName", chromaDbClient.getCollectionName());
+                json.writeNumberField("totalCount", totalCount);
+                json.writeArrayFieldStart("documents");
+                Listing listing = first != null
+                        ? writeDocuments(json, collectionId, limit, offset, projection, first)
+                        : new Listing(0, true);
+                json.writeEndArray();
+                int next = offset + listing.written();
+                if (listing.complete()) {
+                    json.writeStringField("nextCursor",
+                            listing.written() == limit && next < totalCount ? DocumentCursor.encode(next) : null);
+                } else {
+                    json.writeStringField("nextCursor", DocumentCursor.encode(next));
+                    json.writeStringField("error", "Could not read documents from ChromaDB at offset " + next);
+                }
+                json.writeEndObject();
+            }
+        };
     }
 
-    private List<Document> readAndSplitDocuments(Resource[] resources) {
-        List<Document> allDocuments = new ArrayList<>();
-        TokenTextSplitter splitter = new TokenTextSplitter();
+    /**
+     * Загрузка информации о коллекции из ChromaDB в обход кэша.
+     *
+     * @return актуальная информация о коллекции
+     * @throws NotFoundException если коллекции нет
+     */
+    public CollectionInfoResponse refreshCollection() {
+        return chromaDbClient.refreshCollection()
+                .map(CollectionInfoResponse::from)
+                .orElseThrow(() -> new NotFoundException("Collection not found: " + chromaDbClient.getCollectionName()));
+    }
 
-        for (Resource resource : resources) {
-            log.info("Loading document: {}", resource.getFilename());
-            List<Document> documents = new TextReader(resource).get();
-            allDocuments.addAll(splitter.apply(documents));
+    /**
+     * Запись уже прочитанной первой порции и чтение следующих до {@code limit} документов.
+     *
+     * @return количество записанных документов и признак, что список не оборван ошибкой чтения
+     */
+    private Listing writeDocuments(JsonGenerator json, String collectionId, int limit, int offset,
+                                   DocumentProjection projection, ChromaGetResponse page) throws IOException {
+        int written = 0;
+        int requested = Math.min(documentsPageSize, limit);
+        while (true) {
+            for (int i = 0; i < page.ids().size(); i++) {
+                json.writeObject(new DocumentInfo(
+                        page.ids().get(i),
+                        projection.withContent() ? page.getDocument(i) : null,
+                        projection.withMetadata() ? page.getMetadata(i) : null));
+            }
+            json.flush();
+            written += page.ids().size();
+            if (page.ids().size() < requested || written >= limit) {
+                return new Listing(written, true);
+            }
+            requested = Math.min(documentsPageSize, limit - written);
+            Optional<ChromaGetResponse> next =
+                    chromaDbClient.getDocumentsPage(collectionId, projection.include(), requested, offset + written);
+            if (next.isEmpty()) {
+                log.warn("Document listing interrupted at offset {}: could not read from ChromaDB", offset + written);
+                return new Listing(written, false);
+            }
+            page = next.get();
         }
+    }
 
-        return allDocuments;
+    /**
+     * Учёт загрузки в кэше коллекции ChromaDB и в её локальной копии; при хранилище HNSW коллекция
+     * не используется.
+     */
+    private void recordCollectionChange(IngestionResult result) {
+        if (hnswVectorStore.getIfAvailable() == null) {
+            chromaDbClient.collectionChanged(result.chunks() - result.deleted());
+        }
+        chromaReplica.ifAvailable(ChromaReplicaVectorStore::refresh);
     }
 
-    private DocumentListResponse fetchDocuments(ChromaCollection collection, int limit) {
-        return chromaDbClient.getDocuments(collection.id(), limit)
-                .map(response -> buildResponse(collection, response))
-                .orElse(emptyResponse());
+    /**
+     * Запись отброшенных при загрузке почти-дубликатов в метаданные оставшихся чанков.
+     */
+    private void recordDuplicates() {
+        Map<String, List<String>> duplicates = duplicateIndex.drainUnrecorded();
+        if (duplicates.isEmpty()) {
+            return;
+        }
+        HnswVectorStore localStore = hnswVectorStore.getIfAvailable();
+        if (localStore != null) {
+            Map<String, Map<String, Object>> metadatas = new HashMap<>();
+            duplicates.forEach((id, refs) ->
+                    metadatas.put(id, Map.of(DUPLICATES, String.join(",", refs), DUPLICATE_COUNT, refs.size())));
+            localStore.updateMetadata(metadatas);
+            return;
+        }
+        Optional<ChromaCollection> collection = chromaDbClient.getCollection();
+        if (collection.isEmpty()) {
+            log.warn("Could not record {} chunks with near-duplicates: collection not found", duplicates.size());
+            return;
+        }
+        List<String> ids = new ArrayList<>(duplicates.size());
+        List<Map<String, Object>> metadatas = new ArrayList<>(duplicates.size());
+        duplicates.forEach((id, refs) -> {
+            ids.add(id);
+            metadatas.add(Map.of(DUPLICATES, String.join(",", refs), DUPLICATE_COUNT, refs.size()));
+        });
+        for (int from = 0; from < ids.size(); from += MANIFEST_PAGE_SIZE) {
+            int to = Math.min(from + MANIFEST_PAGE_SIZE, ids.size());
+            if (!chromaDbClient.updateMetadatas(collection.get().id(), ids.subList(from, to), metadatas.subList(from, to))) {
+                log.warn("Could not record near-duplicates of {} chunks", to - from);
+            }
+        }
+        chromaReplica.ifAvailable(replica -> replica.invalidate(ids));
     }
 
-    private DocumentListResponse buildResponse(ChromaCollection collection, ChromaGetResponse response) {
-        List<DocumentInfo> documents = new ArrayList<>();
+    /**
+     * Файлы из ресурсов, подходящие под паттерн. Путь файла считается от каталога паттерна
+     * без подстановочных символов, как его разрешает {@link PathMatchingResourcePatternResolver}.
+     */
+    private static List<SourceFile> classpathFiles(String pattern) throws IOException {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        Resource[] resources = resolver.getResources(SourceFile.CLASSPATH + pattern);
+        if (resources.length == 0) {
+            return List.of();
+        }
+        String rootDir = pattern.substring(0, pattern.lastIndexOf('/', wildcardIndex(pattern)) + 1);
+        String rootUrl = resolver.getResource(SourceFile.CLASSPATH + rootDir).getURL().toString();
 
-        for (int i = 0; i < response.ids().size(); i++) {
-            documents.add(new DocumentInfo(
-                    response.ids().get(i),
-                    truncate(response.getDocument(i)),
-                    response.getMetadata(i)
-            ));
+        List<SourceFile> files = new ArrayList<>(resources.length);
+        for (Resource resource : resources) {
+            String url = resource.getURL().toString();
+            String path = url.startsWith(rootUrl)
+                    ? rootDir + StringUtils.uriDecode(url.substring(rootUrl.length()), StandardCharsets.UTF_8)
+                    : rootDir + resource.getFilename();
+            files.add(new SourceFile(SourceFile.classpathSource(path), resource));
         }
+        return files;
+    }
 
-        return new DocumentListResponse(
-                documents,
-                collection.getCountOrZero(),
-                chromaDbClient.getCollectionName()
-        );
+    private static int wildcardIndex(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if ("*?{".indexOf(pattern.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return pattern.length();
+    }
+
+    /**
+     * Манифест чанков файлов из ресурсов, подходящих под паттерн загрузки. Источники без
+     * происхождения (записанные до его появления) сравниваются с последним сегментом паттерна,
+     * чтобы при загрузке они заменились источниками с происхождением.
+     */
+    private ChunkManifest loadManifest(String pattern) {
+        String classpathPattern = SourceFile.classpathSource(pattern);
+        String legacyPattern = pattern.substring(pattern.lastIndexOf('/') + 1);
+        AntPathMatcher matcher = new AntPathMatcher();
+        return loadManifest(null, source -> SourceFile.hasOrigin(source)
+                ? matcher.match(classpathPattern, source)
+                : matcher.match(legacyPattern, source));
     }
 
-    private DocumentListResponse emptyResponse() {
-        return new DocumentListResponse(
-                Collections.emptyList(),
-                0,
-                chromaDbClient.getCollectionName()
-        );
+    /**
+     * Манифест чанков указанных источников. Фильтр выполняется на стороне ChromaDB.
+     */
+    private ChunkManifest loadManifest(Set<String> sources) {
+        if (sources.isEmpty()) {
+            return ChunkManifest.empty();
+        }
+        Map<String, Object> where = Map.of(ChunkIds.SOURCE, Map.of("$in", List.copyOf(sources)));
+        return loadManifest(where, sources::contains);
     }
 
-    private String truncate(String content) {
-        if (content == null || content.length() <= CONTENT_PREVIEW_LENGTH) {
-            return content;
+    /**
+     * Манифест чанков из метаданных ChromaDB или, при хранилище HNSW, из его метаданных.
+     */
+    private ChunkManifest loadManifest(Map<String, Object> where, Predicate<String> sourceFilter) {
+        ChunkManifest manifest = ChunkManifest.empty();
+
+        HnswVectorStore localStore = hnswVectorStore.getIfAvailable();
+        if (localStore != null) {
+            localStore.forEachMetadata((id, metadata) -> {
+                Object source = metadata.get(ChunkIds.SOURCE);
+                if (source != null && sourceFilter.test(source.toString())) {
+                    manifest.add(id, metadata);
+                }
+            });
+            return manifest;
+        }
+        Optional<ChromaCollection> collection = chromaDbClient.getCollection();
+        if (collection.isEmpty()) {
+            return manifest;
         }
-        return content.substring(0, CONTENT_PREVIEW_LENGTH) + "...";
+        for (int offset = 0; ; offset += MANIFEST_PAGE_SIZE) {
+            Optional<ChromaGetResponse> page =
+                    chromaDbClient.getMetadatas(collection.get().id(), where, MANIFEST_PAGE_SIZE, offset);
+            if (page.isEmpty()) {
+                log.warn("Could not read chunk manifest, unchanged chunks will be re-embedded");
+                return ChunkManifest.empty();
+            }
+            ChromaGetResponse response = page.get();
+            for (int i = 0; i < response.ids().size(); i++) {
+                Map<String, Object> metadata = response.getMetadata(i);
+                Object source = metadata != null ? metadata.get(ChunkIds.SOURCE) : null;
+                if (source != null && sourceFilter.test(source.toString())) {
+                    manifest.add(response.ids().get(i), metadata);
+                }
+            }
+            if (response.ids().size() < MANIFEST_PAGE_SIZE) {
+                return manifest;
+            }
+        }
+    }
+
+    /**
+     * Запись подготовленного списка документов в поток ответа.
+     */
+    @FunctionalInterface
+    public interface DocumentStream {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private record Listing(int written, boolean complete) {
     }
 }
@@ -0,0 +1,197 @@
+package io.mkalugin.gpt.service;
+
+import io.mkalugin.gpt.dto.LoadDocumentsResponse;
+import io.mkalugin.gpt.dto.UploadDocumentsResponse;
+import io.mkalugin.gpt.exception.PayloadTooLargeException;
+import io.mkalugin.gpt.ingestion.IngestionResult;
+import io.mkalugin.gpt.ingestion.SourceFile;
+import io.mkalugin.gpt.utils.StreamingMultipartReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Сервис загрузки файлов, переданных в теле HTTP-запроса.
+ *
+ * <p>Тело запроса (сырое или {@code multipart/form-data}) подаётся прямо в конвейер загрузки:
+ * файл не буферизуется целиком и не сохраняется во временный файл, а разбивается на чанки
+ * по мере поступления байт. Источник чанков — {@code upload:} и имя файла
+ * ({@link SourceFile#uploadSource}); загруженный файл заменяет чанки прежней загрузки с тем же
+ * именем, как при переиндексации изменённого файла ({@link DocumentService#reindexFiles}).
+ * Загрузка выполняется в общей очереди задач ({@link IngestionJobService}), поэтому не идёт
+ * одновременно с загрузкой из ресурсов и отслеживанием каталога сверх их общего лимита;
+ * запрос ждёт окончания задачи.</p>
+ *
+ * <p>Размер тела ограничен {@code app.ingestion.upload.max-size}, число одновременных
+ * загрузок — {@code app.ingestion.upload.concurrency}. Файл, на котором превышен лимит,
+ * не дочитывается, и записанные к этому моменту его чанки удаляются конвейером, поэтому
+ * в хранилище остаётся прежняя версия файла.</p>
+ */
+@Slf4j
+@Service
+public class DocumentUploadService {
+
+    private final DocumentService documentService;
+    private final IngestionJobService ingestionJobService;
+    private final long maxSize;
+    private final Semaphore permits;
+
+    public DocumentUploadService(
+            DocumentService documentService,
+            IngestionJobService ingestionJobService,
+            @Value("${app.ingestion.upload.max-size:100MB}") DataSize maxSize,
+            @Value("${app.ingestion.upload.concurrency:2}") int concurrency) {
+        this.documentService = documentService;
+        this.ingestionJobService = ingestionJobService;
+        this.maxSize = maxSize.toBytes();
+        this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Загрузка файлов из тела запроса.
+     *
+     * @param contentType   тип тела; для {@code multipart/*} загружаются все части с именем файла
+     * @param contentLength длина тела или -1, если неизвестна
+     * @param filename      имя файла для сырого тела (для multipart берётся из частей)
+     * @param body          тело запроса
+     * @return загруженные файлы и итог загрузки
+     * @throws PayloadTooLargeException если тело больше {@code max-size}
+     * @throws RejectedExecutionException если уже выполняется {@code concurrency} загрузок
+     *                                    или очередь задач загрузки заполнена
+     * @throws IOException если тело multipart не удалось прочитать или задача загрузки завершилась ошибкой
+     */
+    public UploadDocumentsResponse upload(String contentType, long contentLength, String filename, InputStream body)
+            throws IOException {
+        if (contentLength > maxSize) {
+            throw tooLarge();
+        }
+        if (!permits.tryAcquire()) {
+            throw new RejectedExecutionException("Too many concurrent uploads");
+        }
+        SizeLimitedInputStream limited = new SizeLimitedInputStream(body, maxSize);
+        try {
+            List<String> files = new ArrayList<>();
+            IngestionResult total = new IngestionResult(0, 0, 0, 0, 0, 0, 0, 0);
+            if (isMultipart(contentType)) {
+                StreamingMultipartReader reader =
+                        new StreamingMultipartReader(limited, StreamingMultipartReader.boundary(contentType));
+                StreamingMultipartReader.Part part;
+                while ((part = reader.nextPart()) != null) {
+                    if (part.filename() == null) {
+                        continue;
+                    }
+                    String source = sourceName(part.filename());
+                    total = total.plus(ingest(source, part.body(), limited));
+                    files.add(source);
+                }
+                if (files.isEmpty()) {
+                    throw new IllegalArgumentException("Multipart body contains no files");
+                }
+            } else {
+                if (!StringUtils.hasText(filename)) {
+                    throw new IllegalArgumentException("Parameter 'filename' is required for raw uploads");
+                }
+                String source = sourceName(filename);
+                total = ingest(source, limited, limited);
+                files.add(source);
+            }
+            log.info("Uploaded {} ({} bytes): {}", files, limited.count, total);
+            return new UploadDocumentsResponse(files, limited.count, LoadDocumentsResponse.from(total));
+        } catch (IOException e) {
+            if (limited.exceeded) {
+                throw tooLarge();
+            }
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Загрузка одного файла. Превышение лимита обрывает чтение файла внутри конвейера,
+     * поэтому проверяется после загрузки.
+     */
+    private IngestionResult ingest(String source, InputStream body, SizeLimitedInputStream limited)
+            throws IOException {
+        List<SourceFile> files = List.of(new SourceFile(source, new InputStreamResource(body, source)));
+        IngestionResult result = ingestionJobService.run(source,
+                progress -> documentService.reindexFiles(files, Set.of(), progress));
+        if (limited.exceeded) {
+            throw tooLarge();
+        }
+        return result;
+    }
+
+    private PayloadTooLargeException tooLarge() {
+        return new PayloadTooLargeException("Upload exceeds the limit of " + maxSize + " bytes");
+    }
+
+    private static boolean isMultipart(String contentType) {
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("multipart/");
+    }
+
+    /**
+     * Источник загруженного файла по имени файла без пути.
+     */
+    private static String sourceName(String filename) {
+        String name = StringUtils.getFilename(StringUtils.cleanPath(filename));
+        if (!StringUtils.hasText(name)) {
+            throw new IllegalArgumentException("Invalid filename: " + filename);
+        }
+        return SourceFile.uploadSource(name);
+    }
+
+    /**
+     * Поток, обрывающий чтение после {@code limit} байт.
+     */
+    private static final class SizeLimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+        private boolean exceeded;
+
+        private SizeLimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                advance(read);
+            }
+            return read;
+        }
+
+        private void advance(int read) throws IOException {
+            count += read;
+            if (count > limit) {
+                exceeded = true;
+                throw new IOException("Upload exceeds the limit of " + limit + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package io.mkalugin.gpt.service;
+
+import io.mkalugin.gpt.enums.IngestionJobStatus;
+import io.mkalugin.gpt.exception.NotFoundException;
+import io.mkalugin.gpt.ingestion.IngestionJob;
+import io.mkalugin.gpt.ingestion.IngestionProgress;
+import io.mkalugin.gpt.ingestion.IngestionResult;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Сервис фоновых задач загрузки документов.
+ *
+ * <p>Загрузка выполняется на отдельном пуле {@code ingestionExecutor}, а не в потоке
+ * HTTP-запроса: клиент получает id задачи и опрашивает её статус и прогресс.
+ * В памяти хранятся все незавершённые задачи и последние {@code history-size} завершённых.</p>
+ */
+@Slf4j
+@Service
+public class IngestionJobService {
+
+    private final DocumentService documentService;
+    private final ExecutorService ingestionExecutor;
+    private final int historySize;
+
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    public IngestionJobService(
+            DocumentService documentService,
+            @Qualifier("ingestionExecutor") ExecutorService ingestionExecutor,
+            @Value("${app.ingestion.jobs.history-size:100}") int historySize) {
+        this.documentService = documentService;
+        this.ingestionExecutor = ingestionExecutor;
+        this.historySize = historySize;
+    }
+
+    /**
+     * Постановка загрузки в очередь.
+     *
+     * @param pattern glob-паттерн для поиска файлов
+     * @return созданная задача
+     * @throws java.util.concurrent.RejectedExecutionException если очередь задач заполнена
+     */
+    public IngestionJob submit(String pattern) {
+        return submit(pattern, progress -> documentService.loadDocumentsFromResources(pattern, progress));
+    }
+
+    /**
+     * Постановка произвольной загрузки в общую очередь, чтобы она не выполнялась
+     * одновременно с другими загрузками сверх {@code app.ingestion.jobs.concurrency}.
+     *
+     * @param description описание загружаемых файлов, отображается в поле {@code pattern} задачи
+     * @param task        загрузка
+     * @return созданная задача
+     * @throws java.util.concurrent.RejectedExecutionException если очередь задач заполнена
+     */
+    public IngestionJob submit(String description, IngestionTask task) {
+        IngestionJob job = new IngestionJob(description);
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(ingestionExecutor.submit(() -> run(job, task)));
+        } catch (RuntimeException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        evictFinished();
+        log.info("Ingestion job {} submitted for {}", job.getId(), description);
+        return job;
+    }
+
+    /**
+     * Загрузка в общей очереди с ожиданием её окончания — для файлов, которые читаются из потока
+     * вызывающего, например из тела HTTP-запроса.
+     *
+     * @param description описание загружаемых файлов
+     * @param task        загрузка
+     * @return итог загрузки (частичный, если задача отменена)
+     * @throws java.util.concurrent.RejectedExecutionException если очередь задач заполнена
+     * @throws IOException если загрузка завершилась ошибкой или ожидание прервано
+     */
+    public IngestionResult run(String description, IngestionTask task) throws IOException {
+        IngestionJob job = submit(description, task);
+        try {
+            job.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.cancel();
+            throw new InterruptedIOException("Interrupted while waiting for ingestion job " + job.getId());
+        }
+        if (job.getStatus() == IngestionJobStatus.FAILED) {
+            throw new IOException("Ingestion job " + job.getId() + " failed: " + job.getError());
+        }
+        return job.getResult() != null ? job.getResult() : new IngestionResult(0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Получение задачи по id.
+     *
+     * @throws NotFoundException если задачи нет или она вытеснена из истории
+     */
+    public IngestionJob get(String id) {
+        IngestionJob job = jobs.get(id);
+        if (job == null) {
+            throw new NotFoundException("Ingestion job not found: " + id);
+        }
+        return job;
+    }
+
+    /**
+     * Отмена задачи. Завершённая задача не меняется.
+     *
+     * @return задача после запроса отмены
+     * @throws NotFoundException если задачи нет
+     */
+    public IngestionJob cancel(String id) {
+        IngestionJob job = get(id);
+        if (job.cancel()) {
+            log.info("Ingestion job {} cancellation requested", id);
+        }
+        return job;
+    }
+
+    private void run(IngestionJob job, IngestionTask task) {
+        if (!job.start()) {
+            return;
+        }
+        try {
+            IngestionResult result = task.run(job.getProgress());
+            job.complete(result);
+            log.info("Ingestion job {} finished with status {}", job.getId(), job.getStatus());
+        } catch (Exception e) {
+            log.error("Ingestion job {} failed: {}", job.getId(), e.getMessage(), e);
+            job.fail(e.getMessage());
+        }
+    }
+
+    private void evictFinished() {
+        int excess = jobs.size() - historySize;
+        if (excess <= 0) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(job -> job.getStatus().isFinished())
+                .sorted(Comparator.comparing(IngestionJob::getFinishedAt))
+                .limit(excess)
+                .forEach(job -> jobs.remove(job.getId()));
+    }
+
+    /**
+     * Отмена выполняющихся задач при остановке приложения, чтобы стадии конвейера
+     * не держали остановку пула.
+     */
+    @PreDestroy
+    public void cancelAll() {
+        jobs.values().forEach(IngestionJob::cancel);
+    }
+
+    /**
+     * Загрузка, выполняемая задачей.
+     */
+    @FunctionalInterface
+    public interface IngestionTask {
+        IngestionResult run(IngestionProgress progress) throws IOException;
+    }
+}
@@ -1,65 +1,354 @@
 package io.mkalugin.gpt.service;
 
+import io.mkalugin.gpt.cache.AnswerSourceIndex;
+import io.mkalugin.gpt.cache.SemanticAnswerCache;
+import io.mkalugin.gpt.cache.SingleFlight;
+import io.mkalugin.gpt.dto.RagBatchItem;
+import io.mkalugin.gpt.dto.RagSource;
+import io.mkalugin.gpt.retrieval.ContextBuilder;
+import io.mkalugin.gpt.retrieval.RagContext;
 import io.mkalugin.gpt.utils.Constants;
+import io.mkalugin.gpt.utils.Futures;
+import io.mkalugin.gpt.utils.QueryNormalizer;
 import io.mkalugin.gpt.utils.SystemPrompts;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Pattern;
 
 /**
  * Сервис для выполнения RAG запросов.
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class RagService {
 
+    private static final String RAG_QUERIES_CACHE = "ragQueries";
+    private static final Pattern REPLAY_CHUNK = Pattern.compile("(?<=\\s)");
+
     private final ChatClient.Builder chatClientBuilder;
-    private final VectorStore vectorStore;
+    private final RetrievalService retrievalService;
     private final InputValidationService validationService;
+    private final EmbeddingModel embeddingModel;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final CacheManager cacheManager;
+    private final SingleFlight<String, String> ragQuerySingleFlight;
+    private final ContextBuilder contextBuilder;
+    private final ExecutorService retrievalExecutor;
+    private final AnswerSourceIndex answerSourceIndex;
+
+    @Value("${app.rag.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    @Value("${app.embedding.cache.enabled:true}")
+    private boolean embeddingCacheEnabled;
 
     /**
      * Выполнение RAG-запроса: поиск релевантных документов и генерация ответа.
      *
      * <p>Алгоритм работы:
      * <ol>
-     *     <li>Выполняет similarity search по вопросу в VectorStore</li>
-     *     <li>Извлекает top-K наиболее похожих документов</li>
-     *     <li>Объединяет тексты документов в единый контекст</li>
+     *     <li>Ищет ответ на близкий по смыслу вопрос в семантическом кэше</li>
+     *     <li>Выполняет similarity search по вопросу в VectorStore (через кэш результатов поиска)</li>
+     *     <li>Извлекает кандидатов, наиболее похожих на вопрос</li>
+     *     <li>Собирает из них контекст в пределах бюджета токенов без дубликатов (MMR)</li>
      *     <li>Передаёт контекст и вопрос в GPT для генерации ответа</li>
+     *     <li>Сохраняет ответ в семантический кэш</li>
      * </ol>
+     * Одновременные запросы с тем же нормализованным вопросом объединяются:
+     * вычисление выполняется один раз, остальные получают его результат.
      * </p>
      *
      * @param question вопрос пользователя
      * @return ответ, сгенерированный на основе найденного контекста
      */
-    @Cacheable(value = "ragQueries", key = "#question")
+    @Cacheable(value = RAG_QUERIES_CACHE, key = "T(io.mkalugin.gpt.utils.QueryNormalizer).normalize(#question)")
     public String query(String question) {
         // Валидация входящего вопроса
         validationService.validate(question);
 
-        List<Document> documents = vectorStore.similaritySearch(
+        String normalized = QueryNormalizer.normalize(question);
+        return ragQuerySingleFlight.execute(normalized, () -> generateAnswer(question, normalized));
+    }
+
+    private String generateAnswer(String question, String normalized) {
+        float[] embedding = semanticEmbedding(normalized);
+        Optional<String> cached = semanticLookup(normalized, embedding);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        return answer(question, normalized, embedding, retrieve(question));
+    }
+
+    private String answer(String question, String normalized, float[] embedding, List<Document> candidates) {
+        RagContext context = contextBuilder.build(candidates);
+
+        String answer = prompt(context, question)
+                .call()
+                .content();
+
+        answerSourceIndex.record(normalized, toSources(context.documents()));
+        semanticPut(normalized, embedding, answer);
+        return answer;
+    }
+
+    /**
+     * Пакетное выполнение RAG-запросов.
+     *
+     * <p>Алгоритм работы:
+     * <ol>
+     *     <li>Проверяет каждый вопрос и ищет ответ в кэше {@code ragQueries}</li>
+     *     <li>Вычисляет embeddings оставшихся вопросов одним batch-вызовом
+     *     и ищет ответы в семантическом кэше</li>
+     *     <li>Запускает поиск по всем оставшимся вопросам параллельно</li>
+     *     <li>Генерирует ответы в GPT не более чем в {@code app.rag.batch.concurrency} потоков</li>
+     *     <li>Сохраняет ответы в {@code ragQueries} и семантический кэш</li>
+     * </ol>
+     * Одинаковые после нормализации вопросы обрабатываются один раз. Ошибка одного вопроса
+     * не прерывает пакет и возвращается в его элементе.</p>
+     *
+     * @param questions вопросы пользователя
+     * @return результаты в порядке вопросов
+     */
+    public List<RagBatchItem> queryBatch(List<String> questions) {
+        RagBatchItem[] results = new RagBatchItem[questions.size()];
+        Map<String, String> pending = new LinkedHashMap<>();
+
+        for (int i = 0; i < questions.size(); i++) {
+            String question = questions.get(i);
+            try {
+                if (question == null || question.isBlank()) {
+                    throw new IllegalArgumentException("Question must not be blank");
+                }
+                validationService.validate(question);
+            } catch (RuntimeException e) {
+                results[i] = RagBatchItem.failure(question, e.getMessage());
+                continue;
+            }
+            String normalized = QueryNormalizer.normalize(question);
+            String cached = ragQueriesCache().get(normalized, String.class);
+            if (cached != null) {
+                results[i] = RagBatchItem.success(question, cached, true);
+            } else {
+                pending.putIfAbsent(normalized, question);
+            }
+        }
+
+        Map<String, RagBatchItem> answers = answerBatch(pending);
+        for (int i = 0; i < questions.size(); i++) {
+            if (results[i] == null) {
+                RagBatchItem answer = answers.get(QueryNormalizer.normalize(questions.get(i)));
+                results[i] = new RagBatchItem(questions.get(i), answer.answer(), answer.cached(), answer.error());
+            }
+        }
+        log.info("Processed RAG batch: {} questions, {} generated", questions.size(), pending.size());
+        return List.of(results);
+    }
+
+    private Map<String, RagBatchItem> answerBatch(Map<String, String> pending) {
+        Map<String, RagBatchItem> answers = new LinkedHashMap<>();
+        if (pending.isEmpty()) {
+            return answers;
+        }
+
+        List<String> normalizedQuestions = new ArrayList<>(pending.keySet());
+        // Один batch-вызов: векторы нужны семантическому кэшу и прогревают кэш embeddings для поиска
+        List<float[]> embeddings = semanticAnswerCache.isEnabled() || embeddingCacheEnabled
+                ? embeddingModel.embed(normalizedQuestions)
+                : null;
+
+        List<BatchEntry> toGenerate = new ArrayList<>();
+        for (int i = 0; i < normalizedQuestions.size(); i++) {
+            String normalized = normalizedQuestions.get(i);
+            String question = pending.get(normalized);
+            float[] embedding = embeddings != null && semanticAnswerCache.isEnabled() ? embeddings.get(i) : null;
+
+            Optional<String> semantic = semanticLookup(normalized, embedding);
+            if (semantic.isPresent()) {
+                answers.put(normalized, RagBatchItem.success(question, semantic.get(), true));
+                continue;
+            }
+            CompletableFuture<List<Document>> candidates =
+                    CompletableFuture.supplyAsync(() -> retrieve(question), retrievalExecutor);
+            toGenerate.add(new BatchEntry(question, normalized, embedding, candidates));
+        }
+
+        Flux.fromIterable(toGenerate)
+                .flatMapSequential(entry -> Mono.fromCallable(() -> generateBatchEntry(entry))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(e -> {
+                            log.warn("RAG batch item failed: {}", e.getMessage());
+                            return Mono.just(RagBatchItem.failure(entry.question(), String.valueOf(e.getMessage())));
+                        }), batchConcurrency)
+                .toIterable()
+                .forEach(item -> answers.put(QueryNormalizer.normalize(item.question()), item));
+        return answers;
+    }
+
+    private RagBatchItem generateBatchEntry(BatchEntry entry) {
+        String answer = ragQuerySingleFlight.execute(entry.normalized(), () -> {
+            String generated = answer(entry.question(), entry.normalized(), entry.embedding(),
+                    Futures.join(entry.candidates()));
+            ragQueriesCache().put(entry.normalized(), generated);
+            return generated;
+        });
+        return RagBatchItem.success(entry.question(), answer, false);
+    }
+
+    /**
+     * Потоковое выполнение RAG-запроса в виде Server-Sent Events.
+     *
+     * <p>Порядок событий:
+     * <ol>
+     *     <li>{@code sources} — найденные чанки с оценками сходства</li>
+     *     <li>{@code token} — фрагменты ответа по мере генерации</li>
+     *     <li>{@code done} — завершение ответа (признак {@code cached})</li>
+     * </ol>
+     * Ответ из кэша {@code ragQueries} или семантического кэша воспроизводится
+     * тем же протоколом без обращения к модели. Полностью полученный ответ
+     * сохраняется в оба кэша. При ошибке отправляется событие {@code error}.</p>
+     *
+     * @param question вопрос пользователя
+     * @return поток SSE событий
+     */
+    public Flux<ServerSentEvent<Object>> queryStream(String question) {
+        // Валидация до начала потока, чтобы вернуть 400 обычным ответом
+        validationService.validate(question);
+
+        String normalized = QueryNormalizer.normalize(question);
+
+        return Flux.defer(() -> {
+                    String cached = ragQueriesCache().get(normalized, String.class);
+                    if (cached != null) {
+                        return replay(normalized, cached);
+                    }
+
+                    float[] embedding = semanticEmbedding(normalized);
+                    Optional<String> semantic = semanticLookup(normalized, embedding);
+                    if (semantic.isPresent()) {
+                        return replay(normalized, semantic.get());
+                    }
+
+                    RagContext context = contextBuilder.build(retrieve(question));
+                    StringBuilder answer = new StringBuilder();
+
+                    Flux<ServerSentEvent<Object>> tokens = prompt(context, question)
+                            .stream()
+                            .content()
+                            .doOnNext(answer::append)
+                            .map(token -> event(Constants.SSE_EVENT_TOKEN, token))
+                            .doOnComplete(() -> {
+                                answerSourceIndex.record(normalized, toSources(context.documents()));
+                                ragQueriesCache().put(normalized, answer.toString());
+                                semanticPut(normalized, embedding, answer.toString());
+                            });
+
+                    return Flux.concat(
+                            Flux.just(event(Constants.SSE_EVENT_SOURCES, toSources(context.documents()))),
+                            tokens,
+                            Flux.just(event(Constants.SSE_EVENT_DONE, Map.of("cached", false)))
+                    );
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.error("RAG stream failed: {}", e.getMessage());
+                    return Flux.just(event(Constants.SSE_EVENT_ERROR, Map.of("message", String.valueOf(e.getMessage()))));
+                });
+    }
+
+    private List<Document> retrieve(String question) {
+        return retrievalService.search(
                 SearchRequest.builder()
                         .query(question)
-                        .topK(Constants.RAG_TOP_K)
+                        .topK(Constants.RAG_CANDIDATES_K)
                         .build()
-        );
-
-        String context = documents.stream()
-                .map(Document::getText)
-                .collect(Collectors.joining(Constants.DOCUMENT_SEPARATOR));
+        ).toDocuments();
+    }
 
+    private ChatClient.ChatClientRequestSpec prompt(RagContext context, String question) {
         return chatClientBuilder.build()
                 .prompt()
-                .system(s -> s.text(SystemPrompts.RAG_SYSTEM_PROMPT).param("context", context))
-                .user(question)
-                .call()
-                .content();
+                .system(s -> s.text(SystemPrompts.RAG_SYSTEM_PROMPT).param("context", context.text()))
+                .user(question);
+    }
+
+    private float[] semanticEmbedding(String normalized) {
+        return semanticAnswerCache.isEnabled() ? embeddingModel.embed(normalized) : null;
+    }
+
+    /**
+     * Поиск в семантическом кэше. Найденный ответ наследует источники вопроса записи,
+     * чтобы при изменении файлов сбрасывался и его ключ в {@code ragQueries}.
+     */
+    private Optional<String> semanticLookup(String normalized, float[] embedding) {
+        if (embedding == null) {
+            return Optional.empty();
+        }
+        return semanticAnswerCache.match(embedding)
+                .map(match -> {
+                    answerSourceIndex.link(normalized, match.question());
+                    return match.answer();
+                });
+    }
+
+    private void semanticPut(String normalized, float[] embedding, String answer) {
+        if (embedding != null) {
+            semanticAnswerCache.put(normalized, embedding, answer);
+        }
+    }
+
+    private Cache ragQueriesCache() {
+        return cacheManager.getCache(RAG_QUERIES_CACHE);
+    }
+
+    private Flux<ServerSentEvent<Object>> replay(String normalized, String answer) {
+        return Flux.concat(
+                Flux.just(event(Constants.SSE_EVENT_SOURCES, answerSourceIndex.sources(normalized))),
+                Flux.fromArray(REPLAY_CHUNK.split(answer)).map(chunk -> event(Constants.SSE_EVENT_TOKEN, chunk)),
+                Flux.just(event(Constants.SSE_EVENT_DONE, Map.of("cached", true)))
+        );
+    }
+
+    private static List<RagSource> toSources(List<Document> documents) {
+        return documents.stream()
+                .map(document -> new RagSource(
+                        document.getId(),
+                        Objects.toString(document.getMetadata().get("source"), null),
+                        document.getScore()))
+                .toList();
+    }
+
+    private static ServerSentEvent<Object> event(String name, Object data) {
+        return ServerSentEvent.builder(data).event(name).build();
+    }
+
+    /**
+     * Вопрос пакета, для которого нужно сгенерировать ответ.
+     */
+    private record BatchEntry(String question, String normalized, float[] embedding,
+                              CompletableFuture<List<Document>> candidates) {
     }
 }
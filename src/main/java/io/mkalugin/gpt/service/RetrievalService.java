@@ -0,0 +1,220 @@
+package io.mkalugin.gpt.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.mkalugin.gpt.cache.CachedRetrieval;
+import io.mkalugin.gpt.retrieval.Bm25Index;
+import io.mkalugin.gpt.retrieval.ReciprocalRankFusion;
+import io.mkalugin.gpt.utils.Futures;
+import io.mkalugin.gpt.utils.QueryNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сервис гибридного поиска (векторный + BM25) с кэшированием результатов.
+ *
+ * <p>Кэш {@code ragRetrievals} стоит между поиском и вызовом LLM: одинаковые поиски
+ * не ходят в ChromaDB, даже если сам ответ генерируется заново. Кэш сбрасывается
+ * при загрузке документов.</p>
+ *
+ * <p>Векторный поиск по ChromaDB выполняется параллельно с лексическим поиском
+ * по {@link Bm25Index}, результаты объединяются через {@link ReciprocalRankFusion}.
+ * Векторный путь ограничен бюджетом задержки: если ChromaDB не ответила вовремя
+ * или вернула ошибку, ответ строится только по лексическому индексу. Если средняя
+ * задержка ChromaDB превышает бюджет, векторный путь пропускается, кроме каждого
+ * {@value #PROBE_INTERVAL}-го запроса, который проверяет, не восстановилась ли она.
+ * Если лексический индекс ничего не нашёл, векторный поиск выполняется и при высокой
+ * задержке, но ответ ждётся не дольше того же бюджета.
+ * Неполные результаты не кэшируются. Запросы с порогом сходства или фильтром
+ * по метаданным выполняются только векторным путём.</p>
+ */
+@Slf4j
+@Service
+public class RetrievalService {
+
+    private static final int PROBE_INTERVAL = 10;
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final int FAILURE_LATENCY_PENALTY = 2;
+
+    private final VectorStore vectorStore;
+    private final Bm25Index bm25Index;
+    private final Executor retrievalExecutor;
+    private final boolean hybridEnabled;
+    private final Duration latencyBudget;
+    private final int rrfK;
+
+    private final AtomicLong vectorLatencyNanos = new AtomicLong();
+    private final AtomicLong skippedVectorSearches = new AtomicLong();
+
+    private final Timer vectorTimer;
+    private final Counter vectorPath;
+    private final Counter hybridPath;
+    private final Counter lexicalPath;
+
+    public RetrievalService(
+            VectorStore vectorStore,
+            Bm25Index bm25Index,
+            @Qualifier("retrievalExecutor") Executor retrievalExecutor,
+            @Value("${app.rag.hybrid.enabled:true}") boolean hybridEnabled,
+            @Value("${app.rag.hybrid.latency-budget:800ms}") Duration latencyBudget,
+            @Value("${app.rag.hybrid.rrf-k:60}") int rrfK,
+            MeterRegistry meterRegistry) {
+        this.vectorStore = vectorStore;
+        this.bm25Index = bm25Index;
+        this.retrievalExecutor = retrievalExecutor;
+        this.hybridEnabled = hybridEnabled;
+        this.latencyBudget = latencyBudget;
+        this.rrfK = rrfK;
+
+        this.vectorTimer = Timer.builder("rag.retrieval.vector.latency")
+                .description("Задержка similarity search в векторном хранилище")
+                .register(meterRegistry);
+        this.vectorPath = pathCounter(meterRegistry, "vector");
+        this.hybridPath = pathCounter(meterRegistry, "hybrid");
+        this.lexicalPath = pathCounter(meterRegistry, "lexical");
+    }
+
+    /**
+     * Поиск с кэшированием по нормализованному запросу, topK, порогу и фильтру.
+     *
+     * @param request запрос к векторному хранилищу
+     * @return компактный результат поиска
+     */
+    @Cacheable(value = "ragRetrievals",
+            key = "T(io.mkalugin.gpt.service.RetrievalService).cacheKey(#request)",
+            unless = "#result.partial()")
+    public CachedRetrieval search(SearchRequest request) {
+        if (!hybridEnabled || bm25Index.size() == 0 || !lexicalApplicable(request)) {
+            vectorPath.increment();
+            return CachedRetrieval.of(vectorSearch(request));
+        }
+
+        CompletableFuture<List<Document>> vector = vectorSearchAllowed()
+                ? CompletableFuture.supplyAsync(() -> vectorSearch(request), retrievalExecutor)
+                : null;
+        List<Document> lexical = bm25Index.search(request.getQuery(), request.getTopK());
+
+        if (lexical.isEmpty()) {
+            // Лексический путь ничего не нашёл — без векторного ответа не обойтись,
+            // но и он ограничен бюджетом задержки, даже если векторный путь был пропущен
+            vectorPath.increment();
+            return vectorOnly(vector != null ? vector
+                    : CompletableFuture.supplyAsync(() -> vectorSearch(request), retrievalExecutor));
+        }
+        if (vector == null) {
+            lexicalPath.increment();
+            return CachedRetrieval.of(lexical, true);
+        }
+
+        try {
+            List<Document> semantic = vector.get(latencyBudget.toMillis(), TimeUnit.MILLISECONDS);
+            hybridPath.increment();
+            return CachedRetrieval.of(ReciprocalRankFusion.fuse(rrfK, request.getTopK(), semantic, lexical));
+        } catch (TimeoutException e) {
+            log.warn("Vector search exceeded {} ms budget, answering from lexical index", latencyBudget.toMillis());
+        } catch (ExecutionException e) {
+            log.warn("Vector search failed, answering from lexical index: {}", e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lexicalPath.increment();
+        return CachedRetrieval.of(lexical, true);
+    }
+
+    /**
+     * Ответ только векторным путём в пределах бюджета задержки. Не уложившийся в бюджет поиск
+     * даёт пустой неполный результат, ошибка векторного хранилища пробрасывается.
+     */
+    private CachedRetrieval vectorOnly(CompletableFuture<List<Document>> vector) {
+        try {
+            return CachedRetrieval.of(vector.get(latencyBudget.toMillis(), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            log.warn("Vector search exceeded {} ms budget and lexical index found nothing", latencyBudget.toMillis());
+        } catch (ExecutionException e) {
+            // Задача уже завершилась: Futures.join пробросит исходное исключение
+            return CachedRetrieval.of(Futures.join(vector));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return CachedRetrieval.of(List.of(), true);
+    }
+
+    /**
+     * Ключ кэша для запроса к векторному хранилищу.
+     *
+     * @param request запрос к векторному хранилищу
+     * @return ключ из нормализованного запроса, topK, порога и фильтра
+     */
+    public static RetrievalKey cacheKey(SearchRequest request) {
+        return new RetrievalKey(
+                QueryNormalizer.normalize(request.getQuery()),
+                request.getTopK(),
+                request.getSimilarityThreshold(),
+                request.hasFilterExpression() ? request.getFilterExpression().toString() : ""
+        );
+    }
+
+    private List<Document> vectorSearch(SearchRequest request) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            List<Document> documents = vectorStore.similaritySearch(request);
+            success = true;
+            log.debug("Retrieved {} chunks from vector store for '{}'", documents.size(), request.getQuery());
+            return documents;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            vectorTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            observeVectorLatency(success ? elapsed : FAILURE_LATENCY_PENALTY * latencyBudget.toNanos());
+        }
+    }
+
+    /**
+     * Лексический индекс не знает ни косинусного порога, ни фильтров по метаданным,
+     * поэтому такие запросы выполняются только векторным путём.
+     */
+    private static boolean lexicalApplicable(SearchRequest request) {
+        return request.getSimilarityThreshold() <= SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL
+                && !request.hasFilterExpression();
+    }
+
+    private boolean vectorSearchAllowed() {
+        return vectorLatencyNanos.get() <= latencyBudget.toNanos()
+                || skippedVectorSearches.incrementAndGet() % PROBE_INTERVAL == 0;
+    }
+
+    private void observeVectorLatency(long nanos) {
+        vectorLatencyNanos.accumulateAndGet(nanos, (average, sample) -> average == 0
+                ? sample
+                : (long) (average + LATENCY_SMOOTHING * (sample - average)));
+    }
+
+    private static Counter pathCounter(MeterRegistry meterRegistry, String path) {
+        return Counter.builder("rag.retrieval.requests")
+                .tag("path", path)
+                .description("Поиски по выбранному пути")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ключ кэша результатов поиска.
+     */
+    public record RetrievalKey(String query, int topK, double similarityThreshold, String filter) {
+    }
+}
@@ -0,0 +1,100 @@
+package io.mkalugin.gpt.service;
+
+import io.mkalugin.gpt.cache.CachedRetrieval;
+import io.mkalugin.gpt.dto.RagSearchHit;
+import io.mkalugin.gpt.dto.RagSearchQuery;
+import io.mkalugin.gpt.dto.RagSearchResponse;
+import io.mkalugin.gpt.dto.RagSearchResult;
+import io.mkalugin.gpt.utils.Constants;
+import io.mkalugin.gpt.utils.Futures;
+import io.mkalugin.gpt.utils.TextPreview;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Сервис поиска по векторному хранилищу без генерации ответа.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SearchService {
+
+    private final RetrievalService retrievalService;
+    private final EmbeddingModel embeddingModel;
+    private final ExecutorService retrievalExecutor;
+
+    @Value("${app.embedding.cache.enabled:true}")
+    private boolean embeddingCacheEnabled;
+
+    /**
+     * Выполнение пакета поисковых запросов.
+     *
+     * <p>Embeddings всех запросов вычисляются одним batch-вызовом и попадают в кэш embeddings,
+     * после чего поиски выполняются параллельно и берут векторы из кэша.
+     * Результаты возвращаются в порядке запросов.</p>
+     *
+     * @param queries поисковые запросы
+     * @return найденные чанки для каждого запроса
+     * @throws IllegalArgumentException если фильтр по метаданным не удалось разобрать
+     */
+    public RagSearchResponse search(List<RagSearchQuery> queries) {
+        List<SearchRequest> requests = queries.stream()
+                .map(SearchService::toSearchRequest)
+                .toList();
+
+        if (embeddingCacheEnabled) {
+            embeddingModel.embed(requests.stream().map(SearchRequest::getQuery).distinct().toList());
+        }
+
+        List<CompletableFuture<CachedRetrieval>> retrievals = requests.stream()
+                .map(request -> CompletableFuture.supplyAsync(() -> retrievalService.search(request), retrievalExecutor))
+                .toList();
+
+        List<RagSearchResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            results.add(new RagSearchResult(
+                    requests.get(i).getQuery(),
+                    toHits(Futures.join(retrievals.get(i)).toDocuments())));
+        }
+        log.debug("Executed {} search queries", results.size());
+        return new RagSearchResponse(results);
+    }
+
+    private static SearchRequest toSearchRequest(RagSearchQuery query) {
+        SearchRequest.Builder builder = SearchRequest.builder()
+                .query(query.query())
+                .topK(Objects.requireNonNullElse(query.topK(), Constants.RAG_TOP_K))
+                .similarityThreshold(Objects.requireNonNullElse(
+                        query.similarityThreshold(), SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL));
+
+        if (query.filter() != null && !query.filter().isBlank()) {
+            try {
+                builder.filterExpression(query.filter());
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid filter expression: " + query.filter(), e);
+            }
+        }
+        return builder.build();
+    }
+
+    private static List<RagSearchHit> toHits(List<Document> documents) {
+        return documents.stream()
+                .map(document -> new RagSearchHit(
+                        document.getId(),
+                        Objects.toString(document.getMetadata().get("source"), null),
+                        TextPreview.of(document.getText()),
+                        document.getScore()))
+                .toList();
+    }
+}
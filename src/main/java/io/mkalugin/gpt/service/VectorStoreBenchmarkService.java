@@ -0,0 +1,161 @@
+package io.mkalugin.gpt.service;
+
+import io.mkalugin.gpt.client.ChromaDbClient;
+import io.mkalugin.gpt.dto.VectorStoreBenchmarkResponse;
+import io.mkalugin.gpt.dto.VectorStoreBenchmarkResponse.StoreMetrics;
+import io.mkalugin.gpt.dto.chroma.ChromaCollection;
+import io.mkalugin.gpt.dto.chroma.ChromaEmbeddingsResponse;
+import io.mkalugin.gpt.exception.NotFoundException;
+import io.mkalugin.gpt.vectorstore.HnswIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Сравнение поиска по графу HNSW в JVM и поиска в ChromaDB на одних данных.
+ *
+ * <p>Векторы коллекции ChromaDB копируются в новый граф {@link HnswIndex} с параметрами
+ * {@code app.vectorstore.hnsw.*}. Каждый запрос переводится в embedding один раз и ищется в обоих
+ * хранилищах; эталон — точный поиск перебором по тем же векторам. Задержка ChromaDB включает
+ * HTTP-запрос, задержка HNSW — только поиск по графу. Сравнение держит в памяти все векторы
+ * коллекции, поэтому предназначено для ручного запуска.</p>
+ */
+@Slf4j
+@Service
+public class VectorStoreBenchmarkService {
+
+    /**
+     * Число результатов на запрос, если оно не задано.
+     */
+    public static final int DEFAULT_TOP_K = 10;
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final ChromaDbClient chromaDbClient;
+    private final EmbeddingModel embeddingModel;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+
+    public VectorStoreBenchmarkService(
+            ChromaDbClient chromaDbClient,
+            EmbeddingModel embeddingModel,
+            @Value("${app.vectorstore.hnsw.m:16}") int m,
+            @Value("${app.vectorstore.hnsw.ef-construction:200}") int efConstruction,
+            @Value("${app.vectorstore.hnsw.ef-search:64}") int efSearch) {
+        this.chromaDbClient = chromaDbClient;
+        this.embeddingModel = embeddingModel;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * Сравнение полноты и задержки поиска.
+     *
+     * @param queries поисковые запросы
+     * @param topK    сколько документов искать на запрос
+     * @return полнота относительно точного поиска и перцентили задержки каждого хранилища
+     * @throws NotFoundException        если коллекции нет
+     * @throws IllegalArgumentException если коллекция пуста
+     */
+    public VectorStoreBenchmarkResponse compare(List<String> queries, int topK) {
+        ChromaCollection collection = chromaDbClient.getCollection()
+                .orElseThrow(() -> new NotFoundException("Collection not found: " + chromaDbClient.getCollectionName()));
+
+        long buildStart = System.nanoTime();
+        List<String> ids = new ArrayList<>();
+        HnswIndex index = copyCollection(collection.id(), ids);
+        long buildMs = (System.nanoTime() - buildStart) / 1_000_000;
+        if (index == null) {
+            throw new IllegalArgumentException("Collection " + collection.name() + " is empty, nothing to compare");
+        }
+
+        List<float[]> embeddings = embeddingModel.embed(queries);
+        long[] chromaNanos = new long[embeddings.size()];
+        long[] hnswNanos = new long[embeddings.size()];
+        double chromaRecall = 0;
+        double hnswRecall = 0;
+        for (int i = 0; i < embeddings.size(); i++) {
+            float[] query = embeddings.get(i);
+            Set<String> exact = idsOf(index.exactSearch(query, topK, node -> true), ids);
+
+            long start = System.nanoTime();
+            List<String> chromaIds = chromaDbClient.queryIds(collection.id(), query, topK)
+                    .orElseThrow(() -> new IllegalStateException("ChromaDB query failed"));
+            chromaNanos[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            HnswIndex.Neighbors neighbors = index.search(query, topK, Math.max(efSearch, topK), node -> true);
+            hnswNanos[i] = System.nanoTime() - start;
+
+            chromaRecall += recall(new HashSet<>(chromaIds), exact);
+            hnswRecall += recall(idsOf(neighbors, ids), exact);
+        }
+
+        VectorStoreBenchmarkResponse response = new VectorStoreBenchmarkResponse(ids.size(), embeddings.size(), topK,
+                buildMs, metrics(chromaRecall / embeddings.size(), chromaNanos),
+                metrics(hnswRecall / embeddings.size(), hnswNanos));
+        log.info("Vector store comparison on {} vectors: {}", ids.size(), response);
+        return response;
+    }
+
+    /**
+     * Копирование векторов коллекции в новый граф.
+     *
+     * @param ids заполняется id документов по номерам узлов
+     * @return граф или null, если коллекция пуста
+     */
+    private HnswIndex copyCollection(String collectionId, List<String> ids) {
+        HnswIndex index = null;
+        for (int offset = 0; ; offset += PAGE_SIZE) {
+            ChromaEmbeddingsResponse page = chromaDbClient.getEmbeddings(collectionId, PAGE_SIZE, offset)
+                    .orElseThrow(() -> new IllegalStateException("Could not read embeddings from ChromaDB"));
+            for (int i = 0; i < page.ids().size(); i++) {
+                float[] vector = page.embeddings().get(i);
+                if (index == null) {
+                    index = new HnswIndex(vector.length, m, efConstruction);
+                }
+                index.add(vector);
+                ids.add(page.ids().get(i));
+            }
+            if (page.ids().size() < PAGE_SIZE) {
+                return index;
+            }
+        }
+    }
+
+    private static Set<String> idsOf(HnswIndex.Neighbors neighbors, List<String> ids) {
+        Set<String> result = new HashSet<>();
+        for (int node : neighbors.nodes()) {
+            result.add(ids.get(node));
+        }
+        return result;
+    }
+
+    private static double recall(Set<String> found, Set<String> exact) {
+        if (exact.isEmpty()) {
+            return 1;
+        }
+        long hits = found.stream().filter(exact::contains).count();
+        return (double) hits / exact.size();
+    }
+
+    private static StoreMetrics metrics(double recall, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return new StoreMetrics(recall, percentileMs(sorted, 0.5), percentileMs(sorted, 0.95));
+    }
+
+    private static double percentileMs(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(rank, 0)] / 1_000_000.0;
+    }
+}
@@ -13,8 +13,38 @@ public class Constants {
      */
     public final int RAG_TOP_K = 5;
 
+    /**
+     * Количество кандидатов из similarity search, из которых собирается контекст RAG.
+     */
+    public final int RAG_CANDIDATES_K = 10;
+
     /**
      * Разделитель между документами в контексте RAG.
      */
     public final String DOCUMENT_SEPARATOR = "\n\n---\n\n";
+
+    /**
+     * Событие SSE с идентификатором разговора.
+     */
+    public final String SSE_EVENT_CONVERSATION = "conversation";
+
+    /**
+     * Событие SSE с метаданными найденных документов.
+     */
+    public final String SSE_EVENT_SOURCES = "sources";
+
+    /**
+     * Событие SSE с очередным фрагментом ответа модели.
+     */
+    public final String SSE_EVENT_TOKEN = "token";
+
+    /**
+     * Событие SSE о завершении ответа.
+     */
+    public final String SSE_EVENT_DONE = "done";
+
+    /**
+     * Событие SSE об ошибке генерации.
+     */
+    public final String SSE_EVENT_ERROR = "error";
 }
@@ -0,0 +1,52 @@
+package io.mkalugin.gpt.utils;
+
+import lombok.experimental.UtilityClass;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор постраничного списка документов.
+ *
+ * <p>ChromaDB отдаёт документы коллекции в порядке добавления и листает их по смещению,
+ * поэтому курсор — смещение следующей страницы, закодированное в непрозрачную строку.
+ * Клиент передаёт {@code nextCursor} из ответа как есть и не зависит от формата.</p>
+ */
+@UtilityClass
+public class DocumentCursor {
+
+    private static final String PREFIX = "o:";
+
+    /**
+     * Курсор для смещения.
+     */
+    public String encode(int offset) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Смещение из курсора.
+     *
+     * @param cursor курсор или null (начало списка)
+     * @return смещение
+     * @throws IllegalArgumentException если курсор повреждён
+     */
+    public int decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (value.startsWith(PREFIX)) {
+                int offset = Integer.parseInt(value.substring(PREFIX.length()));
+                if (offset >= 0) {
+                    return offset;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Ниже — общее сообщение для любого повреждённого курсора
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+}
@@ -0,0 +1,36 @@
+package io.mkalugin.gpt.utils;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Вспомогательные методы для {@link CompletableFuture}.
+ */
+@UtilityClass
+public class Futures {
+
+    /**
+     * Ожидание результата с выбросом исходного исключения вместо {@link CompletionException}.
+     * Так ошибки параллельных задач обрабатываются {@code GlobalExceptionHandler} так же,
+     * как ошибки в потоке запроса.
+     *
+     * @param future задача
+     * @param <T>    тип результата
+     * @return результат задачи
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package io.mkalugin.gpt.utils;
+
+import lombok.experimental.UtilityClass;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Нормализация пользовательских запросов для ключей кэшей.
+ *
+ * <p>Приводит вопросы, отличающиеся только регистром, пробелами или
+ * завершающими знаками конца предложения, к одной строке. Прочие символы в конце
+ * запроса значимы ({@code C++}, {@code C#}) и сохраняются.</p>
+ */
+@UtilityClass
+public class QueryNormalizer {
+
+    private final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private final Pattern TRAILING_PUNCTUATION = Pattern.compile("[?.!…\\s]+$");
+
+    /**
+     * Нормализует текст запроса: Unicode NFKC, нижний регистр,
+     * схлопывание пробелов и удаление завершающих {@code ? . ! …}.
+     *
+     * @param text исходный текст
+     * @return нормализованный текст (пустая строка для null)
+     */
+    public String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        normalized = WHITESPACE.matcher(normalized.strip()).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+}
@@ -0,0 +1,249 @@
+package io.mkalugin.gpt.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Потоковое чтение тела {@code multipart/form-data}.
+ *
+ * <p>В отличие от разбора multipart контейнером сервлетов, части не сохраняются во временные
+ * файлы и не накапливаются в памяти: тело части читается из запроса по мере чтения
+ * {@link Part#body()}, а в памяти держится только буфер фиксированного размера.
+ * Части читаются строго по порядку, переход к следующей части дочитывает текущую.</p>
+ */
+public class StreamingMultipartReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_LINE = 8 * 1024;
+    private static final Pattern FILENAME = Pattern.compile("(?i)filename=\"([^\"]*)\"|filename=([^;\\s]+)");
+    private static final Pattern NAME = Pattern.compile("(?i)(?:^|;)\\s*name=\"([^\"]*)\"|(?:^|;)\\s*name=([^;\\s]+)");
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int head;
+    private int tail;
+    private boolean eof;
+    private boolean finished;
+    private PartBody current;
+
+    /**
+     * @param in       тело запроса
+     * @param boundary граница частей из параметра {@code boundary} заголовка {@code Content-Type}
+     */
+    public StreamingMultipartReader(InputStream in, String boundary) {
+        if (boundary == null || boundary.isBlank()) {
+            throw new IllegalArgumentException("Multipart boundary is missing");
+        }
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        // Первой границе не предшествует перевод строки: добавляем его, чтобы все границы искались одинаково
+        buffer[tail++] = '\r';
+        buffer[tail++] = '\n';
+    }
+
+    /**
+     * Граница частей из заголовка {@code Content-Type}.
+     *
+     * @param contentType значение заголовка
+     * @return граница или null, если параметра нет
+     */
+    public static String boundary(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.toLowerCase(Locale.ROOT).startsWith("boundary=")) {
+                String value = trimmed.substring("boundary=".length());
+                return value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")
+                        ? value.substring(1, value.length() - 1)
+                        : value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Следующая часть. Непрочитанный остаток текущей части пропускается.
+     *
+     * @return часть или null, если частей больше нет
+     * @throws IOException если тело обрывается или не соответствует формату multipart
+     */
+    public Part nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+        // До первой части пропускается преамбула
+        (current != null ? current : new PartBody()).skipRemaining();
+        head += delimiter.length;
+
+        if (!ensure(2)) {
+            throw new IOException("Unexpected end of multipart body");
+        }
+        if (buffer[head] == '-' && buffer[head + 1] == '-') {
+            finished = true;
+            current = null;
+            return null;
+        }
+        readLine();
+
+        String disposition = null;
+        String contentType = null;
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (name.equals("content-disposition")) {
+                disposition = value;
+            } else if (name.equals("content-type")) {
+                contentType = value;
+            }
+        }
+
+        current = new PartBody();
+        return new Part(parameter(NAME, disposition), parameter(FILENAME, disposition), contentType, current);
+    }
+
+    private static String parameter(Pattern pattern, String disposition) {
+        if (disposition == null) {
+            return null;
+        }
+        Matcher matcher = pattern.matcher(disposition);
+        if (!matcher.find()) {
+            return null;
+        }
+        return matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+    }
+
+    /**
+     * Строка заголовков части без завершающего CRLF.
+     */
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            if (!ensure(1)) {
+                throw new IOException("Unexpected end of multipart headers");
+            }
+            byte b = buffer[head++];
+            if (b == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            if (line.size() >= MAX_HEADER_LINE) {
+                throw new IOException("Multipart header line is too long");
+            }
+            line.write(b);
+        }
+    }
+
+    /**
+     * Дочитывает вход, пока в буфере не окажется хотя бы {@code count} байт.
+     *
+     * @return false, если вход закончился раньше
+     */
+    private boolean ensure(int count) throws IOException {
+        while (tail - head < count && !eof) {
+            if (head > 0) {
+                System.arraycopy(buffer, head, buffer, 0, tail - head);
+                tail -= head;
+                head = 0;
+            }
+            int read = in.read(buffer, tail, buffer.length - tail);
+            if (read < 0) {
+                eof = true;
+            } else {
+                tail += read;
+            }
+        }
+        return tail - head >= count;
+    }
+
+    /**
+     * Позиция границы, начинающейся в буфере не дальше {@code last}, или -1.
+     */
+    private int indexOfDelimiter(int last) {
+        outer:
+        for (int i = head; i <= last; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Часть multipart-тела.
+     *
+     * @param name        имя поля формы
+     * @param filename    имя файла (null для обычных полей)
+     * @param contentType тип содержимого части
+     * @param body        тело части, заканчивается на границе следующей части
+     */
+    public record Part(String name, String filename, String contentType, InputStream body) {
+    }
+
+    /**
+     * Тело текущей части: отдаёт байты до ближайшей границы.
+     */
+    private final class PartBody extends InputStream {
+
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (done || current != this && current != null) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            ensure(delimiter.length);
+            // Граница ищется только там, где может начаться в пределах запрошенных байт
+            int last = Math.min(tail - delimiter.length, head + length);
+            int found = indexOfDelimiter(last);
+            int available;
+            if (found >= 0) {
+                available = found - head;
+            } else if (eof && last == tail - delimiter.length) {
+                throw new IOException("Unexpected end of multipart body");
+            } else {
+                available = last - head + 1;
+            }
+            if (available == 0) {
+                done = true;
+                return -1;
+            }
+            int count = Math.min(length, available);
+            System.arraycopy(buffer, head, target, offset, count);
+            head += count;
+            return count;
+        }
+
+        private void skipRemaining() throws IOException {
+            byte[] skip = new byte[BUFFER_SIZE];
+            while (read(skip, 0, skip.length) >= 0) {
+                // Дочитываем до границы
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.mkalugin.gpt.utils;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Сокращение текста чанков для ответов API.
+ */
+@UtilityClass
+public class TextPreview {
+
+    /**
+     * Максимальная длина превью текста.
+     */
+    public static final int MAX_LENGTH = 500;
+
+    /**
+     * Обрезка текста до {@link #MAX_LENGTH} символов.
+     *
+     * @param content исходный текст (может быть null)
+     * @return исходный текст или его начало с многоточием
+     */
+    public static String of(String content) {
+        if (content == null || content.length() <= MAX_LENGTH) {
+            return content;
+        }
+        return content.substring(0, MAX_LENGTH) + "...";
+    }
+}
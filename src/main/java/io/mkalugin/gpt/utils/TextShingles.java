@@ -0,0 +1,145 @@
+package io.mkalugin.gpt.utils;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Шинглы текста для оценки лексического сходства чанков.
+ *
+ * <p>Шингл — хэш последовательности из {@link #SHINGLE_SIZE} соседних слов.
+ * Набор шинглов хранится как отсортированный массив {@code int} без повторов,
+ * что позволяет считать пересечение слиянием за линейное время.</p>
+ */
+@UtilityClass
+public class TextShingles {
+
+    /**
+     * Количество слов в шингле.
+     */
+    public final int SHINGLE_SIZE = 3;
+
+    private final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}_]+");
+
+    /**
+     * Разбиение текста на слова в нижнем регистре.
+     *
+     * @param text исходный текст
+     * @return слова без пунктуации
+     */
+    public String[] words(String text) {
+        if (text == null || text.isBlank()) {
+            return new String[0];
+        }
+        return Arrays.stream(WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT)))
+                .filter(word -> !word.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Отсортированный набор хэшей шинглов текста.
+     * Текст короче одного шингла даёт один шингл из всех его слов.
+     *
+     * @param text исходный текст
+     * @return отсортированные уникальные хэши шинглов
+     */
+    public int[] of(String text) {
+        String[] words = words(text);
+        if (words.length == 0) {
+            return new int[0];
+        }
+        int count = Math.max(1, words.length - SHINGLE_SIZE + 1);
+        int[] hashes = new int[count];
+        for (int i = 0; i < count; i++) {
+            int hash = 1;
+            for (int j = i; j < Math.min(words.length, i + SHINGLE_SIZE); j++) {
+                hash = 31 * hash + words[j].hashCode();
+            }
+            hashes[i] = hash;
+        }
+        return Arrays.stream(hashes).sorted().distinct().toArray();
+    }
+
+    /**
+     * Коэффициент Жаккара двух наборов шинглов.
+     *
+     * @return |A ∩ B| / |A ∪ B|, 0 для пустых наборов
+     */
+    public double jaccard(int[] a, int[] b) {
+        int intersection = intersection(a, b);
+        int union = a.length + b.length - intersection;
+        return union == 0 ? 0 : (double) intersection / union;
+    }
+
+    /**
+     * Доля меньшего набора, содержащаяся в большем.
+     * Близка к 1, если один чанк почти целиком входит в другой (перекрытие).
+     *
+     * @return |A ∩ B| / min(|A|, |B|), 0 для пустых наборов
+     */
+    public double containment(int[] a, int[] b) {
+        int smaller = Math.min(a.length, b.length);
+        return smaller == 0 ? 0 : (double) intersection(a, b) / smaller;
+    }
+
+    /**
+     * 64-битный SimHash текста по его шинглам. Похожие тексты дают отпечатки,
+     * отличающиеся в немногих битах.
+     *
+     * @param text исходный текст
+     * @return отпечаток (0 для текста без слов)
+     */
+    public long simHash(String text) {
+        int[] weights = new int[Long.SIZE];
+        for (int shingle : of(text)) {
+            long hash = mix(shingle);
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                weights[bit] += (hash >>> bit & 1) != 0 ? 1 : -1;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Сходство двух SimHash-отпечатков: доля совпадающих бит.
+     */
+    public double simHashSimilarity(long a, long b) {
+        return 1 - (double) Long.bitCount(a ^ b) / Long.SIZE;
+    }
+
+    /**
+     * Равномерное распределение 32-битного хэша шингла по 64 битам (финализатор SplitMix64).
+     */
+    private long mix(int value) {
+        long z = value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private int intersection(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                count++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return count;
+    }
+}
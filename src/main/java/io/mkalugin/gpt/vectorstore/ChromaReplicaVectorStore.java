@@ -0,0 +1,407 @@
+package io.mkalugin.gpt.vectorstore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.mkalugin.gpt.client.ChromaDbClient;
+import io.mkalugin.gpt.dto.chroma.ChromaCollection;
+import io.mkalugin.gpt.dto.chroma.ChromaRecordsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentMetadata;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Векторное хранилище ChromaDB с локальной копией коллекции для поиска.
+ *
+ * <p>Запись идёт в ChromaDB, она же остаётся источником истины. Id, embeddings, тексты
+ * и метаданные коллекции копируются в {@link FlatVectorIndex}, и поиск выполняется точным
+ * перебором в JVM без запроса к ChromaDB. Пока копия не загружена, если коллекции нет или
+ * локальный поиск завершился ошибкой, запрос уходит в ChromaDB.</p>
+ *
+ * <p>Копия обновляется инкрементально: записанные и удалённые через хранилище id, а также
+ * id из {@link #invalidate(Collection)} перечитываются из ChromaDB по {@link #refresh()}.
+ * Удалённые документы исключаются из поиска сразу. Раз в {@code sync-interval} количество
+ * документов сверяется с ChromaDB; если оно расходится две проверки подряд (например, коллекцию
+ * изменили в обход приложения), копия загружается заново, а поиск до замены идёт по прежней.</p>
+ *
+ * <p>Сходство — косинусное, как в коллекции ChromaDB с {@code hnsw:space=cosine}: оценка
+ * документа равна {@code 1 - distance}.</p>
+ */
+@Slf4j
+public class ChromaReplicaVectorStore implements VectorStore, Closeable {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final VectorStore chroma;
+    private final ChromaDbClient chromaDbClient;
+    private final EmbeddingModel embeddingModel;
+    private final int parallelThreshold;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock writer = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final ScheduledExecutorService syncer;
+    private final Counter localSearches;
+    private final Counter chromaSearches;
+
+    private volatile Replica replica;
+    private boolean countMismatch;
+
+    /**
+     * @param chroma            хранилище ChromaDB для записи и резервного поиска
+     * @param chromaDbClient    клиент для чтения коллекции
+     * @param embeddingModel    модель для embeddings запросов
+     * @param parallelThreshold число документов, начиная с которого перебор идёт на всех ядрах
+     * @param syncInterval      период сверки с ChromaDB; {@link Duration#ZERO} — копия загружается один раз
+     *                          при создании, дальше только явный {@link #sync()}
+     * @param meterRegistry     реестр метрик
+     */
+    public ChromaReplicaVectorStore(VectorStore chroma, ChromaDbClient chromaDbClient, EmbeddingModel embeddingModel,
+                                    int parallelThreshold, Duration syncInterval, MeterRegistry meterRegistry) {
+        this.chroma = chroma;
+        this.chromaDbClient = chromaDbClient;
+        this.embeddingModel = embeddingModel;
+        this.parallelThreshold = parallelThreshold;
+        this.localSearches = Counter.builder("rag.vectorstore.replica.searches")
+                .tag("source", "replica")
+                .description("Поиски по локальной копии коллекции")
+                .register(meterRegistry);
+        this.chromaSearches = Counter.builder("rag.vectorstore.replica.searches")
+                .tag("source", "chroma")
+                .description("Поиски, переданные в ChromaDB")
+                .register(meterRegistry);
+        Gauge.builder("rag.vectorstore.replica.size", this, ChromaReplicaVectorStore::size)
+                .description("Документы в локальной копии коллекции")
+                .register(meterRegistry);
+
+        this.syncer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("chroma-replica-sync").daemon().factory());
+        syncer.execute(this::syncQuietly);
+        if (syncInterval.isPositive()) {
+            long interval = syncInterval.toMillis();
+            syncer.scheduleWithFixedDelay(this::syncQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        log.info("Chroma replica dot product: {}", VectorMath.simd() ? "Vector API" : "scalar");
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        chroma.add(documents);
+        documents.forEach(document -> pending.add(document.getId()));
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        chroma.delete(idList);
+        pending.addAll(idList);
+        removeLocal(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        chroma.delete(filterExpression);
+        Replica current = replica;
+        if (current == null) {
+            return;
+        }
+        MetadataFilter filter = MetadataFilter.of(filterExpression);
+        List<String> ids = new ArrayList<>();
+        current.documents.values().forEach(document -> {
+            if (filter.matches(document.getMetadata())) {
+                ids.add(document.getId());
+            }
+        });
+        pending.addAll(ids);
+        removeLocal(ids);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        Replica current = replica;
+        if (current != null) {
+            try {
+                List<Document> results = current.search(embeddingModel.embed(request.getQuery()), request);
+                localSearches.increment();
+                return results;
+            } catch (RuntimeException e) {
+                log.warn("Local replica search failed, falling back to ChromaDB: {}", e.getMessage());
+            }
+        }
+        chromaSearches.increment();
+        return chroma.similaritySearch(request);
+    }
+
+    @Override
+    public <T> Optional<T> getNativeClient() {
+        return chroma.getNativeClient();
+    }
+
+    /**
+     * Пометка документов, изменённых в ChromaDB в обход хранилища (например, метаданных),
+     * для перечитывания при следующем {@link #refresh()}.
+     */
+    public void invalidate(Collection<String> ids) {
+        pending.addAll(ids);
+    }
+
+    /**
+     * Фоновое перечитывание записанных и изменённых с прошлого обновления документов.
+     * Если копия ещё не загружена (например, коллекции не было при старте), она загружается целиком.
+     */
+    public void refresh() {
+        syncer.execute(() -> {
+            syncLock.lock();
+            try {
+                Replica current = replica;
+                if (current != null) {
+                    syncPending(current);
+                } else {
+                    sync();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to refresh Chroma replica: {}", e.getMessage());
+            } finally {
+                syncLock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Сверка копии с ChromaDB: первая загрузка, перечитывание изменённых документов и полная
+     * перезагрузка, если количество документов расходится вторую проверку подряд.
+     *
+     * @throws IllegalStateException если документы коллекции не удалось прочитать
+     */
+    public void sync() {
+        syncLock.lock();
+        try {
+            Optional<ChromaCollection> collection = chromaDbClient.refreshCollection();
+            if (collection.isEmpty()) {
+                if (replica != null) {
+                    log.warn("Collection {} not found, searching ChromaDB", chromaDbClient.getCollectionName());
+                    replica = null;
+                }
+                return;
+            }
+            Replica current = replica;
+            if (current == null || !current.collectionId.equals(collection.get().id())) {
+                current = load(collection.get());
+            }
+            syncPending(current);
+
+            int count = collection.get().getCountOrZero();
+            if (count == current.size()) {
+                countMismatch = false;
+            } else if (countMismatch) {
+                log.info("Chroma replica has {} documents, collection has {}; reloading", current.size(), count);
+                current = load(collection.get());
+                syncPending(current);
+                countMismatch = false;
+            } else {
+                countMismatch = true;
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Количество документов в копии; 0, пока она не загружена.
+     */
+    public int size() {
+        Replica current = replica;
+        return current != null ? current.size() : 0;
+    }
+
+    @Override
+    public void close() {
+        syncer.shutdownNow();
+    }
+
+    /**
+     * Загрузка всей коллекции в новую копию и замена ею текущей.
+     */
+    private Replica load(ChromaCollection collection) {
+        long start = System.nanoTime();
+        Replica loaded = new Replica(collection.id(), parallelThreshold);
+        for (int offset = 0; ; offset += PAGE_SIZE) {
+            ChromaRecordsResponse page = chromaDbClient.getRecords(collection.id(), null, PAGE_SIZE, offset)
+                    .orElseThrow(() -> new IllegalStateException("Could not read collection " + collection.name()));
+            for (int i = 0; i < page.ids().size(); i++) {
+                loaded.put(page.ids().get(i), page.embeddings().get(i), page.getDocument(i), page.getMetadata(i));
+            }
+            if (page.ids().size() < PAGE_SIZE) {
+                break;
+            }
+        }
+        writer.lock();
+        try {
+            replica = loaded;
+        } finally {
+            writer.unlock();
+        }
+        log.info("Loaded {} documents of collection {} into local replica in {} ms", loaded.size(),
+                collection.name(), (System.nanoTime() - start) / 1_000_000);
+        return loaded;
+    }
+
+    /**
+     * Перечитывание помеченных документов: найденные заменяются, отсутствующие удаляются.
+     * При ошибке чтения необработанные id остаются помеченными.
+     */
+    private void syncPending(Replica current) {
+        List<String> ids = new ArrayList<>(pending);
+        if (ids.isEmpty()) {
+            return;
+        }
+        pending.removeAll(ids);
+        for (int from = 0; from < ids.size(); from += PAGE_SIZE) {
+            List<String> batch = ids.subList(from, Math.min(from + PAGE_SIZE, ids.size()));
+            ChromaRecordsResponse page = chromaDbClient.getRecords(current.collectionId, batch, batch.size(), 0)
+                    .orElse(null);
+            if (page == null) {
+                pending.addAll(ids.subList(from, ids.size()));
+                log.warn("Could not refresh {} documents of Chroma replica", ids.size() - from);
+                return;
+            }
+            writer.lock();
+            try {
+                Set<String> found = new HashSet<>();
+                for (int i = 0; i < page.ids().size(); i++) {
+                    String id = page.ids().get(i);
+                    current.put(id, page.embeddings().get(i), page.getDocument(i), page.getMetadata(i));
+                    found.add(id);
+                }
+                batch.stream().filter(id -> !found.contains(id)).forEach(current::remove);
+            } finally {
+                writer.unlock();
+            }
+        }
+        log.debug("Refreshed {} documents of Chroma replica", ids.size());
+    }
+
+    private void removeLocal(List<String> ids) {
+        Replica current = replica;
+        if (current == null) {
+            return;
+        }
+        writer.lock();
+        try {
+            ids.forEach(current::remove);
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            log.warn("Failed to sync Chroma replica: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Копия коллекции: векторы в плоском индексе и документы по слотам.
+     * Изменяется под блокировкой {@code writer}, читается без блокировки.
+     */
+    private static final class Replica {
+
+        private final String collectionId;
+        private final int parallelThreshold;
+        private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+        private final Map<Integer, Document> documents = new ConcurrentHashMap<>();
+        private volatile FlatVectorIndex index;
+
+        Replica(String collectionId, int parallelThreshold) {
+            this.collectionId = collectionId;
+            this.parallelThreshold = parallelThreshold;
+        }
+
+        void put(String id, float[] embedding, String text, Map<String, Object> metadata) {
+            if (index == null) {
+                index = new FlatVectorIndex(embedding.length, parallelThreshold);
+            }
+            Document document = Document.builder()
+                    .id(id)
+                    .text(text != null ? text : "")
+                    .metadata(metadata)
+                    .build();
+            Integer slot = slots.get(id);
+            if (slot != null) {
+                index.set(slot, embedding);
+                documents.put(slot, document);
+            } else {
+                slot = index.add(embedding);
+                documents.put(slot, document);
+                slots.put(id, slot);
+            }
+        }
+
+        void remove(String id) {
+            Integer slot = slots.remove(id);
+            if (slot != null) {
+                documents.remove(slot);
+                index.delete(slot);
+            }
+        }
+
+        int size() {
+            return slots.size();
+        }
+
+        List<Document> search(float[] query, SearchRequest request) {
+            FlatVectorIndex current = index;
+            if (current == null) {
+                return List.of();
+            }
+            IntPredicate accept = documents::containsKey;
+            if (request.hasFilterExpression()) {
+                MetadataFilter filter = MetadataFilter.of(request.getFilterExpression());
+                accept = slot -> {
+                    Document document = documents.get(slot);
+                    return document != null && filter.matches(document.getMetadata());
+                };
+            }
+            HnswIndex.Neighbors neighbors = current.search(query, request.getTopK(), accept);
+
+            List<Document> results = new ArrayList<>(neighbors.size());
+            for (int i = 0; i < neighbors.size(); i++) {
+                Document document = documents.get(neighbors.nodes()[i]);
+                double similarity = neighbors.similarities()[i];
+                if (document == null || similarity < request.getSimilarityThreshold()) {
+                    continue;
+                }
+                Map<String, Object> metadata = new HashMap<>(document.getMetadata());
+                metadata.put(DocumentMetadata.DISTANCE.value(), (float) (1 - similarity));
+                results.add(Document.builder()
+                        .id(document.getId())
+                        .text(document.getText())
+                        .metadata(metadata)
+                        .score(similarity)
+                        .build());
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package io.mkalugin.gpt.vectorstore;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Плоский индекс для точного поиска ближайших векторов полным перебором по косинусному сходству.
+ *
+ * <p>Нормированные векторы лежат подряд в сегментах {@code float[]} по {@value #SEGMENT_VECTORS}
+ * векторов, поэтому перебор читает память последовательно, а скалярное произведение считается
+ * через {@link VectorMath} (Vector API). Начиная с {@code parallelThreshold} слотов сегменты
+ * перебираются параллельно в общем {@link java.util.concurrent.ForkJoinPool}, и лучшие результаты
+ * сегментов объединяются.</p>
+ *
+ * <p>Слот удалённого вектора освобождается и занимается следующим добавленным. Поиски идут
+ * параллельно под блокировкой чтения, запись — под блокировкой записи.</p>
+ */
+final class FlatVectorIndex {
+
+    static final int SEGMENT_VECTORS = 4096;
+
+    private final int dimensions;
+    private final int parallelThreshold;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private float[][] segments = new float[0][];
+    private long[] used = new long[0];
+    private int[] free = new int[16];
+    private int freeCount;
+    private int slots;
+    private int size;
+
+    /**
+     * @param dimensions        размерность векторов
+     * @param parallelThreshold число слотов, начиная с которого перебор идёт параллельно
+     */
+    FlatVectorIndex(int dimensions, int parallelThreshold) {
+        this.dimensions = dimensions;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Добавление вектора.
+     *
+     * @return слот вектора
+     * @throws IllegalArgumentException если размерность не совпадает или вектор нулевой
+     */
+    int add(float[] vector) {
+        float[] normalized = VectorMath.normalize(vector, dimensions);
+        lock.writeLock().lock();
+        try {
+            int slot = freeCount > 0 ? free[--freeCount] : allocate();
+            System.arraycopy(normalized, 0, segments[slot / SEGMENT_VECTORS],
+                    (slot % SEGMENT_VECTORS) * dimensions, dimensions);
+            used[slot >>> 6] |= 1L << slot;
+            size++;
+            return slot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Замена вектора в занятом слоте.
+     */
+    void set(int slot, float[] vector) {
+        float[] normalized = VectorMath.normalize(vector, dimensions);
+        lock.writeLock().lock();
+        try {
+            System.arraycopy(normalized, 0, segments[slot / SEGMENT_VECTORS],
+                    (slot % SEGMENT_VECTORS) * dimensions, dimensions);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Освобождение слота. Повторное удаление ничего не делает.
+     */
+    void delete(int slot) {
+        lock.writeLock().lock();
+        try {
+            if (slot >= slots || (used[slot >>> 6] & (1L << slot)) == 0) {
+                return;
+            }
+            used[slot >>> 6] &= ~(1L << slot);
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = slot;
+            size--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Точный поиск ближайших векторов.
+     *
+     * @param query  вектор запроса
+     * @param k      сколько слотов вернуть
+     * @param accept фильтр слотов
+     * @return до {@code k} занятых слотов, прошедших фильтр, по убыванию сходства
+     * @throws IllegalArgumentException если размерность запроса не совпадает
+     */
+    HnswIndex.Neighbors search(float[] query, int k, IntPredicate accept) {
+        float[] normalized = VectorMath.normalize(query, dimensions);
+        lock.readLock().lock();
+        try {
+            if (k <= 0 || size == 0) {
+                return new HnswIndex.Neighbors(new int[0], new float[0]);
+            }
+            int segmentCount = (slots + SEGMENT_VECTORS - 1) / SEGMENT_VECTORS;
+            IntStream range = IntStream.range(0, segmentCount);
+            if (slots >= parallelThreshold) {
+                range = range.parallel();
+            }
+            NodeQueue best = range
+                    .mapToObj(segment -> scan(normalized, segment, k, accept))
+                    .reduce((a, b) -> merge(a, b, k))
+                    .orElseGet(() -> NodeQueue.max(k));
+            return descending(best);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Количество занятых слотов.
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Лучшие {@code k} слотов одного сегмента в max-куче по расстоянию.
+     */
+    private NodeQueue scan(float[] query, int segment, int k, IntPredicate accept) {
+        NodeQueue results = NodeQueue.max(k + 1);
+        float[] vectors = segments[segment];
+        int first = segment * SEGMENT_VECTORS;
+        int last = Math.min(first + SEGMENT_VECTORS, slots);
+        for (int slot = first; slot < last; slot++) {
+            if ((used[slot >>> 6] & (1L << slot)) == 0 || !accept.test(slot)) {
+                continue;
+            }
+            float distance = 1 - VectorMath.dot(query, 0, vectors, (slot - first) * dimensions, dimensions);
+            if (results.size() < k) {
+                results.push(slot, distance);
+            } else if (distance < results.peekDistance()) {
+                results.pop();
+                results.push(slot, distance);
+            }
+        }
+        return results;
+    }
+
+    private int allocate() {
+        int slot = slots++;
+        if (slot / SEGMENT_VECTORS == segments.length) {
+            segments = Arrays.copyOf(segments, segments.length + 1);
+            segments[segments.length - 1] = new float[SEGMENT_VECTORS * dimensions];
+        }
+        if ((slot >>> 6) == used.length) {
+            used = Arrays.copyOf(used, Math.max(used.length * 2, 1));
+        }
+        return slot;
+    }
+
+    private static NodeQueue merge(NodeQueue into, NodeQueue from, int k) {
+        while (!from.isEmpty()) {
+            float distance = from.peekDistance();
+            int slot = from.pop();
+            into.push(slot, distance);
+            if (into.size() > k) {
+                into.pop();
+            }
+        }
+        return into;
+    }
+
+    private static HnswIndex.Neighbors descending(NodeQueue results) {
+        int[] nodes = new int[results.size()];
+        float[] similarities = new float[nodes.length];
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            similarities[i] = 1 - results.peekDistance();
+            nodes[i] = results.pop();
+        }
+        return new HnswIndex.Neighbors(nodes, similarities);
+    }
+}
@@ -0,0 +1,551 @@
+package io.mkalugin.gpt.vectorstore;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Граф HNSW (Hierarchical Navigable Small World) для приближённого поиска ближайших векторов
+ * по косинусному сходству.
+ *
+ * <p>Граф хранится в примитивных массивах: нормированные векторы подряд в одном {@code float[]},
+ * связи нулевого слоя — в одном {@code int[]} (на узел — счётчик и до {@code 2m} соседей), связи
+ * верхних слоёв — в {@code int[]} на узел. Удалённый узел помечается: он остаётся в графе
+ * для навигации, но не попадает в результаты.</p>
+ *
+ * <p>Поиски идут параллельно под блокировкой чтения. Добавлять и удалять узлы может только один
+ * поток одновременно — это обеспечивает вызывающий код. Соседи нового узла ищутся под блокировкой
+ * чтения, а связи меняются под короткой блокировкой записи, поэтому запись не останавливает
+ * поиск на время построения.</p>
+ */
+public class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    private static final int MAX_LEVEL = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int dimensions;
+    private final int m;
+    private final int m0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private float[] vectors;
+    private int[] levels;
+    private int[] links0;
+    private int[][] upperLinks;
+    private long[] deleted;
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * @param dimensions     размерность векторов
+     * @param m              максимум связей узла на верхних слоях (на нулевом — вдвое больше)
+     * @param efConstruction ширина поиска соседей при добавлении
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction) {
+        this(dimensions, m, efConstruction, INITIAL_CAPACITY);
+    }
+
+    private HnswIndex(int dimensions, int m, int efConstruction, int capacity) {
+        if (dimensions <= 0 || m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("Invalid HNSW parameters: dimensions=%d, m=%d, efConstruction=%d"
+                    .formatted(dimensions, m, efConstruction));
+        }
+        this.dimensions = dimensions;
+        this.m = m;
+        this.m0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        capacity = Math.min(capacity, maxNodes());
+        this.vectors = new float[capacity * dimensions];
+        this.levels = new int[capacity];
+        this.links0 = new int[capacity * (m0 + 1)];
+        this.upperLinks = new int[capacity][];
+        this.deleted = new long[(capacity + 63) >>> 6];
+    }
+
+    /**
+     * Результат поиска.
+     *
+     * @param nodes        узлы по убыванию сходства
+     * @param similarities косинусное сходство узлов с запросом
+     */
+    public record Neighbors(int[] nodes, float[] similarities) {
+
+        public int size() {
+            return nodes.length;
+        }
+    }
+
+    /**
+     * Добавление вектора. Вызывается одним потоком одновременно.
+     *
+     * @param vector вектор размерности {@link #dimensions()}, нормируется при добавлении
+     * @return номер узла (номера выдаются подряд с нуля)
+     */
+    public int add(float[] vector) {
+        float[] query = normalize(vector);
+        int level = randomLevel();
+        int node;
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(size + 1);
+            node = size;
+            System.arraycopy(query, 0, vectors, node * dimensions, dimensions);
+            levels[node] = level;
+            upperLinks[node] = level > 0 ? new int[level * (m + 1)] : null;
+            size++;
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        int top = maxLevel;
+        int[][] selected = new int[Math.min(level, top) + 1][];
+        lock.readLock().lock();
+        try {
+            int inserted = node;
+            int ep = entryPoint;
+            for (int l = top; l > level; l--) {
+                ep = greedy(query, ep, l);
+            }
+            for (int l = Math.min(level, top); l >= 0; l--) {
+                Candidates candidates = ascending(searchLayer(query, ep, efConstruction, l, n -> n != inserted));
+                if (candidates.nodes.length > 0) {
+                    ep = candidates.nodes[0];
+                }
+                selected[l] = selectNeighbors(candidates, maxLinks(l));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int l = 0; l < selected.length; l++) {
+                setLinks(node, l, selected[l]);
+                for (int neighbor : selected[l]) {
+                    connect(neighbor, node, l);
+                }
+            }
+            if (level > maxLevel) {
+                entryPoint = node;
+                maxLevel = level;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return node;
+    }
+
+    /**
+     * Пометка узла удалённым. Вызывается тем же потоком, что и {@link #add(float[])}.
+     */
+    public void delete(int node) {
+        lock.writeLock().lock();
+        try {
+            if (node >= 0 && node < size && !isDeletedUnlocked(node)) {
+                deleted[node >>> 6] |= 1L << node;
+                deletedCount++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Приближённый поиск ближайших векторов.
+     *
+     * @param query  вектор запроса
+     * @param k      сколько узлов вернуть
+     * @param ef     ширина поиска на нулевом слое (не меньше {@code k}); больше — точнее и медленнее
+     * @param accept фильтр узлов; отклонённые узлы используются для навигации, но не возвращаются
+     * @return до {@code k} неудалённых узлов, прошедших фильтр
+     */
+    public Neighbors search(float[] query, int k, int ef, IntPredicate accept) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return new Neighbors(new int[0], new float[0]);
+            }
+            int ep = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                ep = greedy(normalized, ep, l);
+            }
+            NodeQueue results = searchLayer(normalized, ep, Math.max(ef, k), 0,
+                    n -> !isDeletedUnlocked(n) && accept.test(n));
+            return best(results, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Точный поиск полным перебором — эталон для оценки полноты (recall) графа.
+     *
+     * @param query  вектор запроса
+     * @param k      сколько узлов вернуть
+     * @param accept фильтр узлов
+     * @return до {@code k} ближайших неудалённых узлов, прошедших фильтр
+     */
+    public Neighbors exactSearch(float[] query, int k, IntPredicate accept) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            NodeQueue results = NodeQueue.max(k + 1);
+            for (int node = 0; node < size && k > 0; node++) {
+                if (isDeletedUnlocked(node) || !accept.test(node)) {
+                    continue;
+                }
+                float distance = distance(normalized, node);
+                if (results.size() < k || distance < results.peekDistance()) {
+                    results.push(node, distance);
+                    if (results.size() > k) {
+                        results.pop();
+                    }
+                }
+            }
+            return best(results, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Копия нормированного вектора узла.
+     */
+    public float[] vector(int node) {
+        lock.readLock().lock();
+        try {
+            return Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isDeleted(int node) {
+        lock.readLock().lock();
+        try {
+            return isDeletedUnlocked(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Количество узлов, включая удалённые.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Запись снимка графа.
+     */
+    void writeTo(SnapshotWriter writer) throws IOException {
+        lock.readLock().lock();
+        try {
+            for (int value : new int[]{MAGIC, VERSION, dimensions, m, efConstruction, size, deletedCount,
+                    entryPoint, maxLevel}) {
+                writer.putInt(value);
+            }
+            writer.putInts(levels, 0, size);
+            writer.putLongs(deleted, 0, (size + 63) >>> 6);
+            writer.putInts(links0, 0, size * (m0 + 1));
+            for (int node = 0; node < size; node++) {
+                if (upperLinks[node] != null) {
+                    writer.putInts(upperLinks[node], 0, upperLinks[node].length);
+                }
+            }
+            writer.putFloats(vectors, 0, size * dimensions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Чтение снимка графа.
+     *
+     * @throws IOException если снимок повреждён или другой версии
+     */
+    static HnswIndex readFrom(SnapshotReader reader) throws IOException {
+        if (reader.getInt() != MAGIC || reader.getInt() != VERSION) {
+            throw new IOException("Not an HNSW index or unsupported version");
+        }
+        int dimensions = reader.getInt();
+        int m = reader.getInt();
+        int efConstruction = reader.getInt();
+        int size = reader.getInt();
+        HnswIndex index = new HnswIndex(dimensions, m, efConstruction, Math.max(size, INITIAL_CAPACITY));
+        index.size = size;
+        index.deletedCount = reader.getInt();
+        index.entryPoint = reader.getInt();
+        index.maxLevel = reader.getInt();
+        reader.getInts(index.levels, 0, size);
+        reader.getLongs(index.deleted, 0, (size + 63) >>> 6);
+        reader.getInts(index.links0, 0, size * (index.m0 + 1));
+        for (int node = 0; node < size; node++) {
+            int level = index.levels[node];
+            if (level < 0 || level > MAX_LEVEL) {
+                throw new IOException("Corrupted HNSW index: level " + level + " of node " + node);
+            }
+            if (level > 0) {
+                int[] links = new int[level * (m + 1)];
+                reader.getInts(links, 0, links.length);
+                index.upperLinks[node] = links;
+            }
+        }
+        reader.getFloats(index.vectors, 0, size * dimensions);
+        return index;
+    }
+
+    /**
+     * Жадный спуск по слою к ближайшему к запросу узлу.
+     */
+    private int greedy(float[] query, int ep, int level) {
+        int current = ep;
+        float best = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] links = links(current, level);
+            int offset = linksOffset(current, level);
+            for (int i = 1; i <= links[offset]; i++) {
+                int neighbor = links[offset + i];
+                float distance = distance(query, neighbor);
+                if (distance < best) {
+                    best = distance;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Поиск по слою с шириной {@code ef}: возвращает max-кучу до {@code ef} ближайших принятых узлов.
+     */
+    private NodeQueue searchLayer(float[] query, int ep, int ef, int level, IntPredicate accept) {
+        long[] visited = new long[(size + 63) >>> 6];
+        NodeQueue candidates = NodeQueue.min(ef * 2);
+        NodeQueue results = NodeQueue.max(ef + 1);
+        float epDistance = distance(query, ep);
+        visited[ep >>> 6] |= 1L << ep;
+        candidates.push(ep, epDistance);
+        if (accept.test(ep)) {
+            results.push(ep, epDistance);
+        }
+        while (!candidates.isEmpty()) {
+            if (results.size() >= ef && candidates.peekDistance() > results.peekDistance()) {
+                break;
+            }
+            int current = candidates.pop();
+            int[] links = links(current, level);
+            int offset = linksOffset(current, level);
+            for (int i = 1; i <= links[offset]; i++) {
+                int neighbor = links[offset + i];
+                if ((visited[neighbor >>> 6] & (1L << neighbor)) != 0) {
+                    continue;
+                }
+                visited[neighbor >>> 6] |= 1L << neighbor;
+                float distance = distance(query, neighbor);
+                if (results.size() < ef || distance < results.peekDistance()) {
+                    candidates.push(neighbor, distance);
+                    if (accept.test(neighbor)) {
+                        results.push(neighbor, distance);
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Выбор соседей эвристикой HNSW: кандидат берётся, если он ближе к базовому узлу, чем к уже
+     * выбранным соседям, — так связи расходятся в разные стороны. Свободные места заполняются
+     * отброшенными кандидатами.
+     *
+     * @param candidates кандидаты по возрастанию расстояния до базового узла
+     */
+    private int[] selectNeighbors(Candidates candidates, int maxCount) {
+        int[] selected = new int[maxCount];
+        int count = 0;
+        int[] pruned = new int[candidates.nodes.length];
+        int prunedCount = 0;
+        for (int i = 0; i < candidates.nodes.length && count < maxCount; i++) {
+            int candidate = candidates.nodes[i];
+            boolean diverse = true;
+            for (int j = 0; j < count; j++) {
+                if (distance(candidate, selected[j]) < candidates.distances[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidate;
+            } else {
+                pruned[prunedCount++] = candidate;
+            }
+        }
+        for (int i = 0; i < prunedCount && count < maxCount; i++) {
+            selected[count++] = pruned[i];
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Обратная связь от соседа к новому узлу; при переполнении связи соседа выбираются заново.
+     */
+    private void connect(int neighbor, int node, int level) {
+        int[] links = links(neighbor, level);
+        int offset = linksOffset(neighbor, level);
+        int count = links[offset];
+        int max = maxLinks(level);
+        if (count < max) {
+            links[offset + 1 + count] = node;
+            links[offset] = count + 1;
+            return;
+        }
+        NodeQueue byDistance = NodeQueue.max(count + 1);
+        for (int i = 1; i <= count; i++) {
+            byDistance.push(links[offset + i], distance(neighbor, links[offset + i]));
+        }
+        byDistance.push(node, distance(neighbor, node));
+        setLinks(neighbor, level, selectNeighbors(ascending(byDistance), max));
+    }
+
+    private void setLinks(int node, int level, int[] neighbors) {
+        int[] links = links(node, level);
+        int offset = linksOffset(node, level);
+        links[offset] = neighbors.length;
+        System.arraycopy(neighbors, 0, links, offset + 1, neighbors.length);
+    }
+
+    private int[] links(int node, int level) {
+        return level == 0 ? links0 : upperLinks[node];
+    }
+
+    private int linksOffset(int node, int level) {
+        return level == 0 ? node * (m0 + 1) : (level - 1) * (m + 1);
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? m0 : m;
+    }
+
+    private int randomLevel() {
+        double level = -Math.log(1 - random.nextDouble()) * levelMultiplier;
+        return (int) Math.min(level, MAX_LEVEL);
+    }
+
+    private boolean isDeletedUnlocked(int node) {
+        return (deleted[node >>> 6] & (1L << node)) != 0;
+    }
+
+    private int maxNodes() {
+        return MAX_ARRAY_LENGTH / Math.max(dimensions, m0 + 1);
+    }
+
+    /**
+     * Расширение массивов графа. Векторы и связи нулевого слоя лежат в одном массиве на все узлы,
+     * поэтому число узлов ограничено длиной массива Java.
+     *
+     * @throws IllegalStateException если граф уже вмещает максимум узлов
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= levels.length) {
+            return;
+        }
+        int maxNodes = maxNodes();
+        if (capacity > maxNodes) {
+            throw new IllegalStateException("HNSW index is full: at most %d vectors of %d dimensions"
+                    .formatted(maxNodes, dimensions));
+        }
+        int grown = (int) Math.min(maxNodes, Math.max(capacity, levels.length + (long) (levels.length >> 1)));
+        vectors = Arrays.copyOf(vectors, grown * dimensions);
+        levels = Arrays.copyOf(levels, grown);
+        links0 = Arrays.copyOf(links0, grown * (m0 + 1));
+        upperLinks = Arrays.copyOf(upperLinks, grown);
+        deleted = Arrays.copyOf(deleted, (grown + 63) >>> 6);
+    }
+
+    private float distance(float[] query, int node) {
+        return 1 - dot(query, 0, vectors, node * dimensions);
+    }
+
+    private float distance(int a, int b) {
+        return 1 - dot(vectors, a * dimensions, vectors, b * dimensions);
+    }
+
+    private float dot(float[] a, int aOffset, float[] b, int bOffset) {
+        return VectorMath.dot(a, aOffset, b, bOffset, dimensions);
+    }
+
+    private float[] normalize(float[] vector) {
+        return VectorMath.normalize(vector, dimensions);
+    }
+
+    /**
+     * Узлы max-кучи по возрастанию расстояния.
+     */
+    private static Candidates ascending(NodeQueue queue) {
+        int[] nodes = new int[queue.size()];
+        float[] distances = new float[nodes.length];
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            distances[i] = queue.peekDistance();
+            nodes[i] = queue.pop();
+        }
+        return new Candidates(nodes, distances);
+    }
+
+    private static Neighbors best(NodeQueue results, int k) {
+        while (results.size() > k) {
+            results.pop();
+        }
+        Candidates candidates = ascending(results);
+        float[] similarities = new float[candidates.distances.length];
+        for (int i = 0; i < similarities.length; i++) {
+            similarities[i] = 1 - candidates.distances[i];
+        }
+        return new Neighbors(candidates.nodes, similarities);
+    }
+
+    private record Candidates(int[] nodes, float[] distances) {
+    }
+}
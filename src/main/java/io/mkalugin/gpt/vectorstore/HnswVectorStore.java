@@ -0,0 +1,457 @@
+package io.mkalugin.gpt.vectorstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentMetadata;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.observation.conventions.VectorStoreSimilarityMetric;
+import org.springframework.ai.vectorstore.AbstractVectorStoreBuilder;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.observation.AbstractObservationVectorStore;
+import org.springframework.ai.vectorstore.observation.VectorStoreObservationContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Векторное хранилище в памяти приложения на графе {@link HnswIndex}.
+ *
+ * <p>Поиск не ходит по сети: запрос переводится в embedding и ищется в графе в той же JVM.
+ * Поиски идут параллельно, запись (добавление и удаление) — в одном потоке одновременно.
+ * Повторное добавление документа с тем же id заменяет его. Фильтр по метаданным вычисляется
+ * так же, как в {@link org.springframework.ai.vectorstore.SimpleVectorStore}.</p>
+ *
+ * <p>Граф и документы сохраняются снимком в один файл: снимок потоково пишется через буфер
+ * в куче во временный файл и атомарно заменяет прежний, поэтому прерванная запись не портит данные,
+ * а размер снимка не ограничен 2 ГБ. Файл не отображается в память, поэтому замена работает
+ * и на Windows. Снимок пишется раз в {@code flush-interval}, если были изменения, и при закрытии.
+ * При старте массивы графа читаются из файла целиком, граф не перестраивается.</p>
+ *
+ * <p>Удалённые узлы остаются в графе до перестройки. Если их больше четверти, граф строится
+ * заново из оставшихся векторов — при старте и перед записью снимка, под блокировкой записи.
+ * Новый граф подменяет прежний вместе с документами, поэтому идущие поиски дочитывают прежний.</p>
+ */
+@Slf4j
+public class HnswVectorStore extends AbstractObservationVectorStore implements Closeable {
+
+    private static final int MAGIC = 0x48565354;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+    private static final int IO_BUFFER_SIZE = 1024 * 1024;
+
+    private final Path path;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock writer = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+
+    private volatile Graph graph = new Graph(null, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    private volatile boolean dirty;
+
+    protected HnswVectorStore(Builder builder) throws IOException {
+        super(builder);
+        this.path = builder.path;
+        this.m = builder.m;
+        this.efConstruction = builder.efConstruction;
+        this.efSearch = builder.efSearch;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (Files.exists(path)) {
+            load();
+        }
+        if (builder.flushInterval.isPositive()) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("hnsw-flush").daemon().factory());
+            long interval = builder.flushInterval.toMillis();
+            flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    public static Builder builder(EmbeddingModel embeddingModel) {
+        return new Builder(embeddingModel);
+    }
+
+    @Override
+    public void doAdd(List<Document> documents) {
+        List<float[]> embeddings = embeddingModel.embed(documents, EmbeddingOptions.builder().build(), batchingStrategy);
+        writer.lock();
+        try {
+            dirty = true;
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                Graph current = graph;
+                if (current.index() == null) {
+                    current = new Graph(new HnswIndex(embeddings.get(i).length, m, efConstruction),
+                            current.documents(), current.nodes());
+                    graph = current;
+                }
+                int node = current.index().size();
+                current.documents().put(node, Document.builder()
+                        .id(document.getId())
+                        .text(document.getText())
+                        .metadata(document.getMetadata())
+                        .build());
+                try {
+                    current.index().add(embeddings.get(i));
+                } catch (IllegalStateException e) {
+                    // Граф заполнен: документ без узла не должен остаться в хранилище
+                    current.documents().remove(node);
+                    throw e;
+                }
+                Integer previous = current.nodes().put(document.getId(), node);
+                if (previous != null) {
+                    current.index().delete(previous);
+                    current.documents().remove(previous);
+                }
+            }
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    @Override
+    public void doDelete(List<String> idList) {
+        writer.lock();
+        try {
+            Graph current = graph;
+            for (String id : idList) {
+                Integer node = current.nodes().remove(id);
+                if (node != null) {
+                    current.index().delete(node);
+                    current.documents().remove(node);
+                    dirty = true;
+                }
+            }
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    @Override
+    protected void doDelete(Filter.Expression filterExpression) {
+        MetadataFilter filter = MetadataFilter.of(filterExpression);
+        List<String> ids = new ArrayList<>();
+        graph.documents().values().forEach(document -> {
+            if (filter.matches(document.getMetadata())) {
+                ids.add(document.getId());
+            }
+        });
+        doDelete(ids);
+    }
+
+    @Override
+    public List<Document> doSimilaritySearch(SearchRequest request) {
+        Graph current = graph;
+        if (current.index() == null) {
+            return List.of();
+        }
+        Map<Integer, Document> documents = current.documents();
+        float[] query = embeddingModel.embed(request.getQuery());
+        IntPredicate accept = node -> documents.containsKey(node);
+        if (request.hasFilterExpression()) {
+            MetadataFilter filter = MetadataFilter.of(request.getFilterExpression());
+            accept = node -> {
+                Document document = documents.get(node);
+                return document != null && filter.matches(document.getMetadata());
+            };
+        }
+        HnswIndex.Neighbors neighbors =
+                current.index().search(query, request.getTopK(), Math.max(efSearch, request.getTopK()), accept);
+
+        List<Document> results = new ArrayList<>(neighbors.size());
+        for (int i = 0; i < neighbors.size(); i++) {
+            Document document = documents.get(neighbors.nodes()[i]);
+            double similarity = neighbors.similarities()[i];
+            if (document == null || similarity < request.getSimilarityThreshold()) {
+                continue;
+            }
+            Map<String, Object> metadata = new HashMap<>(document.getMetadata());
+            metadata.put(DocumentMetadata.DISTANCE.value(), (float) (1 - similarity));
+            results.add(Document.builder()
+                    .id(document.getId())
+                    .text(document.getText())
+                    .metadata(metadata)
+                    .score(similarity)
+                    .build());
+        }
+        return results;
+    }
+
+    @Override
+    public VectorStoreObservationContext.Builder createObservationContextBuilder(String operationName) {
+        HnswIndex current = graph.index();
+        return VectorStoreObservationContext.builder("hnsw", operationName)
+                .collectionName(path.getFileName().toString())
+                .dimensions(current != null ? current.dimensions() : null)
+                .similarityMetric(VectorStoreSimilarityMetric.COSINE.value());
+    }
+
+    /**
+     * Обход id и метаданных всех документов (например, для манифеста чанков при загрузке).
+     */
+    public void forEachMetadata(BiConsumer<String, Map<String, Object>> action) {
+        graph.documents().values().forEach(document -> action.accept(document.getId(), document.getMetadata()));
+    }
+
+    /**
+     * Замена метаданных документов без пересчёта embeddings.
+     *
+     * @param metadatas новые метаданные по id; отсутствующие id пропускаются
+     */
+    public void updateMetadata(Map<String, Map<String, Object>> metadatas) {
+        writer.lock();
+        try {
+            Graph current = graph;
+            metadatas.forEach((id, metadata) -> {
+                Integer node = current.nodes().get(id);
+                Document document = node != null ? current.documents().get(node) : null;
+                if (document != null) {
+                    Map<String, Object> merged = new HashMap<>(document.getMetadata());
+                    merged.putAll(metadata);
+                    current.documents().put(node, Document.builder().id(id).text(document.getText()).metadata(merged).build());
+                    dirty = true;
+                }
+            });
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    /**
+     * Количество документов в хранилище.
+     */
+    public int size() {
+        return graph.nodes().size();
+    }
+
+    /**
+     * Запись снимка на диск, если с прошлой записи были изменения. Если удалённых узлов
+     * больше четверти, граф сначала перестраивается.
+     *
+     * @throws IOException если снимок не удалось записать
+     */
+    public void flush() throws IOException {
+        writer.lock();
+        try {
+            if (!dirty) {
+                return;
+            }
+            if (needsRebuild(graph.index())) {
+                graph = rebuild(graph);
+            }
+            HnswIndex current = graph.index();
+            Map<Integer, Document> documents = graph.documents();
+            int count = current != null ? current.size() : 0;
+
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            long bytes;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                SnapshotWriter snapshot = new SnapshotWriter(channel, IO_BUFFER_SIZE);
+                snapshot.putInt(MAGIC);
+                snapshot.putInt(VERSION);
+                snapshot.putInt(current != null ? 1 : 0);
+                if (current != null) {
+                    current.writeTo(snapshot);
+                }
+                for (int node = 0; node < count; node++) {
+                    Document document = documents.get(node);
+                    if (document == null) {
+                        snapshot.putInt(-1);
+                        continue;
+                    }
+                    byte[] record = objectMapper.writeValueAsBytes(new StoredDocument(
+                            document.getId(), document.getText(), document.getMetadata()));
+                    snapshot.putInt(record.length);
+                    snapshot.putBytes(record);
+                }
+                snapshot.flush();
+                channel.force(true);
+                bytes = channel.size();
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            log.debug("Saved HNSW snapshot {}: {} documents, {} bytes", path, documents.size(), bytes);
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    /**
+     * Остановка фоновой записи и запись последнего снимка.
+     */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flush();
+    }
+
+    private void load() throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            SnapshotReader snapshot = new SnapshotReader(channel, IO_BUFFER_SIZE);
+            if (channel.size() < HEADER_SIZE || snapshot.getInt() != MAGIC || snapshot.getInt() != VERSION) {
+                throw new IOException("Not an HNSW vector store or unsupported version: " + path);
+            }
+            if (snapshot.getInt() == 0) {
+                return;
+            }
+            HnswIndex loaded = HnswIndex.readFrom(snapshot);
+            Map<Integer, Document> documents = new ConcurrentHashMap<>();
+            Map<String, Integer> nodes = new ConcurrentHashMap<>();
+            for (int node = 0; node < loaded.size(); node++) {
+                int length = snapshot.getInt();
+                if (length < 0) {
+                    continue;
+                }
+                byte[] record = new byte[length];
+                snapshot.getBytes(record);
+                StoredDocument stored = objectMapper.readValue(record, StoredDocument.class);
+                documents.put(node, Document.builder()
+                        .id(stored.id())
+                        .text(stored.text())
+                        .metadata(stored.metadata())
+                        .build());
+                nodes.put(stored.id(), node);
+            }
+            Graph loadedGraph = new Graph(loaded, documents, nodes);
+            graph = needsRebuild(loaded) ? rebuild(loadedGraph) : loadedGraph;
+        }
+        log.info("Loaded HNSW vector store {}: {} documents in {} ms", path, size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static boolean needsRebuild(HnswIndex index) {
+        return index != null && index.deletedCount() > index.size() / 4;
+    }
+
+    /**
+     * Новый граф из неудалённых узлов: удалённые узлы больше не занимают память и не замедляют поиск.
+     * Исходный граф не меняется.
+     */
+    private Graph rebuild(Graph source) {
+        HnswIndex index = source.index();
+        HnswIndex rebuilt = new HnswIndex(index.dimensions(), m, efConstruction);
+        Map<Integer, Document> documents = new ConcurrentHashMap<>();
+        Map<String, Integer> nodes = new ConcurrentHashMap<>();
+        for (int node = 0; node < index.size(); node++) {
+            Document document = source.documents().get(node);
+            if (document == null || index.isDeleted(node)) {
+                continue;
+            }
+            int rebuiltNode = rebuilt.add(index.vector(node));
+            documents.put(rebuiltNode, document);
+            nodes.put(document.getId(), rebuiltNode);
+        }
+        dirty = true;
+        log.info("Rebuilt HNSW graph without {} deleted nodes", index.deletedCount());
+        return new Graph(rebuilt, documents, nodes);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to save HNSW snapshot {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Граф и его документы: номер узла → документ и id документа → номер узла.
+     *
+     * @param index граф или null, пока не добавлен первый документ
+     */
+    private record Graph(HnswIndex index, Map<Integer, Document> documents, Map<String, Integer> nodes) {
+    }
+
+    /**
+     * Документ в снимке.
+     */
+    private record StoredDocument(String id, String text, Map<String, Object> metadata) {
+    }
+
+    /**
+     * Параметры хранилища.
+     */
+    public static final class Builder extends AbstractVectorStoreBuilder<Builder> {
+
+        private Path path = Path.of("data/hnsw/index.bin");
+        private int m = 16;
+        private int efConstruction = 200;
+        private int efSearch = 64;
+        private Duration flushInterval = Duration.ofSeconds(10);
+
+        private Builder(EmbeddingModel embeddingModel) {
+            super(embeddingModel);
+        }
+
+        public Builder path(Path path) {
+            this.path = path;
+            return this;
+        }
+
+        public Builder m(int m) {
+            this.m = m;
+            return this;
+        }
+
+        public Builder efConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        public Builder efSearch(int efSearch) {
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        /**
+         * Период записи снимка; {@link Duration#ZERO} — только при закрытии
+         * и явном {@link HnswVectorStore#flush()}.
+         */
+        public Builder flushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException если сохранённый снимок не удалось прочитать
+         */
+        @Override
+        public HnswVectorStore build() {
+            try {
+                return new HnswVectorStore(this);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to open HNSW vector store " + path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.mkalugin.gpt.vectorstore;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.converter.SimpleVectorStoreFilterExpressionConverter;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+
+import java.util.Map;
+
+/**
+ * Фильтр Spring AI по метаданным документа, вычисляемый в JVM так же, как в
+ * {@link org.springframework.ai.vectorstore.SimpleVectorStore}: выражение переводится в SpEL
+ * над переменной {@code #metadata}.
+ */
+final class MetadataFilter {
+
+    private static final String METADATA_VARIABLE = "metadata";
+    private static final SimpleVectorStoreFilterExpressionConverter CONVERTER =
+            new SimpleVectorStoreFilterExpressionConverter();
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser();
+
+    private final Expression expression;
+
+    private MetadataFilter(Expression expression) {
+        this.expression = expression;
+    }
+
+    static MetadataFilter of(Filter.Expression filterExpression) {
+        return new MetadataFilter(PARSER.parseExpression(CONVERTER.convertExpression(filterExpression)));
+    }
+
+    boolean matches(Map<String, Object> metadata) {
+        EvaluationContext context = SimpleEvaluationContext.forReadOnlyDataBinding().withInstanceMethods().build();
+        context.setVariable(METADATA_VARIABLE, metadata);
+        return Boolean.TRUE.equals(expression.getValue(context, Boolean.class));
+    }
+}
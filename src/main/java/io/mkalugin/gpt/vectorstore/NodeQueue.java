@@ -0,0 +1,98 @@
+package io.mkalugin.gpt.vectorstore;
+
+import java.util.Arrays;
+
+/**
+ * Двоичная куча узлов графа по расстоянию на примитивных массивах.
+ *
+ * <p>Min-куча отдаёт ближайший узел (очередь кандидатов поиска), max-куча — самый дальний
+ * (текущие результаты: вершина вытесняется более близким узлом).</p>
+ */
+final class NodeQueue {
+
+    private final boolean max;
+    private int[] nodes;
+    private float[] distances;
+    private int size;
+
+    NodeQueue(int capacity, boolean max) {
+        this.max = max;
+        this.nodes = new int[Math.max(capacity, 4)];
+        this.distances = new float[nodes.length];
+    }
+
+    static NodeQueue min(int capacity) {
+        return new NodeQueue(capacity, false);
+    }
+
+    static NodeQueue max(int capacity) {
+        return new NodeQueue(capacity, true);
+    }
+
+    void push(int node, float distance) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            distances = Arrays.copyOf(distances, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(distance, distances[parent])) {
+                break;
+            }
+            nodes[i] = nodes[parent];
+            distances[i] = distances[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        distances[i] = distance;
+    }
+
+    int peekNode() {
+        return nodes[0];
+    }
+
+    float peekDistance() {
+        return distances[0];
+    }
+
+    /**
+     * Удаление вершины кучи.
+     *
+     * @return узел с вершины
+     */
+    int pop() {
+        int top = nodes[0];
+        int node = nodes[--size];
+        float distance = distances[size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && before(distances[child + 1], distances[child])) {
+                child++;
+            }
+            if (!before(distances[child], distance)) {
+                break;
+            }
+            nodes[i] = nodes[child];
+            distances[i] = distances[child];
+            i = child;
+        }
+        nodes[i] = node;
+        distances[i] = distance;
+        return top;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private boolean before(float a, float b) {
+        return max ? a > b : a < b;
+    }
+}
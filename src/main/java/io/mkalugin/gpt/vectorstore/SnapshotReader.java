@@ -0,0 +1,86 @@
+package io.mkalugin.gpt.vectorstore;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Последовательное чтение снимка, записанного {@link SnapshotWriter}, через буфер в куче.
+ */
+final class SnapshotReader {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    SnapshotReader(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize).limit(0);
+    }
+
+    int getInt() throws IOException {
+        require(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    void getInts(int[] target, int offset, int length) throws IOException {
+        while (length > 0) {
+            require(Integer.BYTES);
+            int count = Math.min(length, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().get(target, offset, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    void getLongs(long[] target, int offset, int length) throws IOException {
+        while (length > 0) {
+            require(Long.BYTES);
+            int count = Math.min(length, buffer.remaining() / Long.BYTES);
+            buffer.asLongBuffer().get(target, offset, count);
+            buffer.position(buffer.position() + count * Long.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    void getFloats(float[] target, int offset, int length) throws IOException {
+        while (length > 0) {
+            require(Float.BYTES);
+            int count = Math.min(length, buffer.remaining() / Float.BYTES);
+            buffer.asFloatBuffer().get(target, offset, count);
+            buffer.position(buffer.position() + count * Float.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    void getBytes(byte[] target) throws IOException {
+        int offset = 0;
+        while (offset < target.length) {
+            require(1);
+            int count = Math.min(target.length - offset, buffer.remaining());
+            buffer.get(target, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Дочитывание канала, пока в буфере не окажется хотя бы {@code bytes} байт.
+     *
+     * @throws EOFException если снимок закончился раньше
+     */
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of snapshot");
+            }
+        }
+        buffer.flip();
+    }
+}
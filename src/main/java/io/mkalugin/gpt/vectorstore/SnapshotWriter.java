@@ -0,0 +1,88 @@
+package io.mkalugin.gpt.vectorstore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Последовательная запись снимка в канал через буфер в куче.
+ *
+ * <p>Файл снимка не отображается в память: отображённый файл нельзя заменить на Windows,
+ * а одно отображение ограничено 2 ГБ. Массивы пишутся кусками размером с буфер,
+ * поэтому размер снимка не ограничен.</p>
+ */
+final class SnapshotWriter {
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    SnapshotWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    void putInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    void putInts(int[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensure(Integer.BYTES);
+            int count = Math.min(length, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    void putLongs(long[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensure(Long.BYTES);
+            int count = Math.min(length, buffer.remaining() / Long.BYTES);
+            buffer.asLongBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Long.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    void putFloats(float[] values, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensure(Float.BYTES);
+            int count = Math.min(length, buffer.remaining() / Float.BYTES);
+            buffer.asFloatBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Float.BYTES);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    void putBytes(byte[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            ensure(1);
+            int count = Math.min(values.length - offset, buffer.remaining());
+            buffer.put(values, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Запись в канал всего, что накоплено в буфере.
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package io.mkalugin.gpt.vectorstore;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Скалярное произведение и нормализация векторов для локального поиска.
+ *
+ * <p>Если JVM запущена с {@code --add-modules jdk.incubator.vector}, произведение считается
+ * через Vector API в регистрах максимальной ширины процессора (AVX2/AVX-512, NEON), иначе —
+ * скалярным циклом с четырьмя независимыми суммами. Классы Vector API загружаются только
+ * при наличии модуля, поэтому без него приложение работает, но медленнее.</p>
+ */
+final class VectorMath {
+
+    private static final boolean SIMD = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private VectorMath() {
+    }
+
+    /**
+     * Используется ли Vector API.
+     */
+    static boolean simd() {
+        return SIMD;
+    }
+
+    /**
+     * Скалярное произведение {@code length} элементов двух массивов с указанных смещений.
+     */
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return SIMD ? Simd.dot(a, aOffset, b, bOffset, length) : scalarDot(a, aOffset, b, bOffset, length);
+    }
+
+    static float scalarDot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    /**
+     * Копия вектора единичной длины.
+     *
+     * @throws IllegalArgumentException если размерность не совпадает или вектор нулевой
+     */
+    static float[] normalize(float[] vector, int dimensions) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected vector of %d dimensions, got %d"
+                    .formatted(dimensions, vector.length));
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            throw new IllegalArgumentException("Cannot index a zero vector");
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        float[] normalized = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    /**
+     * Реализация на Vector API; загружается только при наличии модуля.
+     */
+    private static final class Simd {
+
+        private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+        static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            FloatVector sum = FloatVector.zero(SPECIES);
+            int bound = SPECIES.loopBound(length);
+            int i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                FloatVector x = FloatVector.fromArray(SPECIES, a, aOffset + i);
+                FloatVector y = FloatVector.fromArray(SPECIES, b, bOffset + i);
+                sum = x.fma(y, sum);
+            }
+            float result = sum.reduceLanes(VectorOperators.ADD);
+            for (; i < length; i++) {
+                result += a[aOffset + i] * b[bOffset + i];
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.mkalugin.gpt.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.mkalugin.gpt.dto.RagSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit-тесты на {@link AnswerSourceIndex}
+ */
+class AnswerSourceIndexTest {
+
+    private CacheManager cacheManager;
+    private SemanticAnswerCache semanticAnswerCache;
+    private AnswerSourceIndex index;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager("ragQueries");
+        semanticAnswerCache = new SemanticAnswerCache(true, 0.9, 10, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        index = new AnswerSourceIndex(cacheManager, semanticAnswerCache);
+    }
+
+    @Test
+    @DisplayName("invalidate() должен удалить из кэшей только ответы, построенные на изменённых файлах")
+    void invalidate_shouldEvictOnlyAffectedAnswers() {
+        cacheManager.getCache("ragQueries").put("what is swift", "Swift is a language.");
+        cacheManager.getCache("ragQueries").put("tell me about swift", "Swift is a language.");
+        cacheManager.getCache("ragQueries").put("what is kotlin", "Kotlin is a language.");
+        semanticAnswerCache.put("what is swift", new float[]{1f, 0f}, "Swift is a language.");
+        semanticAnswerCache.put("what is kotlin", new float[]{0f, 1f}, "Kotlin is a language.");
+        index.record("what is swift", List.of(
+                new RagSource("chunk-1", "swift.txt", 0.9), new RagSource("chunk-2", "basics.txt", 0.8)));
+        index.record("what is kotlin", List.of(new RagSource("chunk-3", "kotlin.txt", 0.9)));
+        index.link("tell me about swift", "what is swift");
+
+        int invalidated = index.invalidate(Set.of("swift.txt"));
+
+        assertThat(invalidated).isEqualTo(2);
+        assertThat(cacheManager.getCache("ragQueries").get("what is swift")).isNull();
+        assertThat(cacheManager.getCache("ragQueries").get("tell me about swift")).isNull();
+        assertThat(cacheManager.getCache("ragQueries").get("what is kotlin", String.class))
+                .isEqualTo("Kotlin is a language.");
+        assertThat(semanticAnswerCache.lookup(new float[]{1f, 0f})).isEmpty();
+        assertThat(semanticAnswerCache.lookup(new float[]{0f, 1f})).contains("Kotlin is a language.");
+    }
+
+    @Test
+    @DisplayName("sources() должен вернуть источники вопроса и связанного с ним вопроса")
+    void sources_shouldReturnRecordedAndLinkedSources() {
+        List<RagSource> sources = List.of(new RagSource("chunk-1", "swift.txt", 0.9));
+        index.record("what is swift", sources);
+        index.link("tell me about swift", "what is swift");
+
+        assertThat(index.sources("what is swift")).isEqualTo(sources);
+        assertThat(index.sources("tell me about swift")).isEqualTo(sources);
+        assertThat(index.sources("what is kotlin")).isEmpty();
+    }
+}
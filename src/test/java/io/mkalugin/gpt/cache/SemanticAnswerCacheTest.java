@@ -0,0 +1,61 @@
+package io.mkalugin.gpt.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit-тесты на {@link SemanticAnswerCache}
+ */
+class SemanticAnswerCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SemanticAnswerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new SemanticAnswerCache(true, 0.9, 2, Duration.ofMinutes(10), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("lookup() должен находить ответ на близкий по смыслу вопрос")
+    void lookup_shouldReturnAnswerForSimilarQuestion() {
+        cache.put("what is swift", new float[]{1f, 0f, 0f}, "Swift is a language.");
+
+        assertThat(cache.lookup(new float[]{0.95f, 0.1f, 0f})).contains("Swift is a language.");
+        assertThat(cache.lookup(new float[]{0f, 1f, 0f})).isEmpty();
+        assertThat(meterRegistry.get("rag.semantic.cache.gets").tag("result", "hit").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("rag.semantic.cache.gets").tag("result", "miss").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("put() должен вытеснять давно не использованную запись при переполнении")
+    void put_shouldEvictLeastRecentlyUsedEntry() {
+        cache.put("first", new float[]{1f, 0f, 0f}, "first");
+        cache.put("second", new float[]{0f, 1f, 0f}, "second");
+        cache.lookup(new float[]{1f, 0f, 0f});
+        cache.put("third", new float[]{0f, 0f, 1f}, "third");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.lookup(new float[]{1f, 0f, 0f})).contains("first");
+        assertThat(cache.lookup(new float[]{0f, 1f, 0f})).isEmpty();
+    }
+
+    @Test
+    @DisplayName("put() должен заменять запись с почти тем же вопросом")
+    void put_shouldReplaceNearDuplicateEntry() {
+        cache.put("what is swift", new float[]{1f, 0f, 0f}, "old");
+        cache.put("what is swift language", new float[]{0.99f, 0.05f, 0f}, "new");
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.lookup(new float[]{1f, 0f, 0f})).contains("new");
+    }
+}
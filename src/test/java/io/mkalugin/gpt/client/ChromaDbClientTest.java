@@ -0,0 +1,57 @@
+package io.mkalugin.gpt.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.mkalugin.gpt.dto.chroma.ChromaCollection;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Unit-тесты на {@link ChromaDbClient}
+ */
+class ChromaDbClientTest {
+
+    private static final String COLLECTION_URL =
+            "http://chroma/api/v2/tenants/default_tenant/databases/default_database/collections/documents";
+    private static final String COUNT_URL =
+            "http://chroma/api/v2/tenants/default_tenant/databases/default_database/collections/c1/count";
+
+    @Test
+    @DisplayName("getCollection() должен кэшировать коллекцию с количеством документов, refreshCollection() — перечитывать")
+    void getCollection_shouldCacheCollectionUntilRefreshed() {
+        RestClient.Builder builder = RestClient.builder().baseUrl("http://chroma");
+        MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+        ChromaDbClient client = new ChromaDbClient(builder.build(), new ObjectMapper(),
+                Duration.ofMinutes(1), Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(client, "tenantName", "default_tenant");
+        ReflectionTestUtils.setField(client, "databaseName", "default_database");
+        ReflectionTestUtils.setField(client, "collectionName", "documents");
+        String collectionJson = """
+                {"id": "c1", "name": "documents", "dimension": 1536,
+                 "configuration_json": {"hnsw": {"space": "cosine"}}, "tenant": "default_tenant"}""";
+        server.expect(requestTo(COLLECTION_URL)).andRespond(withSuccess(collectionJson, MediaType.APPLICATION_JSON));
+        server.expect(requestTo(COUNT_URL)).andRespond(withSuccess("42", MediaType.APPLICATION_JSON));
+        server.expect(requestTo(COLLECTION_URL)).andRespond(withSuccess(collectionJson, MediaType.APPLICATION_JSON));
+        server.expect(requestTo(COUNT_URL)).andRespond(withSuccess("43", MediaType.APPLICATION_JSON));
+
+        ChromaCollection first = client.getCollection().orElseThrow();
+        ChromaCollection cached = client.getCollection().orElseThrow();
+        ChromaCollection refreshed = client.refreshCollection().orElseThrow();
+
+        assertThat(first.count()).isEqualTo(42);
+        assertThat(first.dimension()).isEqualTo(1536);
+        assertThat(first.configuration()).containsKey("hnsw");
+        assertThat(cached).isSameAs(first);
+        assertThat(refreshed.count()).isEqualTo(43);
+        server.verify();
+    }
+}
@@ -0,0 +1,66 @@
+package io.mkalugin.gpt.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit-тесты на {@link ConnectionLimitInterceptor}
+ */
+@ExtendWith(MockitoExtension.class)
+class ConnectionLimitInterceptorTest {
+
+    @Mock
+    private HttpRequest request;
+
+    @Mock
+    private ClientHttpRequestExecution execution;
+
+    @Mock
+    private ClientHttpResponse response;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("intercept() должен держать соединение до закрытия ответа и отказывать по таймауту, когда соединений нет")
+    void intercept_shouldLimitConnectionsUntilResponseIsClosed() throws IOException {
+        ConnectionLimitInterceptor interceptor = new ConnectionLimitInterceptor(1, Duration.ofMillis(20), meterRegistry);
+        when(request.getMethod()).thenReturn(HttpMethod.POST);
+        when(request.getURI()).thenReturn(URI.create("http://localhost:8000/api/v2/collections/id/query"));
+        when(execution.execute(any(), any())).thenReturn(response);
+
+        ClientHttpResponse first = interceptor.intercept(request, new byte[0], execution);
+
+        assertThat(interceptor.active()).isEqualTo(1);
+        assertThatThrownBy(() -> interceptor.intercept(request, new byte[0], execution))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("No free Chroma connection");
+
+        first.close();
+        first.close();
+        verify(response, times(2)).close();
+        assertThat(interceptor.active()).isZero();
+        assertThat(meterRegistry.get("rag.chroma.http.connections.acquire").timer().count()).isEqualTo(2);
+
+        interceptor.intercept(request, new byte[0], execution).close();
+        assertThat(interceptor.active()).isZero();
+    }
+}
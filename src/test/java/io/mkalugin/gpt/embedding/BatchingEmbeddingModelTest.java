@@ -0,0 +1,105 @@
+package io.mkalugin.gpt.embedding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit-тесты на {@link BatchingEmbeddingModel}
+ */
+@ExtendWith(MockitoExtension.class)
+class BatchingEmbeddingModelTest {
+
+    @Mock
+    private EmbeddingModel delegate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("embed() должен объединять одновременные запросы в один вызов модели и раздавать ответы")
+    void embed_shouldBatchConcurrentRequests() throws Exception {
+        // Длинное окно: пакет уходит только по заполнению
+        BatchingEmbeddingModel embeddingModel = new BatchingEmbeddingModel(delegate, Duration.ofSeconds(30), 3,
+                meterRegistry);
+        when(delegate.call(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(new float[]{request.getInstructions().get(i).length()}, i));
+            }
+            return new EmbeddingResponse(embeddings);
+        });
+
+        List<Future<float[]>> results = new ArrayList<>();
+        for (String text : List.of("a", "bb", "ccc")) {
+            results.add(executor.submit(() -> embeddingModel.embed(text)));
+        }
+
+        assertThat(results.get(0).get(5, TimeUnit.SECONDS)).containsExactly(1f);
+        assertThat(results.get(1).get(5, TimeUnit.SECONDS)).containsExactly(2f);
+        assertThat(results.get(2).get(5, TimeUnit.SECONDS)).containsExactly(3f);
+        verify(delegate, times(1)).call(any(EmbeddingRequest.class));
+        assertThat(meterRegistry.get("rag.embedding.batch.size").summary().max()).isEqualTo(3);
+        assertThat(meterRegistry.get("rag.embedding.batch.wait").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("embed() должен отправить неполный пакет по истечении окна и передать ошибку модели вызывающему")
+    void embed_shouldFlushAfterWindowAndPropagateErrors() {
+        BatchingEmbeddingModel embeddingModel = new BatchingEmbeddingModel(delegate, Duration.ofMillis(10), 64,
+                meterRegistry);
+        when(delegate.call(any(EmbeddingRequest.class))).thenThrow(new IllegalStateException("OpenAI is down"));
+
+        assertThatThrownBy(() -> embeddingModel.embed("What is Swift?"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("OpenAI is down");
+        assertThat(meterRegistry.get("rag.embedding.batch.requests").summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("embed() не должен оставлять ожидающих запросов пакета, если вызов модели завершился Error")
+    void embed_shouldCompleteAllRequestsWhenDelegateFailsWithError() {
+        BatchingEmbeddingModel embeddingModel = new BatchingEmbeddingModel(delegate, Duration.ofMillis(200), 64,
+                meterRegistry);
+        when(delegate.call(any(EmbeddingRequest.class))).thenThrow(new StackOverflowError("model client overflow"));
+
+        List<Future<float[]>> results = new ArrayList<>();
+        for (String text : List.of("a", "bb", "ccc")) {
+            results.add(executor.submit(() -> embeddingModel.embed(text)));
+        }
+
+        assertThat(results).allSatisfy(result -> assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(StackOverflowError.class));
+    }
+}
@@ -0,0 +1,94 @@
+package io.mkalugin.gpt.embedding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit-тесты на {@link CachingEmbeddingModel}
+ */
+@ExtendWith(MockitoExtension.class)
+class CachingEmbeddingModelTest {
+
+    @Mock
+    private EmbeddingModel delegate;
+
+    @Captor
+    private ArgumentCaptor<EmbeddingRequest> requestCaptor;
+
+    private CachingEmbeddingModel embeddingModel;
+
+    @BeforeEach
+    void setUp() {
+        embeddingModel = new CachingEmbeddingModel(delegate, 1024 * 1024, Duration.ofHours(1), new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("embed() должен вызывать модель один раз для текстов с одинаковой нормализованной формой")
+    void embed_shouldCallDelegateOnceForNormalizedDuplicates() {
+        when(delegate.call(any(EmbeddingRequest.class)))
+                .thenReturn(new EmbeddingResponse(List.of(new Embedding(new float[]{0.1f, 0.2f}, 0))));
+
+        float[] first = embeddingModel.embed("What is Swift?");
+        float[] second = embeddingModel.embed("  what is   swift ");
+
+        assertThat(first).containsExactly(0.1f, 0.2f);
+        assertThat(second).containsExactly(0.1f, 0.2f);
+        verify(delegate, times(1)).call(any(EmbeddingRequest.class));
+    }
+
+    @Test
+    @DisplayName("embed(List) должен отправлять в модель только отсутствующие в кэше тексты")
+    void embedList_shouldSendOnlyMissingTexts() {
+        when(delegate.call(any(EmbeddingRequest.class)))
+                .thenReturn(new EmbeddingResponse(List.of(new Embedding(new float[]{1f}, 0))))
+                .thenReturn(new EmbeddingResponse(List.of(new Embedding(new float[]{2f}, 0))));
+
+        embeddingModel.embed("cached");
+        List<float[]> result = embeddingModel.embed(List.of("cached", "fresh", "fresh"));
+
+        assertThat(result).hasSize(3);
+        assertThat(result.get(0)).containsExactly(1f);
+        assertThat(result.get(1)).containsExactly(2f);
+        assertThat(result.get(2)).containsExactly(2f);
+        assertThat(result.get(2)).isNotSameAs(result.get(1));
+        verify(delegate, times(2)).call(requestCaptor.capture());
+        assertThat(requestCaptor.getAllValues().get(1).getInstructions()).containsExactly("fresh");
+    }
+
+    @Test
+    @DisplayName("embed(List<Document>) должен вычислять embeddings документов мимо кэша")
+    void embedDocuments_shouldBypassCache() {
+        when(delegate.call(any(EmbeddingRequest.class)))
+                .thenReturn(new EmbeddingResponse(List.of(new Embedding(new float[]{1f}, 0))));
+        Document chunk = new Document("What is Swift?");
+
+        embeddingModel.embed(List.of(chunk), EmbeddingOptions.builder().build(), new TokenCountBatchingStrategy());
+        embeddingModel.embed(List.of(chunk), EmbeddingOptions.builder().build(), new TokenCountBatchingStrategy());
+
+        verify(delegate, times(2)).call(any(EmbeddingRequest.class));
+        assertThat(embeddingModel.size()).isZero();
+    }
+}
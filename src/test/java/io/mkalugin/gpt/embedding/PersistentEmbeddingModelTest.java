@@ -0,0 +1,103 @@
+package io.mkalugin.gpt.embedding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.mkalugin.gpt.ingestion.ChunkIds;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit-тесты на {@link PersistentEmbeddingModel}
+ */
+@ExtendWith(MockitoExtension.class)
+class PersistentEmbeddingModelTest {
+
+    private static final String MODEL = "text-embedding-3-small";
+
+    @Mock
+    private EmbeddingModel delegate;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("embed() должен брать векторы чанков из хранилища, в том числе после его переоткрытия")
+    void embed_shouldReuseStoredVectorsAcrossRestarts() throws Exception {
+        Path path = directory.resolve("embeddings.bin");
+        Document first = ChunkIds.chunk("swift.txt", 0, "Swift is a programming language");
+        Document second = ChunkIds.chunk("swift.txt", 1, "Optionals represent absent values");
+        when(delegate.call(any())).thenAnswer(invocation -> lengths(invocation.getArgument(0)));
+
+        try (EmbeddingStore store = new EmbeddingStore(path, 1024 * 1024, 64)) {
+            new PersistentEmbeddingModel(delegate, store, MODEL, new SimpleMeterRegistry())
+                    .embed(List.of(first), EmbeddingOptions.builder().build(), new TokenCountBatchingStrategy());
+        }
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (EmbeddingStore store = new EmbeddingStore(path, 1024 * 1024, 64)) {
+            List<float[]> vectors = new PersistentEmbeddingModel(delegate, store, MODEL, meterRegistry)
+                    .embed(List.of(first, second), EmbeddingOptions.builder().build(), new TokenCountBatchingStrategy());
+
+            assertThat(vectors.get(0)).containsExactly(DelegatingEmbeddingModel.embeddedContent(first).length(), 0.5f);
+            assertThat(vectors.get(1)).containsExactly(DelegatingEmbeddingModel.embeddedContent(second).length(), 0.5f);
+            assertThat(store.size()).isEqualTo(2);
+        }
+        verify(delegate).call(argThat(request ->
+                request.getInstructions().equals(List.of(DelegatingEmbeddingModel.embeddedContent(second)))));
+        assertThat(meterRegistry.get("rag.embedding.store.lookups").tag("result", "hit").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("embed() должен вычислять вектор по тексту и пути заголовков без служебных метаданных чанка")
+    void embed_shouldKeyVectorsByEmbeddedContent() throws Exception {
+        Document chunk = ChunkIds.chunk("swift.md", 0, "Actors isolate state", "Concurrency > Actors");
+        Document copy = ChunkIds.chunk("copy.md", 7, "Actors isolate state", "Concurrency > Actors");
+        Document otherSection = ChunkIds.chunk("swift.md", 1, "Actors isolate state", "Concurrency > Tasks");
+        when(delegate.call(any())).thenAnswer(invocation -> lengths(invocation.getArgument(0)));
+
+        try (EmbeddingStore store = new EmbeddingStore(directory.resolve("embeddings.bin"), 1024 * 1024, 64)) {
+            PersistentEmbeddingModel model = new PersistentEmbeddingModel(delegate, store, MODEL, new SimpleMeterRegistry());
+            model.embed(List.of(chunk), EmbeddingOptions.builder().build(), new TokenCountBatchingStrategy());
+            model.embed(List.of(copy, otherSection), EmbeddingOptions.builder().build(), new TokenCountBatchingStrategy());
+
+            assertThat(store.size()).isEqualTo(2);
+        }
+        assertThat(DelegatingEmbeddingModel.embeddedContent(chunk))
+                .contains("Concurrency > Actors", "Actors isolate state")
+                .doesNotContain("swift.md", ChunkIds.CHUNK_INDEX, ChunkIds.CONTENT_HASH);
+        verify(delegate).call(argThat(request ->
+                request.getInstructions().equals(List.of(DelegatingEmbeddingModel.embeddedContent(otherSection)))));
+    }
+
+    /**
+     * Ответ модели: вектор из длины содержимого и константы.
+     */
+    private static EmbeddingResponse lengths(EmbeddingRequest request) {
+        List<Embedding> results = new ArrayList<>();
+        for (int i = 0; i < request.getInstructions().size(); i++) {
+            results.add(new Embedding(new float[]{request.getInstructions().get(i).length(), 0.5f}, i));
+        }
+        return new EmbeddingResponse(results);
+    }
+}
@@ -0,0 +1,79 @@
+package io.mkalugin.gpt.embedding;
+
+import io.mkalugin.gpt.ingestion.ChunkIds;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit-тесты на {@link PrecomputedEmbeddingModel}
+ */
+@ExtendWith(MockitoExtension.class)
+class PrecomputedEmbeddingModelTest {
+
+    @Mock
+    private EmbeddingModel delegate;
+
+    @Test
+    @DisplayName("embed() должен отдавать переданные векторы и вычислять в делегате только остальные документы")
+    void embed_shouldReusePrecomputedVectors() {
+        PrecomputedEmbeddingModel model = new PrecomputedEmbeddingModel(delegate);
+        Document first = ChunkIds.chunk("swift.txt", 0, "Swift is a programming language");
+        Document second = ChunkIds.chunk("swift.txt", 1, "Optionals represent absent values");
+        Document other = ChunkIds.chunk("kotlin.txt", 0, "Swift is a programming language");
+        when(delegate.call(argThat(request -> request.getInstructions()
+                .equals(List.of(DelegatingEmbeddingModel.embeddedContent(other))))))
+                .thenReturn(new EmbeddingResponse(List.of(new Embedding(new float[]{3f}, 0))));
+        List<List<float[]>> results = new ArrayList<>();
+
+        model.withVectors(List.of(first, second), List.of(new float[]{1f}, new float[]{2f}),
+                () -> results.add(model.embed(List.of(first, other, second), EmbeddingOptions.builder().build(),
+                        new TokenCountBatchingStrategy())));
+
+        assertThat(results).singleElement().satisfies(vectors -> assertThat(vectors)
+                .containsExactly(new float[]{1f}, new float[]{3f}, new float[]{2f}));
+    }
+
+    @Test
+    @DisplayName("embed() должен обращаться к делегату после завершения действия")
+    void embed_shouldDelegateAfterAction() {
+        PrecomputedEmbeddingModel model = new PrecomputedEmbeddingModel(delegate);
+        Document chunk = ChunkIds.chunk("swift.txt", 0, "Swift is a programming language");
+        when(delegate.embed(chunk)).thenReturn(new float[]{5f});
+
+        model.withVectors(List.of(chunk), List.<float[]>of(new float[]{1f}),
+                () -> assertThat(model.embed(chunk)).containsExactly(1f));
+
+        assertThat(model.embed(chunk)).containsExactly(5f);
+        verify(delegate).embed(chunk);
+    }
+
+    @Test
+    @DisplayName("withVectors() должен отклонять векторы, не совпадающие с документами по количеству")
+    void withVectors_shouldRejectSizeMismatch() {
+        PrecomputedEmbeddingModel model = new PrecomputedEmbeddingModel(delegate);
+        Document chunk = ChunkIds.chunk("swift.txt", 0, "Swift is a programming language");
+
+        assertThatThrownBy(() -> model.withVectors(List.of(chunk), List.of(), () -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(delegate);
+    }
+}
@@ -0,0 +1,462 @@
+package io.mkalugin.gpt.ingestion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.mkalugin.gpt.embedding.PrecomputedEmbeddingModel;
+import io.mkalugin.gpt.retrieval.Bm25Index;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit-тесты на {@link IngestionPipeline}
+ */
+@ExtendWith(MockitoExtension.class)
+class IngestionPipelineTest {
+
+    @Mock
+    private VectorStore vectorStore;
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("ingest() должен вычислять embeddings и записывать чанки пачками ограниченного размера")
+    void ingest_shouldProcessChunksInBoundedBatches() {
+        List<Integer> embedBatches = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> upsertBatches = Collections.synchronizedList(new ArrayList<>());
+        when(embeddingModel.call(any())).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            embedBatches.add(request.getInstructions().size());
+            return embeddings(request);
+        });
+        doAnswer(invocation -> {
+            List<Document> batch = invocation.getArgument(0);
+            upsertBatches.add(batch.size());
+            return null;
+        }).when(vectorStore).add(anyList());
+        Bm25Index bm25Index = new Bm25Index();
+
+        IngestionResult result = pipeline(bm25Index).ingest(files(7), ChunkManifest.empty());
+
+        assertThat(result).isEqualTo(new IngestionResult(7, 0, 7, 0, 0, 0, 0, 0));
+        assertThat(embedBatches).allMatch(size -> size <= 3);
+        assertThat(upsertBatches).allMatch(size -> size <= 2);
+        assertThat(upsertBatches.stream().mapToInt(Integer::intValue).sum()).isEqualTo(7);
+        assertThat(bm25Index.size()).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("ingest() должен передавать VectorStore векторы стадии embed без повторного вычисления")
+    void ingest_shouldReuseEmbeddedVectorsOnUpsert() {
+        List<Float> embeddedVectors = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger next = new AtomicInteger();
+        when(embeddingModel.call(any())).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            List<Embedding> results = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                float value = next.incrementAndGet();
+                embeddedVectors.add(value);
+                results.add(new Embedding(new float[]{value}, i));
+            }
+            return new EmbeddingResponse(results);
+        });
+        PrecomputedEmbeddingModel model = new PrecomputedEmbeddingModel(embeddingModel);
+        List<Float> storedVectors = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            List<Document> batch = invocation.getArgument(0);
+            // VectorStore вычисляет embeddings через ту же модель, что и конвейер
+            model.embed(batch, EmbeddingOptions.builder().build(), new TokenCountBatchingStrategy())
+                    .forEach(vector -> storedVectors.add(vector[0]));
+            return null;
+        }).when(vectorStore).add(anyList());
+
+        IngestionResult result = pipeline(new Bm25Index(), new NearDuplicateIndex(true, 0.95), model)
+                .ingest(files(3), ChunkManifest.empty());
+
+        assertThat(result.chunks()).isEqualTo(3);
+        assertThat(embeddedVectors).hasSize(3);
+        assertThat(storedVectors).containsExactlyInAnyOrderElementsOf(embeddedVectors);
+    }
+
+    @Test
+    @Timeout(10)
+    @DisplayName("ingest() должен останавливать остальные стадии и пробрасывать Error упавшей стадии")
+    void ingest_shouldStopStagesWhenStageThrowsError() {
+        when(embeddingModel.call(any())).thenThrow(new NoClassDefFoundError("com/example/Missing"));
+        IngestionProgress progress = new IngestionProgress();
+
+        assertThatThrownBy(() -> pipeline(new Bm25Index()).ingest(files(20), ChunkManifest.empty(), progress))
+                .isInstanceOf(IllegalStateException.class)
+                .hasCauseInstanceOf(NoClassDefFoundError.class);
+        assertThat(progress.isCancelled()).isTrue();
+        verify(vectorStore, never()).add(anyList());
+    }
+
+    @Test
+    @DisplayName("ingest() должен продолжать загрузку после ошибки чтения файла или записи пачки")
+    void ingest_shouldIsolateFailures() {
+        when(embeddingModel.call(any())).thenAnswer(invocation -> embeddings(invocation.getArgument(0)));
+        AtomicBoolean failed = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("Chroma is unavailable");
+            }
+            return null;
+        }).when(vectorStore).add(anyList());
+
+        List<SourceFile> files = new ArrayList<>(files(5));
+        files.add(file(new NamedResource("broken.txt", "") {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                throw new IOException("disk error");
+            }
+        }));
+
+        IngestionResult result = pipeline(new Bm25Index()).ingest(files, ChunkManifest.empty());
+
+        assertThat(result.files()).isEqualTo(5);
+        assertThat(result.failedFiles()).isEqualTo(1);
+        assertThat(result.failedChunks()).isPositive();
+        assertThat(result.chunks() + result.failedChunks()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("ingest() должен удалить записанные чанки файла, который не удалось дочитать, и оставить его прежнюю версию")
+    void ingest_shouldRemoveChunksOfPartiallyReadFile() {
+        ChunkManifest manifest = ChunkManifest.empty();
+        registerChunk(manifest, "upload.txt", 0, "Previous version of the upload");
+        List<String> storedIds = Collections.synchronizedList(new ArrayList<>());
+        List<String> deletedIds = Collections.synchronizedList(new ArrayList<>());
+        when(embeddingModel.call(any())).thenAnswer(invocation -> embeddings(invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            List<Document> batch = invocation.getArgument(0);
+            batch.forEach(chunk -> storedIds.add(chunk.getId()));
+            return null;
+        }).when(vectorStore).add(anyList());
+        doAnswer(invocation -> {
+            deletedIds.addAll(invocation.getArgument(0));
+            return null;
+        }).when(vectorStore).delete(anyList());
+        byte[] head = IntStream.range(0, 2000)
+                .mapToObj(i -> "Line " + i + " explains how Swift stores value number " + (i * 7919) + ".\n")
+                .collect(Collectors.joining())
+                .getBytes(StandardCharsets.UTF_8);
+        Resource truncated = new NamedResource("upload.txt", "") {
+            @Override
+            public InputStream getInputStream() {
+                return new SequenceInputStream(new ByteArrayInputStream(head), new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Upload exceeds the limit");
+                    }
+                });
+            }
+        };
+
+        IngestionResult result = pipeline(new Bm25Index()).ingest(List.of(file(truncated)), manifest);
+
+        assertThat(result.failedFiles()).isEqualTo(1);
+        assertThat(storedIds).isNotEmpty();
+        assertThat(deletedIds).containsExactlyInAnyOrderElementsOf(storedIds)
+                .doesNotContain(ChunkIds.id("upload.txt", 0, ChunkIds.contentHash("Previous version of the upload")));
+    }
+
+    @Test
+    @DisplayName("ingest() не должен удалять прежние чанки изменённого файла, если embeddings не удалось вычислить")
+    void ingest_shouldKeepOldChunksWhenEmbeddingFails() {
+        ChunkManifest manifest = ChunkManifest.empty();
+        registerChunk(manifest, "doc-0.txt", 0, "Outdated text of document 0");
+        when(embeddingModel.call(any())).thenThrow(new IllegalStateException("OpenAI is unavailable"));
+
+        IngestionResult result = pipeline(new Bm25Index()).ingest(files(1), manifest);
+
+        assertThat(result).isEqualTo(new IngestionResult(1, 0, 0, 0, 0, 0, 1, 0));
+        verify(vectorStore, never()).add(anyList());
+        verify(vectorStore, never()).delete(anyList());
+    }
+
+    @Test
+    @DisplayName("ingest() должен пропустить неизменные чанки, перезаписать изменённые и удалить чанки удалённых файлов")
+    void ingest_shouldApplyOnlyTheDiffAgainstManifest() {
+        ChunkManifest manifest = ChunkManifest.empty();
+        registerChunk(manifest, "doc-0.txt", 0, "Swift document number 0");
+        registerChunk(manifest, "doc-1.txt", 0, "Outdated text of document 1");
+        registerChunk(manifest, "removed.txt", 0, "This file was deleted");
+        registerChunk(manifest, "removed.txt", 1, "Second chunk of the deleted file");
+        List<List<String>> deletedIds = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            deletedIds.add(List.copyOf(invocation.getArgument(0)));
+            return null;
+        }).when(vectorStore).delete(anyList());
+        when(embeddingModel.call(any())).thenAnswer(invocation -> embeddings(invocation.getArgument(0)));
+        Bm25Index bm25Index = new Bm25Index();
+
+        IngestionResult result = pipeline(bm25Index).ingest(files(3), manifest);
+
+        assertThat(result).isEqualTo(new IngestionResult(3, 0, 1, 1, 1, 3, 0, 0));
+        assertThat(deletedIds.stream().flatMap(List::stream).toList()).containsExactlyInAnyOrder(
+                ChunkIds.id("doc-1.txt", 0, ChunkIds.contentHash("Outdated text of document 1")),
+                ChunkIds.id("removed.txt", 0, ChunkIds.contentHash("This file was deleted")),
+                ChunkIds.id("removed.txt", 1, ChunkIds.contentHash("Second chunk of the deleted file")));
+        assertThat(bm25Index.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("ingest() должен удалить лишние чанки с тем же номером, оставшиеся после ошибки записи")
+    void ingest_shouldDeleteLeftoverChunksWithTheSameIndex() {
+        ChunkManifest manifest = ChunkManifest.empty();
+        registerChunk(manifest, "doc-0.txt", 0, "Swift document number 0");
+        registerChunk(manifest, "doc-0.txt", 0, "Previous text of document 0");
+        registerChunk(manifest, "doc-0.txt", 1, "Chunk left by a truncated upload");
+
+        IngestionResult result = pipeline(new Bm25Index()).ingest(files(1), manifest);
+
+        assertThat(result).isEqualTo(new IngestionResult(1, 0, 0, 0, 1, 2, 0, 0));
+        verify(vectorStore).delete(List.of(
+                ChunkIds.id("doc-0.txt", 0, ChunkIds.contentHash("Previous text of document 0")),
+                ChunkIds.id("doc-0.txt", 1, ChunkIds.contentHash("Chunk left by a truncated upload"))));
+        verifyNoInteractions(embeddingModel);
+    }
+
+    @Test
+    @DisplayName("ingest() должен отбросить почти-дубликат загружаемого чанка и учесть его в итоге")
+    void ingest_shouldDropNearDuplicates() {
+        String text = "Swift concurrency is built around async functions, tasks and actors. An actor protects "
+                + "its mutable state from data races by serializing access to it, so callers must await "
+                + "every call that crosses the actor boundary. Structured concurrency ties the lifetime of "
+                + "child tasks to the scope that created them, which makes cancellation and error "
+                + "propagation predictable for the whole task tree. Sendable checking in the compiler "
+                + "finds values that are unsafe to share between concurrency domains.";
+        when(embeddingModel.call(any())).thenAnswer(invocation -> embeddings(invocation.getArgument(0)));
+        NearDuplicateIndex duplicateIndex = new NearDuplicateIndex(true, 0.95);
+
+        IngestionResult result = pipeline(new Bm25Index(), duplicateIndex).ingest(List.of(
+                file(new NamedResource("guide.txt", text)),
+                file(new NamedResource("guide-copy.txt", text.toUpperCase().replace(".", "!")))), ChunkManifest.empty());
+
+        assertThat(result).isEqualTo(new IngestionResult(2, 0, 1, 0, 0, 0, 0, 1));
+        assertThat(result.dedupRatio()).isEqualTo(0.5);
+        assertThat(duplicateIndex.drainUnrecorded().values()).singleElement()
+                .satisfies(refs -> assertThat(refs).containsAnyOf("guide.txt#0", "guide-copy.txt#0"));
+    }
+
+    @Test
+    @DisplayName("ingest() должен перечитать файл отброшенного дубликата, если файл оставшегося чанка удалён")
+    void ingest_shouldRestoreDuplicateWhenSurvivorIsRemoved() throws IOException {
+        String text = "Swift concurrency is built around async functions, tasks and actors. An actor protects "
+                + "its mutable state from data races by serializing access to it, so callers must await "
+                + "every call that crosses the actor boundary. Structured concurrency ties the lifetime of "
+                + "child tasks to the scope that created them, which makes cancellation and error "
+                + "propagation predictable for the whole task tree. Sendable checking in the compiler "
+                + "finds values that are unsafe to share between concurrency domains.";
+        Path guide = Files.writeString(directory.resolve("guide.txt"), text);
+        Path copy = Files.writeString(directory.resolve("copy.txt"), text.toUpperCase().replace(".", "!"));
+        List<Document> stored = Collections.synchronizedList(new ArrayList<>());
+        when(embeddingModel.call(any())).thenAnswer(invocation -> embeddings(invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            stored.addAll(invocation.getArgument(0));
+            return null;
+        }).when(vectorStore).add(anyList());
+        doAnswer(invocation -> {
+            List<String> ids = invocation.getArgument(0);
+            stored.removeIf(document -> ids.contains(document.getId()));
+            return null;
+        }).when(vectorStore).delete(anyList());
+        Bm25Index bm25Index = new Bm25Index();
+        IngestionPipeline pipeline = pipeline(bm25Index, new NearDuplicateIndex(true, 0.95));
+
+        pipeline.ingest(List.of(watchedFile(guide), watchedFile(copy)), ChunkManifest.empty());
+        assertThat(stored).hasSize(1);
+        String survivor = stored.getFirst().getMetadata().get(ChunkIds.SOURCE).toString();
+        String duplicate = survivor.equals(SourceFile.fileSource(directory, guide))
+                ? SourceFile.fileSource(directory, copy)
+                : SourceFile.fileSource(directory, guide);
+        Files.delete(directory.resolve(survivor.substring(SourceFile.FILE.length())));
+        ChunkManifest manifest = ChunkManifest.empty();
+        List.copyOf(stored).forEach(document -> manifest.add(document.getId(), document.getMetadata()));
+
+        IngestionResult result = pipeline.ingest(List.of(), manifest);
+
+        assertThat(result.deleted()).isEqualTo(1);
+        assertThat(result.added()).isEqualTo(1);
+        assertThat(stored).singleElement()
+                .satisfies(document -> assertThat(document.getMetadata()).containsEntry(ChunkIds.SOURCE, duplicate));
+        assertThat(bm25Index.search("sendable checking", 1)).singleElement()
+                .satisfies(document -> assertThat(document.getMetadata()).containsEntry(ChunkIds.SOURCE, duplicate));
+    }
+
+    @Test
+    @DisplayName("ingest() не должен считать дубликатами чанки файла, сдвинутые правкой, и терять их при удалении старой версии")
+    void ingest_shouldKeepShiftedChunksOfEditedFile() {
+        String sections = """
+                # Actors
+                An actor protects its mutable state from data races by serializing access to it, so callers
+                must await every call that crosses the actor boundary and the compiler checks isolation.
+                Global actors such as the main actor extend the same guarantee to functions and types that
+                are spread across the module, and reentrancy means state may change across suspension points.
+
+                # Tasks
+                Structured concurrency ties the lifetime of child tasks to the scope that created them, which
+                makes cancellation and error propagation predictable for the whole task tree. Task groups
+                collect results of a dynamic number of children, and async let starts a fixed number of them
+                that run concurrently with the parent until their values are awaited.
+
+                # Sendable
+                Sendable checking in the compiler finds values that are unsafe to share between concurrency
+                domains, such as classes with mutable stored properties that are not protected by a lock.
+                Value types whose stored properties are all sendable conform implicitly, while final classes
+                need immutable state or an explicit unchecked conformance backed by their own locking.
+                """;
+        String inserted = """
+                # Macros
+                Swift macros generate code at compile time from attached or freestanding declarations, and the
+                expanded source is type checked together with the rest of the module before it is compiled.
+                Macro implementations live in a separate compiler plugin built on SwiftSyntax, so they can
+                inspect the syntax tree of the annotated declaration and report diagnostics of their own.
+
+                """;
+        List<Document> stored = Collections.synchronizedList(new ArrayList<>());
+        when(embeddingModel.call(any())).thenAnswer(invocation -> embeddings(invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            stored.addAll(invocation.getArgument(0));
+            return null;
+        }).when(vectorStore).add(anyList());
+        doAnswer(invocation -> {
+            List<String> ids = invocation.getArgument(0);
+            stored.removeIf(document -> ids.contains(document.getId()));
+            return null;
+        }).when(vectorStore).delete(anyList());
+        IngestionPipeline pipeline = pipeline(new Bm25Index(), new NearDuplicateIndex(true, 0.95));
+
+        IngestionResult first = pipeline.ingest(List.of(file(new NamedResource("guide.md", sections))), ChunkManifest.empty());
+        ChunkManifest manifest = ChunkManifest.empty();
+        List.copyOf(stored).forEach(document -> manifest.add(document.getId(), document.getMetadata()));
+        IngestionResult second = pipeline.ingest(List.of(file(new NamedResource("guide.md", inserted + sections))), manifest);
+
+        assertThat(first.added()).isEqualTo(3);
+        assertThat(second.duplicates()).isZero();
+        assertThat(stored).hasSize(4)
+                .extracting(Document::getText)
+                .anySatisfy(text -> assertThat(text).contains("Swift macros"))
+                .anySatisfy(text -> assertThat(text).contains("Sendable checking"));
+    }
+
+    @Test
+    @DisplayName("ingest() должен остановиться без записи и удаления чанков, если загрузка отменена")
+    void ingest_shouldStopWhenCancelled() {
+        ChunkManifest manifest = ChunkManifest.empty();
+        registerChunk(manifest, "removed.txt", 0, "This file was deleted");
+        IngestionProgress progress = new IngestionProgress();
+        progress.cancel();
+
+        IngestionResult result = pipeline(new Bm25Index()).ingest(files(3), manifest, progress);
+
+        assertThat(result).isEqualTo(new IngestionResult(0, 0, 0, 0, 0, 0, 0, 0));
+        assertThat(progress.snapshot().filesTotal()).isEqualTo(3);
+        verifyNoInteractions(vectorStore, embeddingModel);
+    }
+
+    private static void registerChunk(ChunkManifest manifest, String source, int index, String text) {
+        String hash = ChunkIds.contentHash(text);
+        manifest.add(ChunkIds.id(source, index, hash), Map.of(
+                ChunkIds.SOURCE, source, ChunkIds.CHUNK_INDEX, index, ChunkIds.CONTENT_HASH, hash));
+    }
+
+    /**
+     * Ответ модели embeddings: вектор {1} на каждое содержимое запроса.
+     */
+    private static EmbeddingResponse embeddings(EmbeddingRequest request) {
+        List<Embedding> results = new ArrayList<>();
+        for (int i = 0; i < request.getInstructions().size(); i++) {
+            results.add(new Embedding(new float[]{1f}, i));
+        }
+        return new EmbeddingResponse(results);
+    }
+
+    private IngestionPipeline pipeline(Bm25Index bm25Index) {
+        return pipeline(bm25Index, new NearDuplicateIndex(true, 0.95));
+    }
+
+    private IngestionPipeline pipeline(Bm25Index bm25Index, NearDuplicateIndex duplicateIndex) {
+        return pipeline(bm25Index, duplicateIndex, new PrecomputedEmbeddingModel(embeddingModel));
+    }
+
+    private IngestionPipeline pipeline(Bm25Index bm25Index, NearDuplicateIndex duplicateIndex,
+                                       PrecomputedEmbeddingModel model) {
+        return new IngestionPipeline(vectorStore, model, bm25Index,
+                new DocumentSplitters(new StreamingTextSplitter(800, 80, 350, 5), true), duplicateIndex,
+                2, 3, 2, 2, 1, 4, directory, new SimpleMeterRegistry());
+    }
+
+    private static List<SourceFile> files(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> file(new NamedResource("doc-" + i + ".txt", "Swift document number " + i)))
+                .toList();
+    }
+
+    private SourceFile watchedFile(Path path) {
+        return new SourceFile(SourceFile.fileSource(directory, path), new FileSystemResource(path));
+    }
+
+    private static SourceFile file(Resource resource) {
+        return new SourceFile(resource.getFilename(), resource);
+    }
+
+    private static class NamedResource extends ByteArrayResource {
+        private final String filename;
+
+        NamedResource(String filename, String content) {
+            super(content.getBytes(StandardCharsets.UTF_8));
+            this.filename = filename;
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+    }
+}
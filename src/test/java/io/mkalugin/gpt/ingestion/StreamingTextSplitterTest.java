@@ -0,0 +1,65 @@
+package io.mkalugin.gpt.ingestion;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit-тесты на {@link StreamingTextSplitter}
+ */
+class StreamingTextSplitterTest {
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    @Test
+    @DisplayName("next() должен вернуть короткий текст одним чанком")
+    void next_shouldReturnShortTextAsSingleChunk() throws IOException {
+        List<String> chunks = split(new StreamingTextSplitter(800, 80, 350, 5), "  Swift closures capture values.  \n");
+
+        assertThat(chunks).containsExactly("Swift closures capture values.");
+    }
+
+    @Test
+    @DisplayName("next() должен разбить длинный текст на ограниченные по токенам чанки с перекрытием")
+    void next_shouldSplitLongTextIntoOverlappingChunks() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("Sentence ").append(i).append(" explains how Swift optionals work — «ёжик». ");
+        }
+
+        List<String> chunks = split(new StreamingTextSplitter(50, 10, 100, 5), text.toString());
+
+        assertThat(chunks).hasSizeGreaterThan(100);
+        assertThat(chunks).allMatch(chunk -> encoding.countTokens(chunk) <= 51);
+        for (int i = 1; i < chunks.size(); i++) {
+            String previous = chunks.get(i - 1);
+            String overlap = chunks.get(i).substring(0, 10);
+            assertThat(previous).contains(overlap);
+        }
+        assertThat(chunks.getFirst()).startsWith("Sentence 0 ");
+        assertThat(chunks.getLast()).endsWith("Sentence 1999 explains how Swift optionals work — «ёжик».");
+    }
+
+    private static List<String> split(StreamingTextSplitter splitter, String text) throws IOException {
+        List<String> chunks = new ArrayList<>();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try (StreamingTextSplitter.Chunks stream = splitter.open(Channels.newChannel(new ByteArrayInputStream(bytes)))) {
+            String chunk;
+            while ((chunk = stream.next()) != null) {
+                chunks.add(chunk);
+            }
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,122 @@
+package io.mkalugin.gpt.ingestion;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit-тесты на {@link StructuredTextSplitter}
+ */
+class StructuredTextSplitterTest {
+
+    private final DocumentSplitters splitters = new DocumentSplitters(new StreamingTextSplitter(120, 10, 50, 5), true);
+
+    @Test
+    @DisplayName("next() должен разбить Markdown по заголовкам, не разрезая блок кода, и записать путь заголовков")
+    void next_shouldSplitMarkdownByHeadings() throws IOException {
+        String code = """
+                ```swift
+                actor Counter {
+                    private var value = 0
+
+                    func increment() -> Int {
+                        value += 1
+                        return value
+                    }
+                }
+                ```""";
+        String markdown = """
+                # Concurrency
+
+                Swift concurrency is built around async functions, tasks and actors. Every long running \
+                operation should be expressed as an async function so that the caller can await it.
+
+                ## Actors
+
+                An actor protects its mutable state from data races by serializing access to it.
+
+                %s
+
+                ## Tasks
+
+                A task is a unit of asynchronous work. Child tasks form a tree together with their parent, \
+                and cancellation of the parent propagates to every child task in the tree.
+                """.formatted(code);
+
+        List<DocumentSplitter.Chunk> chunks = split("guide.md", markdown);
+
+        assertThat(chunks).extracting(DocumentSplitter.Chunk::headingPath)
+                .containsExactly("Concurrency", "Concurrency > Actors", "Concurrency > Tasks");
+        assertThat(chunks.get(1).text()).startsWith("## Actors").endsWith(code);
+        assertThat(chunks.get(2).text()).startsWith("## Tasks");
+    }
+
+    @Test
+    @DisplayName("next() должен разбить код Swift по объявлениям вместе с документирующими комментариями")
+    void next_shouldSplitSwiftByDeclarations() throws IOException {
+        String swift = """
+                import SwiftUI
+
+                /// Shows the list of downloaded documents and lets the user refresh it.
+                @MainActor
+                public struct DocumentListView: View {
+                    @State private var documents: [String] = []
+
+                    public var body: some View {
+                        List(documents, id: \\.self) { Text($0) }
+                            .refreshable { await reload() }
+                    }
+
+                    /// Loads documents from the server, replacing the current list with the response.
+                    private func reload() async {
+                        documents = await DocumentClient.shared.fetchDocuments(limit: 100, offset: 0)
+                    }
+                }
+
+                /**
+                 * Client for the documents API. Keeps a single shared URLSession for all requests.
+                 */
+                final class DocumentClient {
+                    static let shared = DocumentClient()
+
+                    func fetchDocuments(limit: Int, offset: Int) async -> [String] {
+                        let url = "https://example.com/api/rag/documents?limit=\\(limit)&offset=\\(offset) {"
+                        return [url]
+                    }
+                }
+                """;
+
+        List<DocumentSplitter.Chunk> chunks = split("DocumentListView.swift", swift);
+
+        assertThat(chunks).extracting(DocumentSplitter.Chunk::headingPath).containsExactly(
+                "struct DocumentListView: View",
+                "struct DocumentListView: View > func reload() async",
+                "class DocumentClient",
+                "class DocumentClient > func fetchDocuments(limit: Int, offset: Int) async -> [String]");
+        assertThat(chunks.get(0).text()).startsWith("import SwiftUI").contains("/// Shows the list", "public var body");
+        assertThat(chunks.get(1).text()).startsWith("/// Loads documents");
+        assertThat(chunks.get(2).text()).startsWith("/**").contains("static let shared");
+        assertThat(chunks.get(3).text()).startsWith("func fetchDocuments").endsWith("}\n}");
+    }
+
+    private List<DocumentSplitter.Chunk> split(String filename, String text) throws IOException {
+        List<DocumentSplitter.Chunk> chunks = new ArrayList<>();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try (DocumentSplitter.ChunkStream stream = splitters.forFile(filename)
+                .open(Channels.newChannel(new ByteArrayInputStream(bytes)))) {
+            DocumentSplitter.Chunk chunk;
+            while ((chunk = stream.next()) != null) {
+                chunks.add(chunk);
+            }
+        }
+        return chunks;
+    }
+}
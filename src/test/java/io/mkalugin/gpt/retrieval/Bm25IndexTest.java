@@ -0,0 +1,80 @@
+package io.mkalugin.gpt.retrieval;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit-тесты на {@link Bm25Index}
+ */
+class Bm25IndexTest {
+
+    @Test
+    @DisplayName("search() должен ставить выше чанк с точным идентификатором из запроса")
+    void search_shouldRankExactIdentifierFirst() {
+        Bm25Index index = new Bm25Index();
+        index.add(List.of(
+                document("a", "Swift closures capture values from the surrounding context."),
+                document("b", "Use URLSession.shared.dataTask to perform a network request in Swift."),
+                document("c", "Structures and classes in Swift have many things in common.")
+        ));
+
+        List<Document> result = index.search("how to use dataTask", 2);
+
+        assertThat(result).isNotEmpty();
+        assertThat(result.getFirst().getId()).isEqualTo("b");
+        assertThat(result.getFirst().getScore()).isPositive();
+    }
+
+    @Test
+    @DisplayName("add() должен заменять документ с тем же id, remove() — исключать его из поиска")
+    void addAndRemove_shouldReplaceAndDeleteDocuments() {
+        Bm25Index index = new Bm25Index();
+        index.add(List.of(document("a", "optional chaining"), document("b", "generics and protocols")));
+        index.add(List.of(document("a", "error handling with throws")));
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.search("optional chaining", 5)).isEmpty();
+        assertThat(index.search("throws", 5)).extracting(Document::getId).containsExactly("a");
+
+        index.remove(List.of("a"));
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.search("throws", 5)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("remove() должен считать оценки только по оставшимся документам, как индекс, построенный без удалённых")
+    void remove_shouldScoreLikeIndexWithoutRemovedDocuments() {
+        List<Document> live = List.of(
+                document("a", "swift actors isolate mutable state"),
+                document("b", "swift tasks and task groups"),
+                document("c", "protocols with associated types"));
+        Bm25Index index = new Bm25Index();
+        index.add(live);
+        index.add(IntStream.range(0, 20)
+                .mapToObj(i -> document("removed-" + i, "swift actors and swift tasks number " + i))
+                .toList());
+        index.remove(IntStream.range(0, 20).mapToObj(i -> "removed-" + i).toList());
+        Bm25Index fresh = new Bm25Index();
+        fresh.add(live);
+
+        List<Document> result = index.search("swift actors tasks", 5);
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(result).extracting(Document::getId)
+                .containsExactlyElementsOf(fresh.search("swift actors tasks", 5).stream().map(Document::getId).toList());
+        assertThat(result).extracting(Document::getScore)
+                .containsExactlyElementsOf(fresh.search("swift actors tasks", 5).stream().map(Document::getScore).toList());
+    }
+
+    private static Document document(String id, String text) {
+        return new Document(id, text, Map.of());
+    }
+}
@@ -0,0 +1,75 @@
+package io.mkalugin.gpt.retrieval;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit-тесты на {@link ContextBuilder}
+ */
+class ContextBuilderTest {
+
+    private static final String OPTIONALS = "Optionals in Swift represent either a wrapped value or nil, "
+            + "and you unwrap them with if let, guard let or the nil coalescing operator.";
+    private static final String CLOSURES = "Closures are self-contained blocks of functionality "
+            + "that can be passed around and used in your code, similar to lambdas in other languages.";
+    private static final String STRUCTS = "Structures in Swift are value types that are copied when assigned "
+            + "and support properties, methods, initializers and protocol conformance.";
+
+    @Test
+    @DisplayName("build() должен отбрасывать чанки, содержащиеся в более релевантных")
+    void build_shouldDropOverlappingChunks() {
+        ContextBuilder builder = new ContextBuilder(3000, 0.7, 0.8, new SimpleMeterRegistry());
+        List<Document> candidates = List.of(
+                document("a", OPTIONALS + " " + CLOSURES, 0.9),
+                document("b", CLOSURES, 0.85),
+                document("c", STRUCTS, 0.6)
+        );
+
+        RagContext context = builder.build(candidates);
+
+        assertThat(context.documents()).extracting(Document::getId).containsExactly("a", "c");
+        assertThat(context.tokensSaved()).isGreaterThan(0);
+    }
+
+    @Test
+    @DisplayName("build() должен соблюдать бюджет токенов")
+    void build_shouldRespectTokenBudget() {
+        ContextBuilder builder = new ContextBuilder(40, 0.7, 0.8, new SimpleMeterRegistry());
+        List<Document> candidates = List.of(
+                document("a", OPTIONALS, 0.9),
+                document("b", CLOSURES, 0.8),
+                document("c", STRUCTS, 0.7)
+        );
+
+        RagContext context = builder.build(candidates);
+
+        assertThat(context.documents()).extracting(Document::getId).containsExactly("a");
+        assertThat(context.tokens()).isLessThanOrEqualTo(40);
+    }
+
+    @Test
+    @DisplayName("build() должен предпочитать разнообразные чанки почти одинаковым (MMR)")
+    void build_shouldPreferDiverseChunks() {
+        ContextBuilder builder = new ContextBuilder(3000, 0.5, 0.95, new SimpleMeterRegistry());
+        String optionalsVariant = OPTIONALS.replace("guard let", "guard let statements");
+        List<Document> candidates = List.of(
+                document("a", OPTIONALS, 0.9),
+                document("b", optionalsVariant, 0.89),
+                document("c", STRUCTS, 0.7)
+        );
+
+        RagContext context = builder.build(candidates);
+
+        assertThat(context.documents()).extracting(Document::getId).startsWith("a", "c");
+    }
+
+    private static Document document(String id, String text, double score) {
+        return Document.builder().id(id).text(text).score(score).build();
+    }
+}
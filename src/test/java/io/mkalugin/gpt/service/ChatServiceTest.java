@@ -11,7 +11,10 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -38,6 +41,9 @@ class ChatServiceTest {
     @Mock
     private ChatClient.CallResponseSpec callSpec;
 
+    @Mock
+    private ChatClient.StreamResponseSpec streamSpec;
+
     @Mock
     private ChatClient.AdvisorSpec advisorSpec;
 
@@ -97,4 +103,29 @@ class ChatServiceTest {
         assertThat(result.conversationId()).isEqualTo(conversationId);
         verify(requestSpec).user(userMessage);
     }
+
+    @Test
+    @DisplayName("chatStream() должен отправить conversationId, фрагменты ответа и событие завершения")
+    void chatStream_shouldEmitConversationTokensAndDone() {
+        String userMessage = "Hello, GPT!";
+        String conversationId = "test-conversation-123";
+
+        when(chatClientBuilder.defaultAdvisors(any(MessageChatMemoryAdvisor.class))).thenReturn(chatClientBuilder);
+        when(chatClientBuilder.defaultSystem(anyString())).thenReturn(chatClientBuilder);
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenReturn(requestSpec);
+        when(requestSpec.advisors(any(Consumer.class))).thenReturn(requestSpec);
+        when(requestSpec.stream()).thenReturn(streamSpec);
+        when(streamSpec.content()).thenReturn(Flux.just("Hello! ", "How can I help?"));
+
+        List<ServerSentEvent<Object>> events = chatService.chatStream(userMessage, conversationId)
+                .collectList()
+                .block();
+
+        assertThat(events).extracting(ServerSentEvent::event)
+                .containsExactly("conversation", "token", "token", "done");
+        assertThat(events.get(1).data()).isEqualTo("Hello! ");
+        verify(requestSpec).user(userMessage);
+    }
 }
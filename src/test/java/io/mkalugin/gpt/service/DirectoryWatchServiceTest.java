@@ -0,0 +1,133 @@
+package io.mkalugin.gpt.service;
+
+import io.mkalugin.gpt.ingestion.IngestionProgress;
+import io.mkalugin.gpt.ingestion.SourceFile;
+import io.mkalugin.gpt.service.IngestionJobService.IngestionTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit-тесты на {@link DirectoryWatchService}
+ */
+@ExtendWith(MockitoExtension.class)
+class DirectoryWatchServiceTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+
+    @Mock
+    private IngestionJobService ingestionJobService;
+
+    @Mock
+    private DocumentService documentService;
+
+    @TempDir
+    private Path directory;
+
+    private DirectoryWatchService watchService;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (watchService != null) {
+            watchService.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Сервис должен переиндексировать серию изменений одной задачей и передавать удалённые файлы")
+    @SuppressWarnings("unchecked")
+    void watch_shouldReindexOnlyChangedFiles() throws Exception {
+        Files.writeString(directory.resolve("old.txt"), "Old document");
+        watchService = new DirectoryWatchService(ingestionJobService, documentService, directory, "*.txt",
+                Duration.ofMillis(300), Duration.ofSeconds(5), false);
+        watchService.start();
+
+        Path swift = directory.resolve("swift.txt");
+        Files.writeString(swift, "Swift closures");
+        Files.writeString(swift, "Swift closures capture values");
+        Files.writeString(directory.resolve("notes.md"), "ignored");
+        Files.delete(directory.resolve("old.txt"));
+
+        ArgumentCaptor<IngestionTask> task = ArgumentCaptor.forClass(IngestionTask.class);
+        verify(ingestionJobService, timeout(TIMEOUT_MS)).submit(anyString(), task.capture());
+        IngestionProgress progress = new IngestionProgress();
+        task.getValue().run(progress);
+
+        ArgumentCaptor<List<SourceFile>> files = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Set<String>> removed = ArgumentCaptor.forClass(Set.class);
+        verify(documentService).reindexFiles(files.capture(), removed.capture(), any(IngestionProgress.class));
+        assertThat(files.getValue()).extracting(SourceFile::source).containsExactly("file:swift.txt");
+        assertThat(removed.getValue()).containsExactly("file:old.txt");
+
+        reset(ingestionJobService, documentService);
+        Files.delete(swift);
+        verify(ingestionJobService, timeout(TIMEOUT_MS)).submit(anyString(), task.capture());
+        task.getValue().run(progress);
+        verify(documentService).reindexFiles(anyList(), removed.capture(), any());
+        assertThat(removed.getValue()).containsExactly("file:swift.txt");
+    }
+
+    @Test
+    @DisplayName("Сервис должен удалить файлы каталога, перемещённого за пределы наблюдения")
+    @SuppressWarnings("unchecked")
+    void watch_shouldRemoveFilesOfMovedOutDirectory(@TempDir Path outside) throws Exception {
+        Path guides = Files.createDirectories(directory.resolve("guides"));
+        Files.writeString(guides.resolve("swift.txt"), "Swift guide");
+        Files.writeString(directory.resolve("kept.txt"), "Kept document");
+        watchService = new DirectoryWatchService(ingestionJobService, documentService, directory, "*.txt",
+                Duration.ofMillis(300), Duration.ofSeconds(5), false);
+        watchService.start();
+
+        Files.move(guides, outside.resolve("guides"));
+
+        ArgumentCaptor<IngestionTask> task = ArgumentCaptor.forClass(IngestionTask.class);
+        verify(ingestionJobService, timeout(TIMEOUT_MS)).submit(anyString(), task.capture());
+        task.getValue().run(new IngestionProgress());
+        ArgumentCaptor<Set<String>> removed = ArgumentCaptor.forClass(Set.class);
+        verify(documentService).reindexFiles(anyList(), removed.capture(), any(IngestionProgress.class));
+        assertThat(removed.getValue()).containsExactly("file:guides/swift.txt");
+    }
+
+    @Test
+    @DisplayName("Сервис должен продолжить наблюдение после ошибки переиндексации и повторить её с путём файла от каталога")
+    @SuppressWarnings("unchecked")
+    void watch_shouldSurviveFailuresAndKeySourcesByRelativePath() throws Exception {
+        Files.createDirectories(directory.resolve("guides"));
+        when(ingestionJobService.submit(anyString(), any(IngestionTask.class)))
+                .thenThrow(new IllegalStateException("executor is broken"))
+                .thenReturn(null);
+        watchService = new DirectoryWatchService(ingestionJobService, documentService, directory, "*.txt",
+                Duration.ofMillis(300), Duration.ofSeconds(5), false);
+        watchService.start();
+
+        Files.writeString(directory.resolve("guides").resolve("swift.txt"), "Swift guide");
+
+        ArgumentCaptor<IngestionTask> task = ArgumentCaptor.forClass(IngestionTask.class);
+        verify(ingestionJobService, timeout(TIMEOUT_MS).times(2)).submit(anyString(), task.capture());
+        task.getValue().run(new IngestionProgress());
+        ArgumentCaptor<List<SourceFile>> files = ArgumentCaptor.forClass(List.class);
+        verify(documentService).reindexFiles(files.capture(), anySet(), any(IngestionProgress.class));
+        assertThat(files.getValue()).extracting(SourceFile::source).containsExactly("file:guides/swift.txt");
+    }
+}
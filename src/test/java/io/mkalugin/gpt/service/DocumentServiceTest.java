@@ -1,6 +1,27 @@
 package io.mkalugin.gpt.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.mkalugin.gpt.cache.AnswerSourceIndex;
 import io.mkalugin.gpt.client.ChromaDbClient;
+import io.mkalugin.gpt.dto.DocumentInfo;
+import io.mkalugin.gpt.dto.DocumentListResponse;
+import io.mkalugin.gpt.dto.chroma.ChromaCollection;
+import io.mkalugin.gpt.dto.chroma.ChromaGetResponse;
+import io.mkalugin.gpt.embedding.PrecomputedEmbeddingModel;
+import io.mkalugin.gpt.enums.DocumentProjection;
+import io.mkalugin.gpt.ingestion.ChunkIds;
+import io.mkalugin.gpt.ingestion.DocumentSplitters;
+import io.mkalugin.gpt.ingestion.IngestionPipeline;
+import io.mkalugin.gpt.ingestion.IngestionProgress;
+import io.mkalugin.gpt.ingestion.IngestionResult;
+import io.mkalugin.gpt.ingestion.NearDuplicateIndex;
+import io.mkalugin.gpt.ingestion.SourceFile;
+import io.mkalugin.gpt.ingestion.StreamingTextSplitter;
+import io.mkalugin.gpt.retrieval.Bm25Index;
+import io.mkalugin.gpt.utils.DocumentCursor;
+import io.mkalugin.gpt.vectorstore.ChromaReplicaVectorStore;
+import io.mkalugin.gpt.vectorstore.HnswVectorStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,16 +31,35 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 /**
  * Unit-тесты на {@link DocumentService}
@@ -33,25 +73,157 @@ class DocumentServiceTest {
     @Mock
     private ChromaDbClient chromaDbClient;
 
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @Mock
+    private AnswerSourceIndex answerSourceIndex;
+
+    @Mock
+    private ObjectProvider<HnswVectorStore> hnswVectorStore;
+
+    @Mock
+    private ObjectProvider<ChromaReplicaVectorStore> chromaReplica;
+
     @Captor
     private ArgumentCaptor<List<Document>> documentsCaptor;
 
+    @Captor
+    private ArgumentCaptor<List<String>> documentIdsCaptor;
+
+    private Bm25Index bm25Index;
     private DocumentService documentService;
 
     @BeforeEach
     void setUp() {
-        documentService = new DocumentService(vectorStore, chromaDbClient);
+        bm25Index = new Bm25Index();
+        lenient().when(embeddingModel.call(any())).thenAnswer(invocation -> {
+            EmbeddingRequest request = invocation.getArgument(0);
+            return new EmbeddingResponse(IntStream.range(0, request.getInstructions().size())
+                    .mapToObj(i -> new Embedding(new float[]{1f}, i))
+                    .toList());
+        });
+        NearDuplicateIndex duplicateIndex = new NearDuplicateIndex(true, 0.95);
+        IngestionPipeline ingestionPipeline = new IngestionPipeline(vectorStore,
+                new PrecomputedEmbeddingModel(embeddingModel), bm25Index,
+                new DocumentSplitters(new StreamingTextSplitter(800, 80, 350, 5), true), duplicateIndex,
+                2, 16, 1, 1000, 1, 64, Path.of("documents"), new SimpleMeterRegistry());
+        documentService = new DocumentService(chromaDbClient, ingestionPipeline, answerSourceIndex, duplicateIndex,
+                new ObjectMapper(), hnswVectorStore, chromaReplica);
+        ReflectionTestUtils.setField(documentService, "documentsPageSize", 2);
     }
 
     @Test
     @DisplayName("loadDocumentsFromResources() должен загрузить документы из тестовых ресурсов")
     void loadDocumentsFromResources_shouldLoadDocumentsFromTestResources() throws IOException {
-        int result = documentService.loadDocumentsFromResources("test-documents/*.txt");
+        IngestionResult result = documentService.loadDocumentsFromResources("test-documents/*.txt");
 
-        assertThat(result).isGreaterThan(0);
+        assertThat(result.chunks()).isGreaterThan(0);
+        assertThat(result.hasFailures()).isFalse();
         verify(vectorStore).add(documentsCaptor.capture());
         List<Document> capturedDocuments = documentsCaptor.getValue();
         assertThat(capturedDocuments).isNotEmpty();
+        assertThat(bm25Index.size()).isEqualTo(capturedDocuments.size());
+        assertThat(capturedDocuments).allSatisfy(document -> assertThat(document.getMetadata())
+                .containsEntry(ChunkIds.SOURCE, "classpath:test-documents/sample.txt"));
+    }
+
+    @Test
+    @DisplayName("loadDocumentsFromResources() должен удалять только чанки удалённых файлов из ресурсов, а не одноимённых загрузок и файлов каталога")
+    void loadDocumentsFromResources_shouldScopeStaleChunksToClasspathOrigin() throws IOException {
+        when(chromaDbClient.getCollection())
+                .thenReturn(Optional.of(new ChromaCollection("c1", "documents", 4, null, null)));
+        List<String> sources = List.of("classpath:test-documents/removed.txt", "upload:removed.txt",
+                "file:removed.txt", "removed.txt");
+        List<String> ids = sources.stream().map(source -> ChunkIds.id(source, 0, ChunkIds.contentHash("Old text"))).toList();
+        when(chromaDbClient.getMetadatas("c1", null, 1000, 0)).thenReturn(Optional.of(new ChromaGetResponse(ids, null,
+                sources.stream().<Map<String, Object>>map(source -> Map.of(ChunkIds.SOURCE, source,
+                        ChunkIds.CHUNK_INDEX, 0, ChunkIds.CONTENT_HASH, ChunkIds.contentHash("Old text"))).toList())));
+
+        IngestionResult result = documentService.loadDocumentsFromResources("test-documents/*.txt");
+
+        assertThat(result.deleted()).isEqualTo(2);
+        verify(vectorStore).delete(documentIdsCaptor.capture());
+        assertThat(documentIdsCaptor.getValue()).containsExactlyInAnyOrder(ids.get(0), ids.get(3));
+    }
+
+    @Test
+    @DisplayName("reindexFiles() должен загрузить изменённые файлы, удалить чанки удалённых и сбросить их ответы")
+    void reindexFiles_shouldApplyChangesAndInvalidateAnswers() {
+        String removedChunkId = ChunkIds.id("file:removed.txt", 0, ChunkIds.contentHash("Old text"));
+        when(chromaDbClient.getCollection())
+                .thenReturn(Optional.of(new ChromaCollection("c1", "documents", 1, null, null)));
+        when(chromaDbClient.getMetadatas(eq("c1"), anyMap(), anyInt(), eq(0))).thenReturn(Optional.of(
+                new ChromaGetResponse(List.of(removedChunkId), null, List.of(Map.of(
+                        ChunkIds.SOURCE, "file:removed.txt",
+                        ChunkIds.CHUNK_INDEX, 0,
+                        ChunkIds.CONTENT_HASH, ChunkIds.contentHash("Old text"))))));
+        SourceFile changed = new SourceFile("file:guides/sample.txt", new ClassPathResource("test-documents/sample.txt"));
+
+        IngestionResult result = documentService.reindexFiles(List.of(changed), Set.of("file:removed.txt"),
+                new IngestionProgress());
+
+        assertThat(result.added()).isPositive();
+        assertThat(result.deleted()).isEqualTo(1);
+        verify(vectorStore).delete(List.of(removedChunkId));
+        verify(answerSourceIndex).invalidate(Set.of("file:guides/sample.txt", "file:removed.txt"));
+    }
+
+    @Test
+    @DisplayName("streamDocuments() должен читать ChromaDB порциями, писать выбранные поля и курсор следующей страницы")
+    void streamDocuments_shouldWritePageWithProjectionAndNextCursor() throws IOException {
+        when(chromaDbClient.getCollection())
+                .thenReturn(Optional.of(new ChromaCollection("c1", "documents", 10, null, null)));
+        when(chromaDbClient.getCollectionName()).thenReturn("documents");
+        when(chromaDbClient.getDocumentsPage("c1", List.of("metadatas"), 2, 4)).thenReturn(Optional.of(
+                new ChromaGetResponse(List.of("d4", "d5"), null,
+                        List.of(Map.of(ChunkIds.SOURCE, "a.txt"), Map.of(ChunkIds.SOURCE, "b.txt")))));
+        when(chromaDbClient.getDocumentsPage("c1", List.of("metadatas"), 1, 6)).thenReturn(Optional.of(
+                new ChromaGetResponse(List.of("d6"), null, List.of(Map.of(ChunkIds.SOURCE, "c.txt")))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        documentService.streamDocuments(3, 4, DocumentProjection.METADATA).writeTo(out);
+
+        DocumentListResponse response = new ObjectMapper().readValue(out.toByteArray(), DocumentListResponse.class);
+        assertThat(response.totalCount()).isEqualTo(10);
+        assertThat(response.documents()).extracting(DocumentInfo::id).containsExactly("d4", "d5", "d6");
+        assertThat(response.documents()).allSatisfy(document -> {
+            assertThat(document.content()).isNull();
+            assertThat(document.metadata()).containsKey(ChunkIds.SOURCE);
+        });
+        assertThat(DocumentCursor.decode(response.nextCursor())).isEqualTo(7);
+        assertThat(response.error()).isNull();
+    }
+
+    @Test
+    @DisplayName("streamDocuments() должен выбросить исключение до записи ответа, если первую порцию не удалось прочитать")
+    void streamDocuments_shouldFailBeforeWritingWhenFirstPageIsUnavailable() {
+        when(chromaDbClient.getCollection())
+                .thenReturn(Optional.of(new ChromaCollection("c1", "documents", 10, null, null)));
+        when(chromaDbClient.getDocumentsPage("c1", List.of("metadatas"), 2, 0)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> documentService.streamDocuments(3, 0, DocumentProjection.METADATA))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    @DisplayName("streamDocuments() должен оборвать список ошибкой и курсором непрочитанного документа, если следующая порция недоступна")
+    void streamDocuments_shouldMarkListingInterruptedByReadFailure() throws IOException {
+        when(chromaDbClient.getCollection())
+                .thenReturn(Optional.of(new ChromaCollection("c1", "documents", 10, null, null)));
+        when(chromaDbClient.getCollectionName()).thenReturn("documents");
+        when(chromaDbClient.getDocumentsPage("c1", List.of("metadatas"), 2, 0)).thenReturn(Optional.of(
+                new ChromaGetResponse(List.of("d0", "d1"), null,
+                        List.of(Map.of(ChunkIds.SOURCE, "a.txt"), Map.of(ChunkIds.SOURCE, "b.txt")))));
+        when(chromaDbClient.getDocumentsPage("c1", List.of("metadatas"), 2, 2)).thenReturn(Optional.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        documentService.streamDocuments(5, 0, DocumentProjection.METADATA).writeTo(out);
+
+        DocumentListResponse response = new ObjectMapper().readValue(out.toByteArray(), DocumentListResponse.class);
+        assertThat(response.documents()).extracting(DocumentInfo::id).containsExactly("d0", "d1");
+        assertThat(response.error()).isNotBlank();
+        assertThat(DocumentCursor.decode(response.nextCursor())).isEqualTo(2);
     }
 
     @Test
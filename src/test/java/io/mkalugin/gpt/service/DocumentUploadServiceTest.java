@@ -0,0 +1,120 @@
+package io.mkalugin.gpt.service;
+
+import io.mkalugin.gpt.dto.UploadDocumentsResponse;
+import io.mkalugin.gpt.exception.PayloadTooLargeException;
+import io.mkalugin.gpt.ingestion.IngestionProgress;
+import io.mkalugin.gpt.ingestion.IngestionResult;
+import io.mkalugin.gpt.ingestion.SourceFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Unit-тесты на {@link DocumentUploadService}
+ */
+@ExtendWith(MockitoExtension.class)
+class DocumentUploadServiceTest {
+
+    private static final String BOUNDARY = "----upload-boundary";
+
+    @Mock
+    private DocumentService documentService;
+
+    private ExecutorService executor;
+    private DocumentUploadService documentUploadService;
+    private final Map<String, String> ingested = new LinkedHashMap<>();
+    private final Set<String> ingestionThreads = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("ingestion").factory());
+        documentUploadService = new DocumentUploadService(documentService,
+                new IngestionJobService(documentService, executor, 10), DataSize.ofKilobytes(1), 1);
+        // Конвейер читает файл потоково, имитируем это чтением ресурса до конца
+        doAnswer(invocation -> {
+            List<SourceFile> files = invocation.getArgument(0);
+            SourceFile file = files.getFirst();
+            ingestionThreads.add(Thread.currentThread().getName());
+            try (InputStream in = file.resource().getInputStream()) {
+                ingested.put(file.source(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                return new IngestionResult(1, 0, 2, 0, 0, 0, 0, 0);
+            } catch (Exception e) {
+                return new IngestionResult(0, 1, 0, 0, 0, 0, 0, 0);
+            }
+        }).when(documentService).reindexFiles(anyList(), anyCollection(), any(IngestionProgress.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("upload() должен загрузить каждый файл multipart-тела под его именем в общей очереди задач загрузки")
+    void upload_shouldIngestEachMultipartFile() throws Exception {
+        String body = "preamble\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"comment\"\r\n\r\n"
+                + "not a file\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"files\"; filename=\"docs/first.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + "First line\r\n--not a boundary\r\n\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"files\"; filename=\"second.md\"\r\n\r\n"
+                + "# Второй файл\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+
+        UploadDocumentsResponse response = documentUploadService.upload(
+                "multipart/form-data; boundary=\"" + BOUNDARY + "\"", -1, null, stream(body));
+
+        assertThat(ingested).containsExactly(
+                Map.entry("upload:first.txt", "First line\r\n--not a boundary\r\n"),
+                Map.entry("upload:second.md", "# Второй файл"));
+        assertThat(response.files()).containsExactly("upload:first.txt", "upload:second.md");
+        assertThat(ingestionThreads).containsExactly("ingestion");
+        assertThat(response.bytes()).isEqualTo(body.getBytes(StandardCharsets.UTF_8).length);
+        assertThat(response.result().chunksLoaded()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("upload() должен отклонить тело больше лимита, даже если длина не известна заранее")
+    void upload_shouldRejectBodyOverLimit() {
+        String body = "x".repeat(2048);
+
+        assertThatThrownBy(() -> documentUploadService.upload("text/plain", 2048, "big.txt", stream(body)))
+                .isInstanceOf(PayloadTooLargeException.class);
+        assertThat(ingested).isEmpty();
+
+        assertThatThrownBy(() -> documentUploadService.upload("text/plain", -1, "big.txt", stream(body)))
+                .isInstanceOf(PayloadTooLargeException.class);
+        assertThat(ingested).isEmpty();
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
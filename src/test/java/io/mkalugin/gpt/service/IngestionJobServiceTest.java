@@ -0,0 +1,114 @@
+package io.mkalugin.gpt.service;
+
+import io.mkalugin.gpt.enums.IngestionJobStatus;
+import io.mkalugin.gpt.exception.NotFoundException;
+import io.mkalugin.gpt.ingestion.IngestionJob;
+import io.mkalugin.gpt.ingestion.IngestionProgress;
+import io.mkalugin.gpt.ingestion.IngestionResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit-тесты на {@link IngestionJobService}
+ */
+@ExtendWith(MockitoExtension.class)
+class IngestionJobServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Mock
+    private DocumentService documentService;
+
+    private ExecutorService executor;
+    private IngestionJobService ingestionJobService;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        ingestionJobService = new IngestionJobService(documentService, executor, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("submit() должен выполнить загрузку в фоне и сохранить итог в задаче")
+    void submit_shouldRunIngestionInBackground() throws Exception {
+        IngestionResult result = new IngestionResult(2, 0, 5, 1, 3, 0, 0, 0);
+        when(documentService.loadDocumentsFromResources(eq("documents/*.txt"), any(IngestionProgress.class)))
+                .thenReturn(result);
+
+        IngestionJob job = ingestionJobService.submit("documents/*.txt");
+        awaitFinished(job);
+
+        assertThat(ingestionJobService.get(job.getId())).isSameAs(job);
+        assertThat(job.getStatus()).isEqualTo(IngestionJobStatus.SUCCEEDED);
+        assertThat(job.getResult()).isEqualTo(result);
+        assertThat(job.getStartedAt()).isNotNull();
+        assertThat(job.getFinishedAt()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("cancel() должен снять задачу из очереди и остановить выполняющуюся")
+    void cancel_shouldStopRunningAndQueuedJobs() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        when(documentService.loadDocumentsFromResources(eq("big/*.txt"), any(IngestionProgress.class)))
+                .thenAnswer(invocation -> {
+                    IngestionProgress progress = invocation.getArgument(1);
+                    started.countDown();
+                    while (!progress.isCancelled()) {
+                        Thread.sleep(10);
+                    }
+                    return new IngestionResult(1, 0, 1, 0, 0, 0, 0, 0);
+                });
+
+        IngestionJob running = ingestionJobService.submit("big/*.txt");
+        IngestionJob queued = ingestionJobService.submit("queued/*.txt");
+        assertThat(started.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)).isTrue();
+
+        ingestionJobService.cancel(queued.getId());
+        assertThat(queued.getStatus()).isEqualTo(IngestionJobStatus.CANCELLED);
+
+        ingestionJobService.cancel(running.getId());
+        awaitFinished(running);
+        assertThat(running.getStatus()).isEqualTo(IngestionJobStatus.CANCELLED);
+        assertThat(running.getResult().chunks()).isEqualTo(1);
+        verify(documentService, never()).loadDocumentsFromResources(eq("queued/*.txt"), any(IngestionProgress.class));
+    }
+
+    @Test
+    @DisplayName("get() должен выбросить NotFoundException для неизвестной задачи")
+    void get_shouldThrowWhenJobNotFound() {
+        assertThatThrownBy(() -> ingestionJobService.get("unknown"))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    private static void awaitFinished(IngestionJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!job.getStatus().isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(job.getStatus().isFinished()).isTrue();
+    }
+}
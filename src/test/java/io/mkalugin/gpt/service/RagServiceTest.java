@@ -1,5 +1,15 @@
 package io.mkalugin.gpt.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.mkalugin.gpt.cache.AnswerSourceIndex;
+import io.mkalugin.gpt.cache.SemanticAnswerCache;
+import io.mkalugin.gpt.cache.SingleFlight;
+import io.mkalugin.gpt.dto.RagBatchItem;
+import io.mkalugin.gpt.retrieval.Bm25Index;
+import io.mkalugin.gpt.retrieval.ContextBuilder;
+import io.mkalugin.gpt.retrieval.ReciprocalRankFusion;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,16 +20,29 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -41,6 +64,9 @@ class RagServiceTest {
     @Mock
     private ChatClient.CallResponseSpec callSpec;
 
+    @Mock
+    private ChatClient.StreamResponseSpec streamSpec;
+
     @Mock
     private VectorStore vectorStore;
 
@@ -50,11 +76,33 @@ class RagServiceTest {
     @Mock
     private InputValidationService inputValidationService;
 
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    private CacheManager cacheManager;
+    private ExecutorService executor;
     private RagService ragService;
 
     @BeforeEach
     void setUp() {
-        ragService = new RagService(chatClientBuilder, vectorStore, inputValidationService);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SemanticAnswerCache semanticAnswerCache = new SemanticAnswerCache(
+                true, 0.95, 100, Duration.ofMinutes(10), meterRegistry);
+        cacheManager = new ConcurrentMapCacheManager("ragQueries");
+        RetrievalService retrievalService = new RetrievalService(vectorStore, new Bm25Index(), Runnable::run,
+                true, Duration.ofMillis(800), ReciprocalRankFusion.DEFAULT_K, meterRegistry);
+        ragService = new RagService(chatClientBuilder, retrievalService, inputValidationService,
+                embeddingModel, semanticAnswerCache, cacheManager,
+                new SingleFlight<>("ragQueries", Duration.ofSeconds(30), meterRegistry),
+                new ContextBuilder(3000, 0.7, 0.8, meterRegistry), executor,
+                new AnswerSourceIndex(cacheManager, semanticAnswerCache));
+        ReflectionTestUtils.setField(ragService, "batchConcurrency", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
     }
 
     @Test
@@ -67,6 +115,7 @@ class RagServiceTest {
                 new Document("It supports OpenAI, Anthropic, and other providers.")
         );
 
+        when(embeddingModel.embed(anyString())).thenReturn(new float[]{1f, 0f, 0f});
         when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(documents);
         when(chatClientBuilder.build()).thenReturn(chatClient);
         when(chatClient.prompt()).thenReturn(requestSpec);
@@ -81,7 +130,7 @@ class RagServiceTest {
         verify(vectorStore).similaritySearch(searchRequestCaptor.capture());
         SearchRequest capturedRequest = searchRequestCaptor.getValue();
         assertThat(capturedRequest.getQuery()).isEqualTo(question);
-        assertThat(capturedRequest.getTopK()).isEqualTo(5);
+        assertThat(capturedRequest.getTopK()).isEqualTo(10);
     }
 
     @Test
@@ -90,6 +139,7 @@ class RagServiceTest {
         String question = "Unknown topic";
         String expectedResponse = "No relevant information found.";
 
+        when(embeddingModel.embed(anyString())).thenReturn(new float[]{1f, 0f, 0f});
         when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(Collections.emptyList());
         when(chatClientBuilder.build()).thenReturn(chatClient);
         when(chatClient.prompt()).thenReturn(requestSpec);
@@ -103,4 +153,118 @@ class RagServiceTest {
         assertThat(result).isEqualTo(expectedResponse);
         verify(vectorStore).similaritySearch(any(SearchRequest.class));
     }
+
+    @Test
+    @DisplayName("query() должен вернуть ответ из семантического кэша для перефразированного вопроса")
+    void query_shouldReturnSemanticCacheHitForRephrasedQuestion() {
+        String expectedResponse = "Optionals represent a value or nil.";
+
+        when(embeddingModel.embed("what are optionals in swift")).thenReturn(new float[]{1f, 0f, 0f});
+        when(embeddingModel.embed("explain swift optionals")).thenReturn(new float[]{0.99f, 0.05f, 0f});
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(Collections.emptyList());
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(any(Consumer.class))).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callSpec);
+        when(callSpec.content()).thenReturn(expectedResponse);
+
+        String first = ragService.query("What are optionals in Swift?");
+        String second = ragService.query("Explain Swift optionals");
+
+        assertThat(first).isEqualTo(expectedResponse);
+        assertThat(second).isEqualTo(expectedResponse);
+        verify(vectorStore, times(1)).similaritySearch(any(SearchRequest.class));
+        verify(callSpec, times(1)).content();
+    }
+
+    @Test
+    @DisplayName("queryStream() должен отправить источники, фрагменты ответа и сохранить ответ в кэш")
+    void queryStream_shouldEmitSourcesThenTokensAndCacheAnswer() {
+        String question = "What is Spring AI?";
+        List<Document> documents = List.of(Document.builder()
+                .id("chunk-1")
+                .text("Spring AI provides integration with various AI models.")
+                .metadata("source", "spring.txt")
+                .score(0.87)
+                .build());
+
+        when(embeddingModel.embed(anyString())).thenReturn(new float[]{1f, 0f, 0f});
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(documents);
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(any(Consumer.class))).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenReturn(requestSpec);
+        when(requestSpec.stream()).thenReturn(streamSpec);
+        when(streamSpec.content()).thenReturn(Flux.just("Spring AI ", "is a framework."));
+
+        List<ServerSentEvent<Object>> events = ragService.queryStream(question).collectList().block();
+
+        assertThat(events).extracting(ServerSentEvent::event)
+                .containsExactly("sources", "token", "token", "done");
+        assertThat(events.get(0).data()).asInstanceOf(InstanceOfAssertFactories.LIST).hasSize(1);
+        assertThat(cacheManager.getCache("ragQueries").get("what is spring ai", String.class))
+                .isEqualTo("Spring AI is a framework.");
+    }
+
+    @Test
+    @DisplayName("queryStream() должен воспроизвести закэшированный ответ с источниками исходного ответа")
+    void queryStream_shouldReplayCachedAnswerWithSources() {
+        List<Document> documents = List.of(Document.builder()
+                .id("chunk-1")
+                .text("Spring AI provides integration with various AI models.")
+                .metadata("source", "spring.txt")
+                .score(0.87)
+                .build());
+
+        when(embeddingModel.embed(anyString())).thenReturn(new float[]{1f, 0f, 0f});
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(documents);
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(any(Consumer.class))).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenReturn(requestSpec);
+        when(requestSpec.stream()).thenReturn(streamSpec);
+        when(streamSpec.content()).thenReturn(Flux.just("Spring AI ", "is a framework."));
+
+        List<ServerSentEvent<Object>> first = ragService.queryStream("What is Spring AI?").collectList().block();
+        List<ServerSentEvent<Object>> replayed = ragService.queryStream("what is spring ai").collectList().block();
+
+        assertThat(replayed.get(0).event()).isEqualTo("sources");
+        assertThat(replayed.get(0).data()).isEqualTo(first.get(0).data());
+        assertThat(replayed.get(replayed.size() - 1).data()).isEqualTo(Map.of("cached", true));
+        verify(streamSpec, times(1)).content();
+    }
+
+    @Test
+    @DisplayName("queryBatch() должен вернуть ответы в порядке вопросов с ошибками отдельных элементов")
+    void queryBatch_shouldReturnOrderedResultsWithPerItemErrors() {
+        cacheManager.getCache("ragQueries").put("what is swift", "Swift is a language.");
+        doAnswer(invocation -> {
+            if ("Bad question".equals(invocation.getArgument(0))) {
+                throw new IllegalArgumentException("Input too long");
+            }
+            return null;
+        }).when(inputValidationService).validate(anyString());
+
+        when(embeddingModel.embed(anyList())).thenReturn(List.of(new float[]{1f, 0f, 0f}));
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(Collections.emptyList());
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(any(Consumer.class))).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callSpec);
+        when(callSpec.content()).thenReturn("Optionals hold a value or nil.");
+
+        List<RagBatchItem> results = ragService.queryBatch(List.of(
+                "What are optionals?", "What is Swift?", "Bad question", "what are optionals"));
+
+        assertThat(results).extracting(RagBatchItem::answer).containsExactly(
+                "Optionals hold a value or nil.", "Swift is a language.", null, "Optionals hold a value or nil.");
+        assertThat(results).extracting(RagBatchItem::cached).containsExactly(false, true, false, false);
+        assertThat(results.get(2).error()).isEqualTo("Input too long");
+        verify(embeddingModel).embed(List.of("what are optionals"));
+        verify(callSpec, times(1)).content();
+        assertThat(cacheManager.getCache("ragQueries").get("what are optionals", String.class))
+                .isEqualTo("Optionals hold a value or nil.");
+    }
 }
@@ -0,0 +1,126 @@
+package io.mkalugin.gpt.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.mkalugin.gpt.cache.CachedRetrieval;
+import io.mkalugin.gpt.retrieval.Bm25Index;
+import io.mkalugin.gpt.retrieval.ReciprocalRankFusion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit-тесты на {@link RetrievalService}
+ */
+@ExtendWith(MockitoExtension.class)
+class RetrievalServiceTest {
+
+    @Mock
+    private VectorStore vectorStore;
+
+    private ExecutorService executor;
+    private RetrievalService retrievalService;
+
+    @BeforeEach
+    void setUp() {
+        Bm25Index bm25Index = new Bm25Index();
+        bm25Index.add(List.of(
+                document("lexical", "URLSession dataTask performs a network request"),
+                document("both", "dataTask completion handler runs on a background queue")
+        ));
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        retrievalService = new RetrievalService(vectorStore, bm25Index, executor,
+                true, Duration.ofMillis(200), ReciprocalRankFusion.DEFAULT_K, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("search() должен объединить векторные и лексические результаты через RRF")
+    void search_shouldFuseVectorAndLexicalResults() {
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(
+                document("vector", "Networking in Swift"),
+                document("both", "dataTask completion handler runs on a background queue")
+        ));
+
+        CachedRetrieval result = retrievalService.search(request("dataTask"));
+
+        assertThat(result.partial()).isFalse();
+        assertThat(result.ids()).containsExactlyInAnyOrder("both", "vector", "lexical");
+        assertThat(result.ids()[0]).isEqualTo("both");
+    }
+
+    @Test
+    @DisplayName("search() должен ответить по лексическому индексу, если векторный поиск упал")
+    void search_shouldFallBackToLexicalWhenVectorStoreFails() {
+        when(vectorStore.similaritySearch(any(SearchRequest.class)))
+                .thenThrow(new IllegalStateException("Chroma is down"));
+
+        CachedRetrieval result = retrievalService.search(request("dataTask"));
+
+        assertThat(result.partial()).isTrue();
+        assertThat(result.ids()).containsExactlyInAnyOrder("lexical", "both");
+    }
+
+    @Test
+    @DisplayName("search() должен ответить по лексическому индексу, если векторный поиск превысил бюджет")
+    void search_shouldFallBackToLexicalWhenVectorStoreIsSlow() {
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenAnswer(invocation -> {
+            Thread.sleep(2_000);
+            return List.of(document("vector", "Networking in Swift"));
+        });
+
+        CachedRetrieval result = retrievalService.search(request("URLSession"));
+
+        assertThat(result.partial()).isTrue();
+        assertThat(result.ids()).containsExactly("lexical");
+    }
+
+    @Test
+    @DisplayName("search() должен ограничить бюджетом векторный поиск после пропуска, если лексический индекс ничего не нашёл")
+    void search_shouldBoundVectorFallbackWhenLexicalIndexFindsNothing() {
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenAnswer(invocation -> {
+            Thread.sleep(2_000);
+            return List.of(document("vector", "Networking in Swift"));
+        });
+        // Средняя задержка выше бюджета: векторный путь пропускается
+        AtomicLong latency = (AtomicLong) ReflectionTestUtils.getField(retrievalService, "vectorLatencyNanos");
+        latency.set(Duration.ofSeconds(1).toNanos());
+
+        long start = System.nanoTime();
+        CachedRetrieval result = retrievalService.search(request("Combine publishers"));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        assertThat(result.partial()).isTrue();
+        assertThat(result.ids()).isEmpty();
+    }
+
+    private static SearchRequest request(String query) {
+        return SearchRequest.builder().query(query).topK(5).build();
+    }
+
+    private static Document document(String id, String text) {
+        return new Document(id, text, Map.of());
+    }
+}
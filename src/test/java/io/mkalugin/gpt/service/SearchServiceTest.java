@@ -0,0 +1,91 @@
+package io.mkalugin.gpt.service;
+
+import io.mkalugin.gpt.cache.CachedRetrieval;
+import io.mkalugin.gpt.dto.RagSearchQuery;
+import io.mkalugin.gpt.dto.RagSearchResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit-тесты на {@link SearchService}
+ */
+@ExtendWith(MockitoExtension.class)
+class SearchServiceTest {
+
+    @Mock
+    private RetrievalService retrievalService;
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    private ExecutorService executor;
+    private SearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        searchService = new SearchService(retrievalService, embeddingModel, executor);
+        ReflectionTestUtils.setField(searchService, "embeddingCacheEnabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("search() должен вычислить embeddings одним вызовом и вернуть результаты в порядке запросов")
+    void search_shouldEmbedOnceAndKeepOrder() {
+        when(embeddingModel.embed(anyList())).thenReturn(List.of(new float[]{1f}, new float[]{0f}));
+        when(retrievalService.search(any(SearchRequest.class))).thenAnswer(invocation -> {
+            SearchRequest request = invocation.getArgument(0);
+            return CachedRetrieval.of(List.of(Document.builder()
+                    .id(request.getQuery() + "-" + request.getTopK())
+                    .text("text for " + request.getQuery())
+                    .metadata(Map.of("source", "swift.txt"))
+                    .score(0.9)
+                    .build()));
+        });
+
+        RagSearchResponse response = searchService.search(List.of(
+                new RagSearchQuery("closures", 3, null, null),
+                new RagSearchQuery("generics", null, 0.5, "source == 'swift.txt'")
+        ));
+
+        verify(embeddingModel).embed(List.of("closures", "generics"));
+        assertThat(response.results()).hasSize(2);
+        assertThat(response.results().get(0).hits().getFirst().id()).isEqualTo("closures-3");
+        assertThat(response.results().get(1).hits().getFirst().id()).isEqualTo("generics-5");
+        assertThat(response.results().get(1).hits().getFirst().source()).isEqualTo("swift.txt");
+    }
+
+    @Test
+    @DisplayName("search() должен выбросить IllegalArgumentException для некорректного фильтра")
+    void search_shouldRejectInvalidFilter() {
+        assertThatThrownBy(() -> searchService.search(List.of(new RagSearchQuery("closures", 3, null, "source =="))))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(retrievalService, embeddingModel);
+    }
+}
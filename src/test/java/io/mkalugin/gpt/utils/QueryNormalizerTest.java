@@ -0,0 +1,32 @@
+package io.mkalugin.gpt.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit-тесты на {@link QueryNormalizer}
+ */
+class QueryNormalizerTest {
+
+    @Test
+    @DisplayName("normalize() должен приводить к одной строке запросы, отличающиеся регистром, пробелами и знаками конца предложения")
+    void normalize_shouldIgnoreCaseWhitespaceAndSentencePunctuation() {
+        assertThat(QueryNormalizer.normalize("  What is  an Optional?! "))
+                .isEqualTo(QueryNormalizer.normalize("what is an optional"))
+                .isEqualTo(QueryNormalizer.normalize("What is an optional…"))
+                .isEqualTo("what is an optional");
+    }
+
+    @Test
+    @DisplayName("normalize() должен сохранять значимые символы в конце запроса: C++ и C# не совпадают друг с другом и с C")
+    void normalize_shouldKeepMeaningfulTrailingSymbols() {
+        String cpp = QueryNormalizer.normalize("What is C++?");
+        String csharp = QueryNormalizer.normalize("What is C#?");
+
+        assertThat(cpp).isEqualTo("what is c++");
+        assertThat(csharp).isEqualTo("what is c#");
+        assertThat(QueryNormalizer.normalize("What is C?")).isNotIn(cpp, csharp);
+    }
+}
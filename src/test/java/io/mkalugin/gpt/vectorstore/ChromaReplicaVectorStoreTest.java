@@ -0,0 +1,130 @@
+package io.mkalugin.gpt.vectorstore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.mkalugin.gpt.client.ChromaDbClient;
+import io.mkalugin.gpt.dto.chroma.ChromaCollection;
+import io.mkalugin.gpt.dto.chroma.ChromaRecordsResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit-тесты на {@link ChromaReplicaVectorStore}
+ */
+@ExtendWith(MockitoExtension.class)
+class ChromaReplicaVectorStoreTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    @Mock
+    private VectorStore chroma;
+
+    @Mock
+    private ChromaDbClient chromaDbClient;
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    private ChromaReplicaVectorStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ChromaReplicaVectorStore(chroma, chromaDbClient, embeddingModel, 0, Duration.ZERO,
+                new SimpleMeterRegistry());
+        // Первая загрузка копии идёт в фоне сразу после создания; коллекции нет, копия остаётся пустой
+        verify(chromaDbClient, timeout(TIMEOUT_MS)).refreshCollection();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    @DisplayName("similaritySearch() должен искать в ChromaDB, пока копия коллекции не загружена")
+    void similaritySearch_shouldFallBackToChromaBeforeSync() {
+        SearchRequest request = SearchRequest.builder().query("closures").topK(2).build();
+        List<Document> chromaResults = List.of(new Document("a", "swift closure", Map.of()));
+        when(chroma.similaritySearch(request)).thenReturn(chromaResults);
+
+        assertThat(store.similaritySearch(request)).isEqualTo(chromaResults);
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("similaritySearch() должен искать по загруженной копии с фильтром, а delete() — сразу исключать документ")
+    void similaritySearch_shouldSearchReplicaAndApplyDeletes() {
+        when(chromaDbClient.refreshCollection())
+                .thenReturn(Optional.of(new ChromaCollection("c1", "documents", 3, null, null)));
+        when(chromaDbClient.getRecords(eq("c1"), isNull(), anyInt(), eq(0))).thenReturn(Optional.of(
+                new ChromaRecordsResponse(
+                        List.of("a", "b", "c"),
+                        List.of(new float[]{1, 0, 0}, new float[]{0.9f, 0.1f, 0}, new float[]{0, 0, 1}),
+                        List.of("swift closure", "escaping closure", "actors"),
+                        List.of(Map.of("source", "closures.md"), Map.of("source", "escaping.md"),
+                                Map.of("source", "actors.md")))));
+        when(embeddingModel.embed("closures")).thenReturn(new float[]{1, 0, 0});
+
+        store.sync();
+        List<Document> all = store.similaritySearch(SearchRequest.builder().query("closures").topK(2).build());
+        List<Document> filtered = store.similaritySearch(SearchRequest.builder()
+                .query("closures")
+                .topK(2)
+                .filterExpression("source == 'escaping.md'")
+                .build());
+        store.delete(List.of("a"));
+        List<Document> afterDelete = store.similaritySearch(SearchRequest.builder().query("closures").topK(1).build());
+
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(all).extracting(Document::getId).containsExactly("a", "b");
+        assertThat(all.getFirst().getText()).isEqualTo("swift closure");
+        assertThat(all.getFirst().getScore()).isGreaterThan(0.99);
+        assertThat(filtered).extracting(Document::getId).containsExactly("b");
+        assertThat(afterDelete).extracting(Document::getId).containsExactly("b");
+        verify(chroma).delete(List.of("a"));
+        verify(chroma, never()).similaritySearch(any(SearchRequest.class));
+    }
+
+    @Test
+    @DisplayName("Конструктор должен загрузить копию коллекции и без периодической сверки")
+    void constructor_shouldLoadReplicaWithoutSyncInterval() {
+        when(chromaDbClient.refreshCollection())
+                .thenReturn(Optional.of(new ChromaCollection("c1", "documents", 1, null, null)));
+        when(chromaDbClient.getRecords(eq("c1"), isNull(), anyInt(), eq(0))).thenReturn(Optional.of(
+                new ChromaRecordsResponse(List.of("a"), List.of(new float[]{1, 0, 0}), List.of("swift closure"),
+                        List.of(Map.of("source", "closures.md")))));
+
+        try (ChromaReplicaVectorStore loaded = new ChromaReplicaVectorStore(chroma, chromaDbClient, embeddingModel,
+                0, Duration.ZERO, new SimpleMeterRegistry())) {
+            verify(chromaDbClient, timeout(TIMEOUT_MS)).getRecords(eq("c1"), isNull(), anyInt(), eq(0));
+            // Явная сверка дожидается фоновой загрузки и не загружает копию повторно
+            loaded.sync();
+
+            assertThat(loaded.size()).isEqualTo(1);
+            verify(chromaDbClient).getRecords(eq("c1"), isNull(), anyInt(), eq(0));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.mkalugin.gpt.vectorstore;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+/**
+ * Unit-тесты на {@link FlatVectorIndex}
+ */
+class FlatVectorIndexTest {
+
+    private static final int DIMENSIONS = 24;
+
+    @Test
+    @DisplayName("search() должен возвращать точные ближайшие векторы и при параллельном переборе сегментов")
+    void search_shouldReturnExactNeighborsSequentiallyAndInParallel() {
+        Random random = new Random(42);
+        int count = FlatVectorIndex.SEGMENT_VECTORS * 2 + 100;
+        float[][] vectors = new float[count][];
+        FlatVectorIndex sequential = new FlatVectorIndex(DIMENSIONS, Integer.MAX_VALUE);
+        FlatVectorIndex parallel = new FlatVectorIndex(DIMENSIONS, 0);
+        for (int i = 0; i < count; i++) {
+            vectors[i] = randomVector(random);
+            sequential.add(vectors[i]);
+            parallel.add(vectors[i]);
+        }
+        float[] query = randomVector(random);
+
+        int[] expected = IntStream.range(0, count).boxed()
+                .sorted(Comparator.comparingDouble(i -> -cosine(query, vectors[i])))
+                .limit(10)
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        HnswIndex.Neighbors found = parallel.search(query, 10, slot -> true);
+        assertThat(sequential.search(query, 10, slot -> true).nodes()).containsExactlyInAnyOrder(expected);
+        assertThat(found.nodes()).containsExactlyInAnyOrder(expected);
+        assertThat(found.similarities()).isSortedAccordingTo(Comparator.reverseOrder());
+        assertThat(IntStream.of(parallel.search(query, 10, slot -> slot % 2 == 0).nodes())).hasSize(10)
+                .allMatch(slot -> slot % 2 == 0);
+    }
+
+    @Test
+    @DisplayName("delete() должен исключать вектор из поиска, а add() — занимать освобождённый слот")
+    void delete_shouldExcludeVectorAndReuseSlot() {
+        Random random = new Random(7);
+        FlatVectorIndex index = new FlatVectorIndex(DIMENSIONS, Integer.MAX_VALUE);
+        float[] target = randomVector(random);
+        int slot = index.add(target);
+        for (int i = 0; i < 50; i++) {
+            index.add(randomVector(random));
+        }
+
+        HnswIndex.Neighbors found = index.search(target, 1, s -> true);
+        assertThat(found.nodes()).containsExactly(slot);
+        assertThat(found.similarities()[0]).isCloseTo(1f, offset(1e-5f));
+
+        index.delete(slot);
+
+        assertThat(index.size()).isEqualTo(50);
+        assertThat(index.search(target, 5, s -> true).nodes()).doesNotContain(slot);
+        assertThat(index.add(randomVector(random))).isEqualTo(slot);
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
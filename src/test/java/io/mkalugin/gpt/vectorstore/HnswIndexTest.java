@@ -0,0 +1,66 @@
+package io.mkalugin.gpt.vectorstore;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit-тесты на {@link HnswIndex}
+ */
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @Test
+    @DisplayName("search() должен находить не менее 90% точных ближайших соседей")
+    void search_shouldMatchExactSearchRecall() {
+        Random random = new Random(42);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 200);
+        for (int i = 0; i < 2000; i++) {
+            index.add(randomVector(random));
+        }
+
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(random);
+            int[] exact = index.exactSearch(query, 10, node -> true).nodes();
+            int[] found = index.search(query, 10, 64, node -> true).nodes();
+            hits += (int) Arrays.stream(found).filter(node -> Arrays.stream(exact).anyMatch(e -> e == node)).count();
+        }
+
+        assertThat(hits / (queries * 10.0)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    @DisplayName("delete() должен исключать узел из поиска")
+    void delete_shouldExcludeNodeFromSearch() {
+        Random random = new Random(7);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 50);
+        float[] target = randomVector(random);
+        int node = index.add(target);
+        for (int i = 0; i < 200; i++) {
+            index.add(randomVector(random));
+        }
+
+        assertThat(index.search(target, 1, 32, n -> true).nodes()).containsExactly(node);
+
+        index.delete(node);
+
+        assertThat(index.isDeleted(node)).isTrue();
+        assertThat(index.deletedCount()).isEqualTo(1);
+        assertThat(index.search(target, 5, 32, n -> true).nodes()).doesNotContain(node);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
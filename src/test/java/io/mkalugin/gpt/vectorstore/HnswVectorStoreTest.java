@@ -0,0 +1,167 @@
+package io.mkalugin.gpt.vectorstore;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit-тесты на {@link HnswVectorStore}
+ */
+class HnswVectorStoreTest {
+
+    private static final List<String> KEYWORDS = List.of("swift", "closure", "network", "actor");
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("similaritySearch() должен применять фильтр и находить документы после повторного открытия снимка")
+    void similaritySearch_shouldFilterAndSurviveReopen() throws Exception {
+        Path path = directory.resolve("index.bin");
+        EmbeddingModel embeddingModel = new KeywordEmbeddingModel();
+
+        try (HnswVectorStore store = open(path, embeddingModel)) {
+            store.add(List.of(
+                    new Document("a", "swift closure", Map.of("source", "closures.md")),
+                    new Document("b", "swift network", Map.of("source", "network.md")),
+                    new Document("c", "actor", Map.of("source", "actors.md"))));
+            store.add(List.of(new Document("c", "swift actor", Map.of("source", "actors.md"))));
+
+            List<Document> filtered = store.similaritySearch(SearchRequest.builder()
+                    .query("swift closure")
+                    .topK(3)
+                    .filterExpression("source == 'network.md'")
+                    .build());
+
+            assertThat(filtered).extracting(Document::getId).containsExactly("b");
+            assertThat(store.size()).isEqualTo(3);
+            store.flush();
+        }
+
+        try (HnswVectorStore reopened = open(path, embeddingModel)) {
+            List<Document> result = reopened.similaritySearch(SearchRequest.builder()
+                    .query("swift closure")
+                    .topK(1)
+                    .build());
+
+            assertThat(reopened.size()).isEqualTo(3);
+            assertThat(result).extracting(Document::getId).containsExactly("a");
+            assertThat(result.getFirst().getText()).isEqualTo("swift closure");
+            assertThat(result.getFirst().getMetadata()).containsEntry("source", "closures.md");
+            assertThat(result.getFirst().getScore()).isGreaterThan(0.99);
+        }
+    }
+
+    @Test
+    @DisplayName("flush() должен перестроить граф без удалённых узлов, если их больше четверти")
+    void flush_shouldRebuildGraphWithoutDeletedNodes() throws Exception {
+        try (HnswVectorStore store = open(directory.resolve("index.bin"), new KeywordEmbeddingModel())) {
+            store.add(List.of(
+                    new Document("a", "swift closure", Map.of("source", "closures.md")),
+                    new Document("b", "swift network", Map.of("source", "network.md")),
+                    new Document("c", "actor", Map.of("source", "actors.md")),
+                    new Document("d", "network actor", Map.of("source", "actors.md"))));
+            store.delete(List.of("b", "c"));
+
+            store.flush();
+
+            HnswIndex index = graphIndex(store);
+            assertThat(index.size()).isEqualTo(2);
+            assertThat(index.deletedCount()).isZero();
+            List<Document> result = store.similaritySearch(SearchRequest.builder()
+                    .query("swift closure")
+                    .topK(2)
+                    .build());
+            assertThat(result).extracting(Document::getId).containsExactlyInAnyOrder("a", "d");
+
+            store.delete(List.of("a"));
+            assertThat(store.size()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("flush() должен записывать и читать снимок больше буфера ввода-вывода по частям")
+    void flush_shouldStreamSnapshotLargerThanBuffer() throws Exception {
+        Path path = directory.resolve("index.bin");
+        String padding = "x".repeat(8 * 1024);
+        List<Document> documents = IntStream.range(0, 300)
+                .mapToObj(i -> new Document("doc-" + i, "swift closure " + i + " " + padding, Map.of("source", "big.md")))
+                .toList();
+
+        try (HnswVectorStore store = open(path, new KeywordEmbeddingModel())) {
+            store.add(documents);
+            store.flush();
+        }
+
+        assertThat(Files.size(path)).isGreaterThan(2L * 1024 * 1024);
+        assertThat(path.resolveSibling("index.bin.tmp")).doesNotExist();
+        try (HnswVectorStore reopened = open(path, new KeywordEmbeddingModel())) {
+            assertThat(reopened.size()).isEqualTo(300);
+            List<Document> result = reopened.similaritySearch(SearchRequest.builder()
+                    .query("swift closure")
+                    .topK(5)
+                    .build());
+            assertThat(result).hasSize(5).extracting(Document::getText)
+                    .isSubsetOf(documents.stream().map(Document::getText).toList());
+        }
+    }
+
+    private static HnswIndex graphIndex(HnswVectorStore store) {
+        Object graph = ReflectionTestUtils.getField(store, "graph");
+        return ReflectionTestUtils.invokeMethod(graph, "index");
+    }
+
+    private static HnswVectorStore open(Path path, EmbeddingModel embeddingModel) {
+        return HnswVectorStore.builder(embeddingModel)
+                .path(path)
+                .m(4)
+                .efConstruction(16)
+                .flushInterval(Duration.ZERO)
+                .build();
+    }
+
+    /**
+     * Модель, где каждое ключевое слово текста — отдельное измерение вектора.
+     */
+    private static class KeywordEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(vector(request.getInstructions().get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        private static float[] vector(String text) {
+            float[] vector = new float[KEYWORDS.size()];
+            for (int i = 0; i < KEYWORDS.size(); i++) {
+                vector[i] = text.contains(KEYWORDS.get(i)) ? 1 : 0;
+            }
+            return vector;
+        }
+    }
+}